@@ -22,6 +22,7 @@ import org.openstreetmap.osmosis.core.filter.common.IdTrackerType;
 import org.openstreetmap.osmosis.core.lifecycle.ReleasableIterator;
 import org.openstreetmap.osmosis.core.store.SimpleObjectStore;
 import org.openstreetmap.osmosis.core.store.SingleClassObjectSerializationFactory;
+import org.openstreetmap.osmosis.core.store.StorageFormat;
 import org.openstreetmap.osmosis.core.task.v0_6.Sink;
 import org.openstreetmap.osmosis.core.task.v0_6.SinkSource;
 
@@ -94,16 +95,18 @@ public abstract class AreaFilter implements SinkSource, EntityProcessor {
 		storeEntities = completeWays || completeRelations;
 		if (storeEntities) {
 			allNodes = new SimpleObjectStore<NodeContainer>(
-					new SingleClassObjectSerializationFactory(NodeContainer.class), "afn", true);
+					new SingleClassObjectSerializationFactory(NodeContainer.class), "afn", true, StorageFormat.Compact);
 			allWays = new SimpleObjectStore<WayContainer>(
-					new SingleClassObjectSerializationFactory(WayContainer.class), "afw", true);
+					new SingleClassObjectSerializationFactory(WayContainer.class), "afw", true, StorageFormat.Compact);
 			allRelations =
 				new SimpleObjectStore<RelationContainer>(
-						new SingleClassObjectSerializationFactory(RelationContainer.class), "afr", true);
+						new SingleClassObjectSerializationFactory(RelationContainer.class), "afr", true,
+						StorageFormat.Compact);
 		} else if (cascadingRelations) {
             allRelations = 
 				new SimpleObjectStore<RelationContainer>(
-						new SingleClassObjectSerializationFactory(RelationContainer.class), "afr", true);
+						new SingleClassObjectSerializationFactory(RelationContainer.class), "afr", true,
+						StorageFormat.Compact);
         }
 	}
 
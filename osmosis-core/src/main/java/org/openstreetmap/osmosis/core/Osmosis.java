@@ -7,7 +7,10 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.openstreetmap.osmosis.core.cli.CommandLineParser;
+import org.openstreetmap.osmosis.core.metrics.PipelineMetrics;
 import org.openstreetmap.osmosis.core.pipeline.common.Pipeline;
+import org.openstreetmap.osmosis.core.store.StorageCompression;
+import org.openstreetmap.osmosis.core.util.StringPool;
 
 
 /**
@@ -76,29 +79,63 @@ public final class Osmosis {
 		// Configure the new logging level.
 		configureLoggingLevel(commandLineParser.getLogLevelIndex());
 		
+		// Configure the compression of temporary files.
+		StorageCompression.setDefault(commandLineParser.getTempCompression());
+		
+		// Configure the string pool shared by all readers.
+		StringPool.setShared(new StringPool(commandLineParser.getStringPoolCapacity()));
+		
 		LOG.info("Osmosis Version " + OsmosisConstants.VERSION);
 		taskRegistrar = new TaskRegistrar();
 		taskRegistrar.initialize(commandLineParser.getPlugins());
 		
 		pipeline = new Pipeline(taskRegistrar.getFactoryRegister());
 		
-		LOG.info("Preparing pipeline.");
-		pipeline.prepare(commandLineParser.getTaskInfoList());
-		
-		LOG.info("Launching pipeline execution.");
-		pipeline.execute();
-		
-		LOG.info("Pipeline executing, waiting for completion.");
-		pipeline.waitForCompletion();
+		// Metrics must be enabled before the pipeline is prepared so that
+		// connections between tasks are instrumented.
+		if (commandLineParser.isMetricsEnabled()) {
+			PipelineMetrics.enable(commandLineParser.getMetricsFile(), commandLineParser.getMetricsIntervalSeconds());
+		}
+		try {
+			LOG.info("Preparing pipeline.");
+			pipeline.prepare(commandLineParser.getTaskInfoList());
+			
+			LOG.info("Launching pipeline execution.");
+			pipeline.execute();
+			
+			LOG.info("Pipeline executing, waiting for completion.");
+			pipeline.waitForCompletion();
+			
+		} finally {
+			PipelineMetrics.disable();
+		}
 		
 		LOG.info("Pipeline complete.");
 		
+		logStringPoolStatistics();
+		
 		finishTime = System.currentTimeMillis();
 		
 		LOG.info("Total execution time: " + (finishTime - startTime) + " milliseconds.");
 	}
 	
 	
+	/**
+	 * Logs the effectiveness of the shared string pool.
+	 */
+	private static void logStringPoolStatistics() {
+		StringPool stringPool;
+		
+		stringPool = StringPool.getShared();
+		if (stringPool.getCapacity() > 0 && LOG.isLoggable(Level.FINE)) {
+			LOG.fine("String pool capacity " + stringPool.getCapacity() + ", "
+					+ stringPool.getHitCount() + " hits, "
+					+ stringPool.getMissCount() + " misses, "
+					+ Math.round(stringPool.getHitRate() * 100) + "% hit rate.");
+		}
+	}
+	
+	
 	/**
 	 * Configures logging to write all output to the console.
 	 */
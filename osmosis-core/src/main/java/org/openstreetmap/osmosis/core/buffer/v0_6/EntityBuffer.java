@@ -1,10 +1,12 @@
 // This software is released into the Public Domain.  See copying.txt for details.
 package org.openstreetmap.osmosis.core.buffer.v0_6;
 
+import java.util.List;
 import java.util.Map;
 
 import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
 import org.openstreetmap.osmosis.core.store.DataPostbox;
+import org.openstreetmap.osmosis.core.task.v0_6.BatchSink;
 import org.openstreetmap.osmosis.core.task.v0_6.Sink;
 import org.openstreetmap.osmosis.core.task.v0_6.SinkRunnableSource;
 
@@ -17,7 +19,7 @@ import org.openstreetmap.osmosis.core.task.v0_6.SinkRunnableSource;
  * 
  * @author Brett Henderson
  */
-public class EntityBuffer implements SinkRunnableSource {
+public class EntityBuffer implements SinkRunnableSource, BatchSink {
 	private Sink sink;
 	private DataPostbox<EntityContainer> buffer;
 	
@@ -49,6 +51,16 @@ public class EntityBuffer implements SinkRunnableSource {
 	}
 	
 	
+	/**
+	 * {@inheritDoc}
+	 */
+	public void processBatch(List<EntityContainer> entityContainers) {
+		for (EntityContainer entityContainer : entityContainers) {
+			buffer.put(entityContainer);
+		}
+	}
+	
+	
 	/**
 	 * {@inheritDoc}
 	 */
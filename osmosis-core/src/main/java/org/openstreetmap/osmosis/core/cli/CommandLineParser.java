@@ -1,14 +1,18 @@
 // This software is released into the Public Domain.  See copying.txt for details.
 package org.openstreetmap.osmosis.core.cli;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.metrics.PipelineMetrics;
 import org.openstreetmap.osmosis.core.pipeline.common.PipelineConstants;
 import org.openstreetmap.osmosis.core.pipeline.common.TaskConfiguration;
+import org.openstreetmap.osmosis.core.store.StorageCompression;
+import org.openstreetmap.osmosis.core.util.StringPool;
 
 
 /**
@@ -27,6 +31,12 @@ public class CommandLineParser {
 	private static final String OPTION_VERBOSE_LONG = "verbose";
 	private static final String OPTION_PLUGIN_SHORT = "p";
 	private static final String OPTION_PLUGIN_LONG = "plugin";
+	private static final String OPTION_TEMP_COMPRESSION_SHORT = "tc";
+	private static final String OPTION_TEMP_COMPRESSION_LONG = "tempcompression";
+	private static final String OPTION_STRING_POOL_SHORT = "sp";
+	private static final String OPTION_STRING_POOL_LONG = "stringpool";
+	private static final String OPTION_METRICS_SHORT = "m";
+	private static final String OPTION_METRICS_LONG = "metrics";
 	
 	
 	/**
@@ -39,6 +49,11 @@ public class CommandLineParser {
 	private int quietValue;
 	private int verboseValue;
 	private List<String> plugins;
+	private StorageCompression tempCompression;
+	private int stringPoolCapacity;
+	private boolean metricsEnabled;
+	private File metricsFile;
+	private int metricsIntervalSeconds;
 	
 	
 	/**
@@ -50,6 +65,11 @@ public class CommandLineParser {
 		quietValue = 0;
 		verboseValue = 0;
 		plugins = new ArrayList<String>();
+		tempCompression = StorageCompression.getDefault();
+		stringPoolCapacity = StringPool.DEFAULT_CAPACITY;
+		metricsEnabled = false;
+		metricsFile = null;
+		metricsIntervalSeconds = PipelineMetrics.DEFAULT_INTERVAL_SECONDS;
 	}
 	
 	
@@ -88,6 +108,13 @@ public class CommandLineParser {
 				verboseValue = parseOptionIntegerWithDefault(globalOption, 0) + 1;
 			} else if (isArgumentForOption(OPTION_PLUGIN_SHORT, OPTION_PLUGIN_LONG, globalOption.name)) {
 				plugins.add(parseOptionString(globalOption));
+			} else if (isArgumentForOption(
+					OPTION_TEMP_COMPRESSION_SHORT, OPTION_TEMP_COMPRESSION_LONG, globalOption.name)) {
+				tempCompression = StorageCompression.parse(parseOptionString(globalOption));
+			} else if (isArgumentForOption(OPTION_STRING_POOL_SHORT, OPTION_STRING_POOL_LONG, globalOption.name)) {
+				stringPoolCapacity = parseOptionIntegerWithDefault(globalOption, StringPool.DEFAULT_CAPACITY);
+			} else if (isArgumentForOption(OPTION_METRICS_SHORT, OPTION_METRICS_LONG, globalOption.name)) {
+				parseMetricsOption(globalOption);
 			} else {
 				throw new OsmosisRuntimeException("Argument " + (globalOption.offset + 1)
 						+ " specifies an unrecognised option \"" + GLOBAL_ARGUMENT_PREFIX + globalOption.name
@@ -190,6 +217,43 @@ public class CommandLineParser {
 	}
 	
 	
+	/**
+	 * Parses the metrics option. The option has an optional file parameter
+	 * that metrics are written to, followed by an optional interval in
+	 * seconds between writes.
+	 * 
+	 * @param globalOption
+	 *            The global option to be parsed.
+	 */
+	private void parseMetricsOption(GlobalOptionConfiguration globalOption) {
+		if (globalOption.parameters.size() > 2) {
+			throw new OsmosisRuntimeException(
+					"Expected argument " + (globalOption.offset + 1) + " to have no more than two parameters.");
+		}
+		
+		metricsEnabled = true;
+		
+		if (globalOption.parameters.size() > 0) {
+			metricsFile = new File(globalOption.parameters.get(0));
+		}
+		
+		if (globalOption.parameters.size() > 1) {
+			try {
+				metricsIntervalSeconds = Integer.parseInt(globalOption.parameters.get(1));
+				
+			} catch (NumberFormatException e) {
+				throw new OsmosisRuntimeException(
+						"Expected argument " + (globalOption.offset + 3) + " to contain an integer value.");
+			}
+			
+			if (metricsIntervalSeconds <= 0) {
+				throw new OsmosisRuntimeException(
+						"Expected argument " + (globalOption.offset + 3) + " to be greater than 0.");
+			}
+		}
+	}
+	
+	
 	/**
 	 * Parses the details of a single option.
 	 * 
@@ -355,6 +419,58 @@ public class CommandLineParser {
 	}
 	
 	
+	/**
+	 * Returns the compression method to be used for compressed temporary
+	 * files.
+	 * 
+	 * @return The compression method.
+	 */
+	public StorageCompression getTempCompression() {
+		return tempCompression;
+	}
+	
+	
+	/**
+	 * Returns the number of strings to be held by the string pool shared by
+	 * all readers.
+	 * 
+	 * @return The string pool capacity, 0 if pooling is disabled.
+	 */
+	public int getStringPoolCapacity() {
+		return stringPoolCapacity;
+	}
+	
+	
+	/**
+	 * Indicates if pipeline metrics are to be collected.
+	 * 
+	 * @return True if metrics are enabled.
+	 */
+	public boolean isMetricsEnabled() {
+		return metricsEnabled;
+	}
+	
+	
+	/**
+	 * Returns the file pipeline metrics are to be written to.
+	 * 
+	 * @return The metrics file, or null if metrics are only exposed via JMX.
+	 */
+	public File getMetricsFile() {
+		return metricsFile;
+	}
+	
+	
+	/**
+	 * Returns the interval between writes to the metrics file.
+	 * 
+	 * @return The interval in seconds.
+	 */
+	public int getMetricsIntervalSeconds() {
+		return metricsIntervalSeconds;
+	}
+	
+	
 	/**
 	 * A data storage class holding information relating to a global option
 	 * during parsing.
@@ -27,11 +27,16 @@ import org.openstreetmap.osmosis.core.util.LongAsInt;
  * entity is available.
  */
 public class CommonEntityData implements Storeable {
+	/**
+	 * The timestamp value used when no timestamp is held in primitive form.
+	 */
+	private static final long NO_TIMESTAMP = Long.MIN_VALUE;
 
 	private long id;
 	private int version;
 	private int changesetId;
 	private TimestampContainer timestampContainer;
+	private long timestamp;
 	private OsmUser user;
 	private TagCollection tags;
 	private Map<String, Object> metaTags;
@@ -134,6 +139,35 @@ public class CommonEntityData implements Storeable {
 	}
 
 
+	/**
+	 * Creates a new instance holding the timestamp as a primitive value
+	 * instead of a Date or timestamp container. The tags are used directly
+	 * instead of being copied. This is intended for readers which create large
+	 * numbers of entities.
+	 * 
+	 * @param id
+	 *            The unique identifier.
+	 * @param version
+	 *            The version of the entity.
+	 * @param timestamp
+	 *            The last updated timestamp in milliseconds since the epoch.
+	 * @param user
+	 *            The user that last modified this entity.
+	 * @param changesetId
+	 *            The id of the changeset that this version of the entity was
+	 *            created by.
+	 * @param tags
+	 *            The tags to apply to the object.
+	 */
+	public CommonEntityData(long id, int version, long timestamp, OsmUser user, long changesetId,
+			TagCollectionImpl tags) {
+		init(id, null, user, version, changesetId);
+		this.timestamp = timestamp;
+		this.tags = tags;
+		metaTags = new LazyHashMap<String, Object>();
+	}
+
+
 	public CommonEntityData(long id, int version, Date timestamp, OsmUser user, long changesetId, Collection<Tag> tags,
 			boolean visible) {
 		// Chain to the more specific constructor
@@ -162,17 +196,18 @@ public class CommonEntityData implements Storeable {
 			long newChangesetId) {
 		this.id = newId;
 		this.timestampContainer = newTimestampContainer;
+		this.timestamp = NO_TIMESTAMP;
 		this.user = newUser;
 		this.version = newVersion;
 		this.changesetId = LongAsInt.longToInt(newChangesetId);
 	}
 
 
-	private static TimestampContainer readTimestampContainer(StoreReader sr, StoreClassRegister scr) {
+	private static long readTimestamp(StoreReader sr, StoreClassRegister scr) {
 		if (sr.readBoolean()) {
-			return new SimpleTimestampContainer(new Date(sr.readLong()));
+			return sr.readLong();
 		} else {
-			return null;
+			return NO_TIMESTAMP;
 		}
 	}
 
@@ -205,7 +240,7 @@ public class CommonEntityData implements Storeable {
 	 *            within the store.
 	 */
 	public CommonEntityData(StoreReader sr, StoreClassRegister scr) {
-		this(sr.readLong(), sr.readInteger(), readTimestampContainer(sr, scr), readOsmUser(sr, scr), sr.readInteger(),
+		this(sr.readLong(), sr.readInteger(), readTimestamp(sr, scr), readOsmUser(sr, scr), sr.readInteger(),
 				new TagCollectionImpl(sr, scr));
 
 		int metaTagCount;
@@ -226,9 +261,9 @@ public class CommonEntityData implements Storeable {
 
 		sw.writeInteger(version);
 
-		if (getTimestamp() != null) {
+		if (hasTimestamp()) {
 			sw.writeBoolean(true);
-			sw.writeLong(timestampContainer.getTimestamp().getTime());
+			sw.writeLong(getTimestampMillis());
 		} else {
 			sw.writeBoolean(false);
 		}
@@ -338,7 +373,57 @@ public class CommonEntityData implements Storeable {
 	 * @return The timestamp.
 	 */
 	public Date getTimestamp() {
-		return timestampContainer.getTimestamp();
+		if (timestampContainer != null) {
+			return timestampContainer.getTimestamp();
+		} else if (timestamp != NO_TIMESTAMP) {
+			return new Date(timestamp);
+		} else {
+			return null;
+		}
+	}
+
+
+	private boolean hasTimestamp() {
+		if (timestampContainer != null) {
+			return timestampContainer.getTimestamp() != null;
+		} else {
+			return timestamp != NO_TIMESTAMP;
+		}
+	}
+
+
+	/**
+	 * Gets the timestamp in milliseconds since the epoch. This avoids creating
+	 * a Date object if the timestamp is held in primitive form.
+	 * 
+	 * @return The timestamp.
+	 */
+	public long getTimestampMillis() {
+		if (!hasTimestamp()) {
+			throw new OsmosisRuntimeException("Entity " + id + " does not have a timestamp.");
+		}
+
+		if (timestampContainer != null) {
+			return timestampContainer.getTimestamp().getTime();
+		} else {
+			return timestamp;
+		}
+	}
+
+
+	/**
+	 * Indicates if the timestamp is held in parsed form, either in
+	 * milliseconds or as a date. If so, it may be retrieved using
+	 * {@link #getTimestampMillis()} without parsing or creating any objects.
+	 * 
+	 * @return True if the timestamp is held in parsed form.
+	 */
+	public boolean hasParsedTimestamp() {
+		if (timestampContainer != null) {
+			return timestampContainer instanceof SimpleTimestampContainer && timestampContainer.getTimestamp() != null;
+		} else {
+			return timestamp != NO_TIMESTAMP;
+		}
 	}
 
 
@@ -353,6 +438,7 @@ public class CommonEntityData implements Storeable {
 		assertWriteable();
 
 		timestampContainer = new SimpleTimestampContainer(timestamp);
+		this.timestamp = NO_TIMESTAMP;
 	}
 
 
@@ -365,6 +451,10 @@ public class CommonEntityData implements Storeable {
 	 * @return The timestamp container.
 	 */
 	public TimestampContainer getTimestampContainer() {
+		if (timestampContainer == null && timestamp != NO_TIMESTAMP) {
+			return new SimpleTimestampContainer(new Date(timestamp));
+		}
+
 		return timestampContainer;
 	}
 
@@ -381,6 +471,7 @@ public class CommonEntityData implements Storeable {
 		assertWriteable();
 
 		this.timestampContainer = timestampContainer;
+		timestamp = NO_TIMESTAMP;
 	}
 
 
@@ -395,6 +486,10 @@ public class CommonEntityData implements Storeable {
 	 * @return The timestamp string.
 	 */
 	public String getFormattedTimestamp(TimestampFormat timestampFormat) {
+		if (timestampContainer == null) {
+			return timestampFormat.formatTimestamp(getTimestamp());
+		}
+
 		return timestampContainer.getFormattedTimestamp(timestampFormat);
 	}
 
@@ -518,6 +613,9 @@ public class CommonEntityData implements Storeable {
 	 */
 	public CommonEntityData getWriteableInstance() {
 		if (isReadOnly()) {
+			if (timestampContainer == null) {
+				return new CommonEntityData(id, version, timestamp, user, changesetId, new TagCollectionImpl(tags));
+			}
 			return new CommonEntityData(id, version, timestampContainer, user, changesetId, tags);
 		} else {
 			return this;
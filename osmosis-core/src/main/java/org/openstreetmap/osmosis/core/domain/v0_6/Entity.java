@@ -235,6 +235,29 @@ public abstract class Entity implements Storeable {
 	}
 
 
+	/**
+	 * Gets the timestamp in milliseconds since the epoch. This avoids creating
+	 * a Date object if the timestamp is held in primitive form.
+	 * 
+	 * @return The timestamp.
+	 */
+	public long getTimestampMillis() {
+		return entityData.getTimestampMillis();
+	}
+
+
+	/**
+	 * Indicates if the timestamp is held in parsed form, either in
+	 * milliseconds or as a date. If so, it may be retrieved using
+	 * {@link #getTimestampMillis()} without parsing or creating any objects.
+	 * 
+	 * @return True if the timestamp is held in parsed form.
+	 */
+	public boolean hasParsedTimestamp() {
+		return entityData.hasParsedTimestamp();
+	}
+
+
 	/**
 	 * Sets the timestamp in date form. This is the standard method of updating
 	 * a timestamp.
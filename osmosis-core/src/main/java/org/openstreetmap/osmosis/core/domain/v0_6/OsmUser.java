@@ -6,6 +6,7 @@ import org.openstreetmap.osmosis.core.store.StoreClassRegister;
 import org.openstreetmap.osmosis.core.store.StoreReader;
 import org.openstreetmap.osmosis.core.store.StoreWriter;
 import org.openstreetmap.osmosis.core.store.Storeable;
+import org.openstreetmap.osmosis.core.util.StringPool;
 
 
 /**
@@ -53,7 +54,7 @@ public class OsmUser implements Storeable {
 			throw new OsmosisRuntimeException("A user id of " + USER_ID_NONE + " is not permitted.");
 		}
 		
-		this.name = userName;
+		this.name = StringPool.getShared().intern(userName);
 		this.id = id;
 	}
 	
@@ -68,7 +69,7 @@ public class OsmUser implements Storeable {
 	 *            within the store.
 	 */
 	public OsmUser(StoreReader sr, StoreClassRegister scr) {
-		name = sr.readString();
+		name = StringPool.getShared().intern(sr.readString());
 		id = sr.readInteger();
 	}
 	
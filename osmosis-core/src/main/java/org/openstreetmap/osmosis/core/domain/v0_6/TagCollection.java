@@ -19,4 +19,26 @@ public interface TagCollection extends Collection<Tag>, Storeable {
 	 * @return The tags represented as a map.
 	 */
 	Map<String, String> buildMap();
+
+
+	/**
+	 * Gets the key of a tag without creating a Tag object. Tags are indexed
+	 * in iteration order.
+	 * 
+	 * @param index
+	 *            The index of the tag.
+	 * @return The key of the tag.
+	 */
+	String getKey(int index);
+
+
+	/**
+	 * Gets the value of a tag without creating a Tag object. Tags are indexed
+	 * in iteration order.
+	 * 
+	 * @param index
+	 *            The index of the tag.
+	 * @return The value of the tag.
+	 */
+	String getValue(int index);
 }
@@ -1,30 +1,56 @@
 // This software is released into the Public Domain.  See copying.txt for details.
 package org.openstreetmap.osmosis.core.domain.v0_6;
 
-import java.util.ArrayList;
+import java.util.AbstractCollection;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 
 import org.openstreetmap.osmosis.core.store.StoreClassRegister;
 import org.openstreetmap.osmosis.core.store.StoreReader;
 import org.openstreetmap.osmosis.core.store.StoreWriter;
-import org.openstreetmap.osmosis.core.util.CollectionWrapper;
 import org.openstreetmap.osmosis.core.util.IntAsChar;
+import org.openstreetmap.osmosis.core.util.StringPool;
 
 
 /**
- * Maintains a collection of tags.
+ * Maintains a collection of tags. The keys and values are held in parallel
+ * arrays, Tag objects are only created when the collection is iterated over.
+ * Tags are compared by key and value rather than by identity when checking if
+ * the collection contains a tag or removing a tag.
  * 
  * @author Brett Henderson
  */
-public class TagCollectionImpl extends CollectionWrapper<Tag> implements TagCollection {
+public class TagCollectionImpl extends AbstractCollection<Tag> implements TagCollection {
+	private static final String[] EMPTY = new String[0];
+	
+	private String[] keys;
+	private String[] values;
+	private int size;
+	
 	
 	/**
 	 * Creates a new instance.
 	 */
 	public TagCollectionImpl() {
-		super(new ArrayList<Tag>());
+		// Most entities have no tags so no storage is allocated until required.
+		keys = EMPTY;
+		values = EMPTY;
+	}
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param initialCapacity
+	 *            The number of tags to allocate storage for.
+	 */
+	public TagCollectionImpl(int initialCapacity) {
+		keys = new String[initialCapacity];
+		values = new String[initialCapacity];
 	}
 	
 	
@@ -35,7 +61,17 @@ public class TagCollectionImpl extends CollectionWrapper<Tag> implements TagColl
 	 *            The initial tags.
 	 */
 	public TagCollectionImpl(Collection<? extends Tag> tags) {
-		super(new ArrayList<Tag>(tags));
+		this(tags.size());
+		
+		if (tags instanceof TagCollection) {
+			TagCollection tagCollection = (TagCollection) tags;
+			
+			for (int i = 0; i < keys.length; i++) {
+				add(tagCollection.getKey(i), tagCollection.getValue(i));
+			}
+		} else {
+			addAll(tags);
+		}
 	}
 	
 	
@@ -49,13 +85,13 @@ public class TagCollectionImpl extends CollectionWrapper<Tag> implements TagColl
 	 *            within the store.
 	 */
 	public TagCollectionImpl(StoreReader sr, StoreClassRegister scr) {
-		super(new ArrayList<Tag>());
+		this(sr.readCharacter());
 		
-		int tagCount;
+		StringPool stringPool = StringPool.getShared();
 		
-		tagCount = sr.readCharacter();
-		for (int i = 0; i < tagCount; i++) {
-			add(new Tag(sr, scr));
+		// Tags are stored in the same format as Tag.store.
+		for (int i = 0; i < keys.length; i++) {
+			add(stringPool.intern(sr.readString()), stringPool.intern(sr.readString()));
 		}
 	}
 	
@@ -65,24 +101,220 @@ public class TagCollectionImpl extends CollectionWrapper<Tag> implements TagColl
 	 */
 	@Override
 	public void store(StoreWriter sw, StoreClassRegister scr) {
-		sw.writeCharacter(IntAsChar.intToChar(size()));
-		for (Tag tag : this) {
-			tag.store(sw, scr);
+		sw.writeCharacter(IntAsChar.intToChar(size));
+		for (int i = 0; i < size; i++) {
+			sw.writeString(keys[i]);
+			sw.writeString(values[i]);
 		}
 	}
-
-
+	
+	
+	/**
+	 * Adds a tag without creating a Tag object.
+	 * 
+	 * @param key
+	 *            The key identifying the tag.
+	 * @param value
+	 *            The value associated with the tag.
+	 */
+	public void add(String key, String value) {
+		if (size == keys.length) {
+			int capacity = Math.max(4, size * 2);
+			
+			keys = Arrays.copyOf(keys, capacity);
+			values = Arrays.copyOf(values, capacity);
+		}
+		
+		keys[size] = key;
+		values[size] = value;
+		size++;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean add(Tag tag) {
+		add(tag.getKey(), tag.getValue());
+		
+		return true;
+	}
+	
+	
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index " + index + " is out of range for " + size + " tags.");
+		}
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getKey(int index) {
+		checkIndex(index);
+		
+		return keys[index];
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getValue(int index) {
+		checkIndex(index);
+		
+		return values[index];
+	}
+	
+	
+	private static boolean stringEquals(String a, String b) {
+		if (a == null) {
+			return b == null;
+		} else {
+			return a.equals(b);
+		}
+	}
+	
+	
+	private int indexOf(Object o) {
+		if (o instanceof Tag) {
+			Tag tag = (Tag) o;
+			
+			for (int i = 0; i < size; i++) {
+				if (stringEquals(keys[i], tag.getKey()) && stringEquals(values[i], tag.getValue())) {
+					return i;
+				}
+			}
+		}
+		
+		return -1;
+	}
+	
+	
+	private void removeAt(int index) {
+		System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+		System.arraycopy(values, index + 1, values, index, size - index - 1);
+		size--;
+		keys[size] = null;
+		values[size] = null;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean contains(Object o) {
+		return indexOf(o) >= 0;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean remove(Object o) {
+		int index = indexOf(o);
+		
+		if (index >= 0) {
+			removeAt(index);
+			return true;
+		} else {
+			return false;
+		}
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void clear() {
+		Arrays.fill(keys, 0, size, null);
+		Arrays.fill(values, 0, size, null);
+		size = 0;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int size() {
+		return size;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Iterator<Tag> iterator() {
+		return new TagIterator();
+	}
+	
+	
 	/**
 	 * {@inheritDoc}
 	 */
 	public Map<String, String> buildMap() {
 		Map<String, String> tagMap;
 		
-		tagMap = new HashMap<String, String>(size());
-		for (Tag tag : this) {
-			tagMap.put(tag.getKey(), tag.getValue());
+		tagMap = new HashMap<String, String>(size);
+		for (int i = 0; i < size; i++) {
+			tagMap.put(keys[i], values[i]);
 		}
 		
 		return tagMap;
 	}
+	
+	
+	private class TagIterator implements Iterator<Tag> {
+		private int nextIndex;
+		private boolean removeAllowed;
+		
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean hasNext() {
+			return nextIndex < size;
+		}
+		
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public Tag next() {
+			if (nextIndex >= size) {
+				throw new NoSuchElementException();
+			}
+			
+			removeAllowed = true;
+			nextIndex++;
+			
+			return new Tag(keys[nextIndex - 1], values[nextIndex - 1]);
+		}
+		
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void remove() {
+			if (!removeAllowed) {
+				throw new IllegalStateException();
+			}
+			
+			removeAllowed = false;
+			nextIndex--;
+			removeAt(nextIndex);
+		}
+	}
 }
@@ -48,4 +48,22 @@ public class UnmodifiableTagCollection extends CollectionWrapper<Tag> implements
 	public Map<String, String> buildMap() {
 		return wrappedTags.buildMap();
 	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getKey(int index) {
+		return wrappedTags.getKey(index);
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getValue(int index) {
+		return wrappedTags.getValue(index);
+	}
 }
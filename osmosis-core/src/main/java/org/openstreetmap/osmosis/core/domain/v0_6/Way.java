@@ -1,7 +1,6 @@
 // This software is released into the Public Domain.  See copying.txt for details.
 package org.openstreetmap.osmosis.core.domain.v0_6;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
@@ -22,6 +21,7 @@ import org.openstreetmap.osmosis.core.store.StoreWriter;
  */
 public class Way extends Entity implements Comparable<Way> {
 	
+	private WayNodeList wayNodeList;
 	private List<WayNode> wayNodes;
 	
 	
@@ -65,7 +65,7 @@ public class Way extends Entity implements Comparable<Way> {
 	public Way(long id, int version, TimestampContainer timestampContainer, OsmUser user, long changesetId) {
 		super(id, version, timestampContainer, user, changesetId);
 		
-		this.wayNodes = new ArrayList<WayNode>();
+		setWayNodeList(new WayNodeList());
 	}
 	
 	
@@ -78,7 +78,7 @@ public class Way extends Entity implements Comparable<Way> {
 	public Way(CommonEntityData entityData) {
 		super(entityData);
 		
-		this.wayNodes = new ArrayList<WayNode>();
+		setWayNodeList(new WayNodeList());
 	}
 	
 	
@@ -133,7 +133,7 @@ public class Way extends Entity implements Comparable<Way> {
 			Collection<Tag> tags, List<WayNode> wayNodes) {
 		super(id, version, timestampContainer, user, changesetId, tags);
 		
-		this.wayNodes = new ArrayList<WayNode>(wayNodes);
+		setWayNodeList(new WayNodeList(wayNodes));
 	}
 	
 	
@@ -149,7 +149,24 @@ public class Way extends Entity implements Comparable<Way> {
 			CommonEntityData entityData, List<WayNode> wayNodes) {
 		super(entityData);
 		
-		this.wayNodes = new ArrayList<WayNode>(wayNodes);
+		setWayNodeList(new WayNodeList(wayNodes));
+	}
+	
+	
+	/**
+	 * Creates a new instance holding the way nodes as an array of node ids.
+	 * This avoids creating WayNode objects for every node of the way.
+	 * 
+	 * @param entityData
+	 *            The common entity data.
+	 * @param wayNodeIds
+	 *            The ids of the way nodes. The array is used directly and must
+	 *            not be modified afterwards.
+	 */
+	public Way(CommonEntityData entityData, long[] wayNodeIds) {
+		super(entityData);
+		
+		setWayNodeList(new WayNodeList(wayNodeIds));
 	}
 	
 	
@@ -162,7 +179,7 @@ public class Way extends Entity implements Comparable<Way> {
 	private Way(Way originalWay) {
 		super(originalWay);
 		
-		this.wayNodes = new ArrayList<WayNode>(originalWay.wayNodes);
+		setWayNodeList(new WayNodeList(originalWay.wayNodeList));
 	}
 	
 	
@@ -179,13 +196,22 @@ public class Way extends Entity implements Comparable<Way> {
 		super(sr, scr);
 		
 		int featureCount;
+		long[] wayNodeIds;
 		
 		featureCount = sr.readInteger();
 		
-		wayNodes = new ArrayList<WayNode>();
+		// Way nodes are stored in the same format as WayNode.store.
+		wayNodeIds = new long[featureCount];
 		for (int i = 0; i < featureCount; i++) {
-			wayNodes.add(new WayNode(sr, scr));
+			wayNodeIds[i] = sr.readLong();
 		}
+		setWayNodeList(new WayNodeList(wayNodeIds));
+	}
+	
+	
+	private void setWayNodeList(WayNodeList newWayNodeList) {
+		wayNodeList = newWayNodeList;
+		wayNodes = newWayNodeList;
 	}
 	
 	
@@ -196,9 +222,9 @@ public class Way extends Entity implements Comparable<Way> {
 	public void store(StoreWriter sw, StoreClassRegister scr) {
 		super.store(sw, scr);
 		
-		sw.writeInteger(wayNodes.size());
-		for (WayNode wayNode : wayNodes) {
-			wayNode.store(sw, scr);
+		sw.writeInteger(wayNodeList.size());
+		for (int i = 0; i < wayNodeList.size(); i++) {
+			sw.writeLong(wayNodeList.getNodeId(i));
 		}
 	}
 	
@@ -258,6 +284,26 @@ public class Way extends Entity implements Comparable<Way> {
 			return wayNodes.size() - comparisonWayNodes.size();
 		}
 		
+		// Compare the node ids directly if both lists hold them.
+		if (comparisonWayNodes instanceof WayNodeList) {
+			WayNodeList comparisonWayNodeList = (WayNodeList) comparisonWayNodes;
+			
+			for (int k = 0; k < wayNodeList.size(); k++) {
+				long nodeId = wayNodeList.getNodeId(k);
+				long comparisonNodeId = comparisonWayNodeList.getNodeId(k);
+				
+				if (nodeId != comparisonNodeId) {
+					if (nodeId < comparisonNodeId) {
+						return -1;
+					} else {
+						return 1;
+					}
+				}
+			}
+			
+			return 0;
+		}
+		
 		// Check the individual way nodes.
 		i = wayNodes.iterator();
 		j = comparisonWayNodes.iterator();
@@ -316,9 +362,7 @@ public class Way extends Entity implements Comparable<Way> {
 			}
 		}
 		
-		wayNodeListResult = compareWayNodes(
-			comparisonWay.getWayNodes()
-		);
+		wayNodeListResult = compareWayNodes(comparisonWay.wayNodeList);
 		
 		if (wayNodeListResult != 0) {
 			return wayNodeListResult;
@@ -349,6 +393,19 @@ public class Way extends Entity implements Comparable<Way> {
 	public List<WayNode> getWayNodes() {
 		return wayNodes;
 	}
+	
+	
+	/**
+	 * Gets the id of the node at the specified position of the way without
+	 * creating a WayNode object.
+	 * 
+	 * @param index
+	 *            The index of the way node.
+	 * @return The node id.
+	 */
+	public long getWayNodeId(int index) {
+		return wayNodeList.getNodeId(index);
+	}
 
 
 	/**
@@ -370,7 +427,7 @@ public class Way extends Entity implements Comparable<Way> {
      * @return True or false
      */
     public boolean isClosed() {
-        return wayNodes.get(0).getNodeId() == wayNodes.get(wayNodes.size() - 1).getNodeId();
+        return wayNodeList.getNodeId(0) == wayNodeList.getNodeId(wayNodeList.size() - 1);
     }
 
     /** 
@@ -0,0 +1,158 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.domain.v0_6;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+
+/**
+ * Holds the way nodes of a way as an array of node ids. WayNode objects are
+ * only created when elements of the list are retrieved.
+ */
+class WayNodeList extends AbstractList<WayNode> implements RandomAccess {
+	private static final long[] EMPTY = new long[0];
+	
+	private long[] nodeIds;
+	private int size;
+	
+	
+	/**
+	 * Creates a new empty instance.
+	 */
+	WayNodeList() {
+		nodeIds = EMPTY;
+	}
+	
+	
+	/**
+	 * Creates a new instance using the node id array directly.
+	 * 
+	 * @param nodeIds
+	 *            The node ids which are used without being copied.
+	 */
+	WayNodeList(long[] nodeIds) {
+		this.nodeIds = nodeIds;
+		size = nodeIds.length;
+	}
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param wayNodes
+	 *            The initial way nodes.
+	 */
+	WayNodeList(Collection<WayNode> wayNodes) {
+		if (wayNodes instanceof WayNodeList) {
+			WayNodeList wayNodeList = (WayNodeList) wayNodes;
+			
+			nodeIds = Arrays.copyOf(wayNodeList.nodeIds, wayNodeList.size);
+		} else {
+			nodeIds = new long[wayNodes.size()];
+			for (WayNode wayNode : wayNodes) {
+				nodeIds[size++] = wayNode.getNodeId();
+			}
+		}
+		size = nodeIds.length;
+	}
+	
+	
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index " + index + " is out of range for " + size + " way nodes.");
+		}
+	}
+	
+	
+	/**
+	 * Gets the id of a node without creating a WayNode object.
+	 * 
+	 * @param index
+	 *            The index of the way node.
+	 * @return The node id.
+	 */
+	long getNodeId(int index) {
+		checkIndex(index);
+		
+		return nodeIds[index];
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public WayNode get(int index) {
+		return new WayNode(getNodeId(index));
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public WayNode set(int index, WayNode wayNode) {
+		WayNode previous;
+		
+		previous = get(index);
+		nodeIds[index] = wayNode.getNodeId();
+		
+		return previous;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void add(int index, WayNode wayNode) {
+		if (index < 0 || index > size) {
+			throw new IndexOutOfBoundsException("Index " + index + " is out of range for " + size + " way nodes.");
+		}
+		
+		if (size == nodeIds.length) {
+			nodeIds = Arrays.copyOf(nodeIds, Math.max(8, size * 2));
+		}
+		System.arraycopy(nodeIds, index, nodeIds, index + 1, size - index);
+		nodeIds[index] = wayNode.getNodeId();
+		size++;
+		modCount++;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public WayNode remove(int index) {
+		WayNode previous;
+		
+		previous = get(index);
+		System.arraycopy(nodeIds, index + 1, nodeIds, index, size - index - 1);
+		size--;
+		modCount++;
+		
+		return previous;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void clear() {
+		size = 0;
+		modCount++;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int size() {
+		return size;
+	}
+}
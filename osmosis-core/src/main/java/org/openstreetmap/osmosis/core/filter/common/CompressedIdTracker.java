@@ -0,0 +1,232 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.filter.common;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+
+/**
+ * Implements the IdTracker interface using a two level structure similar to a
+ * roaring bitmap. Ids are grouped by their high order bits into containers
+ * which each manage 65536 ids. Each container holds the low order bits of its
+ * ids as a sorted array, a bitmap or a list of runs depending on which is the
+ * most compact for the ids it contains.
+ * <p>
+ * Containers are located by a binary search over a sorted array of keys, which
+ * is skipped if the container of the previous call is requested again. This
+ * makes the common case of ids being set or checked in ascending order
+ * inexpensive.
+ */
+public class CompressedIdTracker implements IdTracker {
+	private static final int INITIAL_CONTAINER_CAPACITY = 16;
+	
+	private long[] keys;
+	private IdContainer[] containers;
+	private int containerCount;
+	private int lastIndex;
+	
+	
+	/**
+	 * Creates a new instance.
+	 */
+	public CompressedIdTracker() {
+		keys = new long[INITIAL_CONTAINER_CAPACITY];
+		containers = new IdContainer[INITIAL_CONTAINER_CAPACITY];
+	}
+	
+	
+	/**
+	 * Finds the index of the container with the specified key.
+	 * 
+	 * @return The index of the container, or (-(insertion point) - 1) if it
+	 *         doesn't exist.
+	 */
+	private int findContainer(long key) {
+		int index;
+		
+		if (lastIndex < containerCount && keys[lastIndex] == key) {
+			return lastIndex;
+		}
+		
+		index = Arrays.binarySearch(keys, 0, containerCount, key);
+		if (index >= 0) {
+			lastIndex = index;
+		}
+		
+		return index;
+	}
+	
+	
+	private void insertContainer(int index, long key, IdContainer container) {
+		if (containerCount == keys.length) {
+			keys = Arrays.copyOf(keys, containerCount * 2);
+			containers = Arrays.copyOf(containers, containerCount * 2);
+		}
+		
+		System.arraycopy(keys, index, keys, index + 1, containerCount - index);
+		System.arraycopy(containers, index, containers, index + 1, containerCount - index);
+		keys[index] = key;
+		containers[index] = container;
+		containerCount++;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean get(long id) {
+		int index;
+		
+		index = findContainer(id >> 16);
+		if (index < 0) {
+			return false;
+		}
+		
+		return containers[index].get((int) id & 0xFFFF);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void set(long id) {
+		long key;
+		int index;
+		
+		// The arithmetic shift places negative ids in containers with negative
+		// keys, which keeps them sorted before positive ids.
+		key = id >> 16;
+		index = findContainer(key);
+		if (index < 0) {
+			index = -index - 1;
+			insertContainer(index, key, new IdArrayContainer());
+			lastIndex = index;
+		}
+		
+		containers[index] = containers[index].set((int) id & 0xFFFF);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setAll(IdTracker idTracker) {
+		if (idTracker instanceof CompressedIdTracker) {
+			merge((CompressedIdTracker) idTracker);
+		} else {
+			for (Long id : idTracker) {
+				set(id);
+			}
+		}
+	}
+	
+	
+	/**
+	 * Merges the containers of another tracker into this tracker. Containers
+	 * with matching keys are combined directly instead of setting ids
+	 * individually.
+	 */
+	private void merge(CompressedIdTracker other) {
+		long[] mergedKeys;
+		IdContainer[] mergedContainers;
+		int mergedCount;
+		int i;
+		int j;
+		
+		mergedKeys = new long[Math.max(containerCount + other.containerCount, INITIAL_CONTAINER_CAPACITY)];
+		mergedContainers = new IdContainer[mergedKeys.length];
+		mergedCount = 0;
+		i = 0;
+		j = 0;
+		while (i < containerCount || j < other.containerCount) {
+			if (j >= other.containerCount || (i < containerCount && keys[i] < other.keys[j])) {
+				mergedKeys[mergedCount] = keys[i];
+				mergedContainers[mergedCount] = containers[i];
+				i++;
+			} else if (i >= containerCount || keys[i] > other.keys[j]) {
+				mergedKeys[mergedCount] = other.keys[j];
+				mergedContainers[mergedCount] = other.containers[j].copy();
+				j++;
+			} else {
+				mergedKeys[mergedCount] = keys[i];
+				mergedContainers[mergedCount] = containers[i].or(other.containers[j]);
+				i++;
+				j++;
+			}
+			mergedCount++;
+		}
+		
+		keys = mergedKeys;
+		containers = mergedContainers;
+		containerCount = mergedCount;
+		lastIndex = 0;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Iterator<Long> iterator() {
+		return new ContainerIdIterator();
+	}
+	
+	
+	private class ContainerIdIterator implements Iterator<Long> {
+		private int containerIndex;
+		private IdContainer.ValueIterator currentValues;
+		private long currentBase;
+		
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean hasNext() {
+			for (;;) {
+				if (currentValues == null) {
+					if (containerIndex < containerCount) {
+						currentValues = containers[containerIndex].iterator();
+						currentBase = keys[containerIndex] << 16;
+						containerIndex++;
+					} else {
+						return false;
+					}
+				}
+				
+				if (currentValues.hasNext()) {
+					return true;
+				} else {
+					currentValues = null;
+				}
+			}
+		}
+		
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public Long next() {
+			if (hasNext()) {
+				return currentBase | currentValues.next();
+				
+			} else {
+				throw new NoSuchElementException();
+			}
+		}
+		
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
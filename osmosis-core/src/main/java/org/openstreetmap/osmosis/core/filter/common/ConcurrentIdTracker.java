@@ -0,0 +1,328 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.filter.common;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+
+
+/**
+ * Implements the IdTracker interface in a way that allows multiple threads to
+ * set and check ids concurrently without locking. Ids are stored as bits in
+ * pages of atomic long words which are located through three levels of atomic
+ * reference arrays. Pages and directories are created on demand and published
+ * with compare and set operations, bits are set with compare and set loops on
+ * individual words.
+ * <p>
+ * Iteration is weakly consistent. Ids set while an iteration is in progress
+ * may or may not be returned, all other ids are returned in ascending order.
+ * <p>
+ * Ids between -2^42 and 2^42 can be stored.
+ */
+public class ConcurrentIdTracker implements IdTracker {
+	private static final int PAGE_BITS = 10;
+	private static final int PAGE_WORDS = (1 << PAGE_BITS) / 64;
+	private static final int DIRECTORY_BITS = 10;
+	private static final int DIRECTORY_SIZE = 1 << DIRECTORY_BITS;
+	private static final int DIRECTORY_MASK = DIRECTORY_SIZE - 1;
+	private static final int ROOT_SHIFT = PAGE_BITS + DIRECTORY_BITS * 2;
+	private static final int ROOT_SIZE = 1 << 13;
+	private static final int ROOT_OFFSET = ROOT_SIZE / 2;
+	
+	private AtomicReferenceArray<AtomicReferenceArray<AtomicReferenceArray<AtomicLongArray>>> root;
+	
+	
+	/**
+	 * Creates a new instance.
+	 */
+	public ConcurrentIdTracker() {
+		root = new AtomicReferenceArray<AtomicReferenceArray<AtomicReferenceArray<AtomicLongArray>>>(ROOT_SIZE);
+	}
+	
+	
+	private static int getRootIndex(long id) {
+		return (int) (id >> ROOT_SHIFT) + ROOT_OFFSET;
+	}
+	
+	
+	private static boolean isInRange(long id) {
+		long rootIndex = (id >> ROOT_SHIFT) + ROOT_OFFSET;
+		
+		return rootIndex >= 0 && rootIndex < ROOT_SIZE;
+	}
+	
+	
+	private static long getIdBase(int rootIndex, int middleIndex, int pageIndex) {
+		return (((long) (rootIndex - ROOT_OFFSET)) << ROOT_SHIFT)
+				+ (((long) middleIndex) << (PAGE_BITS + DIRECTORY_BITS))
+				+ (((long) pageIndex) << PAGE_BITS);
+	}
+	
+	
+	private AtomicLongArray getPage(long id) {
+		AtomicReferenceArray<AtomicReferenceArray<AtomicLongArray>> middle;
+		AtomicReferenceArray<AtomicLongArray> pages;
+		
+		if (!isInRange(id)) {
+			return null;
+		}
+		
+		middle = root.get(getRootIndex(id));
+		if (middle == null) {
+			return null;
+		}
+		pages = middle.get((int) (id >> (PAGE_BITS + DIRECTORY_BITS)) & DIRECTORY_MASK);
+		if (pages == null) {
+			return null;
+		}
+		
+		return pages.get((int) (id >> PAGE_BITS) & DIRECTORY_MASK);
+	}
+	
+	
+	private AtomicLongArray getOrCreatePage(long id) {
+		int rootIndex;
+		int middleIndex;
+		int pageIndex;
+		AtomicReferenceArray<AtomicReferenceArray<AtomicLongArray>> middle;
+		AtomicReferenceArray<AtomicLongArray> pages;
+		AtomicLongArray page;
+		
+		if (!isInRange(id)) {
+			throw new OsmosisRuntimeException("Id " + id + " is outside the range supported by this id tracker.");
+		}
+		
+		// If another thread creates the same structure first, the losing thread
+		// discards its copy and uses the published one.
+		rootIndex = getRootIndex(id);
+		middle = root.get(rootIndex);
+		if (middle == null) {
+			root.compareAndSet(
+					rootIndex, null, new AtomicReferenceArray<AtomicReferenceArray<AtomicLongArray>>(DIRECTORY_SIZE));
+			middle = root.get(rootIndex);
+		}
+		
+		middleIndex = (int) (id >> (PAGE_BITS + DIRECTORY_BITS)) & DIRECTORY_MASK;
+		pages = middle.get(middleIndex);
+		if (pages == null) {
+			middle.compareAndSet(middleIndex, null, new AtomicReferenceArray<AtomicLongArray>(DIRECTORY_SIZE));
+			pages = middle.get(middleIndex);
+		}
+		
+		pageIndex = (int) (id >> PAGE_BITS) & DIRECTORY_MASK;
+		page = pages.get(pageIndex);
+		if (page == null) {
+			pages.compareAndSet(pageIndex, null, new AtomicLongArray(PAGE_WORDS));
+			page = pages.get(pageIndex);
+		}
+		
+		return page;
+	}
+	
+	
+	private static void setBits(AtomicLongArray page, int wordIndex, long bits) {
+		for (;;) {
+			long current = page.get(wordIndex);
+			
+			if ((current | bits) == current || page.compareAndSet(wordIndex, current, current | bits)) {
+				return;
+			}
+		}
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void set(long id) {
+		int offset;
+		
+		offset = (int) id & ((1 << PAGE_BITS) - 1);
+		setBits(getOrCreatePage(id), offset >>> 6, 1L << offset);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean get(long id) {
+		AtomicLongArray page;
+		int offset;
+		
+		page = getPage(id);
+		if (page == null) {
+			return false;
+		}
+		
+		offset = (int) id & ((1 << PAGE_BITS) - 1);
+		
+		return (page.get(offset >>> 6) & (1L << offset)) != 0;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setAll(IdTracker idTracker) {
+		if (idTracker instanceof ConcurrentIdTracker) {
+			merge((ConcurrentIdTracker) idTracker);
+		} else {
+			for (Long id : idTracker) {
+				set(id);
+			}
+		}
+	}
+	
+	
+	/**
+	 * Combines the pages of another tracker with the pages of this tracker a
+	 * word at a time.
+	 */
+	private void merge(ConcurrentIdTracker other) {
+		for (int rootIndex = 0; rootIndex < ROOT_SIZE; rootIndex++) {
+			AtomicReferenceArray<AtomicReferenceArray<AtomicLongArray>> middle = other.root.get(rootIndex);
+			
+			if (middle == null) {
+				continue;
+			}
+			
+			for (int middleIndex = 0; middleIndex < DIRECTORY_SIZE; middleIndex++) {
+				AtomicReferenceArray<AtomicLongArray> pages = middle.get(middleIndex);
+				
+				if (pages == null) {
+					continue;
+				}
+				
+				for (int pageIndex = 0; pageIndex < DIRECTORY_SIZE; pageIndex++) {
+					AtomicLongArray otherPage = pages.get(pageIndex);
+					
+					if (otherPage != null) {
+						AtomicLongArray page = getOrCreatePage(getIdBase(rootIndex, middleIndex, pageIndex));
+						
+						for (int i = 0; i < PAGE_WORDS; i++) {
+							long bits = otherPage.get(i);
+							
+							if (bits != 0) {
+								setBits(page, i, bits);
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Iterator<Long> iterator() {
+		return new PageIdIterator();
+	}
+	
+	
+	private class PageIdIterator implements Iterator<Long> {
+		private int rootIndex;
+		private int middleIndex;
+		private int pageIndex;
+		private long[] pageIds;
+		private int pageIdCount;
+		private int pageIdIndex;
+		
+		
+		/**
+		 * Creates a new instance.
+		 */
+		public PageIdIterator() {
+			pageIds = new long[1 << PAGE_BITS];
+		}
+		
+		
+		/**
+		 * Loads the ids of the next existing page into the buffer.
+		 * 
+		 * @return False if no more pages exist.
+		 */
+		private boolean loadNextPage() {
+			for (; rootIndex < ROOT_SIZE; rootIndex++, middleIndex = 0) {
+				AtomicReferenceArray<AtomicReferenceArray<AtomicLongArray>> middle = root.get(rootIndex);
+				
+				if (middle == null) {
+					continue;
+				}
+				
+				for (; middleIndex < DIRECTORY_SIZE; middleIndex++, pageIndex = 0) {
+					AtomicReferenceArray<AtomicLongArray> pages = middle.get(middleIndex);
+					
+					if (pages == null) {
+						continue;
+					}
+					
+					while (pageIndex < DIRECTORY_SIZE) {
+						AtomicLongArray page = pages.get(pageIndex);
+						long base = getIdBase(rootIndex, middleIndex, pageIndex);
+						
+						pageIndex++;
+						if (page != null) {
+							pageIdCount = 0;
+							pageIdIndex = 0;
+							for (int i = 0; i < PAGE_WORDS; i++) {
+								long bits = page.get(i);
+								
+								while (bits != 0) {
+									pageIds[pageIdCount++] = base + i * 64 + Long.numberOfTrailingZeros(bits);
+									bits &= bits - 1;
+								}
+							}
+							
+							if (pageIdCount > 0) {
+								return true;
+							}
+						}
+					}
+				}
+			}
+			
+			return false;
+		}
+		
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public boolean hasNext() {
+			return pageIdIndex < pageIdCount || loadNextPage();
+		}
+		
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public Long next() {
+			if (hasNext()) {
+				return pageIds[pageIdIndex++];
+				
+			} else {
+				throw new NoSuchElementException();
+			}
+		}
+		
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
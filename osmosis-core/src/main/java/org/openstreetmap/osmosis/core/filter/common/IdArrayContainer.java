@@ -0,0 +1,216 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.filter.common;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+
+/**
+ * A container holding a sorted array of values. This is the most compact
+ * representation for sparse values and is converted to a bitmap once it holds
+ * too many values, or to runs if the values are mostly consecutive.
+ */
+class IdArrayContainer extends IdContainer {
+	private static final int INITIAL_SIZE = 4;
+	private static final int RUN_CHECK_INTERVAL = 256;
+	
+	private char[] values;
+	private int size;
+	
+	
+	/**
+	 * Creates a new empty instance.
+	 */
+	IdArrayContainer() {
+		values = new char[INITIAL_SIZE];
+	}
+	
+	
+	private IdArrayContainer(char[] values, int size) {
+		this.values = values;
+		this.size = size;
+	}
+	
+	
+	private int countRuns() {
+		int runCount;
+		
+		runCount = 0;
+		for (int i = 0; i < size; i++) {
+			if (i == 0 || values[i] != values[i - 1] + 1) {
+				runCount++;
+			}
+		}
+		
+		return runCount;
+	}
+	
+	
+	private IdRunContainer toRuns() {
+		IdRunContainer runs;
+		
+		runs = new IdRunContainer();
+		for (int i = 0; i < size; i++) {
+			runs.set(values[i]);
+		}
+		
+		return runs;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	IdContainer set(int value) {
+		int index;
+		
+		index = Arrays.binarySearch(values, 0, size, (char) value);
+		if (index >= 0) {
+			return this;
+		}
+		if (size >= MAX_ARRAY_SIZE) {
+			return toBitmap().set(value);
+		}
+		
+		index = -index - 1;
+		if (size == values.length) {
+			values = Arrays.copyOf(values, Math.min(size * 2, MAX_ARRAY_SIZE));
+		}
+		System.arraycopy(values, index, values, index + 1, size - index);
+		values[index] = (char) value;
+		size++;
+		
+		// Ids are frequently allocated in consecutive blocks which are stored
+		// far more efficiently as runs.
+		if ((size % RUN_CHECK_INTERVAL) == 0 && countRuns() <= size / IdRunContainer.MIN_AVERAGE_RUN_LENGTH) {
+			return toRuns();
+		}
+		
+		return this;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	boolean get(int value) {
+		return Arrays.binarySearch(values, 0, size, (char) value) >= 0;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	int getCardinality() {
+		return size;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	IdContainer or(IdContainer other) {
+		if (other instanceof IdArrayContainer) {
+			IdArrayContainer otherArray;
+			char[] merged;
+			int mergedSize;
+			int i;
+			int j;
+			
+			otherArray = (IdArrayContainer) other;
+			if (size + otherArray.size > MAX_ARRAY_SIZE) {
+				return toBitmap().or(other);
+			}
+			
+			merged = new char[Math.max(size + otherArray.size, INITIAL_SIZE)];
+			mergedSize = 0;
+			i = 0;
+			j = 0;
+			while (i < size && j < otherArray.size) {
+				char a = values[i];
+				char b = otherArray.values[j];
+				
+				if (a < b) {
+					merged[mergedSize++] = a;
+					i++;
+				} else if (a > b) {
+					merged[mergedSize++] = b;
+					j++;
+				} else {
+					merged[mergedSize++] = a;
+					i++;
+					j++;
+				}
+			}
+			while (i < size) {
+				merged[mergedSize++] = values[i++];
+			}
+			while (j < otherArray.size) {
+				merged[mergedSize++] = otherArray.values[j++];
+			}
+			
+			values = merged;
+			size = mergedSize;
+			
+			return this;
+		}
+		
+		return toBitmap().or(other);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	IdContainer copy() {
+		return new IdArrayContainer(Arrays.copyOf(values, Math.max(size, INITIAL_SIZE)), size);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	IdBitmapContainer toBitmap() {
+		IdBitmapContainer bitmap;
+		
+		bitmap = new IdBitmapContainer();
+		for (int i = 0; i < size; i++) {
+			bitmap.setBit(values[i]);
+		}
+		
+		return bitmap;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	ValueIterator iterator() {
+		return new ValueIterator() {
+			private int index;
+			
+			
+			@Override
+			public boolean hasNext() {
+				return index < size;
+			}
+			
+			
+			@Override
+			public int next() {
+				if (index >= size) {
+					throw new NoSuchElementException();
+				}
+				
+				return values[index++];
+			}
+		};
+	}
+}
@@ -0,0 +1,300 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.filter.common;
+
+import java.util.NoSuchElementException;
+
+
+/**
+ * A container holding one bit for every possible value. It consumes 8KB
+ * regardless of the number of values and is used once a container holds too
+ * many values for an array.
+ */
+class IdBitmapContainer extends IdContainer {
+	private static final int WORD_COUNT = CONTAINER_SIZE / 64;
+	private static final int RUN_CHECK_INTERVAL = 4096;
+	
+	private long[] words;
+	private int cardinality;
+	
+	
+	/**
+	 * Creates a new empty instance.
+	 */
+	IdBitmapContainer() {
+		words = new long[WORD_COUNT];
+	}
+	
+	
+	/**
+	 * Marks the value as active without considering a change of
+	 * representation.
+	 * 
+	 * @param value
+	 *            The value between 0 and 65535.
+	 */
+	void setBit(int value) {
+		long previous;
+		long updated;
+		
+		previous = words[value >>> 6];
+		updated = previous | (1L << value);
+		if (previous != updated) {
+			words[value >>> 6] = updated;
+			cardinality++;
+		}
+	}
+	
+	
+	/**
+	 * Marks all values within the range as active without considering a
+	 * change of representation.
+	 * 
+	 * @param begin
+	 *            The first value of the range.
+	 * @param end
+	 *            The value after the last value of the range.
+	 */
+	void setRange(int begin, int end) {
+		int firstWord;
+		int lastWord;
+		long firstMask;
+		long lastMask;
+		
+		firstWord = begin >>> 6;
+		lastWord = (end - 1) >>> 6;
+		firstMask = -1L << begin;
+		lastMask = -1L >>> -end;
+		
+		if (firstWord == lastWord) {
+			setWord(firstWord, words[firstWord] | (firstMask & lastMask));
+		} else {
+			setWord(firstWord, words[firstWord] | firstMask);
+			for (int i = firstWord + 1; i < lastWord; i++) {
+				setWord(i, -1L);
+			}
+			setWord(lastWord, words[lastWord] | lastMask);
+		}
+	}
+	
+	
+	private void setWord(int index, long word) {
+		cardinality += Long.bitCount(word) - Long.bitCount(words[index]);
+		words[index] = word;
+	}
+	
+	
+	private void updateCardinality() {
+		cardinality = 0;
+		for (int i = 0; i < WORD_COUNT; i++) {
+			cardinality += Long.bitCount(words[i]);
+		}
+	}
+	
+	
+	private int countRuns() {
+		int runCount;
+		long previousTopBit;
+		
+		runCount = 0;
+		previousTopBit = 0;
+		for (int i = 0; i < WORD_COUNT; i++) {
+			long word = words[i];
+			
+			// Count the bits which are set but whose lower neighbour is not.
+			runCount += Long.bitCount(word & ~((word << 1) | previousTopBit));
+			previousTopBit = word >>> 63;
+		}
+		
+		return runCount;
+	}
+	
+	
+	/**
+	 * Returns the first active value at or after the specified value.
+	 * 
+	 * @param from
+	 *            The value to begin searching at.
+	 * @return The active value, or -1 if none exist.
+	 */
+	int nextSetBit(int from) {
+		int wordIndex;
+		long word;
+		
+		wordIndex = from >>> 6;
+		if (wordIndex >= WORD_COUNT) {
+			return -1;
+		}
+		
+		word = words[wordIndex] & (-1L << from);
+		for (;;) {
+			if (word != 0) {
+				return wordIndex * 64 + Long.numberOfTrailingZeros(word);
+			}
+			if (++wordIndex >= WORD_COUNT) {
+				return -1;
+			}
+			word = words[wordIndex];
+		}
+	}
+	
+	
+	private int nextClearBit(int from) {
+		int wordIndex;
+		long word;
+		
+		wordIndex = from >>> 6;
+		if (wordIndex >= WORD_COUNT) {
+			return CONTAINER_SIZE;
+		}
+		
+		word = ~words[wordIndex] & (-1L << from);
+		for (;;) {
+			if (word != 0) {
+				return wordIndex * 64 + Long.numberOfTrailingZeros(word);
+			}
+			if (++wordIndex >= WORD_COUNT) {
+				return CONTAINER_SIZE;
+			}
+			word = ~words[wordIndex];
+		}
+	}
+	
+	
+	private IdRunContainer toRuns() {
+		IdRunContainer runs;
+		int begin;
+		
+		runs = new IdRunContainer();
+		begin = nextSetBit(0);
+		while (begin >= 0) {
+			int end = nextClearBit(begin);
+			
+			runs.appendRun(begin, end);
+			begin = nextSetBit(end);
+		}
+		
+		return runs;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	IdContainer set(int value) {
+		int previousCardinality;
+		
+		previousCardinality = cardinality;
+		setBit(value);
+		
+		// Periodically check if runs would be a more compact representation.
+		if (cardinality != previousCardinality && (cardinality % RUN_CHECK_INTERVAL) == 0
+				&& countRuns() <= IdRunContainer.MAX_RUN_COUNT / 2) {
+			return toRuns();
+		}
+		
+		return this;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	boolean get(int value) {
+		return (words[value >>> 6] & (1L << value)) != 0;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	int getCardinality() {
+		return cardinality;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	IdContainer or(IdContainer other) {
+		if (other instanceof IdBitmapContainer) {
+			long[] otherWords = ((IdBitmapContainer) other).words;
+			
+			for (int i = 0; i < WORD_COUNT; i++) {
+				words[i] |= otherWords[i];
+			}
+			updateCardinality();
+			
+		} else if (other instanceof IdRunContainer) {
+			((IdRunContainer) other).addRunsTo(this);
+			
+		} else {
+			ValueIterator values = other.iterator();
+			
+			while (values.hasNext()) {
+				setBit(values.next());
+			}
+		}
+		
+		return this;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	IdContainer copy() {
+		IdBitmapContainer result;
+		
+		result = new IdBitmapContainer();
+		System.arraycopy(words, 0, result.words, 0, WORD_COUNT);
+		result.cardinality = cardinality;
+		
+		return result;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	IdBitmapContainer toBitmap() {
+		return this;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	ValueIterator iterator() {
+		return new ValueIterator() {
+			private int nextValue = nextSetBit(0);
+			
+			
+			@Override
+			public boolean hasNext() {
+				return nextValue >= 0;
+			}
+			
+			
+			@Override
+			public int next() {
+				int result;
+				
+				if (nextValue < 0) {
+					throw new NoSuchElementException();
+				}
+				
+				result = nextValue;
+				nextValue = nextSetBit(result + 1);
+				
+				return result;
+			}
+		};
+	}
+}
@@ -0,0 +1,108 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.filter.common;
+
+
+/**
+ * Holds the set low order bits of ids sharing the same high order bits within a
+ * {@link CompressedIdTracker}. Each container manages values between 0 and
+ * 65535 and chooses its representation depending on the number and
+ * distribution of values it holds.
+ * <p>
+ * Methods that modify a container return the container to be used from then
+ * on, which is a different instance if the representation changed.
+ */
+abstract class IdContainer {
+	/**
+	 * The number of values that can be managed by a single container.
+	 */
+	static final int CONTAINER_SIZE = 65536;
+	/**
+	 * The maximum number of values held in an array container. An array
+	 * container of this size consumes the same amount of memory as a bitmap.
+	 */
+	static final int MAX_ARRAY_SIZE = 4096;
+	
+	
+	/**
+	 * Marks the value as active.
+	 * 
+	 * @param value
+	 *            The value between 0 and 65535.
+	 * @return The container to use from now on.
+	 */
+	abstract IdContainer set(int value);
+	
+	
+	/**
+	 * Checks whether the specified value is active.
+	 * 
+	 * @param value
+	 *            The value between 0 and 65535.
+	 * @return True if the value is active.
+	 */
+	abstract boolean get(int value);
+	
+	
+	/**
+	 * Gets the number of active values.
+	 * 
+	 * @return The number of active values.
+	 */
+	abstract int getCardinality();
+	
+	
+	/**
+	 * Adds all values of the specified container to this container. The other
+	 * container is not modified.
+	 * 
+	 * @param other
+	 *            The container to add values from.
+	 * @return The container to use from now on.
+	 */
+	abstract IdContainer or(IdContainer other);
+	
+	
+	/**
+	 * Creates an independent copy of this container.
+	 * 
+	 * @return The copy.
+	 */
+	abstract IdContainer copy();
+	
+	
+	/**
+	 * Creates a bitmap container holding the same values as this container.
+	 * 
+	 * @return The bitmap container.
+	 */
+	abstract IdBitmapContainer toBitmap();
+	
+	
+	/**
+	 * Returns an iterator over the active values in ascending order.
+	 * 
+	 * @return The value iterator.
+	 */
+	abstract ValueIterator iterator();
+	
+	
+	/**
+	 * Iterates over the values of a container without boxing them.
+	 */
+	interface ValueIterator {
+		/**
+		 * Indicates if more values are available.
+		 * 
+		 * @return True if another value is available.
+		 */
+		boolean hasNext();
+		
+		
+		/**
+		 * Returns the next value.
+		 * 
+		 * @return The value between 0 and 65535.
+		 */
+		int next();
+	}
+}
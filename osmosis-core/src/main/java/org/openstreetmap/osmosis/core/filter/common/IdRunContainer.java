@@ -0,0 +1,314 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.filter.common;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+
+/**
+ * A container holding a sorted list of runs of consecutive values. Each run
+ * consumes 4 bytes regardless of its length, which makes this the most compact
+ * representation for blocks of consecutive ids.
+ */
+class IdRunContainer extends IdContainer {
+	/**
+	 * The maximum number of runs held before the container is converted to a
+	 * bitmap. A container with this number of runs consumes the same amount of
+	 * memory as a bitmap.
+	 */
+	static final int MAX_RUN_COUNT = 2048;
+	/**
+	 * The average number of values per run required before an array container
+	 * is converted to runs.
+	 */
+	static final int MIN_AVERAGE_RUN_LENGTH = 4;
+	private static final int INITIAL_RUN_CAPACITY = 4;
+	
+	// Each run is stored as a pair of its first value and its length minus one.
+	private char[] runs;
+	private int runCount;
+	private int cardinality;
+	
+	
+	/**
+	 * Creates a new empty instance.
+	 */
+	IdRunContainer() {
+		runs = new char[INITIAL_RUN_CAPACITY * 2];
+	}
+	
+	
+	private int getBegin(int index) {
+		return runs[index * 2];
+	}
+	
+	
+	private int getLast(int index) {
+		return runs[index * 2] + runs[index * 2 + 1];
+	}
+	
+	
+	private void setRun(int index, int begin, int last) {
+		runs[index * 2] = (char) begin;
+		runs[index * 2 + 1] = (char) (last - begin);
+	}
+	
+	
+	private void insertRun(int index, int begin, int last) {
+		if (runCount * 2 == runs.length) {
+			runs = Arrays.copyOf(runs, runs.length * 2);
+		}
+		System.arraycopy(runs, index * 2, runs, index * 2 + 2, (runCount - index) * 2);
+		runCount++;
+		setRun(index, begin, last);
+	}
+	
+	
+	private void removeRun(int index) {
+		System.arraycopy(runs, index * 2 + 2, runs, index * 2, (runCount - index - 1) * 2);
+		runCount--;
+	}
+	
+	
+	/**
+	 * Finds the last run beginning at or before the specified value.
+	 */
+	private int findRun(int value) {
+		int low;
+		int high;
+		
+		low = 0;
+		high = runCount - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			
+			if (getBegin(middle) <= value) {
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		
+		return high;
+	}
+	
+	
+	/**
+	 * Adds a run after all existing runs. The run must begin after the value
+	 * following the last existing run.
+	 * 
+	 * @param begin
+	 *            The first value of the run.
+	 * @param end
+	 *            The value after the last value of the run.
+	 */
+	void appendRun(int begin, int end) {
+		insertRun(runCount, begin, end - 1);
+		cardinality += end - begin;
+	}
+	
+	
+	/**
+	 * Marks all values of this container as active within the bitmap.
+	 * 
+	 * @param bitmap
+	 *            The bitmap to be updated.
+	 */
+	void addRunsTo(IdBitmapContainer bitmap) {
+		for (int i = 0; i < runCount; i++) {
+			bitmap.setRange(getBegin(i), getLast(i) + 1);
+		}
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	IdContainer set(int value) {
+		int index;
+		boolean extendsPrevious;
+		boolean extendsNext;
+		
+		index = findRun(value);
+		if (index >= 0 && value <= getLast(index)) {
+			return this;
+		}
+		
+		extendsPrevious = index >= 0 && getLast(index) + 1 == value;
+		extendsNext = index + 1 < runCount && getBegin(index + 1) == value + 1;
+		
+		cardinality++;
+		if (extendsPrevious && extendsNext) {
+			setRun(index, getBegin(index), getLast(index + 1));
+			removeRun(index + 1);
+		} else if (extendsPrevious) {
+			setRun(index, getBegin(index), value);
+		} else if (extendsNext) {
+			setRun(index + 1, value, getLast(index + 1));
+		} else {
+			insertRun(index + 1, value, value);
+			
+			if (runCount > MAX_RUN_COUNT) {
+				return toBitmap();
+			}
+		}
+		
+		return this;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	boolean get(int value) {
+		int index;
+		
+		index = findRun(value);
+		
+		return index >= 0 && value <= getLast(index);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	int getCardinality() {
+		return cardinality;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	IdContainer or(IdContainer other) {
+		if (other instanceof IdRunContainer) {
+			IdRunContainer otherRuns;
+			IdRunContainer result;
+			int i;
+			int j;
+			int begin;
+			int last;
+			
+			otherRuns = (IdRunContainer) other;
+			if (otherRuns.runCount == 0) {
+				return this;
+			}
+			
+			// Merge the two run lists in order of their first value, combining
+			// runs which overlap or touch.
+			result = new IdRunContainer();
+			i = 0;
+			j = 0;
+			begin = -1;
+			last = -2;
+			while (i < runCount || j < otherRuns.runCount) {
+				int nextBegin;
+				int nextLast;
+				
+				if (j >= otherRuns.runCount || (i < runCount && getBegin(i) <= otherRuns.getBegin(j))) {
+					nextBegin = getBegin(i);
+					nextLast = getLast(i);
+					i++;
+				} else {
+					nextBegin = otherRuns.getBegin(j);
+					nextLast = otherRuns.getLast(j);
+					j++;
+				}
+				
+				if (nextBegin <= last + 1) {
+					last = Math.max(last, nextLast);
+				} else {
+					if (begin >= 0) {
+						result.appendRun(begin, last + 1);
+					}
+					begin = nextBegin;
+					last = nextLast;
+				}
+			}
+			result.appendRun(begin, last + 1);
+			
+			if (result.runCount > MAX_RUN_COUNT) {
+				return result.toBitmap();
+			}
+			
+			return result;
+		}
+		
+		return toBitmap().or(other);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	IdContainer copy() {
+		IdRunContainer result;
+		
+		result = new IdRunContainer();
+		result.runs = Arrays.copyOf(runs, Math.max(runCount, INITIAL_RUN_CAPACITY) * 2);
+		result.runCount = runCount;
+		result.cardinality = cardinality;
+		
+		return result;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	IdBitmapContainer toBitmap() {
+		IdBitmapContainer bitmap;
+		
+		bitmap = new IdBitmapContainer();
+		addRunsTo(bitmap);
+		
+		return bitmap;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	ValueIterator iterator() {
+		return new ValueIterator() {
+			private int runIndex;
+			private int nextValue = -1;
+			
+			
+			@Override
+			public boolean hasNext() {
+				return runIndex < runCount;
+			}
+			
+			
+			@Override
+			public int next() {
+				int result;
+				
+				if (runIndex >= runCount) {
+					throw new NoSuchElementException();
+				}
+				
+				if (nextValue < 0) {
+					nextValue = getBegin(runIndex);
+				}
+				result = nextValue;
+				if (result == getLast(runIndex)) {
+					runIndex++;
+					nextValue = -1;
+				} else {
+					nextValue++;
+				}
+				
+				return result;
+			}
+		};
+	}
+}
@@ -33,6 +33,10 @@ public final class IdTrackerFactory {
 			return new ListIdTracker();
 		} else if (IdTrackerType.Dynamic.equals(idTrackerType)) {
 			return new DynamicIdTracker();
+		} else if (IdTrackerType.Compressed.equals(idTrackerType)) {
+			return new CompressedIdTracker();
+		} else if (IdTrackerType.Concurrent.equals(idTrackerType)) {
+			return new ConcurrentIdTracker();
 		} else {
 			throw new OsmosisRuntimeException("The IdTrackerType " + idTrackerType + " is not recognised.");
 		}
@@ -28,5 +28,20 @@ public enum IdTrackerType {
 	 * either one of the two other id list implementations depending on the number of ids to be
 	 * managed.
 	 */
-	Dynamic
+	Dynamic,
+	/**
+	 * The compressed implementation groups ids by their high order bits into containers of 65536
+	 * ids located by a binary search over a sorted key array. Each container stores its ids as a
+	 * sorted array, a bitmap or a list of consecutive runs, whichever is the most compact. This is
+	 * efficient for both sparse and dense ids spread over very large id ranges, and merges other
+	 * compressed trackers a container at a time.
+	 */
+	Compressed,
+	/**
+	 * The concurrent implementation stores ids as bits in pages of atomic words which are created
+	 * on demand. Ids can be set and checked by multiple threads at the same time without locking.
+	 * It uses more memory than the compressed implementation for sparse ids, is slower when used
+	 * by a single thread, and should only be used where ids are marked by several threads.
+	 */
+	Concurrent
 }
@@ -0,0 +1,147 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.metrics;
+
+
+/**
+ * Tracks the instrumented calls in progress on a single thread so that the
+ * time spent in nested calls can be excluded from the time of the calls
+ * enclosing them.
+ * <p>
+ * Reading the clock costs more than passing an entity between most tasks so
+ * only a sample of calls are timed. The decision is made when an outermost
+ * call begins and applies to all calls nested within it, allowing nested time
+ * to be subtracted consistently. Calls are selected at random rather than at
+ * a fixed interval because many tasks perform expensive work such as writing
+ * a block every fixed number of entities which a fixed interval may always or
+ * never select. Outermost calls passing a group of entities are always timed
+ * because they are few in number and each one is expensive. All calls are
+ * still counted and each timed call is weighted by the number of calls it
+ * represents.
+ */
+public final class CallTimer {
+	/**
+	 * The average number of outermost calls per timed call if not configured
+	 * otherwise.
+	 */
+	public static final int DEFAULT_SAMPLE_INTERVAL = 16;
+	
+	private static final ThreadLocal<CallTimer> THREAD_TIMER = new ThreadLocal<CallTimer>() {
+		@Override
+		protected CallTimer initialValue() {
+			return new CallTimer(DEFAULT_SAMPLE_INTERVAL);
+		}
+	};
+	
+	private int sampleInterval;
+	private long randomState;
+	private int depth;
+	private int weight;
+	private long nestedNanos;
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param sampleInterval
+	 *            The average number of outermost calls per timed call.
+	 */
+	CallTimer(int sampleInterval) {
+		this.sampleInterval = sampleInterval;
+		
+		randomState = System.nanoTime() ^ Thread.currentThread().getId() ^ 0x9E3779B97F4A7C15L;
+		if (randomState == 0) {
+			randomState = 1;
+		}
+	}
+	
+	
+	/**
+	 * Gets the timer of the current thread.
+	 * 
+	 * @return The timer.
+	 */
+	public static CallTimer get() {
+		return THREAD_TIMER.get();
+	}
+	
+	
+	/**
+	 * Marks the start of a call passing a single entity.
+	 * 
+	 * @return The start time of the call, or 0 if the call is not timed.
+	 */
+	public long start() {
+		return start(false);
+	}
+	
+	
+	/**
+	 * Marks the start of a call passing a group of entities.
+	 * 
+	 * @return The start time of the call, or 0 if the call is not timed.
+	 */
+	public long startBatch() {
+		return start(true);
+	}
+	
+	
+	private long start(boolean batch) {
+		if (depth++ == 0) {
+			if (batch) {
+				weight = 1;
+			} else {
+				// A xorshift generator is much cheaper than java.util.Random.
+				randomState ^= randomState << 13;
+				randomState ^= randomState >>> 7;
+				randomState ^= randomState << 17;
+				if (((randomState >>> 1) % sampleInterval) == 0) {
+					weight = sampleInterval;
+				} else {
+					weight = 0;
+				}
+			}
+		}
+		
+		if (weight > 0) {
+			return System.nanoTime();
+		} else {
+			return 0;
+		}
+	}
+	
+	
+	/**
+	 * Gets the total time recorded by timed calls on this thread. The value
+	 * is read when a call starts and passed to the connection metrics when it
+	 * finishes.
+	 * 
+	 * @return The nested time in nanoseconds.
+	 */
+	public long getNestedNanos() {
+		return nestedNanos;
+	}
+	
+	
+	/**
+	 * Updates the total time recorded by timed calls on this thread.
+	 * 
+	 * @param nestedNanos
+	 *            The nested time in nanoseconds.
+	 */
+	void setNestedNanos(long nestedNanos) {
+		this.nestedNanos = nestedNanos;
+	}
+	
+	
+	/**
+	 * Marks the end of a call.
+	 * 
+	 * @return The number of calls the call represents if it is timed, or 0 if
+	 *         it is not timed.
+	 */
+	int end() {
+		depth--;
+		
+		return weight;
+	}
+}
@@ -0,0 +1,259 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.openstreetmap.osmosis.core.domain.v0_6.EntityType;
+
+
+/**
+ * Records the throughput and timing of a single connection between two
+ * pipeline tasks.
+ * <p>
+ * Each connection is fed by a single thread so counters are updated with
+ * ordered writes rather than atomic increments. Other threads may read the
+ * counters at any time.
+ */
+public class ConnectionMetrics implements ConnectionMetricsMXBean {
+	private static final int PROCESS_NANOS = EntityType.values().length;
+	private static final int SELF_NANOS = PROCESS_NANOS + 1;
+	private static final int FIRST_NANOS = SELF_NANOS + 1;
+	private static final int LAST_NANOS = FIRST_NANOS + 1;
+	
+	private String taskId;
+	private int inputIndex;
+	private AtomicLongArray values;
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param taskId
+	 *            The identifier of the task receiving data.
+	 * @param inputIndex
+	 *            The index of the input of the receiving task.
+	 */
+	public ConnectionMetrics(String taskId, int inputIndex) {
+		this.taskId = taskId;
+		this.inputIndex = inputIndex;
+		
+		// Entity counts by type followed by the timing values.
+		values = new AtomicLongArray(LAST_NANOS + 1);
+	}
+	
+	
+	private void add(int index, long value) {
+		values.lazySet(index, values.get(index) + value);
+	}
+	
+	
+	/**
+	 * Records a call to the receiving task passing a single entity.
+	 * 
+	 * @param entityType
+	 *            The type of the entity passed in the call.
+	 * @param timer
+	 *            The timer of the current thread.
+	 * @param startNanos
+	 *            The value returned when the call was started.
+	 * @param nestedNanosAtStart
+	 *            The value returned by {@link CallTimer#getNestedNanos()} when
+	 *            the call started.
+	 */
+	public void record(EntityType entityType, CallTimer timer, long startNanos, long nestedNanosAtStart) {
+		int weight;
+		
+		add(entityType.ordinal(), 1);
+		
+		weight = timer.end();
+		if (weight > 0) {
+			recordTime(timer, startNanos, nestedNanosAtStart, weight);
+		}
+	}
+	
+	
+	/**
+	 * Records a call to the receiving task passing a group of entities.
+	 * 
+	 * @param counts
+	 *            The number of entities passed in the call indexed by entity
+	 *            type ordinal.
+	 * @param timer
+	 *            The timer of the current thread.
+	 * @param startNanos
+	 *            The value returned when the call was started.
+	 * @param nestedNanosAtStart
+	 *            The value returned by {@link CallTimer#getNestedNanos()} when
+	 *            the call started.
+	 */
+	public void record(int[] counts, CallTimer timer, long startNanos, long nestedNanosAtStart) {
+		int weight;
+		
+		for (int i = 0; i < counts.length; i++) {
+			if (counts[i] > 0) {
+				add(i, counts[i]);
+			}
+		}
+		
+		weight = timer.end();
+		if (weight > 0) {
+			recordTime(timer, startNanos, nestedNanosAtStart, weight);
+		}
+	}
+	
+	
+	private void recordTime(CallTimer timer, long startNanos, long nestedNanosAtStart, int weight) {
+		long endNanos;
+		long elapsedNanos;
+		long nestedNanos;
+		
+		endNanos = System.nanoTime();
+		elapsedNanos = endNanos - startNanos;
+		nestedNanos = timer.getNestedNanos() - nestedNanosAtStart;
+		
+		// Replace the time recorded by nested calls with the time of this call
+		// so that any enclosing call excludes all of it.
+		timer.setNestedNanos(nestedNanosAtStart + elapsedNanos);
+		
+		// Each timed call stands in for the calls that were not timed.
+		add(PROCESS_NANOS, elapsedNanos * weight);
+		add(SELF_NANOS, (elapsedNanos - nestedNanos) * weight);
+		if (values.get(FIRST_NANOS) == 0) {
+			values.lazySet(FIRST_NANOS, startNanos);
+		}
+		values.lazySet(LAST_NANOS, endNanos);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getTaskId() {
+		return taskId;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getInputIndex() {
+		return inputIndex;
+	}
+	
+	
+	/**
+	 * Gets the number of entities of the specified type passed through the
+	 * connection.
+	 * 
+	 * @param entityType
+	 *            The type of entity.
+	 * @return The entity count.
+	 */
+	public long getCount(EntityType entityType) {
+		return values.get(entityType.ordinal());
+	}
+	
+	
+	/**
+	 * Gets the average number of entities of the specified type passed
+	 * through the connection per second between the first and last timed
+	 * calls.
+	 * 
+	 * @param entityType
+	 *            The type of entity.
+	 * @return The entity rate.
+	 */
+	public double getRate(EntityType entityType) {
+		long activeNanos;
+		
+		activeNanos = values.get(LAST_NANOS) - values.get(FIRST_NANOS);
+		if (activeNanos <= 0) {
+			return 0;
+		}
+		
+		return getCount(entityType) * 1000000000.0 / activeNanos;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getBoundCount() {
+		return getCount(EntityType.Bound);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getNodeCount() {
+		return getCount(EntityType.Node);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getWayCount() {
+		return getCount(EntityType.Way);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getRelationCount() {
+		return getCount(EntityType.Relation);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double getNodesPerSecond() {
+		return getRate(EntityType.Node);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double getWaysPerSecond() {
+		return getRate(EntityType.Way);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double getRelationsPerSecond() {
+		return getRate(EntityType.Relation);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getProcessMillis() {
+		return values.get(PROCESS_NANOS) / 1000000;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getSelfMillis() {
+		return values.get(SELF_NANOS) / 1000000;
+	}
+}
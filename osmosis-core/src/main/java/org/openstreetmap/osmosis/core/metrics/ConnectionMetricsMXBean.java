@@ -0,0 +1,106 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.metrics;
+
+
+/**
+ * The management interface exposing the throughput and timing of a single
+ * connection between two pipeline tasks.
+ */
+public interface ConnectionMetricsMXBean {
+	
+	/**
+	 * Gets the identifier of the task receiving data through the connection.
+	 * 
+	 * @return The task identifier.
+	 */
+	String getTaskId();
+	
+	
+	/**
+	 * Gets the index of the input of the receiving task that the connection
+	 * is attached to.
+	 * 
+	 * @return The input index.
+	 */
+	int getInputIndex();
+	
+	
+	/**
+	 * Gets the number of bounds passed through the connection.
+	 * 
+	 * @return The bound count.
+	 */
+	long getBoundCount();
+	
+	
+	/**
+	 * Gets the number of nodes passed through the connection.
+	 * 
+	 * @return The node count.
+	 */
+	long getNodeCount();
+	
+	
+	/**
+	 * Gets the number of ways passed through the connection.
+	 * 
+	 * @return The way count.
+	 */
+	long getWayCount();
+	
+	
+	/**
+	 * Gets the number of relations passed through the connection.
+	 * 
+	 * @return The relation count.
+	 */
+	long getRelationCount();
+	
+	
+	/**
+	 * Gets the average number of nodes per second since the first entity
+	 * passed through the connection.
+	 * 
+	 * @return The node rate.
+	 */
+	double getNodesPerSecond();
+	
+	
+	/**
+	 * Gets the average number of ways per second since the first entity
+	 * passed through the connection.
+	 * 
+	 * @return The way rate.
+	 */
+	double getWaysPerSecond();
+	
+	
+	/**
+	 * Gets the average number of relations per second since the first entity
+	 * passed through the connection.
+	 * 
+	 * @return The relation rate.
+	 */
+	double getRelationsPerSecond();
+	
+	
+	/**
+	 * Gets the time spent in the process method of the receiving task,
+	 * including the time spent by tasks it passes data to within the same
+	 * thread. This is estimated from a sample of calls.
+	 * 
+	 * @return The total process time in milliseconds.
+	 */
+	long getProcessMillis();
+	
+	
+	/**
+	 * Gets the time spent in the process method of the receiving task,
+	 * excluding the time spent by instrumented tasks it passes data to within
+	 * the same thread. This is the time attributable to the task itself and
+	 * is estimated from a sample of calls.
+	 * 
+	 * @return The exclusive process time in milliseconds.
+	 */
+	long getSelfMillis();
+}
@@ -0,0 +1,405 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.metrics;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.domain.v0_6.EntityType;
+
+
+/**
+ * Collects throughput, timing and blocking metrics for all parts of a running
+ * pipeline. Metrics are disabled by default in which case
+ * {@link #getInstance()} returns null and pipeline components skip all
+ * measurement.
+ * <p>
+ * When enabled, each metrics object is registered with the platform MBean
+ * server under the org.openstreetmap.osmosis domain. If an output file is
+ * specified, a snapshot of all metrics is also appended to it as a single
+ * line of JSON at a fixed interval and once more when metrics are disabled.
+ */
+public final class PipelineMetrics {
+	
+	private static final Logger LOG = Logger.getLogger(PipelineMetrics.class.getName());
+	
+	/**
+	 * The JMX domain metrics objects are registered under.
+	 */
+	public static final String JMX_DOMAIN = "org.openstreetmap.osmosis";
+	
+	/**
+	 * The interval between snapshots if not configured otherwise.
+	 */
+	public static final int DEFAULT_INTERVAL_SECONDS = 10;
+	
+	private static volatile PipelineMetrics instance;
+	
+	private List<ConnectionMetrics> connections;
+	private List<PostboxMetrics> postboxes;
+	private List<TaskThreadMetrics> taskThreads;
+	private List<ObjectName> registeredNames;
+	private AtomicInteger postboxCount;
+	private long startMillis;
+	private Writer writer;
+	private Thread reporterThread;
+	private CountDownLatch stopSignal;
+	
+	
+	/**
+	 * Creates a new instance.
+	 */
+	private PipelineMetrics() {
+		connections = new CopyOnWriteArrayList<ConnectionMetrics>();
+		postboxes = new CopyOnWriteArrayList<PostboxMetrics>();
+		taskThreads = new CopyOnWriteArrayList<TaskThreadMetrics>();
+		registeredNames = new CopyOnWriteArrayList<ObjectName>();
+		postboxCount = new AtomicInteger();
+		startMillis = System.currentTimeMillis();
+		stopSignal = new CountDownLatch(1);
+	}
+	
+	
+	/**
+	 * Gets the active metrics collector.
+	 * 
+	 * @return The collector, or null if metrics are disabled.
+	 */
+	public static PipelineMetrics getInstance() {
+		return instance;
+	}
+	
+	
+	/**
+	 * Enables metrics collection. Only pipeline components created after this
+	 * call are measured.
+	 * 
+	 * @param outputFile
+	 *            The file to append snapshots to, or null if metrics are only
+	 *            to be exposed via JMX.
+	 * @param intervalSeconds
+	 *            The interval between snapshots written to the output file.
+	 */
+	public static synchronized void enable(File outputFile, int intervalSeconds) {
+		PipelineMetrics metrics;
+		
+		if (instance != null) {
+			throw new OsmosisRuntimeException("Pipeline metrics are already enabled.");
+		}
+		if (intervalSeconds <= 0) {
+			throw new OsmosisRuntimeException(
+					"A metrics interval of " + intervalSeconds + " is invalid, must be greater than 0.");
+		}
+		
+		metrics = new PipelineMetrics();
+		if (outputFile != null) {
+			metrics.startReporter(outputFile, intervalSeconds);
+		}
+		
+		instance = metrics;
+	}
+	
+	
+	/**
+	 * Disables metrics collection. A final snapshot is written to the output
+	 * file if one was specified and all JMX registrations are removed.
+	 */
+	public static synchronized void disable() {
+		PipelineMetrics metrics;
+		
+		metrics = instance;
+		instance = null;
+		
+		if (metrics != null) {
+			metrics.shutdown();
+		}
+	}
+	
+	
+	private void startReporter(File outputFile, int intervalSeconds) {
+		final long intervalMillis = TimeUnit.SECONDS.toMillis(intervalSeconds);
+		
+		try {
+			writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputFile, true), "UTF-8"));
+		} catch (IOException e) {
+			throw new OsmosisRuntimeException("Unable to open metrics file " + outputFile + ".", e);
+		}
+		
+		reporterThread = new Thread("metrics-reporter") {
+			@Override
+			public void run() {
+				try {
+					while (!stopSignal.await(intervalMillis, TimeUnit.MILLISECONDS)) {
+						writeSnapshot();
+					}
+				} catch (InterruptedException e) {
+					// Stop reporting, the final snapshot is written on shutdown.
+					LOG.fine("Metrics reporter was interrupted.");
+				} catch (OsmosisRuntimeException e) {
+					LOG.log(Level.WARNING, "Unable to write pipeline metrics.", e);
+				}
+			}
+		};
+		reporterThread.setDaemon(true);
+		reporterThread.start();
+	}
+	
+	
+	private void shutdown() {
+		try {
+			if (reporterThread != null) {
+				stopSignal.countDown();
+				try {
+					reporterThread.join();
+				} catch (InterruptedException e) {
+					throw new OsmosisRuntimeException("Thread was interrupted.", e);
+				}
+				
+				writeSnapshot();
+			}
+			
+		} finally {
+			if (writer != null) {
+				try {
+					writer.close();
+				} catch (IOException e) {
+					LOG.log(Level.WARNING, "Unable to close metrics file.", e);
+				}
+				writer = null;
+			}
+			
+			unregisterAll();
+		}
+	}
+	
+	
+	private void register(Object bean, String type, String name) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName;
+			
+			objectName = new ObjectName(JMX_DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+			server.registerMBean(bean, objectName);
+			registeredNames.add(objectName);
+			
+		} catch (JMException e) {
+			// Metrics are still written to the output file.
+			LOG.log(Level.WARNING, "Unable to register " + type + " " + name + " with JMX.", e);
+		}
+	}
+	
+	
+	private void unregisterAll() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		
+		for (ObjectName objectName : registeredNames) {
+			try {
+				server.unregisterMBean(objectName);
+			} catch (JMException e) {
+				LOG.log(Level.WARNING, "Unable to unregister " + objectName + " from JMX.", e);
+			}
+		}
+		registeredNames.clear();
+	}
+	
+	
+	/**
+	 * Creates the metrics for a connection into a task.
+	 * 
+	 * @param taskId
+	 *            The identifier of the task receiving data.
+	 * @param inputIndex
+	 *            The index of the input of the receiving task.
+	 * @return The connection metrics.
+	 */
+	public ConnectionMetrics createConnectionMetrics(String taskId, int inputIndex) {
+		ConnectionMetrics metrics;
+		
+		metrics = new ConnectionMetrics(taskId, inputIndex);
+		connections.add(metrics);
+		register(metrics, "Connection", taskId + "." + inputIndex);
+		
+		return metrics;
+	}
+	
+	
+	/**
+	 * Creates the metrics for a postbox.
+	 * 
+	 * @param capacity
+	 *            The maximum number of objects the postbox holds before
+	 *            blocking.
+	 * @return The postbox metrics.
+	 */
+	public PostboxMetrics createPostboxMetrics(int capacity) {
+		PostboxMetrics metrics;
+		
+		metrics = new PostboxMetrics("postbox-" + postboxCount.incrementAndGet(), capacity);
+		postboxes.add(metrics);
+		register(metrics, "Postbox", metrics.getName());
+		
+		return metrics;
+	}
+	
+	
+	/**
+	 * Creates the metrics for a task thread.
+	 * 
+	 * @param thread
+	 *            The thread running the task.
+	 * @return The thread metrics.
+	 */
+	public TaskThreadMetrics createTaskThreadMetrics(Thread thread) {
+		TaskThreadMetrics metrics;
+		
+		metrics = new TaskThreadMetrics(thread);
+		taskThreads.add(metrics);
+		register(metrics, "TaskThread", metrics.getName());
+		
+		return metrics;
+	}
+	
+	
+	private static void appendString(StringBuilder builder, String value) {
+		builder.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			
+			if (c == '"' || c == '\\') {
+				builder.append('\\').append(c);
+			} else if (c < 0x20) {
+				builder.append(String.format("\\u%04x", (int) c));
+			} else {
+				builder.append(c);
+			}
+		}
+		builder.append('"');
+	}
+	
+	
+	private static void appendEntityValues(StringBuilder builder, ConnectionMetrics metrics, boolean rates) {
+		EntityType[] types = EntityType.values();
+		
+		builder.append('{');
+		for (int i = 0; i < types.length; i++) {
+			if (i > 0) {
+				builder.append(',');
+			}
+			appendString(builder, types[i].name().toLowerCase(Locale.ENGLISH));
+			builder.append(':');
+			if (rates) {
+				builder.append(Math.round(metrics.getRate(types[i])));
+			} else {
+				builder.append(metrics.getCount(types[i]));
+			}
+		}
+		builder.append('}');
+	}
+	
+	
+	/**
+	 * Builds a snapshot of all metrics as a single line JSON object.
+	 * 
+	 * @return The snapshot.
+	 */
+	public String buildSnapshot() {
+		StringBuilder builder;
+		boolean first;
+		
+		builder = new StringBuilder();
+		builder.append("{\"time\":").append(System.currentTimeMillis());
+		builder.append(",\"elapsedMillis\":").append(System.currentTimeMillis() - startMillis);
+		
+		builder.append(",\"connections\":[");
+		first = true;
+		for (ConnectionMetrics metrics : connections) {
+			if (!first) {
+				builder.append(',');
+			}
+			first = false;
+			builder.append("{\"task\":");
+			appendString(builder, metrics.getTaskId());
+			builder.append(",\"input\":").append(metrics.getInputIndex());
+			builder.append(",\"counts\":");
+			appendEntityValues(builder, metrics, false);
+			builder.append(",\"perSecond\":");
+			appendEntityValues(builder, metrics, true);
+			builder.append(",\"processMillis\":").append(metrics.getProcessMillis());
+			builder.append(",\"selfMillis\":").append(metrics.getSelfMillis());
+			builder.append('}');
+		}
+		
+		builder.append("],\"postboxes\":[");
+		first = true;
+		for (PostboxMetrics metrics : postboxes) {
+			if (!first) {
+				builder.append(',');
+			}
+			first = false;
+			builder.append("{\"name\":");
+			appendString(builder, metrics.getName());
+			builder.append(",\"capacity\":").append(metrics.getCapacity());
+			builder.append(",\"fill\":").append(metrics.getFill());
+			builder.append(",\"putBlockedMillis\":").append(metrics.getPutBlockedMillis());
+			builder.append(",\"takeBlockedMillis\":").append(metrics.getTakeBlockedMillis());
+			builder.append('}');
+		}
+		
+		builder.append("],\"threads\":[");
+		first = true;
+		for (TaskThreadMetrics metrics : taskThreads) {
+			if (!first) {
+				builder.append(',');
+			}
+			first = false;
+			builder.append("{\"name\":");
+			appendString(builder, metrics.getName());
+			builder.append(",\"running\":").append(metrics.isRunning());
+			builder.append(",\"runMillis\":").append(metrics.getRunMillis());
+			builder.append(",\"cpuMillis\":").append(metrics.getCpuMillis());
+			builder.append('}');
+		}
+		builder.append("]}");
+		
+		return builder.toString();
+	}
+	
+	
+	private synchronized void writeSnapshot() {
+		try {
+			writer.write(buildSnapshot());
+			writer.write('\n');
+			writer.flush();
+		} catch (IOException e) {
+			throw new OsmosisRuntimeException("Unable to write to the metrics file.", e);
+		}
+	}
+	
+	
+	/**
+	 * Gets the metrics of all connections created so far.
+	 * 
+	 * @return The connection metrics.
+	 */
+	public List<ConnectionMetrics> getConnectionMetrics() {
+		return new ArrayList<ConnectionMetrics>(connections);
+	}
+}
@@ -0,0 +1,125 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Records the fill level and blocking time of a postbox passing data between
+ * two pipeline threads.
+ */
+public class PostboxMetrics implements PostboxMetricsMXBean {
+	private String name;
+	private int capacity;
+	private AtomicLong fill;
+	private AtomicLong putBlockedNanos;
+	private AtomicLong takeBlockedNanos;
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param name
+	 *            The name identifying the postbox.
+	 * @param capacity
+	 *            The maximum number of objects the postbox holds before
+	 *            blocking.
+	 */
+	public PostboxMetrics(String name, int capacity) {
+		this.name = name;
+		this.capacity = capacity;
+		
+		fill = new AtomicLong();
+		putBlockedNanos = new AtomicLong();
+		takeBlockedNanos = new AtomicLong();
+	}
+	
+	
+	/**
+	 * Records a batch of objects being published to the output thread.
+	 * 
+	 * @param count
+	 *            The number of objects in the batch.
+	 */
+	public void recordPublish(int count) {
+		fill.addAndGet(count);
+	}
+	
+	
+	/**
+	 * Records a batch of objects being consumed by the output thread.
+	 * 
+	 * @param count
+	 *            The number of objects in the batch.
+	 */
+	public void recordRelease(int count) {
+		fill.addAndGet(-count);
+	}
+	
+	
+	/**
+	 * Records a period the input thread spent waiting for free space.
+	 * 
+	 * @param nanos
+	 *            The time spent waiting.
+	 */
+	public void recordPutBlocked(long nanos) {
+		putBlockedNanos.addAndGet(nanos);
+	}
+	
+	
+	/**
+	 * Records a period the output thread spent waiting for data.
+	 * 
+	 * @param nanos
+	 *            The time spent waiting.
+	 */
+	public void recordTakeBlocked(long nanos) {
+		takeBlockedNanos.addAndGet(nanos);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getName() {
+		return name;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getCapacity() {
+		return capacity;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getFill() {
+		return fill.get();
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getPutBlockedMillis() {
+		return putBlockedNanos.get() / 1000000;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getTakeBlockedMillis() {
+		return takeBlockedNanos.get() / 1000000;
+	}
+}
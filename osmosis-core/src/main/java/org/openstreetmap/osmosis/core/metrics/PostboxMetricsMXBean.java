@@ -0,0 +1,51 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.metrics;
+
+
+/**
+ * The management interface exposing the fill level and blocking time of a
+ * postbox passing data between two pipeline threads.
+ */
+public interface PostboxMetricsMXBean {
+	
+	/**
+	 * Gets the name identifying the postbox.
+	 * 
+	 * @return The name.
+	 */
+	String getName();
+	
+	
+	/**
+	 * Gets the maximum number of objects the postbox holds before blocking.
+	 * 
+	 * @return The capacity.
+	 */
+	int getCapacity();
+	
+	
+	/**
+	 * Gets the number of objects that have been published by the input thread
+	 * but not yet consumed by the output thread. Objects still being gathered
+	 * into a batch by the input thread are not included.
+	 * 
+	 * @return The fill level.
+	 */
+	long getFill();
+	
+	
+	/**
+	 * Gets the time the input thread has spent waiting for free space.
+	 * 
+	 * @return The blocking time in milliseconds.
+	 */
+	long getPutBlockedMillis();
+	
+	
+	/**
+	 * Gets the time the output thread has spent waiting for data.
+	 * 
+	 * @return The blocking time in milliseconds.
+	 */
+	long getTakeBlockedMillis();
+}
@@ -0,0 +1,126 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+
+/**
+ * Records the running time of a pipeline task thread.
+ */
+public class TaskThreadMetrics implements TaskThreadMetricsMXBean {
+	private String name;
+	private long threadId;
+	private volatile long startNanos;
+	private volatile long finishNanos;
+	private volatile long finalCpuNanos;
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param thread
+	 *            The thread to be measured.
+	 */
+	public TaskThreadMetrics(Thread thread) {
+		name = thread.getName();
+		threadId = thread.getId();
+		finalCpuNanos = -1;
+	}
+	
+	
+	/**
+	 * Records the start of the thread. This must be called by the measured
+	 * thread.
+	 */
+	public void recordStart() {
+		startNanos = System.nanoTime();
+	}
+	
+	
+	/**
+	 * Records the completion of the thread. This must be called by the
+	 * measured thread.
+	 */
+	public void recordFinish() {
+		finalCpuNanos = getCpuNanos();
+		finishNanos = System.nanoTime();
+	}
+	
+	
+	private long getCpuNanos() {
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		
+		if (!threadBean.isThreadCpuTimeSupported()) {
+			return -1;
+		}
+		
+		try {
+			return threadBean.getThreadCpuTime(threadId);
+		} catch (UnsupportedOperationException e) {
+			// Thread CPU time measurement is disabled.
+			return -1;
+		}
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getName() {
+		return name;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isRunning() {
+		return startNanos != 0 && finishNanos == 0;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getRunMillis() {
+		long start;
+		long finish;
+		
+		start = startNanos;
+		if (start == 0) {
+			return 0;
+		}
+		
+		finish = finishNanos;
+		if (finish == 0) {
+			finish = System.nanoTime();
+		}
+		
+		return (finish - start) / 1000000;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getCpuMillis() {
+		long cpuNanos;
+		
+		if (finishNanos != 0) {
+			cpuNanos = finalCpuNanos;
+		} else {
+			cpuNanos = getCpuNanos();
+		}
+		
+		if (cpuNanos < 0) {
+			return -1;
+		}
+		
+		return cpuNanos / 1000000;
+	}
+}
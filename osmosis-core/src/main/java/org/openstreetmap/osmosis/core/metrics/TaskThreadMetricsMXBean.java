@@ -0,0 +1,43 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.metrics;
+
+
+/**
+ * The management interface exposing the running time of a pipeline task
+ * thread.
+ */
+public interface TaskThreadMetricsMXBean {
+	
+	/**
+	 * Gets the name of the thread.
+	 * 
+	 * @return The thread name.
+	 */
+	String getName();
+	
+	
+	/**
+	 * Indicates if the thread has started and not yet finished.
+	 * 
+	 * @return True if the thread is running.
+	 */
+	boolean isRunning();
+	
+	
+	/**
+	 * Gets the elapsed time since the thread started, or the total running
+	 * time once it has finished.
+	 * 
+	 * @return The running time in milliseconds.
+	 */
+	long getRunMillis();
+	
+	
+	/**
+	 * Gets the processor time consumed by the thread. This is -1 if processor
+	 * time measurement is not supported by the JVM.
+	 * 
+	 * @return The processor time in milliseconds.
+	 */
+	long getCpuMillis();
+}
@@ -0,0 +1,105 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.pipeline.common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+
+
+/**
+ * This task manager implementation supports tasks that perform active
+ * processing in several separate threads.
+ */
+public abstract class MultiThreadTaskManager extends TaskManager {
+	private static final Logger LOG = Logger.getLogger(MultiThreadTaskManager.class.getName());
+	
+	private List<TaskRunner> threads;
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param taskId
+	 *            A unique identifier for the task. This is used to produce
+	 *            meaningful errors when errors occur.
+	 * @param pipeArgs
+	 *            The arguments defining input and output pipes for the task,
+	 *            pipes are a logical concept for identifying how the tasks are
+	 *            connected together.
+	 */
+	protected MultiThreadTaskManager(String taskId, Map<String, String> pipeArgs) {
+		super(taskId, pipeArgs);
+	}
+	
+	
+	/**
+	 * Returns the runnable tasks managed by this manager. Each is run in its
+	 * own thread.
+	 * 
+	 * @return The tasks.
+	 */
+	protected abstract List<Runnable> getTasks();
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void execute() {
+		List<Runnable> tasks;
+		
+		if (threads != null) {
+			throw new OsmosisRuntimeException("Task " + getTaskId()
+					+ " is already running.");
+		}
+		
+		tasks = getTasks();
+		
+		LOG.fine("Launching task " + getTaskId() + " in " + tasks.size() + " new threads.");
+		
+		threads = new ArrayList<TaskRunner>(tasks.size());
+		for (int i = 0; i < tasks.size(); i++) {
+			TaskRunner thread = new TaskRunner(tasks.get(i), "Thread-" + getTaskId() + "-" + i);
+			
+			threads.add(thread);
+			thread.start();
+		}
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean waitForCompletion() {
+		LOG.fine("Waiting for task " + getTaskId() + " to complete.");
+		if (threads != null) {
+			boolean successful = true;
+			
+			for (TaskRunner thread : threads) {
+				try {
+					thread.join();
+				} catch (InterruptedException e) {
+					// We are already in an error condition so log and continue.
+					LOG.log(Level.WARNING, "The wait for task completion was interrupted.", e);
+				}
+				
+				if (!thread.isSuccessful()) {
+					LOG.log(Level.SEVERE, "Thread " + thread.getName() + " for task " + getTaskId() + " failed",
+							thread.getException());
+					successful = false;
+				}
+			}
+			
+			threads = null;
+			
+			return successful;
+		}
+		
+		return true;
+	}
+}
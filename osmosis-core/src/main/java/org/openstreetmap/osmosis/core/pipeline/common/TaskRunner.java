@@ -1,6 +1,8 @@
 // This software is released into the Public Domain.  See copying.txt for details.
 package org.openstreetmap.osmosis.core.pipeline.common;
 
+import org.openstreetmap.osmosis.core.metrics.PipelineMetrics;
+import org.openstreetmap.osmosis.core.metrics.TaskThreadMetrics;
 
 /**
  * A thread implementation for launching a runnable task.
@@ -46,6 +48,29 @@ public class TaskRunner extends Thread {
 	}
 	
 	
+	/**
+	 * Runs the task, recording the running time of the thread if pipeline
+	 * metrics are enabled.
+	 */
+	@Override
+	public void run() {
+		PipelineMetrics pipelineMetrics = PipelineMetrics.getInstance();
+		
+		if (pipelineMetrics == null) {
+			super.run();
+		} else {
+			TaskThreadMetrics metrics = pipelineMetrics.createTaskThreadMetrics(this);
+			
+			metrics.recordStart();
+			try {
+				super.run();
+			} finally {
+				metrics.recordFinish();
+			}
+		}
+	}
+	
+	
 	/**
 	 * This can be called after the thread has completed to determine if the
 	 * thread terminated normally.
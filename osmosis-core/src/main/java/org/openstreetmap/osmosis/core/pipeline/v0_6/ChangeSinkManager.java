@@ -51,6 +51,6 @@ public class ChangeSinkManager extends PassiveTaskManager {
 		
 		// Cast the input feed to the correct type.
 		// Connect the tasks.
-		source.setChangeSink(task);
+		source.setChangeSink(ConnectionInstrumenter.instrument(task, getTaskId(), 0));
 	}
 }
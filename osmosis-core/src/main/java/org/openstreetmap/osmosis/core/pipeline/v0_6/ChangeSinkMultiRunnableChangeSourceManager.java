@@ -0,0 +1,81 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.pipeline.v0_6;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.openstreetmap.osmosis.core.pipeline.common.MultiThreadTaskManager;
+import org.openstreetmap.osmosis.core.pipeline.common.PipeTasks;
+import org.openstreetmap.osmosis.core.task.v0_6.ChangeSinkMultiRunnableChangeSource;
+import org.openstreetmap.osmosis.core.task.v0_6.ChangeSource;
+
+
+/**
+ * A task manager implementation for tasks performing change sink and multi
+ * change source functionality where each change source runs in its own
+ * thread.
+ */
+public class ChangeSinkMultiRunnableChangeSourceManager extends MultiThreadTaskManager {
+	private ChangeSinkMultiRunnableChangeSource task;
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param taskId
+	 *            A unique identifier for the task. This is used to produce
+	 *            meaningful errors when errors occur.
+	 * @param task
+	 *            The task instance to be managed.
+	 * @param pipeArgs
+	 *            The arguments defining input and output pipes for the task,
+	 *            pipes are a logical concept for identifying how the tasks are
+	 *            connected together.
+	 */
+	public ChangeSinkMultiRunnableChangeSourceManager(
+			String taskId, ChangeSinkMultiRunnableChangeSource task, Map<String, String> pipeArgs) {
+		super(taskId, pipeArgs);
+		
+		this.task = task;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void connect(PipeTasks pipeTasks) {
+		ChangeSource source;
+		int taskSourceCount;
+		
+		// Get the input task. A sink only has one input, this corresponds to
+		// pipe index 0.
+		source = (ChangeSource) getInputTask(pipeTasks, 0, ChangeSource.class);
+		
+		// Connect the tasks.
+		source.setChangeSink(ConnectionInstrumenter.instrument(task, getTaskId(), 0));
+		
+		// Register all the sources provided by this task as outputs.
+		taskSourceCount = task.getChangeSourceCount();
+		for (int i = 0; i < taskSourceCount; i++) {
+			setOutputTask(pipeTasks, task.getChangeSource(i), i);
+		}
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected List<Runnable> getTasks() {
+		List<Runnable> tasks;
+		
+		tasks = new ArrayList<Runnable>();
+		for (int i = 0; i < task.getChangeSourceCount(); i++) {
+			tasks.add(task.getChangeSource(i));
+		}
+		
+		return tasks;
+	}
+}
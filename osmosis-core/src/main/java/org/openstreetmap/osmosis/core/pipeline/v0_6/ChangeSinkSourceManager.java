@@ -51,7 +51,7 @@ public class ChangeSinkSourceManager extends PassiveTaskManager {
 
 		// Cast the input feed to the correct type.
 		// Connect the tasks.
-		source.setChangeSink(task);
+		source.setChangeSink(ConnectionInstrumenter.instrument(task, getTaskId(), 0));
 
 		// Register the task as an output. A source only has one output, this
 		// corresponds to pipe index 0.
@@ -0,0 +1,73 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.pipeline.v0_6;
+
+import org.openstreetmap.osmosis.core.metrics.PipelineMetrics;
+import org.openstreetmap.osmosis.core.task.v0_6.BatchSink;
+import org.openstreetmap.osmosis.core.task.v0_6.ChangeSink;
+import org.openstreetmap.osmosis.core.task.v0_6.Sink;
+
+
+/**
+ * Wraps the receiving end of task connections with instrumented
+ * implementations when pipeline metrics are enabled.
+ */
+final class ConnectionInstrumenter {
+	
+	/**
+	 * This class cannot be instantiated.
+	 */
+	private ConnectionInstrumenter() {
+		// Do nothing.
+	}
+	
+	
+	/**
+	 * Instruments a sink if pipeline metrics are enabled.
+	 * 
+	 * @param sink
+	 *            The sink receiving data.
+	 * @param taskId
+	 *            The identifier of the task owning the sink.
+	 * @param inputIndex
+	 *            The index of the task input the sink corresponds to.
+	 * @return The instrumented sink, or the original sink if metrics are
+	 *         disabled.
+	 */
+	static Sink instrument(Sink sink, String taskId, int inputIndex) {
+		PipelineMetrics pipelineMetrics = PipelineMetrics.getInstance();
+		
+		if (pipelineMetrics == null) {
+			return sink;
+		}
+		
+		if (sink instanceof BatchSink) {
+			return new InstrumentedBatchSink(
+					(BatchSink) sink, pipelineMetrics.createConnectionMetrics(taskId, inputIndex));
+		} else {
+			return new InstrumentedSink(sink, pipelineMetrics.createConnectionMetrics(taskId, inputIndex));
+		}
+	}
+	
+	
+	/**
+	 * Instruments a change sink if pipeline metrics are enabled.
+	 * 
+	 * @param changeSink
+	 *            The change sink receiving data.
+	 * @param taskId
+	 *            The identifier of the task owning the change sink.
+	 * @param inputIndex
+	 *            The index of the task input the change sink corresponds to.
+	 * @return The instrumented change sink, or the original change sink if
+	 *         metrics are disabled.
+	 */
+	static ChangeSink instrument(ChangeSink changeSink, String taskId, int inputIndex) {
+		PipelineMetrics pipelineMetrics = PipelineMetrics.getInstance();
+		
+		if (pipelineMetrics == null) {
+			return changeSink;
+		}
+		
+		return new InstrumentedChangeSink(changeSink, pipelineMetrics.createConnectionMetrics(taskId, inputIndex));
+	}
+}
@@ -0,0 +1,67 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.pipeline.v0_6;
+
+import java.util.List;
+
+import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
+import org.openstreetmap.osmosis.core.domain.v0_6.EntityType;
+import org.openstreetmap.osmosis.core.metrics.CallTimer;
+import org.openstreetmap.osmosis.core.metrics.ConnectionMetrics;
+import org.openstreetmap.osmosis.core.task.v0_6.BatchSink;
+
+
+/**
+ * Instruments a sink that accepts groups of entities. The batch interface is
+ * preserved so that sources continue to pass blocks of entities in a single
+ * call.
+ */
+class InstrumentedBatchSink extends InstrumentedSink implements BatchSink {
+	private BatchSink batchSink;
+	private int[] counts;
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param batchSink
+	 *            The sink receiving all data.
+	 * @param metrics
+	 *            The metrics to update.
+	 */
+	InstrumentedBatchSink(BatchSink batchSink, ConnectionMetrics metrics) {
+		super(batchSink, metrics);
+		
+		this.batchSink = batchSink;
+		counts = new int[EntityType.values().length];
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void processBatch(List<EntityContainer> entityContainers) {
+		CallTimer timer;
+		long nestedNanosAtStart;
+		long startNanos;
+		
+		// The sink may reuse the list once the call returns so the entities
+		// are counted first.
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = 0;
+		}
+		for (EntityContainer entityContainer : entityContainers) {
+			counts[entityContainer.getEntity().getType().ordinal()]++;
+		}
+		
+		timer = CallTimer.get();
+		nestedNanosAtStart = timer.getNestedNanos();
+		startNanos = timer.startBatch();
+		
+		try {
+			batchSink.processBatch(entityContainers);
+		} finally {
+			getMetrics().record(counts, timer, startNanos, nestedNanosAtStart);
+		}
+	}
+}
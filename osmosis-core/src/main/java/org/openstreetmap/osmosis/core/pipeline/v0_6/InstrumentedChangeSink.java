@@ -0,0 +1,77 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.pipeline.v0_6;
+
+import java.util.Map;
+
+import org.openstreetmap.osmosis.core.container.v0_6.ChangeContainer;
+import org.openstreetmap.osmosis.core.metrics.CallTimer;
+import org.openstreetmap.osmosis.core.metrics.ConnectionMetrics;
+import org.openstreetmap.osmosis.core.task.v0_6.ChangeSink;
+
+
+/**
+ * Passes all changes through to a change sink while recording the throughput
+ * and processing time of the connection.
+ */
+class InstrumentedChangeSink implements ChangeSink {
+	private ChangeSink changeSink;
+	private ConnectionMetrics metrics;
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param changeSink
+	 *            The change sink receiving all data.
+	 * @param metrics
+	 *            The metrics to update.
+	 */
+	InstrumentedChangeSink(ChangeSink changeSink, ConnectionMetrics metrics) {
+		this.changeSink = changeSink;
+		this.metrics = metrics;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void initialize(Map<String, Object> metaData) {
+		changeSink.initialize(metaData);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void process(ChangeContainer change) {
+		CallTimer timer = CallTimer.get();
+		long nestedNanosAtStart = timer.getNestedNanos();
+		long startNanos = timer.start();
+		
+		try {
+			changeSink.process(change);
+		} finally {
+			metrics.record(change.getEntityContainer().getEntity().getType(), timer, startNanos, nestedNanosAtStart);
+		}
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void complete() {
+		changeSink.complete();
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void release() {
+		changeSink.release();
+	}
+}
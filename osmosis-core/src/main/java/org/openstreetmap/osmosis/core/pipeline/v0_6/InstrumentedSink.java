@@ -0,0 +1,87 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.pipeline.v0_6;
+
+import java.util.Map;
+
+import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
+import org.openstreetmap.osmosis.core.metrics.CallTimer;
+import org.openstreetmap.osmosis.core.metrics.ConnectionMetrics;
+import org.openstreetmap.osmosis.core.task.v0_6.Sink;
+
+
+/**
+ * Passes all data through to a sink while recording the throughput and
+ * processing time of the connection.
+ */
+class InstrumentedSink implements Sink {
+	private Sink sink;
+	private ConnectionMetrics metrics;
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param sink
+	 *            The sink receiving all data.
+	 * @param metrics
+	 *            The metrics to update.
+	 */
+	InstrumentedSink(Sink sink, ConnectionMetrics metrics) {
+		this.sink = sink;
+		this.metrics = metrics;
+	}
+	
+	
+	/**
+	 * Gets the metrics updated by this sink.
+	 * 
+	 * @return The connection metrics.
+	 */
+	protected ConnectionMetrics getMetrics() {
+		return metrics;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void initialize(Map<String, Object> metaData) {
+		sink.initialize(metaData);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void process(EntityContainer entityContainer) {
+		CallTimer timer = CallTimer.get();
+		long nestedNanosAtStart = timer.getNestedNanos();
+		long startNanos = timer.start();
+		
+		try {
+			sink.process(entityContainer);
+		} finally {
+			metrics.record(entityContainer.getEntity().getType(), timer, startNanos, nestedNanosAtStart);
+		}
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void complete() {
+		sink.complete();
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void release() {
+		sink.release();
+	}
+}
@@ -58,7 +58,7 @@ public class MultiChangeSinkRunnableChangeSourceManager extends ActiveTaskManage
 			source = (ChangeSource) getInputTask(pipeTasks, i, ChangeSource.class);
 			
 			// Connect the tasks.
-			source.setChangeSink(sink);
+			source.setChangeSink(ConnectionInstrumenter.instrument(sink, getTaskId(), i));
 		}
 		
 		// Register the source as an output task.
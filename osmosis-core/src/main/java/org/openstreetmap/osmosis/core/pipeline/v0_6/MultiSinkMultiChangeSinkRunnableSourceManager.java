@@ -61,7 +61,7 @@ public class MultiSinkMultiChangeSinkRunnableSourceManager extends ActiveTaskMan
 			source = (Source) getInputTask(pipeTasks, i, Source.class);
 			
 			// Connect the tasks.
-			source.setSink(sink);
+			source.setSink(ConnectionInstrumenter.instrument(sink, getTaskId(), i));
 		}
 		for (int i = 0; i < task.getChangeSinkCount(); i++) {
 			ChangeSink changeSink;
@@ -78,7 +78,8 @@ public class MultiSinkMultiChangeSinkRunnableSourceManager extends ActiveTaskMan
 			);
 			
 			// Connect the tasks.
-			changeSource.setChangeSink(changeSink);
+			changeSource.setChangeSink(
+				ConnectionInstrumenter.instrument(changeSink, getTaskId(), i + task.getSinkCount()));
 		}
 		
 		// Register the change source as an output task.
@@ -0,0 +1,79 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.pipeline.v0_6;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.openstreetmap.osmosis.core.pipeline.common.MultiThreadTaskManager;
+import org.openstreetmap.osmosis.core.pipeline.common.PipeTasks;
+import org.openstreetmap.osmosis.core.task.v0_6.SinkMultiRunnableSource;
+import org.openstreetmap.osmosis.core.task.v0_6.Source;
+
+
+/**
+ * A task manager implementation for tasks performing sink and multi source
+ * functionality where each source runs in its own thread.
+ */
+public class SinkMultiRunnableSourceManager extends MultiThreadTaskManager {
+	private SinkMultiRunnableSource task;
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param taskId
+	 *            A unique identifier for the task. This is used to produce
+	 *            meaningful errors when errors occur.
+	 * @param task
+	 *            The task instance to be managed.
+	 * @param pipeArgs
+	 *            The arguments defining input and output pipes for the task,
+	 *            pipes are a logical concept for identifying how the tasks are
+	 *            connected together.
+	 */
+	public SinkMultiRunnableSourceManager(String taskId, SinkMultiRunnableSource task, Map<String, String> pipeArgs) {
+		super(taskId, pipeArgs);
+		
+		this.task = task;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void connect(PipeTasks pipeTasks) {
+		Source source;
+		int taskSourceCount;
+		
+		// Get the input task. A sink only has one input, this corresponds to
+		// pipe index 0.
+		source = (Source) getInputTask(pipeTasks, 0, Source.class);
+		
+		// Connect the tasks.
+		source.setSink(ConnectionInstrumenter.instrument(task, getTaskId(), 0));
+		
+		// Register all the sources provided by this task as outputs.
+		taskSourceCount = task.getSourceCount();
+		for (int i = 0; i < taskSourceCount; i++) {
+			setOutputTask(pipeTasks, task.getSource(i), i);
+		}
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected List<Runnable> getTasks() {
+		List<Runnable> tasks;
+		
+		tasks = new ArrayList<Runnable>();
+		for (int i = 0; i < task.getSourceCount(); i++) {
+			tasks.add(task.getSource(i));
+		}
+		
+		return tasks;
+	}
+}
@@ -53,7 +53,7 @@ public class SinkMultiSourceManager extends PassiveTaskManager {
 		
 		// Cast the input feed to the correct type.
 		// Connect the tasks.
-		source.setSink(task);
+		source.setSink(ConnectionInstrumenter.instrument(task, getTaskId(), 0));
 		
 		// Register all the sources provided by this task as outputs.
 		taskSourceCount = task.getSourceCount();
@@ -52,7 +52,7 @@ public class SinkSourceManager extends PassiveTaskManager {
 		
 		// Cast the input feed to the correct type.
 		// Connect the tasks.
-		source.setSink(task);
+		source.setSink(ConnectionInstrumenter.instrument(task, getTaskId(), 0));
 		
 		// Register the task as an output. A source only has one output, this
 		// corresponds to pipe index 0.
@@ -11,6 +11,7 @@ import org.openstreetmap.osmosis.core.lifecycle.ReleasableIterator;
 import org.openstreetmap.osmosis.core.store.ChunkedObjectStore;
 import org.openstreetmap.osmosis.core.store.ObjectSerializationFactory;
 import org.openstreetmap.osmosis.core.store.PersistentIterator;
+import org.openstreetmap.osmosis.core.store.StorageFormat;
 import org.openstreetmap.osmosis.core.store.Storeable;
 
 
@@ -74,7 +75,8 @@ public class FileBasedSort<T extends Storeable> implements Releasable {
 		this.comparator = comparator;
 		this.useCompression = useCompression;
 		
-		chunkedEntityStore = new ChunkedObjectStore<T>(serializationFactory, "emta", "idx", useCompression);
+		chunkedEntityStore = new ChunkedObjectStore<T>(
+				serializationFactory, "emta", "idx", useCompression, StorageFormat.Compact);
 		addBuffer = new ArrayList<T>(MAX_MEMORY_SORT_COUNT);
 	}
 	
@@ -144,7 +146,8 @@ public class FileBasedSort<T extends Storeable> implements Releasable {
 			serializationFactory,
 			iterate(nestLevel, beginChunkIndex, chunkCount),
 			"emtb",
-			useCompression
+			useCompression,
+			StorageFormat.Compact
 		);
 		
 		// Prime the persistent iterator so that all underlying iterator data is
@@ -5,13 +5,17 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
 
 import org.openstreetmap.osmosis.core.lifecycle.ReleasableIterator;
 
 
 /**
  * This iterator examines a list of sorted input sources and merges them into a
- * single sorted list.
+ * single sorted list. The current head of each source is held in a binary heap
+ * so that large numbers of sources can be merged efficiently. Where several
+ * sources contain equal values, values from earlier sources in the list are
+ * returned first.
  * 
  * @param <DataType>
  *            The object type to be sorted.
@@ -20,7 +24,7 @@ import org.openstreetmap.osmosis.core.lifecycle.ReleasableIterator;
 public class MergingIterator<DataType> implements ReleasableIterator<DataType> {
 	private List<ReleasableIterator<DataType>> sources;
 	private Comparator<DataType> comparator;
-	private List<DataType> sourceData;
+	private PriorityQueue<SourceHead<DataType>> sourceHeads;
 	
 	
 	/**
@@ -41,19 +45,39 @@ public class MergingIterator<DataType> implements ReleasableIterator<DataType> {
 	 * Primes the sorting collections.
 	 */
 	private void initialize() {
-		if (sourceData == null) {
-			// Get the first entity from each source.  Delete any empty sources.
-			sourceData = new ArrayList<DataType>(sources.size());
-			for (int sourceIndex = 0; sourceIndex < sources.size();) {
+		if (sourceHeads == null) {
+			final Comparator<DataType> dataComparator = comparator;
+			
+			sourceHeads = new PriorityQueue<SourceHead<DataType>>(
+				Math.max(1, sources.size()),
+				new Comparator<SourceHead<DataType>>() {
+					@Override
+					public int compare(SourceHead<DataType> o1, SourceHead<DataType> o2) {
+						int result;
+						
+						result = dataComparator.compare(o1.getData(), o2.getData());
+						
+						// Equal values are returned in source order.
+						if (result == 0) {
+							result = o1.getSourceIndex() - o2.getSourceIndex();
+						}
+						
+						return result;
+					}
+				}
+			);
+			
+			// Get the first entity from each source. Release any empty sources.
+			for (int sourceIndex = 0; sourceIndex < sources.size(); sourceIndex++) {
 				ReleasableIterator<DataType> source;
 				
 				source = sources.get(sourceIndex);
 				
 				if (source.hasNext()) {
-					sourceData.add(source.next());
-					sourceIndex++;
+					sourceHeads.add(new SourceHead<DataType>(sourceIndex, source.next()));
 				} else {
-					sources.remove(sourceIndex).release();
+					source.release();
+					sources.set(sourceIndex, null);
 				}
 			}
 		}
@@ -66,7 +90,7 @@ public class MergingIterator<DataType> implements ReleasableIterator<DataType> {
 	public boolean hasNext() {
 		initialize();
 		
-		return sourceData.size() > 0;
+		return sourceHeads.size() > 0;
 	}
 	
 	
@@ -74,38 +98,27 @@ public class MergingIterator<DataType> implements ReleasableIterator<DataType> {
 	 * {@inheritDoc}
 	 */
 	public DataType next() {
+		SourceHead<DataType> sourceHead;
 		DataType dataMinimum;
-		int indexMinimum;
 		ReleasableIterator<DataType> source;
 		
-		initialize();
-		
 		if (!hasNext()) {
 			throw new NoSuchElementException();
 		}
 		
-		dataMinimum = sourceData.get(0);
-		indexMinimum = 0;
+		// The minimum entity is at the head of the queue.
+		sourceHead = sourceHeads.remove();
+		dataMinimum = sourceHead.getData();
 		
-		// Find the minimum entity.
-		for (int indexCurrent = 1; indexCurrent < sources.size(); indexCurrent++) {
-			DataType dataCurrent = sourceData.get(indexCurrent);
-			
-			// Check if the current data entity is less than the existing minimum.
-			if (comparator.compare(dataMinimum, dataCurrent) > 0) {
-				dataMinimum = dataCurrent;
-				indexMinimum = indexCurrent;
-			}
-		}
-		
-		// Get the next entity from the source if available.
-		// Otherwise remove the source and its current data.
-		source = sources.get(indexMinimum);
+		// Get the next entity from the source if available and re-queue it.
+		// Otherwise release the source.
+		source = sources.get(sourceHead.getSourceIndex());
 		if (source.hasNext()) {
-			sourceData.set(indexMinimum, source.next());
+			sourceHead.setData(source.next());
+			sourceHeads.add(sourceHead);
 		} else {
-			sources.remove(indexMinimum).release();
-			sourceData.remove(indexMinimum);
+			source.release();
+			sources.set(sourceHead.getSourceIndex(), null);
 		}
 		
 		return dataMinimum;
@@ -125,7 +138,67 @@ public class MergingIterator<DataType> implements ReleasableIterator<DataType> {
 	 */
 	public void release() {
 		for (ReleasableIterator<DataType> source : sources) {
-			source.release();
+			if (source != null) {
+				source.release();
+			}
+		}
+		sources.clear();
+	}
+	
+	
+	/**
+	 * Holds the current head value of a single source.
+	 * 
+	 * @param <DataType>
+	 *            The object type to be sorted.
+	 */
+	private static class SourceHead<DataType> {
+		private int sourceIndex;
+		private DataType data;
+		
+		
+		/**
+		 * Creates a new instance.
+		 * 
+		 * @param sourceIndex
+		 *            The index of the source within the source list.
+		 * @param data
+		 *            The current head value of the source.
+		 */
+		public SourceHead(int sourceIndex, DataType data) {
+			this.sourceIndex = sourceIndex;
+			this.data = data;
+		}
+		
+		
+		/**
+		 * Gets the index of the source within the source list.
+		 * 
+		 * @return The source index.
+		 */
+		public int getSourceIndex() {
+			return sourceIndex;
+		}
+		
+		
+		/**
+		 * Gets the current head value of the source.
+		 * 
+		 * @return The data value.
+		 */
+		public DataType getData() {
+			return data;
+		}
+		
+		
+		/**
+		 * Updates the current head value of the source.
+		 * 
+		 * @param data
+		 *            The new data value.
+		 */
+		public void setData(DataType data) {
+			this.data = data;
 		}
 	}
 }
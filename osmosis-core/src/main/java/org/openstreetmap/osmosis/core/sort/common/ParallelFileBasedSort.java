@@ -0,0 +1,695 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.sort.common;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.lifecycle.Releasable;
+import org.openstreetmap.osmosis.core.lifecycle.ReleasableIterator;
+import org.openstreetmap.osmosis.core.store.DataOutputStoreWriter;
+import org.openstreetmap.osmosis.core.store.DynamicStoreClassRegister;
+import org.openstreetmap.osmosis.core.store.ObjectSerializationFactory;
+import org.openstreetmap.osmosis.core.store.ObjectWriter;
+import org.openstreetmap.osmosis.core.store.ReleasableAdaptorForIterator;
+import org.openstreetmap.osmosis.core.store.SimpleObjectStore;
+import org.openstreetmap.osmosis.core.store.StorageFormat;
+import org.openstreetmap.osmosis.core.store.Storeable;
+
+
+/**
+ * Allows a large number of objects to be sorted by writing them to disk in
+ * sorted runs and then merging the runs together.
+ * <p>
+ * Objects are collected into runs in memory. The length of each run is
+ * determined by a memory budget and an estimate of the memory consumed by each
+ * object, the estimate being derived from the serialised size of a sample of
+ * the objects added. If no budget is specified, a share of the currently
+ * available heap is used, allowing large heaps to write far fewer, larger
+ * runs. Each full run is handed to a pool
+ * of worker threads which sort it and write it to its own temporary file,
+ * allowing the calling thread to continue collecting the next run. Once all
+ * objects have been added the runs are combined using a k-way merge. If there
+ * are more runs than the merge fan-in allows, intermediate merge passes are
+ * performed in parallel on the worker threads until few enough runs remain.
+ * The fan-in is further limited so that the memory held by the readers of all
+ * runs being merged at once fits within the memory budget.
+ * If all objects fit within a single run, no files are written at all.
+ * 
+ * @param <T>
+ *            The object type to be sorted.
+ */
+public class ParallelFileBasedSort<T extends Storeable> implements Releasable {
+	
+	private static final Logger LOG = Logger.getLogger(ParallelFileBasedSort.class.getName());
+	
+	/**
+	 * Specifies that the memory budget should be calculated automatically from
+	 * the available heap.
+	 */
+	public static final long AUTOMATIC_MEMORY_BUDGET = 0;
+	
+	/**
+	 * The default maximum number of runs to merge together in a single merge
+	 * pass.
+	 */
+	public static final int DEFAULT_MERGE_FAN_IN = 64;
+	
+	/**
+	 * The proportion of the available heap to be used by the sort if no memory
+	 * budget has been specified.
+	 */
+	private static final double AUTOMATIC_HEAP_PROPORTION = 0.5;
+	
+	/**
+	 * The smallest amount of memory that will be used for a single run if the
+	 * memory budget is being calculated automatically.
+	 */
+	private static final long MINIMUM_AUTOMATIC_RUN_BYTES = 1048576;
+	
+	/**
+	 * The approximate ratio between the memory consumed by an object and its
+	 * serialised size. This accounts for object headers, references and two
+	 * byte string characters.
+	 */
+	private static final int MEMORY_TO_SERIALISED_SIZE_RATIO = 4;
+	
+	/**
+	 * The serialised size is measured for one in every this many objects
+	 * added, the remainder are assumed to be of average size.
+	 */
+	private static final int SIZE_SAMPLE_INTERVAL = 256;
+	
+	/**
+	 * The format used for writing runs to temporary files.
+	 */
+	private static final StorageFormat RUN_STORAGE_FORMAT = StorageFormat.Compact;
+	
+	
+	private ObjectSerializationFactory serializationFactory;
+	private Comparator<T> comparator;
+	private boolean useCompression;
+	private long memoryBudget;
+	private int workerCount;
+	private int mergeFanIn;
+	private ExecutorService executorService;
+	private List<T> addBuffer;
+	private long addBufferBytes;
+	private long runByteLimit;
+	private long addCount;
+	private long sampledBytes;
+	private long sampledCount;
+	private ByteArrayOutputStream sampleOutStream;
+	private ObjectWriter sampleWriter;
+	private LinkedList<Future<SimpleObjectStore<T>>> pendingRuns;
+	private List<SimpleObjectStore<T>> runs;
+	private long runCount;
+	private int mergePassCount;
+	private long bytesSpilled;
+	
+	
+	/**
+	 * Creates a new instance using an automatic memory budget, the default merge
+	 * fan-in, and a worker thread per available processor.
+	 * 
+	 * @param serializationFactory
+	 *            The factory defining the object serialisation implementation.
+	 * @param comparator
+	 *            The comparator to be used for sorting the results.
+	 * @param useCompression
+	 *            If true, the storage files will be compressed.
+	 */
+	public ParallelFileBasedSort(
+			ObjectSerializationFactory serializationFactory, Comparator<T> comparator, boolean useCompression) {
+		this(serializationFactory, comparator, useCompression, AUTOMATIC_MEMORY_BUDGET,
+				Runtime.getRuntime().availableProcessors(), DEFAULT_MERGE_FAN_IN);
+	}
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param serializationFactory
+	 *            The factory defining the object serialisation implementation.
+	 * @param comparator
+	 *            The comparator to be used for sorting the results.
+	 * @param useCompression
+	 *            If true, the storage files will be compressed.
+	 * @param memoryBudget
+	 *            The approximate number of bytes of heap to be used for holding
+	 *            runs in memory, or AUTOMATIC_MEMORY_BUDGET to use a share of the
+	 *            available heap. This is shared between the run being filled
+	 *            and those awaiting sorting by worker threads.
+	 * @param workerCount
+	 *            The number of worker threads used for sorting and merging
+	 *            runs. No more than this number of runs will be held in memory
+	 *            awaiting sorting at any point in time.
+	 * @param mergeFanIn
+	 *            The maximum number of runs to merge in a single pass. Must be
+	 *            2 or higher. A lower fan-in is used if the readers of this
+	 *            many runs would exceed the memory budget.
+	 */
+	public ParallelFileBasedSort(
+			ObjectSerializationFactory serializationFactory, Comparator<T> comparator, boolean useCompression,
+			long memoryBudget, int workerCount, int mergeFanIn) {
+		if (memoryBudget < 0) {
+			throw new OsmosisRuntimeException(
+					"The memory budget must be 0 or higher, " + memoryBudget + " was specified.");
+		}
+		if (workerCount < 1) {
+			throw new OsmosisRuntimeException(
+					"The worker count must be 1 or higher, " + workerCount + " was specified.");
+		}
+		if (mergeFanIn < 2) {
+			throw new OsmosisRuntimeException(
+					"The merge fan-in must be 2 or higher, " + mergeFanIn + " was specified.");
+		}
+		
+		this.serializationFactory = serializationFactory;
+		this.comparator = comparator;
+		this.useCompression = useCompression;
+		this.memoryBudget = memoryBudget;
+		this.workerCount = workerCount;
+		this.mergeFanIn = mergeFanIn;
+		
+		addBuffer = new ArrayList<T>();
+		addBufferBytes = 0;
+		runByteLimit = 0;
+		addCount = 0;
+		sampledBytes = 0;
+		sampledCount = 0;
+		pendingRuns = new LinkedList<Future<SimpleObjectStore<T>>>();
+		runs = new ArrayList<SimpleObjectStore<T>>();
+		runCount = 0;
+		mergePassCount = 0;
+		bytesSpilled = 0;
+	}
+	
+	
+	/**
+	 * Returns the executor service used for running sort and merge tasks,
+	 * creating it on first use.
+	 * 
+	 * @return The executor service.
+	 */
+	private ExecutorService getExecutorService() {
+		if (executorService == null) {
+			executorService = Executors.newFixedThreadPool(workerCount);
+		}
+		
+		return executorService;
+	}
+	
+	
+	/**
+	 * Waits for the oldest pending run to be written and adds it to the list of
+	 * completed runs.
+	 */
+	private void completeOldestPendingRun() {
+		SimpleObjectStore<T> run;
+		
+		run = waitForResult(pendingRuns.removeFirst());
+		bytesSpilled += run.getStorageSize();
+		runs.add(run);
+	}
+	
+	
+	/**
+	 * Waits for a task running on a worker thread to complete and returns its
+	 * result.
+	 * 
+	 * @param future
+	 *            The task result.
+	 * @return The completed store.
+	 */
+	private SimpleObjectStore<T> waitForResult(Future<SimpleObjectStore<T>> future) {
+		try {
+			return future.get();
+			
+		} catch (InterruptedException e) {
+			throw new OsmosisRuntimeException("Thread was interrupted.", e);
+		} catch (ExecutionException e) {
+			throw new OsmosisRuntimeException("A sort worker thread failed, aborting.", e.getCause());
+		}
+	}
+	
+	
+	/**
+	 * Passes the data currently in the add buffer to a worker thread for sorting
+	 * and writing to file, and starts a new buffer. If the maximum number of
+	 * runs are already in progress, this blocks until the oldest is complete.
+	 */
+	private void flushAddBuffer() {
+		if (addBuffer.size() > 0) {
+			// Limit the number of runs held in memory.
+			while (pendingRuns.size() >= workerCount) {
+				completeOldestPendingRun();
+			}
+			
+			pendingRuns.add(getExecutorService().submit(new RunWriter(addBuffer)));
+			runCount++;
+			
+			addBuffer = new ArrayList<T>();
+			addBufferBytes = 0;
+		}
+	}
+	
+	
+	/**
+	 * Calculates the number of bytes of memory that may be used by the next
+	 * run. The calculation is based on the current heap usage so that run
+	 * lengths adapt to the memory actually available.
+	 * 
+	 * @return The memory limit for the run in bytes.
+	 */
+	private long calculateRunByteLimit() {
+		long budget;
+		
+		budget = calculateMemoryBudget();
+		
+		// The budget is shared between the run being filled and those waiting
+		// to be written by the workers.
+		if (memoryBudget > 0) {
+			return Math.max(1, budget / (workerCount + 1));
+		} else {
+			return Math.max(MINIMUM_AUTOMATIC_RUN_BYTES, budget / (workerCount + 1));
+		}
+	}
+	
+	
+	/**
+	 * Calculates the number of bytes of memory that may currently be used by
+	 * the sort. This is the configured budget limited to the available heap, or
+	 * a share of the available heap if no budget was configured.
+	 * 
+	 * @return The memory budget in bytes.
+	 */
+	private long calculateMemoryBudget() {
+		Runtime runtime;
+		long heapHeadroom;
+		
+		runtime = Runtime.getRuntime();
+		heapHeadroom = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+		
+		if (memoryBudget > 0) {
+			return Math.min(memoryBudget, heapHeadroom);
+		} else {
+			return (long) (heapHeadroom * AUTOMATIC_HEAP_PROPORTION);
+		}
+	}
+	
+	
+	/**
+	 * Calculates the number of runs that may be merged together, allowing for
+	 * the memory held by the reader of each run being merged.
+	 * 
+	 * @param concurrentMerges
+	 *            The number of merges that may be performed at the same time.
+	 * @return The merge fan-in, between 2 and the configured fan-in.
+	 */
+	private int calculateMergeFanIn(int concurrentMerges) {
+		long readerMemory;
+		long fanIn;
+		
+		readerMemory = RUN_STORAGE_FORMAT.getMaximumReaderMemory() * concurrentMerges;
+		if (readerMemory <= 0) {
+			return mergeFanIn;
+		}
+		
+		fanIn = calculateMemoryBudget() / readerMemory;
+		
+		return (int) Math.max(2, Math.min(mergeFanIn, fanIn));
+	}
+	
+	
+	/**
+	 * Estimates the memory consumed by the specified object. The serialised
+	 * size of a sample of objects is measured, and the average of the samples
+	 * is used as the basis for the estimate.
+	 * 
+	 * @param value
+	 *            The object to be measured.
+	 * @return The estimated memory consumption in bytes.
+	 */
+	private long estimateMemorySize(T value) {
+		if ((addCount % SIZE_SAMPLE_INTERVAL) == 0) {
+			if (sampleWriter == null) {
+				sampleOutStream = new ByteArrayOutputStream();
+				sampleWriter = serializationFactory.createObjectWriter(
+						new DataOutputStoreWriter(new DataOutputStream(sampleOutStream)),
+						new DynamicStoreClassRegister());
+			}
+			
+			sampleWriter.writeObject(value);
+			
+			sampledBytes += sampleOutStream.size();
+			sampledCount++;
+			
+			sampleOutStream.reset();
+		}
+		addCount++;
+		
+		return (sampledBytes / sampledCount) * MEMORY_TO_SERIALISED_SIZE_RATIO;
+	}
+	
+	
+	/**
+	 * Adds a new object to be sorted.
+	 * 
+	 * @param value
+	 *            The data object.
+	 */
+	public void add(T value) {
+		// Calculate the size of a new run when it is started.
+		if (addBuffer.size() == 0) {
+			runByteLimit = calculateRunByteLimit();
+		}
+		
+		// Add the new data entity to the add buffer.
+		addBuffer.add(value);
+		addBufferBytes += estimateMemorySize(value);
+		
+		// If the add buffer is full, it must be sorted and written to entity
+		// storage.
+		if (addBufferBytes >= runByteLimit) {
+			flushAddBuffer();
+		}
+	}
+	
+	
+	/**
+	 * Creates an iterator merging the contents of the specified runs.
+	 * 
+	 * @param sourceRuns
+	 *            The runs to be merged.
+	 * @return An iterator providing access to the merged results.
+	 */
+	private ReleasableIterator<T> iterateRuns(List<SimpleObjectStore<T>> sourceRuns) {
+		List<ReleasableIterator<T>> sources;
+		
+		sources = new ArrayList<ReleasableIterator<T>>(sourceRuns.size());
+		
+		try {
+			MergingIterator<T> mergingIterator;
+			
+			for (SimpleObjectStore<T> run : sourceRuns) {
+				sources.add(run.iterate());
+			}
+			
+			mergingIterator = new MergingIterator<T>(sources, comparator);
+			
+			// The merging iterator owns the sources now, so we clear our copy
+			// of them to prevent them being released on method exit.
+			sources.clear();
+			
+			return mergingIterator;
+			
+		} finally {
+			for (ReleasableIterator<T> source : sources) {
+				source.release();
+			}
+		}
+	}
+	
+	
+	/**
+	 * Performs a single merge pass, merging each group of up to the specified
+	 * number of runs into a new run. The groups are merged in parallel.
+	 * 
+	 * @param fanIn
+	 *            The maximum number of runs in each group.
+	 */
+	private void performMergePass(int fanIn) {
+		List<Future<SimpleObjectStore<T>>> mergedRuns;
+		List<SimpleObjectStore<T>> sourceRuns;
+		
+		mergedRuns = new ArrayList<Future<SimpleObjectStore<T>>>();
+		sourceRuns = runs;
+		runs = new ArrayList<SimpleObjectStore<T>>();
+		
+		try {
+			// Spread the runs evenly across the smallest possible number of
+			// groups. Groups are kept in their original order so that the sort
+			// remains stable.
+			int groupCount = (sourceRuns.size() + fanIn - 1) / fanIn;
+			int beginIndex = 0;
+			for (int i = 0; i < groupCount; i++) {
+				int endIndex = (int) (((long) sourceRuns.size() * (i + 1)) / groupCount);
+				
+				mergedRuns.add(
+					getExecutorService().submit(
+						new RunMerger(new ArrayList<SimpleObjectStore<T>>(sourceRuns.subList(beginIndex, endIndex)))
+					)
+				);
+				
+				beginIndex = endIndex;
+			}
+			
+			// Collect the merged results in order.
+			while (mergedRuns.size() > 0) {
+				SimpleObjectStore<T> run;
+				
+				run = waitForResult(mergedRuns.get(0));
+				mergedRuns.remove(0);
+				bytesSpilled += run.getStorageSize();
+				runs.add(run);
+			}
+			
+			mergePassCount++;
+			
+		} finally {
+			// Wait for any outstanding merges so that their results can be
+			// released along with the other runs.
+			for (Future<SimpleObjectStore<T>> mergedRun : mergedRuns) {
+				try {
+					runs.add(mergedRun.get());
+				} catch (Exception e) {
+					// The first failure has already been reported so log and continue.
+					LOG.log(Level.FINE, "Merge worker thread failed.", e);
+				}
+			}
+			
+			for (SimpleObjectStore<T> run : sourceRuns) {
+				run.release();
+			}
+		}
+	}
+	
+	
+	/**
+	 * Sorts and returns the contents of the sorter.
+	 * 
+	 * @return An iterator providing access to the sorted entities.
+	 */
+	public ReleasableIterator<T> iterate() {
+		// If no data has been written to file, we can sort entirely in memory.
+		if (runCount == 0) {
+			List<T> sortedData;
+			
+			sortedData = addBuffer;
+			addBuffer = new ArrayList<T>();
+			
+			Collections.sort(sortedData, comparator);
+			
+			return new ReleasableAdaptorForIterator<T>(sortedData.iterator());
+		}
+		
+		// Write the remaining data and wait for all runs to complete.
+		flushAddBuffer();
+		while (pendingRuns.size() > 0) {
+			completeOldestPendingRun();
+		}
+		
+		// Reduce the number of runs until they can be merged in one pass.
+		// Intermediate passes run a merge on each worker at the same time so
+		// each of them receives a share of the memory budget.
+		while (runs.size() > calculateMergeFanIn(1)) {
+			performMergePass(calculateMergeFanIn(workerCount));
+		}
+		
+		LOG.info(
+			"Sort wrote " + runCount + " runs containing " + addCount + " objects, "
+			+ bytesSpilled + " bytes were written to temporary files, merge depth is "
+			+ (mergePassCount + 1) + ".");
+		
+		return iterateRuns(runs);
+	}
+	
+	
+	/**
+	 * Returns the number of sorted runs written to file prior to merging.
+	 * 
+	 * @return The number of runs.
+	 */
+	public long getRunCount() {
+		return runCount;
+	}
+	
+	
+	/**
+	 * Returns the number of intermediate merge passes performed. This excludes
+	 * the final merge pass performed while iterating over the results.
+	 * 
+	 * @return The number of merge passes.
+	 */
+	public int getMergePassCount() {
+		return mergePassCount;
+	}
+	
+	
+	/**
+	 * Returns the number of bytes written to temporary files, including both
+	 * the initial runs and the results of intermediate merge passes.
+	 * 
+	 * @return The number of bytes written.
+	 */
+	public long getBytesSpilled() {
+		return bytesSpilled;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	public void release() {
+		// Wait for in progress tasks to finish so their files can be deleted.
+		for (Future<SimpleObjectStore<T>> pendingRun : pendingRuns) {
+			try {
+				runs.add(pendingRun.get());
+			} catch (Exception e) {
+				// We cannot throw an exception within a release statement.
+				LOG.log(Level.WARNING, "Sort worker thread failed.", e);
+			}
+		}
+		pendingRuns.clear();
+		
+		for (SimpleObjectStore<T> run : runs) {
+			run.release();
+		}
+		runs.clear();
+		
+		if (executorService != null) {
+			executorService.shutdownNow();
+			executorService = null;
+		}
+	}
+	
+	
+	/**
+	 * Sorts a single run of objects and writes them to a temporary file.
+	 */
+	private class RunWriter implements Callable<SimpleObjectStore<T>> {
+		private List<T> data;
+		
+		
+		/**
+		 * Creates a new instance.
+		 * 
+		 * @param data
+		 *            The unsorted data.
+		 */
+		public RunWriter(List<T> data) {
+			this.data = data;
+		}
+		
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public SimpleObjectStore<T> call() {
+			SimpleObjectStore<T> store;
+			
+			Collections.sort(data, comparator);
+			
+			store = new SimpleObjectStore<T>(serializationFactory, "emta", useCompression, RUN_STORAGE_FORMAT);
+			try {
+				SimpleObjectStore<T> result;
+				
+				for (T value : data) {
+					store.add(value);
+				}
+				data = null;
+				
+				store.complete();
+				
+				result = store;
+				store = null;
+				
+				return result;
+				
+			} finally {
+				if (store != null) {
+					store.release();
+				}
+			}
+		}
+	}
+	
+	
+	/**
+	 * Merges a group of runs into a single run.
+	 */
+	private class RunMerger implements Callable<SimpleObjectStore<T>> {
+		private List<SimpleObjectStore<T>> sourceRuns;
+		
+		
+		/**
+		 * Creates a new instance.
+		 * 
+		 * @param sourceRuns
+		 *            The runs to be merged.
+		 */
+		public RunMerger(List<SimpleObjectStore<T>> sourceRuns) {
+			this.sourceRuns = sourceRuns;
+		}
+		
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public SimpleObjectStore<T> call() {
+			SimpleObjectStore<T> store;
+			ReleasableIterator<T> sourceIterator;
+			
+			store = new SimpleObjectStore<T>(serializationFactory, "emtb", useCompression, RUN_STORAGE_FORMAT);
+			sourceIterator = null;
+			try {
+				SimpleObjectStore<T> result;
+				
+				sourceIterator = iterateRuns(sourceRuns);
+				while (sourceIterator.hasNext()) {
+					store.add(sourceIterator.next());
+				}
+				
+				store.complete();
+				
+				result = store;
+				store = null;
+				
+				return result;
+				
+			} finally {
+				if (sourceIterator != null) {
+					sourceIterator.release();
+				}
+				if (store != null) {
+					store.release();
+				}
+			}
+		}
+	}
+}
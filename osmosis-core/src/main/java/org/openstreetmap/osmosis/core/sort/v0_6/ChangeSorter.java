@@ -6,7 +6,7 @@ import java.util.Map;
 
 import org.openstreetmap.osmosis.core.container.v0_6.ChangeContainer;
 import org.openstreetmap.osmosis.core.lifecycle.ReleasableIterator;
-import org.openstreetmap.osmosis.core.sort.common.FileBasedSort;
+import org.openstreetmap.osmosis.core.sort.common.ParallelFileBasedSort;
 import org.openstreetmap.osmosis.core.store.SingleClassObjectSerializationFactory;
 import org.openstreetmap.osmosis.core.task.v0_6.ChangeSink;
 import org.openstreetmap.osmosis.core.task.v0_6.ChangeSinkChangeSource;
@@ -19,20 +19,35 @@ import org.openstreetmap.osmosis.core.task.v0_6.ChangeSinkChangeSource;
  * @author Brett Henderson
  */
 public class ChangeSorter implements ChangeSinkChangeSource {
-	private FileBasedSort<ChangeContainer> fileBasedSort;
+	private ParallelFileBasedSort<ChangeContainer> fileBasedSort;
 	private ChangeSink changeSink;
 	
 	
 	/**
-	 * Creates a new instance.
+	 * Creates a new instance with a memory budget calculated from the
+	 * available heap.
 	 * 
 	 * @param comparator
 	 *            The comparator to use for sorting.
 	 */
 	public ChangeSorter(Comparator<ChangeContainer> comparator) {
-		fileBasedSort =
-			new FileBasedSort<ChangeContainer>(
-					new SingleClassObjectSerializationFactory(ChangeContainer.class), comparator, true);
+		this(comparator, ParallelFileBasedSort.AUTOMATIC_MEMORY_BUDGET);
+	}
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param comparator
+	 *            The comparator to use for sorting.
+	 * @param memoryBudget
+	 *            The approximate number of bytes of heap to use for sorting
+	 *            in memory, or 0 to calculate it from the available heap.
+	 */
+	public ChangeSorter(Comparator<ChangeContainer> comparator, long memoryBudget) {
+		fileBasedSort = new ParallelFileBasedSort<ChangeContainer>(
+				new SingleClassObjectSerializationFactory(ChangeContainer.class), comparator, true, memoryBudget,
+				Runtime.getRuntime().availableProcessors(), ParallelFileBasedSort.DEFAULT_MERGE_FAN_IN);
 	}
 
 
@@ -20,6 +20,8 @@ import org.openstreetmap.osmosis.core.pipeline.v0_6.ChangeSinkChangeSourceManage
  */
 public class ChangeSorterFactory extends TaskManagerFactory {
 	private static final String ARG_COMPARATOR_TYPE = "type";
+	private static final String ARG_MEMORY_MB = "memoryMB";
+	private static final int DEFAULT_MEMORY_MB = 0;
 	
 	private Map<String, Comparator<ChangeContainer>> comparatorMap;
 	private String defaultComparatorType;
@@ -81,6 +83,7 @@ public class ChangeSorterFactory extends TaskManagerFactory {
 	@Override
 	protected TaskManager createTaskManagerImpl(TaskConfiguration taskConfig) {
 		Comparator<ChangeContainer> comparator;
+		int memoryMB;
 		
 		// Get the comparator.
 		comparator = getComparator(
@@ -91,9 +94,13 @@ public class ChangeSorterFactory extends TaskManagerFactory {
 			)
 		);
 		
+		// Get the amount of memory to use for sorting, 0 selects a share of
+		// the available heap.
+		memoryMB = getIntegerArgument(taskConfig, ARG_MEMORY_MB, DEFAULT_MEMORY_MB);
+		
 		return new ChangeSinkChangeSourceManager(
 			taskConfig.getId(),
-			new ChangeSorter(comparator),
+			new ChangeSorter(comparator, memoryMB * 1048576L),
 			taskConfig.getPipeArgs()
 		);
 	}
@@ -6,7 +6,7 @@ import java.util.Map;
 
 import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
 import org.openstreetmap.osmosis.core.lifecycle.ReleasableIterator;
-import org.openstreetmap.osmosis.core.sort.common.FileBasedSort;
+import org.openstreetmap.osmosis.core.sort.common.ParallelFileBasedSort;
 import org.openstreetmap.osmosis.core.store.GenericObjectSerializationFactory;
 import org.openstreetmap.osmosis.core.task.v0_6.Sink;
 import org.openstreetmap.osmosis.core.task.v0_6.SinkSource;
@@ -19,18 +19,35 @@ import org.openstreetmap.osmosis.core.task.v0_6.SinkSource;
  * @author Brett Henderson
  */
 public class EntitySorter implements SinkSource {
-	private FileBasedSort<EntityContainer> fileBasedSort;
+	private ParallelFileBasedSort<EntityContainer> fileBasedSort;
 	private Sink sink;
 	
 	
 	/**
-	 * Creates a new instance.
+	 * Creates a new instance with a memory budget calculated from the
+	 * available heap.
 	 * 
 	 * @param comparator
 	 *            The comparator to use for sorting.
 	 */
 	public EntitySorter(Comparator<EntityContainer> comparator) {
-		fileBasedSort = new FileBasedSort<EntityContainer>(new GenericObjectSerializationFactory(), comparator, true);
+		this(comparator, ParallelFileBasedSort.AUTOMATIC_MEMORY_BUDGET);
+	}
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param comparator
+	 *            The comparator to use for sorting.
+	 * @param memoryBudget
+	 *            The approximate number of bytes of heap to use for sorting
+	 *            in memory, or 0 to calculate it from the available heap.
+	 */
+	public EntitySorter(Comparator<EntityContainer> comparator, long memoryBudget) {
+		fileBasedSort = new ParallelFileBasedSort<EntityContainer>(
+				new GenericObjectSerializationFactory(), comparator, true, memoryBudget,
+				Runtime.getRuntime().availableProcessors(), ParallelFileBasedSort.DEFAULT_MERGE_FAN_IN);
 	}
 
 
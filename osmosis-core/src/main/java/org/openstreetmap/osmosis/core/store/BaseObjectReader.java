@@ -1,11 +1,6 @@
 // This software is released into the Public Domain.  See copying.txt for details.
 package org.openstreetmap.osmosis.core.store;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
-
-import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
-
 
 /**
  * Provides functionality common to all object reader implementations.
@@ -16,7 +11,8 @@ public abstract class BaseObjectReader implements ObjectReader {
 	
 	private StoreReader storeReader;
 	private StoreClassRegister storeClassRegister;
-	private StoreableConstructorCache constructorCache;
+	private Class<?> lastClass;
+	private StoreableFactory lastFactory;
 	
 	
 	/**
@@ -30,8 +26,6 @@ public abstract class BaseObjectReader implements ObjectReader {
 	public BaseObjectReader(StoreReader storeReader, StoreClassRegister storeClassRegister) {
 		this.storeReader = storeReader;
 		this.storeClassRegister = storeClassRegister;
-		
-		constructorCache = new StoreableConstructorCache();
 	}
 	
 	
@@ -55,28 +49,17 @@ public abstract class BaseObjectReader implements ObjectReader {
 	 */
 	public Storeable readObject() {
 		Class<?> clazz;
-		Constructor<?> constructor;
 		
+		storeReader.beginObject();
 		clazz = readClassFromIdentifier(storeReader, storeClassRegister);
 		
-		constructor = constructorCache.getStoreableConstructor(clazz);
-		
-		try {
-			return (Storeable) constructor.newInstance(new Object[] {storeReader, storeClassRegister});
-			
-		} catch (IllegalAccessException e) {
-			throw new OsmosisRuntimeException(
-					"The class " + constructor.getDeclaringClass().getName() + " could not be instantiated.", e);
-		} catch (InvocationTargetException e) {
-			Throwable cause = e.getCause();
-			if (cause instanceof EndOfStoreException) {
-				throw (EndOfStoreException) cause; 
-			}
-			throw new OsmosisRuntimeException(
-					"The class " + constructor.getDeclaringClass().getName() + " could not be instantiated.", e);
-		} catch (InstantiationException e) {
-			throw new OsmosisRuntimeException(
-					"The class " + constructor.getDeclaringClass().getName() + " could not be instantiated.", e);
+		// Streams are usually dominated by a single class so only the most
+		// recent factory is kept to avoid a registry lookup per object.
+		if (clazz != lastClass) {
+			lastFactory = StoreableFactoryRegistry.getFactory(clazz);
+			lastClass = clazz;
 		}
+		
+		return lastFactory.create(storeReader, storeClassRegister);
 	}
 }
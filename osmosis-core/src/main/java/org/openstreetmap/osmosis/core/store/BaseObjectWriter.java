@@ -11,7 +11,6 @@ public abstract class BaseObjectWriter implements ObjectWriter {
 	
 	private StoreWriter storeWriter;
 	private StoreClassRegister storeClassRegister;
-	private StoreableConstructorCache constructorCache;
 	
 	
 	/**
@@ -25,8 +24,6 @@ public abstract class BaseObjectWriter implements ObjectWriter {
 	protected BaseObjectWriter(StoreWriter storeWriter, StoreClassRegister storeClassRegister) {
 		this.storeWriter = storeWriter;
 		this.storeClassRegister = storeClassRegister;
-		
-		constructorCache = new StoreableConstructorCache();
 	}
 	
 	
@@ -56,9 +53,10 @@ public abstract class BaseObjectWriter implements ObjectWriter {
 		
 		clazz = value.getClass();
 		
-		// Verify that the class has the appropriate constructor for de-serialization.
-		constructorCache.getStoreableConstructor(clazz);
+		// Verify that the class can be created during de-serialization.
+		StoreableFactoryRegistry.getFactory(clazz);
 		
+		storeWriter.beginObject();
 		writeClassIdentifier(storeWriter, storeClassRegister, clazz);
 		value.store(storeWriter, storeClassRegister);
 	}
@@ -12,7 +12,7 @@ import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
  */
 public class BaseStoreClassRegister implements StoreClassRegister {
 	private Map<Class<?>, Byte> classToByteMap;
-	private Map<Byte, Class<?>> byteToClassMap;
+	private Class<?>[] byteToClassArray;
 	
 	
 	/**
@@ -20,7 +20,7 @@ public class BaseStoreClassRegister implements StoreClassRegister {
 	 */
 	public BaseStoreClassRegister() {
 		classToByteMap = new HashMap<Class<?>, Byte>();
-		byteToClassMap = new HashMap<Byte, Class<?>>();
+		byteToClassArray = new Class<?>[256];
 	}
 	
 	
@@ -50,7 +50,7 @@ public class BaseStoreClassRegister implements StoreClassRegister {
 		objId = Byte.valueOf(id);
 		
 		classToByteMap.put(clazz, objId);
-		byteToClassMap.put(objId, clazz);
+		byteToClassArray[id & 0xFF] = clazz;
 	}
 	
 	
@@ -58,15 +58,14 @@ public class BaseStoreClassRegister implements StoreClassRegister {
 	 * {@inheritDoc}
 	 */
 	public void storeIdentifierForClass(StoreWriter storeWriter, Class<?> clazz) {
-		byte id;
+		Byte id;
 		
-		if (classToByteMap.containsKey(clazz)) {
-			id = classToByteMap.get(clazz).byteValue();
-		} else {
+		id = classToByteMap.get(clazz);
+		if (id == null) {
 			throw new OsmosisRuntimeException("The class " + clazz + " is not supported by this store class register.");
 		}
 		
-		storeWriter.writeByte(id);
+		storeWriter.writeByte(id.byteValue());
 	}
 	
 	
@@ -75,17 +74,17 @@ public class BaseStoreClassRegister implements StoreClassRegister {
 	 */
 	public Class<?> getClassFromIdentifier(StoreReader storeReader) {
 		byte classId;
-		Byte idObj;
+		Class<?> clazz;
 		
 		classId = storeReader.readByte();
 		
-		idObj = Byte.valueOf(classId);
+		clazz = byteToClassArray[classId & 0xFF];
 		
-		if (!byteToClassMap.containsKey(idObj)) {
+		if (clazz == null) {
 			throw new OsmosisRuntimeException(
 					"Byte " + classId + " is not a recognised class identifier, the data stream may be corrupt.");
 		}
 		
-		return byteToClassMap.get(idObj);
+		return clazz;
 	}
 }
@@ -4,7 +4,6 @@ package org.openstreetmap.osmosis.core.store;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.RandomAccessFile;
 import java.util.LinkedList;
 import java.util.List;
@@ -17,7 +16,7 @@ import java.util.List;
  * 
  * @author Brett Henderson
  */
-public class BufferedRandomAccessFileInputStream extends InputStream {
+public class BufferedRandomAccessFileInputStream extends SeekableInputStream {
 	
 	private static final int DEFAULT_BUFFER_COUNT = 4;
 	private static final int DEFAULT_INITIAL_BUFFER_SIZE = 16;
@@ -113,13 +112,9 @@ public class BufferedRandomAccessFileInputStream extends InputStream {
 	
 	
 	/**
-	 * Seeks to the specified position in the file.
-	 * 
-	 * @param pos
-	 *            The position within the file to seek to.
-	 * @throws IOException
-	 *             if an error occurs during seeking.
+	 * {@inheritDoc}
 	 */
+	@Override
 	public void seek(long pos) throws IOException {
 		BufferedReader reader;
 		
@@ -151,24 +146,18 @@ public class BufferedRandomAccessFileInputStream extends InputStream {
 	
 	
 	/**
-	 * Returns the length of the data file.
-	 * 
-	 * @return The file length in bytes.
-	 * @throws IOException
-	 *             if an error occurs during the length operation.
+	 * {@inheritDoc}
 	 */
+	@Override
 	public long length() throws IOException {
 		return randomFile.length();
 	}
 	
 	
 	/**
-	 * Returns the current read position in the data file.
-	 * 
-	 * @return The current file offset in bytes.
-	 * @throws IOException
-	 *             if an error occurs during the position operation.
+	 * {@inheritDoc}
 	 */
+	@Override
 	public long position() throws IOException {
 		return readerList.get(0).position();
 	}
@@ -53,7 +53,32 @@ public class ChunkedObjectStore<T extends Storeable> implements Completable {
 			String storageFilePrefix,
 			String indexFilePrefix,
 			boolean useCompression) {
-		objectStore = new SegmentedObjectStore<T>(serializationFactory, storageFilePrefix, useCompression);
+		this(serializationFactory, storageFilePrefix, indexFilePrefix, useCompression, StorageFormat.Standard);
+	}
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param serializationFactory
+	 *            The factory defining the object serialisation implementation.
+	 * @param storageFilePrefix
+	 *            The prefix of the storage file name.
+	 * @param indexFilePrefix
+	 *            The prefix of the index file name.
+	 * @param useCompression
+	 *            If true, the storage file will be compressed.
+	 * @param storageFormat
+	 *            The binary format to write objects in.
+	 */
+	public ChunkedObjectStore(
+			ObjectSerializationFactory serializationFactory,
+			String storageFilePrefix,
+			String indexFilePrefix,
+			boolean useCompression,
+			StorageFormat storageFormat) {
+		objectStore = new SegmentedObjectStore<T>(
+				serializationFactory, storageFilePrefix, useCompression, storageFormat);
 		
 		indexStore = new IndexStore<Long, LongLongIndexElement>(
 			LongLongIndexElement.class,
@@ -0,0 +1,239 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.store;
+
+import java.io.DataInput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+
+
+/**
+ * Reads data from a store written by a {@link CompactStoreWriter}.
+ */
+public class CompactStoreReader implements StoreReader {
+	/**
+	 * The approximate memory consumed by each string table entry in addition
+	 * to its characters. This covers the string and character array headers
+	 * and the table reference.
+	 */
+	private static final int STRING_TABLE_ENTRY_OVERHEAD = 56;
+	/**
+	 * An upper bound on the memory consumed by the string table of a single
+	 * reader.
+	 */
+	static final long MAX_STRING_TABLE_MEMORY =
+		(long) CompactStoreWriter.MAX_STRING_TABLE_SIZE * STRING_TABLE_ENTRY_OVERHEAD
+		+ 2L * CompactStoreWriter.MAX_STRING_TABLE_CHARACTERS;
+	
+	private DataInput input;
+	private char[] characters;
+	private long[] previousLongs;
+	private int[] previousIntegers;
+	private int longSlot;
+	private int integerSlot;
+	private List<String> stringTable;
+	private int stringTableCharacters;
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param input
+	 *            The source to read all data from.
+	 */
+	public CompactStoreReader(DataInput input) {
+		this.input = input;
+		
+		characters = new char[64];
+		previousLongs = new long[CompactStoreWriter.LONG_SLOT_COUNT];
+		previousIntegers = new int[CompactStoreWriter.INTEGER_SLOT_COUNT];
+		stringTable = new ArrayList<String>();
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void beginObject() {
+		longSlot = 0;
+		integerSlot = 0;
+	}
+	
+	
+	private byte readRawByte(String valueType) {
+		try {
+			return input.readByte();
+		} catch (EOFException e) {
+			throw new EndOfStoreException(
+					"End of stream was reached while attempting to read " + valueType + " from the store.", e);
+		} catch (IOException e) {
+			throw new OsmosisRuntimeException("Unable to read " + valueType + " from the store.", e);
+		}
+	}
+	
+	
+	private long readVarLong(String valueType) {
+		long result;
+		int shift;
+		byte b;
+		
+		result = 0;
+		shift = 0;
+		do {
+			if (shift >= 64) {
+				throw new OsmosisRuntimeException("Malformed variable length " + valueType + " in the store.");
+			}
+			b = readRawByte(valueType);
+			result |= ((long) (b & 0x7F)) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		
+		return result;
+	}
+	
+	
+	private long readSignedVarLong(String valueType) {
+		long value;
+		
+		value = readVarLong(valueType);
+		
+		return (value >>> 1) ^ -(value & 1);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean readBoolean() {
+		return readRawByte("a boolean") != 0;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public byte readByte() {
+		return readRawByte("a byte");
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public char readCharacter() {
+		return (char) readVarLong("a character");
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int readInteger() {
+		int slot;
+		int value;
+		
+		slot = integerSlot;
+		if (integerSlot < CompactStoreWriter.INTEGER_SLOT_COUNT - 1) {
+			integerSlot++;
+		}
+		
+		value = previousIntegers[slot] + (int) readSignedVarLong("an integer");
+		previousIntegers[slot] = value;
+		
+		return value;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long readLong() {
+		int slot;
+		long value;
+		
+		slot = longSlot;
+		if (longSlot < CompactStoreWriter.LONG_SLOT_COUNT - 1) {
+			longSlot++;
+		}
+		
+		value = previousLongs[slot] + readSignedVarLong("a long");
+		previousLongs[slot] = value;
+		
+		return value;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double readDouble() {
+		try {
+			return input.readDouble();
+		} catch (EOFException e) {
+			throw new EndOfStoreException(
+					"End of stream was reached while attempting to read a double from the store.", e);
+		} catch (IOException e) {
+			throw new OsmosisRuntimeException("Unable to read a double from the store.", e);
+		}
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String readString() {
+		long tableReference;
+		int length;
+		String value;
+		
+		tableReference = readVarLong("a String");
+		if (tableReference > 0) {
+			if (tableReference > stringTable.size()) {
+				throw new OsmosisRuntimeException("String table index " + (tableReference - 1) + " does not exist.");
+			}
+			return stringTable.get((int) tableReference - 1);
+		}
+		
+		length = (int) readVarLong("a String");
+		if (characters.length < length) {
+			characters = new char[length];
+		}
+		
+		for (int i = 0; i < length; i++) {
+			int b = readRawByte("a String") & 0xFF;
+			
+			if (b < 0x80) {
+				characters[i] = (char) b;
+			} else if ((b & 0xE0) == 0xC0) {
+				characters[i] = (char) (((b & 0x1F) << 6) | (readRawByte("a String") & 0x3F));
+			} else {
+				int b2 = readRawByte("a String") & 0x3F;
+				int b3 = readRawByte("a String") & 0x3F;
+				
+				characters[i] = (char) (((b & 0x0F) << 12) | (b2 << 6) | b3);
+			}
+		}
+		
+		value = new String(characters, 0, length);
+		
+		if (length <= CompactStoreWriter.MAX_TABLE_STRING_LENGTH
+				&& stringTable.size() < CompactStoreWriter.MAX_STRING_TABLE_SIZE
+				&& stringTableCharacters + length <= CompactStoreWriter.MAX_STRING_TABLE_CHARACTERS) {
+			stringTable.add(value);
+			stringTableCharacters += length;
+		}
+		
+		return value;
+	}
+}
@@ -0,0 +1,261 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.store;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+
+
+/**
+ * Writes data to a store in a compact variable length format. Data written by
+ * this class must be read by a {@link CompactStoreReader} which sees exactly
+ * the same sequence of values.
+ * <p>
+ * Integers and longs are delta encoded against the value written at the same
+ * position of the previous object, and written as zig-zag variable length
+ * integers. Values beyond the last tracked position share it, which means long
+ * lists such as way nodes are delta encoded against their predecessor. Strings
+ * are de-duplicated through a string table which is built as the stream is
+ * written, subsequent occurrences of a string are written as a table index.
+ * <p>
+ * The encoding of each value depends on all values written before it, so a
+ * stream can only be read from the point at which this writer was created.
+ * This makes it unsuitable for stores supporting random access.
+ */
+public class CompactStoreWriter implements StoreWriter {
+	/**
+	 * The number of long positions within an object that are tracked for
+	 * delta encoding.
+	 */
+	static final int LONG_SLOT_COUNT = 3;
+	/**
+	 * The number of integer positions within an object that are tracked for
+	 * delta encoding.
+	 */
+	static final int INTEGER_SLOT_COUNT = 8;
+	/**
+	 * The maximum number of strings held in the string table.
+	 */
+	static final int MAX_STRING_TABLE_SIZE = 16384;
+	/**
+	 * The maximum total length of the strings held in the string table. This
+	 * and the string count bound the memory consumed by each reader, which
+	 * matters when many stores are read at once such as during a merge.
+	 */
+	static final int MAX_STRING_TABLE_CHARACTERS = 262144;
+	/**
+	 * The maximum length of strings that will be added to the string table.
+	 */
+	static final int MAX_TABLE_STRING_LENGTH = 64;
+	
+	private DataOutput output;
+	private byte[] buffer;
+	private long[] previousLongs;
+	private int[] previousIntegers;
+	private int longSlot;
+	private int integerSlot;
+	private Map<String, Integer> stringTable;
+	private int stringTableCharacters;
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param output
+	 *            The destination to write all data to.
+	 */
+	public CompactStoreWriter(DataOutput output) {
+		this.output = output;
+		
+		buffer = new byte[256];
+		previousLongs = new long[LONG_SLOT_COUNT];
+		previousIntegers = new int[INTEGER_SLOT_COUNT];
+		stringTable = new HashMap<String, Integer>();
+	}
+	
+	
+	/**
+	 * {@inheritDoc} Subsequent values are delta encoded against those at the
+	 * same position of the previous object.
+	 */
+	@Override
+	public void beginObject() {
+		longSlot = 0;
+		integerSlot = 0;
+	}
+	
+	
+	private void flushBuffer(int length) {
+		try {
+			output.write(buffer, 0, length);
+		} catch (IOException e) {
+			throw new OsmosisRuntimeException("Unable to write data to the store.", e);
+		}
+	}
+	
+	
+	private int putVarLong(long value, int initialOffset) {
+		long remaining;
+		int offset;
+		
+		remaining = value;
+		offset = initialOffset;
+		while ((remaining & ~0x7FL) != 0) {
+			buffer[offset++] = (byte) ((remaining & 0x7F) | 0x80);
+			remaining >>>= 7;
+		}
+		buffer[offset++] = (byte) remaining;
+		
+		return offset;
+	}
+	
+	
+	private void writeVarLong(long value) {
+		flushBuffer(putVarLong(value, 0));
+	}
+	
+	
+	private void writeSignedVarLong(long value) {
+		writeVarLong((value << 1) ^ (value >> 63));
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void writeBoolean(boolean value) {
+		if (value) {
+			writeByte((byte) 1);
+		} else {
+			writeByte((byte) 0);
+		}
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void writeByte(byte value) {
+		try {
+			output.writeByte(value);
+		} catch (IOException e) {
+			throw new OsmosisRuntimeException("Unable to write byte " + value + " to the store.", e);
+		}
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void writeCharacter(char value) {
+		writeVarLong(value);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void writeInteger(int value) {
+		int slot;
+		
+		slot = integerSlot;
+		if (integerSlot < INTEGER_SLOT_COUNT - 1) {
+			integerSlot++;
+		}
+		
+		// The delta may overflow an int, that is fine because the reader
+		// overflows identically.
+		writeSignedVarLong(value - previousIntegers[slot]);
+		previousIntegers[slot] = value;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void writeLong(long value) {
+		int slot;
+		
+		slot = longSlot;
+		if (longSlot < LONG_SLOT_COUNT - 1) {
+			longSlot++;
+		}
+		
+		writeSignedVarLong(value - previousLongs[slot]);
+		previousLongs[slot] = value;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void writeDouble(double value) {
+		try {
+			output.writeDouble(value);
+		} catch (IOException e) {
+			throw new OsmosisRuntimeException("Unable to write double " + value + " to the store.", e);
+		}
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void writeString(String value) {
+		Integer tableIndex;
+		int length;
+		int offset;
+		
+		tableIndex = stringTable.get(value);
+		if (tableIndex != null) {
+			writeVarLong(tableIndex.intValue() + 1);
+			return;
+		}
+		
+		length = value.length();
+		if (length <= MAX_TABLE_STRING_LENGTH && stringTable.size() < MAX_STRING_TABLE_SIZE
+				&& stringTableCharacters + length <= MAX_STRING_TABLE_CHARACTERS) {
+			stringTable.put(value, stringTable.size());
+			stringTableCharacters += length;
+		}
+		
+		// Each character requires at most 3 bytes, plus a marker byte and the
+		// length.
+		if (buffer.length < length * 3 + 11) {
+			buffer = new byte[length * 3 + 11];
+		}
+		
+		// A zero marker identifies a literal string rather than a table index.
+		buffer[0] = 0;
+		offset = putVarLong(length, 1);
+		
+		// Characters are written in the same modified UTF-8 encoding as
+		// DataOutput.writeUTF, but without its 64KB length limit.
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			
+			if (c >= 0x0001 && c <= 0x007F) {
+				buffer[offset++] = (byte) c;
+			} else if (c <= 0x07FF) {
+				buffer[offset++] = (byte) (0xC0 | ((c >> 6) & 0x1F));
+				buffer[offset++] = (byte) (0x80 | (c & 0x3F));
+			} else {
+				buffer[offset++] = (byte) (0xE0 | ((c >> 12) & 0x0F));
+				buffer[offset++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				buffer[offset++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+		
+		flushBuffer(offset);
+	}
+}
@@ -28,6 +28,15 @@ public class DataInputStoreReader implements StoreReader {
 	}
 	
 	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void beginObject() {
+		// Values are read independently of previous objects.
+	}
+	
+	
 	/**
 	 * {@inheritDoc}
 	 */
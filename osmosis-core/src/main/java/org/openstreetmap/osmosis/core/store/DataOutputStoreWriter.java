@@ -27,6 +27,14 @@ public class DataOutputStoreWriter implements StoreWriter {
 	}
 	
 	
+	/**
+	 * {@inheritDoc}
+	 */
+	public void beginObject() {
+		// Values are written independently of previous objects.
+	}
+	
+	
 	/**
 	 * {@inheritDoc}
 	 */
@@ -1,16 +1,17 @@
 // This software is released into the Public Domain.  See copying.txt for details.
 package org.openstreetmap.osmosis.core.store;
 
-import java.util.ArrayDeque;
-import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Map;
-import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.metrics.PipelineMetrics;
+import org.openstreetmap.osmosis.core.metrics.PostboxMetrics;
 import org.openstreetmap.osmosis.core.task.v0_6.Initializable;
 
 
@@ -67,6 +68,16 @@ import org.openstreetmap.osmosis.core.task.v0_6.Initializable;
  * </ul>
  * </p>
  * <p>
+ * Data is passed between the threads in batches using a fixed size ring of
+ * pre-allocated batch arrays. The input thread fills the batch at the tail of
+ * the ring and publishes it once full, the output thread consumes batches from
+ * the head of the ring. The ring indexes are the only state shared while data
+ * is flowing so no locks are taken during put and getNext calls. A thread
+ * finding the ring full or empty spins briefly, then yields, then parks for
+ * progressively longer periods until the other thread catches up. Locks are
+ * only used for the initialize, complete and release handshakes.
+ * </p>
+ * <p>
  * This class may be re-used multiple times. For this to work, both input and
  * output methods must be called an equal number of times or deadlock will
  * occur. Re-use may occur after input or output threads fail, however in all
@@ -77,24 +88,47 @@ import org.openstreetmap.osmosis.core.task.v0_6.Initializable;
  *            The type of data held in the postbox.
  */
 public class DataPostbox<T> implements Initializable {
-	private int bufferCapacity;
+	/**
+	 * The number of times a waiting thread checks for progress before it
+	 * begins yielding.
+	 */
+	private static final int SPIN_LIMIT = 100;
+	
+	/**
+	 * The number of times a waiting thread yields before it begins parking.
+	 */
+	private static final int YIELD_LIMIT = 200;
+	
+	/**
+	 * The longest period a waiting thread will park for before checking for
+	 * progress again.
+	 */
+	private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+	
 	private int chunkSize;
+	private int slotCount;
 	private Lock lock;
 	private Condition dataWaitCondition;
 	private Map<String, Object> processingMetaData;
-	private Collection<T> centralQueue;
-	private Collection<T> inboundQueue;
-	private Queue<T> outboundQueue;
+	private Object[][] slots;
+	private int[] slotSizes;
+	private AtomicLong head;
+	private AtomicLong tail;
+	private int inputSlotSize;
+	private Object[] outputBatch;
+	private int outputBatchSize;
+	private int outputBatchPosition;
 	private boolean inputInitialized;
 	private boolean outputInitialized;
-	private boolean inputComplete;
+	private volatile boolean inputComplete;
 	private boolean outputComplete;
 	private boolean inputReleased;
 	private boolean outputReleased;
 	private boolean inputExit;
 	private boolean outputExit;
-	private boolean inputOkay;
-	private boolean outputOkay;
+	private volatile boolean inputOkay;
+	private volatile boolean outputOkay;
+	private PostboxMetrics metrics;
 
 
 	/**
@@ -109,14 +143,16 @@ public class DataPostbox<T> implements Initializable {
 			throw new OsmosisRuntimeException("A capacity of " + capacity + " is invalid, must be greater than 0.");
 		}
 
-		this.bufferCapacity = capacity;
-
 		// Use a chunk size one quarter of total buffer size. This is a magic
 		// number but performance isn't highly sensitive to this parameter.
-		chunkSize = bufferCapacity / 4;
+		chunkSize = capacity / 4;
 		if (chunkSize <= 0) {
 			chunkSize = 1;
 		}
+		
+		// There must be at least two slots to allow both threads to work on
+		// separate batches concurrently.
+		slotCount = Math.max(2, capacity / chunkSize);
 
 		// Create the thread synchronisation primitives.
 		lock = new ReentrantLock();
@@ -139,14 +175,24 @@ public class DataPostbox<T> implements Initializable {
 
 		// Create the inter-thread data transfer queues.
 		initializeQueues();
+
+		// Fill level and blocking time are only measured if enabled.
+		if (PipelineMetrics.getInstance() != null) {
+			metrics = PipelineMetrics.getInstance().createPostboxMetrics(capacity);
+		}
 	}
 
 
 	private void initializeQueues() {
 		// Create buffer objects.
-		centralQueue = new ArrayList<T>();
-		inboundQueue = new ArrayList<T>();
-		outboundQueue = new ArrayDeque<T>();
+		slots = new Object[slotCount][chunkSize];
+		slotSizes = new int[slotCount];
+		head = new AtomicLong(0);
+		tail = new AtomicLong(0);
+		inputSlotSize = 0;
+		outputBatch = null;
+		outputBatchSize = 0;
+		outputBatchPosition = 0;
 	}
 
 
@@ -198,61 +244,142 @@ public class DataPostbox<T> implements Initializable {
 
 
 	/**
-	 * Adds a group of objects to the central queue ready for consumption by the
-	 * receiver.
+	 * Waits for a short period of time as part of a backoff sequence. The
+	 * thread spins, then yields, then parks for increasing periods as the
+	 * number of attempts grows.
 	 * 
-	 * @param o
-	 *            The objects to be added.
+	 * @param attempt
+	 *            The number of times the caller has already waited.
 	 */
-	private void populateCentralQueue() {
-		lock.lock();
-
-		try {
-			checkForOutputErrors();
-
-			// Wait until the currently posted data is cleared.
-			while (centralQueue.size() >= bufferCapacity) {
-				waitForUpdate();
-				checkForOutputErrors();
+	private void backoff(int attempt) {
+		if (attempt < SPIN_LIMIT) {
+			// Busy wait.
+			return;
+		} else if (attempt < YIELD_LIMIT) {
+			Thread.yield();
+		} else {
+			long parkNanos;
+			
+			parkNanos = Math.min(MAX_PARK_NANOS, 1000L << Math.min(20, (attempt - YIELD_LIMIT)));
+			LockSupport.parkNanos(parkNanos);
+			
+			if (Thread.interrupted()) {
+				throw new OsmosisRuntimeException("Thread was interrupted.");
 			}
-
-			// Post the new data.
-			centralQueue.addAll(inboundQueue);
-			inboundQueue.clear();
-			signalUpdate();
-
-		} finally {
-			lock.unlock();
 		}
 	}
-
-
+	
+	
 	/**
-	 * Empties the contents of the central queue into the outbound queue.
+	 * Waits until the slot at the tail of the ring is free for writing by the
+	 * input thread.
 	 */
-	private void consumeCentralQueue() {
-		lock.lock();
-
+	private void waitForFreeSlot() {
+		long slotIndex;
+		
+		long waitStartNanos;
+		
+		slotIndex = tail.get();
+		
+		waitStartNanos = 0;
+		for (int attempt = 0; (slotIndex - head.get()) >= slotCount; attempt++) {
+			if (attempt == 0 && metrics != null) {
+				waitStartNanos = System.nanoTime();
+			}
+			
+			checkForOutputErrors();
+			backoff(attempt);
+		}
+		
+		if (waitStartNanos != 0) {
+			metrics.recordPutBlocked(System.nanoTime() - waitStartNanos);
+		}
+	}
+	
+	
+	/**
+	 * Makes the batch at the tail of the ring available to the output thread.
+	 */
+	private void publishSlot() {
+		long slotIndex;
+		
+		slotIndex = tail.get();
+		
+		slotSizes[(int) (slotIndex % slotCount)] = inputSlotSize;
+		if (metrics != null) {
+			metrics.recordPublish(inputSlotSize);
+		}
+		inputSlotSize = 0;
+		
+		// This is an ordered write so all batch contents will be visible to
+		// the output thread before the new tail.
+		tail.lazySet(slotIndex + 1);
+	}
+	
+	
+	/**
+	 * Obtains the next batch from the head of the ring for the output thread,
+	 * waiting for one to be published if necessary.
+	 * 
+	 * @return True if a batch is available, false if input is complete and all
+	 *         data has been consumed.
+	 */
+	private boolean takeSlot() {
+		long slotIndex;
+		
+		long waitStartNanos;
+		
+		slotIndex = head.get();
+		
+		waitStartNanos = 0;
 		try {
-			checkForInputErrors();
-
-			// Wait until data is available.
-			while (!((centralQueue.size() > 0) || inputComplete)) {
-				waitForUpdate();
+			for (int attempt = 0; slotIndex >= tail.get(); attempt++) {
+				if (attempt == 0 && metrics != null) {
+					waitStartNanos = System.nanoTime();
+				}
+				
+				// The complete flag is written after the final batch is
+				// published so the tail must be checked again before giving up.
+				if (inputComplete) {
+					if (slotIndex >= tail.get()) {
+						return false;
+					}
+					break;
+				}
+				
 				checkForInputErrors();
+				backoff(attempt);
 			}
-
-			outboundQueue.addAll(centralQueue);
-			centralQueue.clear();
-
-			signalUpdate();
-
+			
 		} finally {
-			lock.unlock();
+			if (waitStartNanos != 0) {
+				metrics.recordTakeBlocked(System.nanoTime() - waitStartNanos);
+			}
+		}
+		
+		outputBatch = slots[(int) (slotIndex % slotCount)];
+		outputBatchSize = slotSizes[(int) (slotIndex % slotCount)];
+		outputBatchPosition = 0;
+		
+		return true;
+	}
+	
+	
+	/**
+	 * Returns the current output batch to the input thread for re-use.
+	 */
+	private void releaseSlot() {
+		if (metrics != null) {
+			metrics.recordRelease(outputBatchSize);
 		}
+		outputBatch = null;
+		
+		// This is an ordered write so the cleared batch contents will be
+		// visible to the input thread before the new head.
+		head.lazySet(head.get() + 1);
 	}
-
-
+	
+	
 	/**
 	 * {@inheritDoc}
 	 */
@@ -297,11 +424,41 @@ public class DataPostbox<T> implements Initializable {
 			throw new OsmosisRuntimeException("initialize has not been called");
 		}
 
-		inboundQueue.add(o);
+		// Wait for a free batch when starting a new one.
+		if (inputSlotSize == 0) {
+			waitForFreeSlot();
+		}
+		
+		slots[(int) (tail.get() % slotCount)][inputSlotSize++] = o;
+		
+		if (inputSlotSize >= chunkSize) {
+			publishSlot();
+		}
+	}
+
 
-		if (inboundQueue.size() >= chunkSize) {
-			populateCentralQueue();
+	/**
+	 * Adds a new object to the postbox if it can be done without waiting for
+	 * the output thread.
+	 * 
+	 * @param o
+	 *            The object to be added.
+	 * @return True if the object was added, false if the postbox is full.
+	 */
+	public boolean offer(T o) {
+		if (!inputInitialized) {
+			throw new OsmosisRuntimeException("initialize has not been called");
+		}
+
+		// A new batch can only be started if a free slot is available.
+		if (inputSlotSize == 0 && (tail.get() - head.get()) >= slotCount) {
+			checkForOutputErrors();
+			return false;
 		}
+		
+		put(o);
+		
+		return true;
 	}
 
 
@@ -314,11 +471,16 @@ public class DataPostbox<T> implements Initializable {
 			throw new OsmosisRuntimeException("initialize has not been called");
 		}
 
+		// Publish any partially filled batch.
+		if (inputSlotSize > 0) {
+			publishSlot();
+		}
+		
 		lock.lock();
 
 		try {
-			populateCentralQueue();
-
+			checkForOutputErrors();
+			
 			inputComplete = true;
 
 			signalUpdate();
@@ -427,20 +589,15 @@ public class DataPostbox<T> implements Initializable {
 	 * @return True if data is available.
 	 */
 	public boolean hasNext() {
-		int queueSize;
-
 		if (!outputInitialized) {
 			throw new OsmosisRuntimeException("outputInitialize has not been called");
 		}
 
-		queueSize = outboundQueue.size();
-
-		if (queueSize <= 0) {
-			consumeCentralQueue();
-			queueSize = outboundQueue.size();
+		if (outputBatch != null) {
+			return true;
 		}
-
-		return queueSize > 0;
+		
+		return takeSlot();
 	}
 
 
@@ -452,9 +609,17 @@ public class DataPostbox<T> implements Initializable {
 	 */
 	public T getNext() {
 		if (hasNext()) {
-			T result;
-
-			result = outboundQueue.remove();
+			@SuppressWarnings("unchecked")
+			T result = (T) outputBatch[outputBatchPosition];
+			
+			// Clear the reference so the object can be garbage collected
+			// independently of the batch.
+			outputBatch[outputBatchPosition++] = null;
+			
+			// Hand the batch back as soon as it has been emptied.
+			if (outputBatchPosition >= outputBatchSize) {
+				releaseSlot();
+			}
 
 			return result;
 
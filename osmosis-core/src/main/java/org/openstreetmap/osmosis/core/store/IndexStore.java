@@ -8,7 +8,7 @@ import java.util.Iterator;
 import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
 import org.openstreetmap.osmosis.core.lifecycle.Completable;
 import org.openstreetmap.osmosis.core.lifecycle.ReleasableIterator;
-import org.openstreetmap.osmosis.core.sort.common.FileBasedSort;
+import org.openstreetmap.osmosis.core.sort.common.ParallelFileBasedSort;
 
 
 /**
@@ -26,6 +26,7 @@ public class IndexStore<K, T extends IndexElement<K>> implements Completable {
 	private ObjectSerializationFactory serializationFactory;
 	private RandomAccessObjectStore<T> indexStore;
 	private Comparator<K> ordering;
+	private boolean longKeys;
 	private String tempFilePrefix;
 	private File indexFile;
 	private K previousKey;
@@ -51,6 +52,7 @@ public class IndexStore<K, T extends IndexElement<K>> implements Completable {
 		this.indexFile = indexFile;
 		
 		serializationFactory = new SingleClassObjectSerializationFactory(elementType);
+		longKeys = isLongKeyed(elementType, ordering);
 		
 		indexStore = new RandomAccessObjectStore<T>(serializationFactory, indexFile);
 		
@@ -78,6 +80,7 @@ public class IndexStore<K, T extends IndexElement<K>> implements Completable {
 		this.tempFilePrefix = tempFilePrefix;
 		
 		serializationFactory = new SingleClassObjectSerializationFactory(elementType);
+		longKeys = isLongKeyed(elementType, ordering);
 		
 		indexStore = new RandomAccessObjectStore<T>(serializationFactory, tempFilePrefix);
 		
@@ -88,6 +91,15 @@ public class IndexStore<K, T extends IndexElement<K>> implements Completable {
 	}
 	
 	
+	/**
+	 * Determines if elements begin with a long key in natural long order,
+	 * these indexes can be searched without loading elements.
+	 */
+	private static boolean isLongKeyed(Class<?> elementType, Comparator<?> ordering) {
+		return LongLongIndexElement.class.equals(elementType) && ordering instanceof ComparableComparator;
+	}
+	
+	
 	/**
 	 * Writes the specified element to the index.
 	 * 
@@ -148,7 +160,7 @@ public class IndexStore<K, T extends IndexElement<K>> implements Completable {
 	 * @return A store reader.
 	 */
 	public IndexStoreReader<K, T> createReader() {
-		return new IndexStoreReader<K, T>(indexStore.createReader(), ordering);
+		return new IndexStoreReader<K, T>(indexStore.createReader(), ordering, longKeys);
 	}
 	
 	
@@ -162,11 +174,11 @@ public class IndexStore<K, T extends IndexElement<K>> implements Completable {
 			if (!sorted) {
 				final Comparator<K> keyOrdering = ordering;
 				
-				FileBasedSort<T> fileSort;
+				ParallelFileBasedSort<T> fileSort;
 				
 				// Create a new file based sort instance ordering elements by their
 				// identifiers.
-				fileSort = new FileBasedSort<T>(
+				fileSort = new ParallelFileBasedSort<T>(
 					serializationFactory,
 					new Comparator<T>() {
 						private Comparator<K> elementKeyOrdering = keyOrdering;
@@ -214,6 +226,7 @@ public class IndexStore<K, T extends IndexElement<K>> implements Completable {
 					} finally {
 						sortIterator.release();
 					}
+					indexStore.complete();
 					
 				} finally {
 					fileSort.release();
@@ -31,6 +31,7 @@ public class IndexStoreReader<K, T extends IndexElement<K>> implements Releasabl
 	private long binarySearchElementCount;
 	private int binarySearchDepth;
 	private List<ComparisonElement<K>> binarySearchCache;
+	private boolean longKeys;
 	
 	
 	/**
@@ -43,8 +44,29 @@ public class IndexStoreReader<K, T extends IndexElement<K>> implements Releasabl
 	 *            ordering.
 	 */
 	public IndexStoreReader(RandomAccessObjectStoreReader<T> indexStoreReader, Comparator<K> ordering) {
+		this(indexStoreReader, ordering, false);
+	}
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param indexStoreReader
+	 *            Provides access to the index data.
+	 * @param ordering
+	 *            A comparator that sorts index elements desired index key
+	 *            ordering.
+	 * @param longKeys
+	 *            If true, every element begins with its key written as a long
+	 *            and the ordering is the natural ordering of longs. This
+	 *            allows searches to compare keys directly within the index
+	 *            file instead of loading an element at every step.
+	 */
+	public IndexStoreReader(
+			RandomAccessObjectStoreReader<T> indexStoreReader, Comparator<K> ordering, boolean longKeys) {
 		this.indexStoreReader = indexStoreReader;
 		this.ordering = ordering;
+		this.longKeys = longKeys;
 		
 		elementDetailsInitialized = false;
 	}
@@ -87,6 +109,37 @@ public class IndexStoreReader<K, T extends IndexElement<K>> implements Releasabl
 	}
 	
 	
+	/**
+	 * Finds the index of the first element with a key greater than or equal
+	 * to the search key by comparing keys directly within the index file.
+	 * 
+	 * @param searchKey
+	 *            The key to search for.
+	 * @return The index of the matching element, or the element count if all
+	 *         keys are lower.
+	 */
+	private long getLongKeyIndex(long searchKey) {
+		long intervalBegin;
+		long intervalEnd;
+		
+		intervalBegin = 0;
+		intervalEnd = elementCount;
+		while (intervalBegin < intervalEnd) {
+			long intervalMid;
+			
+			intervalMid = (intervalBegin + intervalEnd) >>> 1;
+			
+			if (indexStoreReader.getLong(intervalMid * elementSize) < searchKey) {
+				intervalBegin = intervalMid + 1;
+			} else {
+				intervalEnd = intervalMid;
+			}
+		}
+		
+		return intervalBegin;
+	}
+	
+	
 	/**
 	 * Returns the index of the first index element with a key greater than or
 	 * equal to the specified key.
@@ -107,6 +160,10 @@ public class IndexStoreReader<K, T extends IndexElement<K>> implements Releasabl
 			initializeElementDetails();
 		}
 		
+		if (longKeys) {
+			return getLongKeyIndex(((Long) searchKey).longValue());
+		}
+		
 		intervalBegin = -1;
 		intervalEnd = binarySearchElementCount;
 		currentSearchDepth = 0;
@@ -0,0 +1,387 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Reads a file through memory mapped buffers. Seeking is free and reads are
+ * served directly from the operating system page cache without system calls.
+ * Files larger than 2GB are mapped as several segments because a single
+ * buffer is limited to 2GB.
+ * <p>
+ * The file is mapped when the stream is created, data appended to the file
+ * afterwards will not be visible.
+ * <p>
+ * The JDK provides no public way of removing a mapping, it is otherwise only
+ * removed when the buffer is garbage collected. Until then the file cannot be
+ * deleted on some platforms, notably Windows, and its address space remains
+ * in use. Where the JVM provides a cleaner for direct buffers the mapping is
+ * removed explicitly on close, callers should check
+ * {@link #isUnmapSupported()} and fall back to a stream not relying on
+ * mappings if it isn't available. Closing must not occur while another
+ * thread is reading from the stream.
+ */
+public class MappedFileInputStream extends SeekableInputStream {
+	
+	private static final Logger LOG = Logger.getLogger(MappedFileInputStream.class.getName());
+	
+	private static final int DEFAULT_SEGMENT_SHIFT = 30;
+	
+	private static final BufferUnmapper UNMAPPER = createUnmapper();
+	
+	private int segmentShift;
+	private long segmentMask;
+	private ByteBuffer[] segments;
+	private long length;
+	private long position;
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param file
+	 *            The file to be read.
+	 * @throws IOException
+	 *             if the file cannot be opened or mapped.
+	 */
+	public MappedFileInputStream(File file) throws IOException {
+		this(file, DEFAULT_SEGMENT_SHIFT);
+	}
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param file
+	 *            The file to be read.
+	 * @param segmentShift
+	 *            The base 2 logarithm of the size of each mapped segment.
+	 *            Must be between 3 and 30.
+	 * @throws IOException
+	 *             if the file cannot be opened or mapped.
+	 */
+	public MappedFileInputStream(File file, int segmentShift) throws IOException {
+		RandomAccessFile randomFile;
+		
+		if (segmentShift < 3 || segmentShift > 30) {
+			throw new IllegalArgumentException("Segment shift " + segmentShift + " must be between 3 and 30.");
+		}
+		
+		this.segmentShift = segmentShift;
+		segmentMask = (1L << segmentShift) - 1;
+		
+		randomFile = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel;
+			int segmentCount;
+			
+			channel = randomFile.getChannel();
+			length = channel.size();
+			
+			segmentCount = (int) ((length + segmentMask) >>> segmentShift);
+			segments = new ByteBuffer[segmentCount];
+			for (int i = 0; i < segmentCount; i++) {
+				long segmentStart;
+				
+				segmentStart = ((long) i) << segmentShift;
+				segments[i] = channel.map(
+						FileChannel.MapMode.READ_ONLY,
+						segmentStart,
+						Math.min(segmentMask + 1, length - segmentStart));
+			}
+			
+		} finally {
+			// Mapped buffers remain valid after the file is closed.
+			randomFile.close();
+		}
+		
+		position = 0;
+	}
+	
+	
+	/**
+	 * Indicates whether mappings can be removed explicitly when the stream is
+	 * closed. If not, mappings and the underlying file remain in use until
+	 * the buffers are garbage collected.
+	 * 
+	 * @return True if close unmaps the file.
+	 */
+	public static boolean isUnmapSupported() {
+		return UNMAPPER != null;
+	}
+	
+	
+	private static BufferUnmapper createUnmapper() {
+		// Java 9 and later expose the buffer cleaner through sun.misc.Unsafe.
+		try {
+			Class<?> unsafeClass;
+			Field unsafeField;
+			
+			unsafeClass = Class.forName("sun.misc.Unsafe");
+			unsafeField = unsafeClass.getDeclaredField("theUnsafe");
+			unsafeField.setAccessible(true);
+			
+			return new BufferUnmapper(
+					unsafeClass.getMethod("invokeCleaner", ByteBuffer.class), unsafeField.get(null), null);
+			
+		} catch (Exception e) {
+			LOG.log(Level.FINER, "Unsafe.invokeCleaner is not available.", e);
+		}
+		
+		// Earlier versions expose the cleaner on the direct buffer itself.
+		try {
+			return new BufferUnmapper(
+					Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner"),
+					null,
+					Class.forName("sun.misc.Cleaner").getMethod("clean"));
+			
+		} catch (Exception e) {
+			LOG.log(Level.FINE, "Mapped buffers cannot be unmapped explicitly in this JVM.", e);
+		}
+		
+		return null;
+	}
+	
+	
+	private void checkOpen() throws IOException {
+		if (segments == null) {
+			throw new IOException("The stream has been closed.");
+		}
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int read() throws IOException {
+		checkOpen();
+		
+		if (position >= length) {
+			return -1;
+		}
+		
+		return segments[(int) (position >>> segmentShift)].get((int) (position++ & segmentMask)) & 0xFF;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int offset;
+		int remaining;
+		
+		checkOpen();
+		
+		if (len == 0) {
+			return 0;
+		}
+		if (position >= length) {
+			return -1;
+		}
+		
+		offset = off;
+		remaining = (int) Math.min(len, length - position);
+		while (remaining > 0) {
+			ByteBuffer segment;
+			int segmentOffset;
+			int count;
+			
+			segment = segments[(int) (position >>> segmentShift)];
+			segmentOffset = (int) (position & segmentMask);
+			count = Math.min(remaining, segment.limit() - segmentOffset);
+			
+			segment.position(segmentOffset);
+			segment.get(b, offset, count);
+			
+			offset += count;
+			remaining -= count;
+			position += count;
+		}
+		
+		return offset - off;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long skip(long n) throws IOException {
+		long count;
+		
+		checkOpen();
+		
+		count = Math.max(0, Math.min(n, length - position));
+		position += count;
+		
+		return count;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int available() throws IOException {
+		checkOpen();
+		
+		return (int) Math.min(Integer.MAX_VALUE, Math.max(0, length - position));
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void seek(long pos) throws IOException {
+		checkOpen();
+		
+		if (pos < 0) {
+			throw new IOException("Cannot seek to negative position " + pos + ".");
+		}
+		
+		position = pos;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long length() throws IOException {
+		checkOpen();
+		
+		return length;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long position() throws IOException {
+		checkOpen();
+		
+		return position;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long readLong(long pos) throws IOException {
+		int segmentOffset;
+		ByteBuffer segment;
+		
+		checkOpen();
+		
+		if (pos < 0 || pos + 8 > length) {
+			return super.readLong(pos);
+		}
+		
+		segment = segments[(int) (pos >>> segmentShift)];
+		segmentOffset = (int) (pos & segmentMask);
+		
+		// Values spanning two segments must be assembled a byte at a time.
+		if (segmentOffset + 8 > segment.limit()) {
+			return super.readLong(pos);
+		}
+		
+		return segment.getLong(segmentOffset);
+	}
+	
+	
+	/**
+	 * Releases the mapped buffers. If supported by the JVM the mappings are
+	 * removed immediately, otherwise they are removed when the buffers are
+	 * garbage collected.
+	 */
+	@Override
+	public void close() {
+		ByteBuffer[] closedSegments;
+		
+		// Clear the reference first so that reads fail instead of accessing
+		// unmapped memory.
+		closedSegments = segments;
+		segments = null;
+		
+		if (closedSegments == null || UNMAPPER == null) {
+			return;
+		}
+		
+		for (int i = 0; i < closedSegments.length; i++) {
+			try {
+				UNMAPPER.unmap(closedSegments[i]);
+			} catch (Exception e) {
+				// The mapping will be removed by the garbage collector instead.
+				LOG.log(Level.WARNING, "Unable to unmap file segment.", e);
+			}
+			closedSegments[i] = null;
+		}
+	}
+	
+	
+	/**
+	 * Unmaps buffers by reflectively invoking a JVM specific cleaner.
+	 */
+	private static class BufferUnmapper {
+		private Method cleanerMethod;
+		private Object cleanerTarget;
+		private Method cleanMethod;
+		
+		
+		/**
+		 * Creates a new instance.
+		 * 
+		 * @param cleanerMethod
+		 *            The method to invoke with the buffer.
+		 * @param cleanerTarget
+		 *            The object to invoke the cleaner method on, or null to
+		 *            invoke it on the buffer itself.
+		 * @param cleanMethod
+		 *            The method to invoke on the result of the cleaner method,
+		 *            or null if the cleaner method unmaps the buffer directly.
+		 */
+		BufferUnmapper(Method cleanerMethod, Object cleanerTarget, Method cleanMethod) {
+			this.cleanerMethod = cleanerMethod;
+			this.cleanerTarget = cleanerTarget;
+			this.cleanMethod = cleanMethod;
+		}
+		
+		
+		/**
+		 * Unmaps the buffer. The buffer must not be accessed afterwards.
+		 * 
+		 * @param buffer
+		 *            The mapped buffer.
+		 * @throws Exception
+		 *             if the buffer cannot be unmapped.
+		 */
+		public void unmap(ByteBuffer buffer) throws Exception {
+			Object cleaner;
+			
+			if (cleanerTarget != null) {
+				cleaner = cleanerMethod.invoke(cleanerTarget, buffer);
+			} else {
+				cleaner = cleanerMethod.invoke(buffer);
+			}
+			
+			if (cleanMethod != null && cleaner != null) {
+				cleanMethod.invoke(cleaner);
+			}
+		}
+	}
+}
@@ -42,9 +42,33 @@ public class PersistentIterator<T extends Storeable> implements ReleasableIterat
 			ReleasableIterator<T> sourceIterator,
 			String storageFilePrefix,
 			boolean useCompression) {
+		this(serializationFactory, sourceIterator, storageFilePrefix, useCompression, StorageFormat.Standard);
+	}
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param serializationFactory
+	 *            The factory defining the object serialisation implementation.
+	 * @param sourceIterator
+	 *            The source of data.
+	 * @param storageFilePrefix
+	 *            The prefix of the storage file.
+	 * @param useCompression
+	 *            If true, the storage file will be compressed.
+	 * @param storageFormat
+	 *            The binary format to write objects in.
+	 */
+	public PersistentIterator(
+			ObjectSerializationFactory serializationFactory,
+			ReleasableIterator<T> sourceIterator,
+			String storageFilePrefix,
+			boolean useCompression,
+			StorageFormat storageFormat) {
 		this.sourceIterator = sourceIterator;
 		
-		store = new SimpleObjectStore<T>(serializationFactory, storageFilePrefix, useCompression);
+		store = new SimpleObjectStore<T>(serializationFactory, storageFilePrefix, useCompression, storageFormat);
 		
 		initialized = false;
 	}
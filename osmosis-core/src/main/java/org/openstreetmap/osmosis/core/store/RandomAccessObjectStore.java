@@ -5,7 +5,6 @@ import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.logging.Level;
@@ -173,7 +172,10 @@ public class RandomAccessObjectStore<T extends Storeable> implements Completable
 	/**
 	 * Creates a new reader capable of accessing the contents of this store. The
 	 * reader must be explicitly released when no longer required. Readers must
-	 * be released prior to this store.
+	 * be released prior to this store. The store file is memory mapped by the
+	 * reader so random reads don't require system calls. If the JVM cannot
+	 * unmap files explicitly, buffered file reads are used instead so that
+	 * the file can be deleted when the store is released.
 	 * 
 	 * @return A store reader.
 	 */
@@ -181,9 +183,13 @@ public class RandomAccessObjectStore<T extends Storeable> implements Completable
 		initializeReadingStage();
 		
 		try {
-			BufferedRandomAccessFileInputStream randomFileReader;
+			SeekableInputStream randomFileReader;
 			
-			randomFileReader = new BufferedRandomAccessFileInputStream(storageFile);
+			if (MappedFileInputStream.isUnmapSupported()) {
+				randomFileReader = new MappedFileInputStream(storageFile);
+			} else {
+				randomFileReader = new BufferedRandomAccessFileInputStream(storageFile);
+			}
 			
 			return new RandomAccessObjectStoreReader<T>(
 				randomFileReader,
@@ -192,7 +198,7 @@ public class RandomAccessObjectStore<T extends Storeable> implements Completable
 								new DataInputStream(randomFileReader)), storeClassRegister)
 			);
 			
-		} catch (FileNotFoundException e) {
+		} catch (IOException e) {
 			throw new OsmosisRuntimeException(
 					"Unable to create object stream reading from file " + storageFile + ".", e);
 		}
@@ -24,7 +24,7 @@ import org.openstreetmap.osmosis.core.lifecycle.Releasable;
 public class RandomAccessObjectStoreReader<T> implements Releasable {
 	private static final Logger LOG = Logger.getLogger(RandomAccessObjectStoreReader.class.getName());
 	
-	private BufferedRandomAccessFileInputStream randomFile;
+	private SeekableInputStream randomFile;
 	private ObjectReader objectReader;
 	
 	
@@ -36,7 +36,7 @@ public class RandomAccessObjectStoreReader<T> implements Releasable {
 	 * @param objectReader
 	 *            The reader containing the objects to be deserialized.
 	 */
-	public RandomAccessObjectStoreReader(BufferedRandomAccessFileInputStream randomFile, ObjectReader objectReader) {
+	public RandomAccessObjectStoreReader(SeekableInputStream randomFile, ObjectReader objectReader) {
 		this.randomFile = randomFile;
 		this.objectReader = objectReader;
 	}
@@ -100,6 +100,25 @@ public class RandomAccessObjectStoreReader<T> implements Releasable {
 	}
 	
 	
+	/**
+	 * Reads a long value directly from the specified location in the storage
+	 * file without deserializing an object. This allows fixed width records
+	 * to be inspected cheaply, for example to compare keys during a search.
+	 * 
+	 * @param offset
+	 *            The file offset of the value.
+	 * @return The value.
+	 */
+	public long getLong(long offset) {
+		try {
+			return randomFile.readLong(offset);
+		} catch (IOException e) {
+			throw new OsmosisRuntimeException(
+					"Unable to read a long at position " + offset + " in the storage file.", e);
+		}
+	}
+	
+	
 	/**
 	 * Iterates over the entire stream of data.
 	 * 
@@ -0,0 +1,74 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.store;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+
+/**
+ * An input stream over a file that supports moving the read position to
+ * arbitrary offsets.
+ */
+public abstract class SeekableInputStream extends InputStream {
+	
+	/**
+	 * Seeks to the specified position in the file.
+	 * 
+	 * @param pos
+	 *            The position within the file to seek to.
+	 * @throws IOException
+	 *             if an error occurs during seeking.
+	 */
+	public abstract void seek(long pos) throws IOException;
+	
+	
+	/**
+	 * Returns the length of the data file.
+	 * 
+	 * @return The file length in bytes.
+	 * @throws IOException
+	 *             if an error occurs during the length operation.
+	 */
+	public abstract long length() throws IOException;
+	
+	
+	/**
+	 * Returns the current read position in the data file.
+	 * 
+	 * @return The current file offset in bytes.
+	 * @throws IOException
+	 *             if an error occurs during the position operation.
+	 */
+	public abstract long position() throws IOException;
+	
+	
+	/**
+	 * Reads a big endian long value at the specified position in the file. The
+	 * read position of the stream is undefined after this call.
+	 * 
+	 * @param pos
+	 *            The position of the value within the file.
+	 * @return The value.
+	 * @throws IOException
+	 *             if an error occurs during reading.
+	 */
+	public long readLong(long pos) throws IOException {
+		long result;
+		
+		seek(pos);
+		
+		result = 0;
+		for (int i = 0; i < 8; i++) {
+			int b;
+			
+			b = read();
+			if (b < 0) {
+				throw new EOFException("End of file was reached while reading a long at position " + pos + ".");
+			}
+			result = (result << 8) | b;
+		}
+		
+		return result;
+	}
+}
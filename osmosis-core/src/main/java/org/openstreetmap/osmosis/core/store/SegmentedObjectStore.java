@@ -12,12 +12,10 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.zip.GZIPOutputStream;
 
 import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
 import org.openstreetmap.osmosis.core.lifecycle.Completable;
 import org.openstreetmap.osmosis.core.lifecycle.ReleasableIterator;
-import org.openstreetmap.osmosis.core.util.MultiMemberGZIPInputStream;
 
 
 /**
@@ -49,6 +47,8 @@ public class SegmentedObjectStore<T extends Storeable> implements Completable {
 	private ObjectWriter objectWriter;
 	private boolean chunkActive; 
 	private boolean useCompression;
+	private StorageCompression compression;
+	private StorageFormat storageFormat;
 	private long fileSize;
 	
 	
@@ -60,13 +60,36 @@ public class SegmentedObjectStore<T extends Storeable> implements Completable {
 	 * @param storageFilePrefix
 	 *            The prefix of the storage file.
 	 * @param useCompression
-	 *            If true, the storage file will be compressed.
+	 *            If true, the storage file will be compressed using the
+	 *            default {@link StorageCompression} method.
 	 */
 	public SegmentedObjectStore(
 			ObjectSerializationFactory serializationFactory, String storageFilePrefix, boolean useCompression) {
+		this(serializationFactory, storageFilePrefix, useCompression, StorageFormat.Standard);
+	}
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param serializationFactory
+	 *            The factory defining the object serialisation implementation.
+	 * @param storageFilePrefix
+	 *            The prefix of the storage file.
+	 * @param useCompression
+	 *            If true, the storage file will be compressed using the
+	 *            default {@link StorageCompression} method.
+	 * @param storageFormat
+	 *            The binary format to write objects in.
+	 */
+	public SegmentedObjectStore(ObjectSerializationFactory serializationFactory, String storageFilePrefix,
+			boolean useCompression, StorageFormat storageFormat) {
 		this.serializationFactory = serializationFactory;
 		this.storageFilePrefix = storageFilePrefix;
 		this.useCompression = useCompression;
+		this.storageFormat = storageFormat;
+		
+		compression = StorageCompression.getDefault();
 		
 		storeClassRegister = new DynamicStoreClassRegister();
 		
@@ -111,13 +134,13 @@ public class SegmentedObjectStore<T extends Storeable> implements Completable {
 				if (useCompression) {
 					dataOutStream = new DataOutputStream(
 							new BufferedOutputStream(
-									new GZIPOutputStream(arrayOutStream), 65536));
+									compression.createOutputStream(arrayOutStream), 65536));
 				} else {
 					dataOutStream = new DataOutputStream(new BufferedOutputStream(arrayOutStream, 65536));
 				}
 				
 				objectWriter = serializationFactory.createObjectWriter(
-						new DataOutputStoreWriter(dataOutStream), storeClassRegister);
+						storageFormat.createStoreWriter(dataOutStream), storeClassRegister);
 				
 				chunkActive = true;
 				
@@ -274,7 +297,7 @@ public class SegmentedObjectStore<T extends Storeable> implements Completable {
 				if (useCompression) {
 					dataInStream = new DataInputStream(
 							new BufferedInputStream(
-									new MultiMemberGZIPInputStream(fileStream), 65536));
+									compression.createInputStream(fileStream), 65536));
 				} else {
 					dataInStream = new DataInputStream(new BufferedInputStream(fileStream, 65536));
 				}
@@ -288,7 +311,7 @@ public class SegmentedObjectStore<T extends Storeable> implements Completable {
 			fileStream = null;
 			
 			objectReader = serializationFactory.createObjectReader(
-					new DataInputStoreReader(dataInStream), storeClassRegister);
+					storageFormat.createStoreReader(dataInStream), storeClassRegister);
 			
 			if (maxObjectCount >= 0) {
 				return new SubObjectStreamIterator<T>(dataInStream, objectReader, maxObjectCount);
@@ -11,12 +11,10 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.zip.GZIPOutputStream;
 
 import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
 import org.openstreetmap.osmosis.core.lifecycle.Completable;
 import org.openstreetmap.osmosis.core.lifecycle.ReleasableIterator;
-import org.openstreetmap.osmosis.core.util.MultiMemberGZIPInputStream;
 
 
 /**
@@ -40,6 +38,8 @@ public class SimpleObjectStore<T extends Storeable> implements Completable {
 	private StoreClassRegister storeClassRegister;
 	private ObjectWriter objectWriter;
 	private boolean useCompression;
+	private StorageCompression compression;
+	private StorageFormat storageFormat;
 	
 	
 	/**
@@ -50,13 +50,36 @@ public class SimpleObjectStore<T extends Storeable> implements Completable {
 	 * @param storageFilePrefix
 	 *            The prefix of the storage file.
 	 * @param useCompression
-	 *            If true, the storage file will be compressed.
+	 *            If true, the storage file will be compressed using the
+	 *            default {@link StorageCompression} method.
 	 */
 	public SimpleObjectStore(
 			ObjectSerializationFactory serializationFactory, String storageFilePrefix, boolean useCompression) {
+		this(serializationFactory, storageFilePrefix, useCompression, StorageFormat.Standard);
+	}
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param serializationFactory
+	 *            The factory defining the object serialisation implementation.
+	 * @param storageFilePrefix
+	 *            The prefix of the storage file.
+	 * @param useCompression
+	 *            If true, the storage file will be compressed using the
+	 *            default {@link StorageCompression} method.
+	 * @param storageFormat
+	 *            The binary format to write objects in.
+	 */
+	public SimpleObjectStore(ObjectSerializationFactory serializationFactory, String storageFilePrefix,
+			boolean useCompression, StorageFormat storageFormat) {
 		this.serializationFactory = serializationFactory;
 		this.storageFilePrefix = storageFilePrefix;
 		this.useCompression = useCompression;
+		this.storageFormat = storageFormat;
+		
+		compression = StorageCompression.getDefault();
 		
 		storeClassRegister = new DynamicStoreClassRegister();
 		
@@ -85,14 +108,14 @@ public class SimpleObjectStore<T extends Storeable> implements Completable {
 				
 				if (useCompression) {
 					dataOutStream = new DataOutputStream(
-							new BufferedOutputStream(new GZIPOutputStream(fileOutStream), 65536));
+							new BufferedOutputStream(compression.createOutputStream(fileOutStream), 65536));
 				} else {
 					dataOutStream = new DataOutputStream(
 							new BufferedOutputStream(fileOutStream, 65536));
 				}
 				
 				objectWriter = serializationFactory.createObjectWriter(
-						new DataOutputStoreWriter(dataOutStream), storeClassRegister);
+						storageFormat.createStoreWriter(dataOutStream), storeClassRegister);
 				
 				stage = StorageStage.Add;
 				
@@ -126,6 +149,18 @@ public class SimpleObjectStore<T extends Storeable> implements Completable {
 		}
 		
 		// If we're in the add stage, close the output streams.
+		closeOutput();
+		
+		// Data is available.
+		return true;
+	}
+	
+	
+	/**
+	 * Closes the output streams if the store is currently in the add stage and
+	 * moves it to the reading stage.
+	 */
+	private void closeOutput() {
 		if (stage.compareTo(StorageStage.Add) == 0) {
 			try {
 				dataOutStream.close();
@@ -140,9 +175,21 @@ public class SimpleObjectStore<T extends Storeable> implements Completable {
 			
 			stage = StorageStage.Reading;
 		}
+	}
+	
+	
+	/**
+	 * Returns the number of bytes written to the underlying storage file. The
+	 * result only includes buffered data once the store has been completed.
+	 * 
+	 * @return The size of the storage file in bytes.
+	 */
+	public long getStorageSize() {
+		if (file == null) {
+			return 0;
+		}
 		
-		// Data is available.
-		return true;
+		return file.length();
 	}
 	
 	
@@ -173,7 +220,7 @@ public class SimpleObjectStore<T extends Storeable> implements Completable {
 			try {
 				if (useCompression) {
 					dataInStream = new DataInputStream(
-							new BufferedInputStream(new MultiMemberGZIPInputStream(fileStream), 65536));
+							new BufferedInputStream(compression.createInputStream(fileStream), 65536));
 				} else {
 					dataInStream = new DataInputStream(
 							new BufferedInputStream(fileStream, 65536));
@@ -190,7 +237,7 @@ public class SimpleObjectStore<T extends Storeable> implements Completable {
 			return new ObjectStreamIterator<T>(
 					dataInStream,
 					serializationFactory.createObjectReader(
-							new DataInputStoreReader(dataInStream), storeClassRegister));
+							storageFormat.createStoreReader(dataInStream), storeClassRegister));
 			
 		} finally {
 			if (fileStream != null) {
@@ -210,7 +257,8 @@ public class SimpleObjectStore<T extends Storeable> implements Completable {
 	 */
 	@Override
 	public void complete() {
-		// Do nothing.
+		// Flush all data to the storage file so that it may be read by another thread.
+		closeOutput();
 	}
 	
 	
@@ -0,0 +1,226 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.store;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.lifecycle.Releasable;
+
+
+/**
+ * Holds groups of objects in a temporary file on behalf of a consumer that
+ * cannot keep up with its producer. Each group is written as a single record
+ * and can be read back in any order using the position returned when it was
+ * written.
+ * <p>
+ * One thread may write groups while another reads groups already written. The
+ * position of each group must be passed from the writing thread to the
+ * reading thread in a way that guarantees visibility, such as through a
+ * {@link DataPostbox}. This also makes the class identifiers registered while
+ * writing a group visible to the reading thread. Space is not reclaimed until
+ * the file is released.
+ * 
+ * @param <T>
+ *            The object type to be stored.
+ */
+public class SpillFile<T extends Storeable> implements Releasable {
+	
+	private static final Logger LOG = Logger.getLogger(SpillFile.class.getName());
+	
+	private ObjectSerializationFactory serializationFactory;
+	private StorageFormat storageFormat;
+	private String tempFilePrefix;
+	private File file;
+	private RandomAccessFile randomFile;
+	private FileChannel channel;
+	private long fileSize;
+	private ByteArrayOutputStream arrayOutStream;
+	private StoreClassRegister storeClassRegister;
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param serializationFactory
+	 *            The factory defining the object serialisation implementation.
+	 * @param storageFormat
+	 *            The binary format to write objects in. Each group is written
+	 *            as a separate stream so the compact format may be used.
+	 * @param tempFilePrefix
+	 *            The prefix of the temporary file.
+	 */
+	public SpillFile(
+			ObjectSerializationFactory serializationFactory, StorageFormat storageFormat, String tempFilePrefix) {
+		this.serializationFactory = serializationFactory;
+		this.storageFormat = storageFormat;
+		this.tempFilePrefix = tempFilePrefix;
+		
+		arrayOutStream = new ByteArrayOutputStream();
+		storeClassRegister = new DynamicStoreClassRegister();
+	}
+	
+	
+	private void open() {
+		try {
+			file = File.createTempFile(tempFilePrefix, null);
+			randomFile = new RandomAccessFile(file, "rw");
+			channel = randomFile.getChannel();
+			
+		} catch (IOException e) {
+			throw new OsmosisRuntimeException("Unable to create temporary file " + file + ".", e);
+		}
+	}
+	
+	
+	/**
+	 * Writes a group of objects to the end of the file. This may only be
+	 * called by a single thread.
+	 * 
+	 * @param objects
+	 *            The objects to be written.
+	 * @return The position of the group within the file.
+	 */
+	public long write(List<T> objects) {
+		ObjectWriter objectWriter;
+		DataOutputStream dataOutStream;
+		ByteBuffer buffer;
+		long position;
+		
+		if (channel == null) {
+			open();
+		}
+		
+		arrayOutStream.reset();
+		dataOutStream = new DataOutputStream(arrayOutStream);
+		objectWriter = serializationFactory.createObjectWriter(
+				storageFormat.createStoreWriter(dataOutStream), storeClassRegister);
+		try {
+			dataOutStream.writeInt(0);
+			dataOutStream.writeInt(objects.size());
+			for (T object : objects) {
+				objectWriter.writeObject(object);
+			}
+			dataOutStream.flush();
+			
+		} catch (IOException e) {
+			throw new OsmosisRuntimeException("Unable to serialise objects to be written to " + file + ".", e);
+		}
+		
+		// The record length excluding the length field itself is written
+		// into the space reserved for it.
+		buffer = ByteBuffer.wrap(arrayOutStream.toByteArray());
+		buffer.putInt(0, buffer.limit() - 4);
+		
+		position = fileSize;
+		try {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer, position + buffer.position());
+			}
+		} catch (IOException e) {
+			throw new OsmosisRuntimeException("Unable to write to file " + file + ".", e);
+		}
+		fileSize += buffer.limit();
+		
+		return position;
+	}
+	
+	
+	private void readFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new OsmosisRuntimeException("Unexpected end of file " + file + " at position " + position + ".");
+			}
+		}
+		buffer.flip();
+	}
+	
+	
+	/**
+	 * Reads a group of objects previously written to the file.
+	 * 
+	 * @param position
+	 *            The position of the group returned when it was written.
+	 * @return The objects.
+	 */
+	public List<T> read(long position) {
+		ByteBuffer lengthBuffer;
+		ByteBuffer recordBuffer;
+		DataInputStream dataInStream;
+		ObjectReader objectReader;
+		int objectCount;
+		List<T> objects;
+		
+		try {
+			lengthBuffer = ByteBuffer.allocate(4);
+			readFully(lengthBuffer, position);
+			recordBuffer = ByteBuffer.allocate(lengthBuffer.getInt());
+			readFully(recordBuffer, position + 4);
+			
+			dataInStream = new DataInputStream(new ByteArrayInputStream(recordBuffer.array()));
+			objectReader = serializationFactory.createObjectReader(
+					storageFormat.createStoreReader(dataInStream), storeClassRegister);
+			
+			objectCount = dataInStream.readInt();
+			objects = new ArrayList<T>(objectCount);
+			for (int i = 0; i < objectCount; i++) {
+				@SuppressWarnings("unchecked")
+				T object = (T) objectReader.readObject();
+				
+				objects.add(object);
+			}
+			
+			return objects;
+			
+		} catch (IOException e) {
+			throw new OsmosisRuntimeException("Unable to read from file " + file + " at position " + position + ".", e);
+		}
+	}
+	
+	
+	/**
+	 * Gets the number of bytes written to the file.
+	 * 
+	 * @return The file size.
+	 */
+	public long getSize() {
+		return fileSize;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void release() {
+		if (randomFile != null) {
+			try {
+				randomFile.close();
+			} catch (IOException e) {
+				// We cannot throw an exception within a release statement.
+				LOG.log(Level.WARNING, "Unable to close file " + file + ".", e);
+			}
+			randomFile = null;
+			channel = null;
+		}
+		
+		if (file != null) {
+			if (!file.delete()) {
+				// We cannot throw an exception within a release statement.
+				LOG.warning("Unable to delete file " + file);
+			}
+			file = null;
+		}
+	}
+}
@@ -0,0 +1,141 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.store;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.util.Lz4InputStream;
+import org.openstreetmap.osmosis.core.util.Lz4OutputStream;
+import org.openstreetmap.osmosis.core.util.MultiMemberGZIPInputStream;
+
+
+/**
+ * Defines the compression methods available for temporary stores. All methods
+ * allow the output of several streams to be concatenated and read back as a
+ * single stream which allows stores to begin reading at chunk boundaries.
+ */
+public enum StorageCompression {
+	/**
+	 * Gzip compression at the default level. This produces the smallest
+	 * files but is slow.
+	 */
+	Gzip,
+	
+	/**
+	 * Gzip compression at the fastest level.
+	 */
+	FastGzip,
+	
+	/**
+	 * LZ4 compression. This produces larger files than gzip but is several
+	 * times faster.
+	 */
+	Lz4;
+	
+	
+	private static volatile StorageCompression defaultCompression = Gzip;
+	
+	
+	/**
+	 * Gets the compression method used by stores that are created with
+	 * compression enabled.
+	 * 
+	 * @return The compression method.
+	 */
+	public static StorageCompression getDefault() {
+		return defaultCompression;
+	}
+	
+	
+	/**
+	 * Sets the compression method used by stores that are created with
+	 * compression enabled. Existing stores are not affected.
+	 * 
+	 * @param compression
+	 *            The compression method.
+	 */
+	public static void setDefault(StorageCompression compression) {
+		defaultCompression = compression;
+	}
+	
+	
+	/**
+	 * Returns the compression method with the specified name. Names are not
+	 * case sensitive.
+	 * 
+	 * @param name
+	 *            The name of the compression method.
+	 * @return The compression method.
+	 */
+	public static StorageCompression parse(String name) {
+		for (StorageCompression compression : values()) {
+			if (compression.name().equalsIgnoreCase(name)) {
+				return compression;
+			}
+		}
+		
+		throw new OsmosisRuntimeException("Storage compression method \"" + name + "\" is not recognised.");
+	}
+	
+	
+	/**
+	 * Wraps a stream with a compressing stream.
+	 * 
+	 * @param out
+	 *            The stream to write compressed data to.
+	 * @return The compressing stream.
+	 * @throws IOException
+	 *             if the stream cannot be initialised.
+	 */
+	public OutputStream createOutputStream(OutputStream out) throws IOException {
+		if (this == Lz4) {
+			return new Lz4OutputStream(out);
+		} else if (this == FastGzip) {
+			return new FastGZIPOutputStream(out);
+		} else {
+			return new GZIPOutputStream(out);
+		}
+	}
+	
+	
+	/**
+	 * Wraps a stream with a decompressing stream.
+	 * 
+	 * @param in
+	 *            The stream to read compressed data from.
+	 * @return The decompressing stream.
+	 * @throws IOException
+	 *             if the stream cannot be initialised.
+	 */
+	public InputStream createInputStream(InputStream in) throws IOException {
+		if (this == Lz4) {
+			return new Lz4InputStream(in);
+		} else {
+			return new MultiMemberGZIPInputStream(in);
+		}
+	}
+	
+	
+	/**
+	 * A gzip stream using the fastest compression level.
+	 */
+	private static class FastGZIPOutputStream extends GZIPOutputStream {
+		/**
+		 * Creates a new instance.
+		 * 
+		 * @param out
+		 *            The stream to write compressed data to.
+		 * @throws IOException
+		 *             if the stream cannot be initialised.
+		 */
+		public FastGZIPOutputStream(OutputStream out) throws IOException {
+			super(out);
+			
+			def.setLevel(Deflater.BEST_SPEED);
+		}
+	}
+}
@@ -0,0 +1,72 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.store;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+
+
+/**
+ * Defines the binary formats available for writing objects to a store.
+ */
+public enum StorageFormat {
+	/**
+	 * Writes each value in a fixed size format, strings are written in full.
+	 * Any object may be read independently of the objects before it.
+	 */
+	Standard,
+	
+	/**
+	 * Writes numeric values as variable length deltas and de-duplicates
+	 * strings. This typically requires much less space than the standard
+	 * format, but each stream must be read from its beginning.
+	 */
+	Compact;
+	
+	
+	/**
+	 * Creates a store writer for this format.
+	 * 
+	 * @param output
+	 *            The destination to write all data to.
+	 * @return The store writer.
+	 */
+	public StoreWriter createStoreWriter(DataOutput output) {
+		if (this == Compact) {
+			return new CompactStoreWriter(output);
+		} else {
+			return new DataOutputStoreWriter(output);
+		}
+	}
+	
+	
+	/**
+	 * Gets the maximum memory consumed by a store reader of this format in
+	 * addition to its stream buffers. Callers reading many stores at once can
+	 * use this to limit the number of open readers.
+	 * 
+	 * @return The maximum memory in bytes.
+	 */
+	public long getMaximumReaderMemory() {
+		if (this == Compact) {
+			return CompactStoreReader.MAX_STRING_TABLE_MEMORY;
+		} else {
+			return 0;
+		}
+	}
+	
+	
+	/**
+	 * Creates a store reader for this format.
+	 * 
+	 * @param input
+	 *            The source to read all data from.
+	 * @return The store reader.
+	 */
+	public StoreReader createStoreReader(DataInput input) {
+		if (this == Compact) {
+			return new CompactStoreReader(input);
+		} else {
+			return new DataInputStoreReader(input);
+		}
+	}
+}
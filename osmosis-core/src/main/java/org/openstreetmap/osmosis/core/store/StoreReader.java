@@ -11,6 +11,13 @@ package org.openstreetmap.osmosis.core.store;
  */
 public interface StoreReader {
 	
+	/**
+	 * Notifies the reader that a new top level object is about to be read.
+	 * This must be called at the same points the writer was notified.
+	 */
+	void beginObject();
+	
+	
 	/**
 	 * Reads a boolean from storage.
 	 * 
@@ -9,6 +9,14 @@ package org.openstreetmap.osmosis.core.store;
  * @author Brett Henderson
  */
 public interface StoreWriter {
+	/**
+	 * Notifies the writer that a new top level object is about to be written.
+	 * Writers that encode values relative to the previous object use this to
+	 * reset their position, other writers ignore it.
+	 */
+	void beginObject();
+	
+	
 	/**
 	 * Writes a boolean to storage.
 	 * 
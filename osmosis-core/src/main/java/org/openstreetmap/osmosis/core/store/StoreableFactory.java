@@ -0,0 +1,22 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.store;
+
+
+/**
+ * Creates instances of a Storeable class from a data store. Implementations
+ * allow objects to be loaded without invoking their storeable constructor
+ * through reflection.
+ */
+public interface StoreableFactory {
+	/**
+	 * Creates a new object and loads its state from the store.
+	 * 
+	 * @param sr
+	 *            The store to read state from.
+	 * @param scr
+	 *            Maintains the mapping between classes and their identifiers
+	 *            within the store.
+	 * @return The newly created object.
+	 */
+	Storeable create(StoreReader sr, StoreClassRegister scr);
+}
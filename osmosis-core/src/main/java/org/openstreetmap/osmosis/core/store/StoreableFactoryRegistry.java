@@ -0,0 +1,267 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.store;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.container.v0_6.BoundContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.ChangeContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.NodeContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.RelationContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.WayContainer;
+import org.openstreetmap.osmosis.core.database.DbFeature;
+import org.openstreetmap.osmosis.core.database.DbFeatureHistory;
+import org.openstreetmap.osmosis.core.database.DbOrderedFeature;
+import org.openstreetmap.osmosis.core.domain.v0_6.Bound;
+import org.openstreetmap.osmosis.core.domain.v0_6.CommonEntityData;
+import org.openstreetmap.osmosis.core.domain.v0_6.Node;
+import org.openstreetmap.osmosis.core.domain.v0_6.OsmUser;
+import org.openstreetmap.osmosis.core.domain.v0_6.Relation;
+import org.openstreetmap.osmosis.core.domain.v0_6.RelationMember;
+import org.openstreetmap.osmosis.core.domain.v0_6.Tag;
+import org.openstreetmap.osmosis.core.domain.v0_6.TagCollectionImpl;
+import org.openstreetmap.osmosis.core.domain.v0_6.Way;
+import org.openstreetmap.osmosis.core.domain.v0_6.WayNode;
+
+
+/**
+ * Maintains the factories used to load Storeable classes from a data store.
+ * Factories for the core domain and container classes are registered
+ * up-front. Other classes may register their own factories, any class without
+ * a registered factory is loaded through its storeable constructor using
+ * reflection.
+ */
+public final class StoreableFactoryRegistry {
+	
+	private static final Map<Class<?>, StoreableFactory> FACTORIES =
+		new ConcurrentHashMap<Class<?>, StoreableFactory>();
+	
+	
+	static {
+		registerCoreFactories();
+	}
+	
+	
+	/**
+	 * This class cannot be instantiated.
+	 */
+	private StoreableFactoryRegistry() {
+		// Do nothing.
+	}
+	
+	
+	/**
+	 * Registers the factory to be used for loading the specified class. Any
+	 * existing factory for the class is replaced.
+	 * 
+	 * @param clazz
+	 *            The class created by the factory.
+	 * @param factory
+	 *            The factory.
+	 */
+	public static void register(Class<? extends Storeable> clazz, StoreableFactory factory) {
+		FACTORIES.put(clazz, factory);
+	}
+	
+	
+	/**
+	 * Returns the factory for loading the specified class. If no factory has
+	 * been registered, a reflection based factory is created and registered.
+	 * 
+	 * @param clazz
+	 *            The class to be loaded.
+	 * @return The factory for the class.
+	 */
+	public static StoreableFactory getFactory(Class<?> clazz) {
+		StoreableFactory factory;
+		
+		factory = FACTORIES.get(clazz);
+		
+		if (factory == null) {
+			factory = new ReflectiveStoreableFactory(clazz);
+			FACTORIES.put(clazz, factory);
+		}
+		
+		return factory;
+	}
+	
+	
+	private static void registerCoreFactories() {
+		register(Node.class, new StoreableFactory() {
+			@Override
+			public Storeable create(StoreReader sr, StoreClassRegister scr) {
+				return new Node(sr, scr);
+			}
+		});
+		register(Way.class, new StoreableFactory() {
+			@Override
+			public Storeable create(StoreReader sr, StoreClassRegister scr) {
+				return new Way(sr, scr);
+			}
+		});
+		register(Relation.class, new StoreableFactory() {
+			@Override
+			public Storeable create(StoreReader sr, StoreClassRegister scr) {
+				return new Relation(sr, scr);
+			}
+		});
+		register(Bound.class, new StoreableFactory() {
+			@Override
+			public Storeable create(StoreReader sr, StoreClassRegister scr) {
+				return new Bound(sr, scr);
+			}
+		});
+		register(CommonEntityData.class, new StoreableFactory() {
+			@Override
+			public Storeable create(StoreReader sr, StoreClassRegister scr) {
+				return new CommonEntityData(sr, scr);
+			}
+		});
+		register(OsmUser.class, new StoreableFactory() {
+			@Override
+			public Storeable create(StoreReader sr, StoreClassRegister scr) {
+				return new OsmUser(sr, scr);
+			}
+		});
+		register(Tag.class, new StoreableFactory() {
+			@Override
+			public Storeable create(StoreReader sr, StoreClassRegister scr) {
+				return new Tag(sr, scr);
+			}
+		});
+		register(TagCollectionImpl.class, new StoreableFactory() {
+			@Override
+			public Storeable create(StoreReader sr, StoreClassRegister scr) {
+				return new TagCollectionImpl(sr, scr);
+			}
+		});
+		register(WayNode.class, new StoreableFactory() {
+			@Override
+			public Storeable create(StoreReader sr, StoreClassRegister scr) {
+				return new WayNode(sr, scr);
+			}
+		});
+		register(RelationMember.class, new StoreableFactory() {
+			@Override
+			public Storeable create(StoreReader sr, StoreClassRegister scr) {
+				return new RelationMember(sr, scr);
+			}
+		});
+		register(NodeContainer.class, new StoreableFactory() {
+			@Override
+			public Storeable create(StoreReader sr, StoreClassRegister scr) {
+				return new NodeContainer(sr, scr);
+			}
+		});
+		register(WayContainer.class, new StoreableFactory() {
+			@Override
+			public Storeable create(StoreReader sr, StoreClassRegister scr) {
+				return new WayContainer(sr, scr);
+			}
+		});
+		register(RelationContainer.class, new StoreableFactory() {
+			@Override
+			public Storeable create(StoreReader sr, StoreClassRegister scr) {
+				return new RelationContainer(sr, scr);
+			}
+		});
+		register(BoundContainer.class, new StoreableFactory() {
+			@Override
+			public Storeable create(StoreReader sr, StoreClassRegister scr) {
+				return new BoundContainer(sr, scr);
+			}
+		});
+		register(ChangeContainer.class, new StoreableFactory() {
+			@Override
+			public Storeable create(StoreReader sr, StoreClassRegister scr) {
+				return new ChangeContainer(sr, scr);
+			}
+		});
+		register(LongLongIndexElement.class, new StoreableFactory() {
+			@Override
+			public Storeable create(StoreReader sr, StoreClassRegister scr) {
+				return new LongLongIndexElement(sr, scr);
+			}
+		});
+		register(IntegerLongIndexElement.class, new StoreableFactory() {
+			@Override
+			public Storeable create(StoreReader sr, StoreClassRegister scr) {
+				return new IntegerLongIndexElement(sr, scr);
+			}
+		});
+		register(DbFeature.class, new StoreableFactory() {
+			@Override
+			public Storeable create(StoreReader sr, StoreClassRegister scr) {
+				return new DbFeature<Storeable>(sr, scr);
+			}
+		});
+		register(DbOrderedFeature.class, new StoreableFactory() {
+			@Override
+			public Storeable create(StoreReader sr, StoreClassRegister scr) {
+				return new DbOrderedFeature<Storeable>(sr, scr);
+			}
+		});
+		register(DbFeatureHistory.class, new StoreableFactory() {
+			@Override
+			public Storeable create(StoreReader sr, StoreClassRegister scr) {
+				return new DbFeatureHistory<Storeable>(sr, scr);
+			}
+		});
+	}
+	
+	
+	/**
+	 * Loads objects by invoking their storeable constructor through
+	 * reflection. A storeable constructor is a constructor accepting a
+	 * StoreReader and StoreClassRegister as arguments.
+	 */
+	private static class ReflectiveStoreableFactory implements StoreableFactory {
+		private Constructor<?> constructor;
+		
+		
+		/**
+		 * Creates a new instance.
+		 * 
+		 * @param clazz
+		 *            The class to be loaded.
+		 */
+		public ReflectiveStoreableFactory(Class<?> clazz) {
+			try {
+				constructor = clazz.getConstructor(StoreReader.class, StoreClassRegister.class);
+				
+			} catch (NoSuchMethodException e) {
+				throw new OsmosisRuntimeException(
+						"Class " + clazz.getName() + " does not have a constructor accepting a "
+						+ StoreReader.class.getName() + " argument, this is required for all Storeable classes.", e);
+			}
+		}
+		
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public Storeable create(StoreReader sr, StoreClassRegister scr) {
+			try {
+				return (Storeable) constructor.newInstance(new Object[] {sr, scr});
+				
+			} catch (IllegalAccessException e) {
+				throw new OsmosisRuntimeException(
+						"The class " + constructor.getDeclaringClass().getName() + " could not be instantiated.", e);
+			} catch (InvocationTargetException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof EndOfStoreException) {
+					throw (EndOfStoreException) cause; 
+				}
+				throw new OsmosisRuntimeException(
+						"The class " + constructor.getDeclaringClass().getName() + " could not be instantiated.", e);
+			} catch (InstantiationException e) {
+				throw new OsmosisRuntimeException(
+						"The class " + constructor.getDeclaringClass().getName() + " could not be instantiated.", e);
+			}
+		}
+	}
+}
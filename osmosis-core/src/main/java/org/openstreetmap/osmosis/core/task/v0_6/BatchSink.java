@@ -0,0 +1,27 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.task.v0_6;
+
+import java.util.List;
+
+import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
+
+
+/**
+ * Extends the sink interface for tasks that can accept groups of entities in
+ * a single call. Sources producing entities in blocks may pass each block
+ * through this interface to avoid the cost of a call per entity. Sources must
+ * not assume that a sink supports this interface and should fall back to
+ * calling process for each entity.
+ */
+public interface BatchSink extends Sink {
+
+	/**
+	 * Process a group of entities. This is equivalent to calling process for
+	 * each entity in turn.
+	 * 
+	 * @param entityContainers
+	 *            The entities to be processed. The sink must not retain or
+	 *            modify the list after this call returns.
+	 */
+	void processBatch(List<EntityContainer> entityContainers);
+}
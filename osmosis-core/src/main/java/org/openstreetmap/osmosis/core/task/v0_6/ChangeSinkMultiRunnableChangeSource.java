@@ -0,0 +1,21 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.task.v0_6;
+
+
+/**
+ * Defines the interface for tasks splitting change data to multiple
+ * destinations where each destination is fed by its own thread.
+ */
+public interface ChangeSinkMultiRunnableChangeSource extends ChangeSinkMultiChangeSource {
+	
+	/**
+	 * Retrieves a specific change source that can then have a change sink
+	 * attached. Each change source is run in its own thread.
+	 * 
+	 * @param index
+	 *            The index of the change source to retrieve.
+	 * @return The requested change source.
+	 */
+	@Override
+	RunnableChangeSource getChangeSource(int index);
+}
@@ -0,0 +1,21 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.task.v0_6;
+
+
+/**
+ * Defines the interface for tasks splitting data to multiple destinations
+ * where each destination is fed by its own thread.
+ */
+public interface SinkMultiRunnableSource extends SinkMultiSource {
+	
+	/**
+	 * Retrieves a specific source that can then have a sink attached. Each
+	 * source is run in its own thread.
+	 * 
+	 * @param index
+	 *            The index of the source to retrieve.
+	 * @return The requested source.
+	 */
+	@Override
+	RunnableSource getSource(int index);
+}
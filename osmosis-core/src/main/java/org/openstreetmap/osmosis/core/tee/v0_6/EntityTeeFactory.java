@@ -4,6 +4,7 @@ package org.openstreetmap.osmosis.core.tee.v0_6;
 import org.openstreetmap.osmosis.core.pipeline.common.TaskConfiguration;
 import org.openstreetmap.osmosis.core.pipeline.common.TaskManager;
 import org.openstreetmap.osmosis.core.pipeline.common.TaskManagerFactory;
+import org.openstreetmap.osmosis.core.pipeline.v0_6.SinkMultiRunnableSourceManager;
 import org.openstreetmap.osmosis.core.pipeline.v0_6.SinkMultiSourceManager;
 
 
@@ -14,7 +15,13 @@ import org.openstreetmap.osmosis.core.pipeline.v0_6.SinkMultiSourceManager;
  */
 public class EntityTeeFactory extends TaskManagerFactory {
 	private static final String ARG_OUTPUT_COUNT = "outputCount";
+	private static final String ARG_PARALLEL = "parallel";
+	private static final String ARG_BUFFER_CAPACITY = "bufferCapacity";
+	private static final String ARG_OVERFLOW = "overflow";
 	private static final int DEFAULT_OUTPUT_COUNT = 2;
+	private static final boolean DEFAULT_PARALLEL = false;
+	private static final int DEFAULT_BUFFER_CAPACITY = 10000;
+	private static final String DEFAULT_OVERFLOW = "block";
 	
 	
 	/**
@@ -23,6 +30,7 @@ public class EntityTeeFactory extends TaskManagerFactory {
 	@Override
 	protected TaskManager createTaskManagerImpl(TaskConfiguration taskConfig) {
 		int outputCount;
+		boolean parallel;
 		
 		// Get the task arguments.
 		outputCount = getIntegerArgument(
@@ -30,6 +38,22 @@ public class EntityTeeFactory extends TaskManagerFactory {
 			ARG_OUTPUT_COUNT,
 			getDefaultIntegerArgument(taskConfig, DEFAULT_OUTPUT_COUNT)
 		);
+		parallel = getBooleanArgument(taskConfig, ARG_PARALLEL, DEFAULT_PARALLEL);
+		
+		// A parallel tee runs each output in its own thread.
+		if (parallel) {
+			int bufferCapacity;
+			OverflowPolicy overflowPolicy;
+			
+			bufferCapacity = getIntegerArgument(taskConfig, ARG_BUFFER_CAPACITY, DEFAULT_BUFFER_CAPACITY);
+			overflowPolicy = OverflowPolicy.parse(getStringArgument(taskConfig, ARG_OVERFLOW, DEFAULT_OVERFLOW));
+			
+			return new SinkMultiRunnableSourceManager(
+				taskConfig.getId(),
+				new ParallelEntityTee(outputCount, bufferCapacity, overflowPolicy),
+				taskConfig.getPipeArgs()
+			);
+		}
 		
 		return new SinkMultiSourceManager(
 			taskConfig.getId(),
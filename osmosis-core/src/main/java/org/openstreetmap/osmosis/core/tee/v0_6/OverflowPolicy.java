@@ -0,0 +1,41 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.tee.v0_6;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+
+
+/**
+ * Defines how a parallel tee behaves when one of its outputs falls behind and
+ * its buffer fills up.
+ */
+public enum OverflowPolicy {
+	/**
+	 * The input waits until the output has caught up. All outputs then run at
+	 * the speed of the slowest output.
+	 */
+	Block,
+	
+	/**
+	 * Data for the output is written to a temporary file until it has caught
+	 * up. Other outputs are not slowed down but disk space is consumed.
+	 */
+	Spill;
+	
+	
+	/**
+	 * Returns the policy corresponding to the specified name.
+	 * 
+	 * @param name
+	 *            The name of the policy, case is ignored.
+	 * @return The matching policy.
+	 */
+	public static OverflowPolicy parse(String name) {
+		for (OverflowPolicy policy : values()) {
+			if (policy.name().equalsIgnoreCase(name)) {
+				return policy;
+			}
+		}
+		
+		throw new OsmosisRuntimeException("Overflow policy \"" + name + "\" is not recognised.");
+	}
+}
@@ -0,0 +1,167 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.tee.v0_6;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.container.v0_6.ChangeContainer;
+import org.openstreetmap.osmosis.core.task.v0_6.ChangeSink;
+import org.openstreetmap.osmosis.core.task.v0_6.ChangeSinkMultiRunnableChangeSource;
+import org.openstreetmap.osmosis.core.task.v0_6.RunnableChangeSource;
+
+
+/**
+ * Sends input changes to multiple output destinations, each of which runs in
+ * its own thread. Each output has its own buffer so that a slow output only
+ * delays the others once its buffer is full, and not at all if the spill
+ * policy is used. Changes are shared between all outputs rather than being
+ * copied and their entities are made read-only.
+ */
+public class ParallelChangeTee implements ChangeSinkMultiRunnableChangeSource {
+	
+	private List<BranchSource> sourceList;
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param outputCount
+	 *            The number of output destinations to write to.
+	 * @param bufferCapacity
+	 *            The number of changes to hold in memory for each output.
+	 * @param overflowPolicy
+	 *            The action to take when the buffer of an output is full.
+	 */
+	public ParallelChangeTee(int outputCount, int bufferCapacity, OverflowPolicy overflowPolicy) {
+		sourceList = new ArrayList<BranchSource>();
+		
+		for (int i = 0; i < outputCount; i++) {
+			sourceList.add(new BranchSource(new TeeBranch<ChangeContainer>(bufferCapacity, overflowPolicy)));
+		}
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public RunnableChangeSource getChangeSource(int index) {
+		if (index < 0 || index >= sourceList.size()) {
+			throw new OsmosisRuntimeException("Source index " + index
+					+ " is in the range 0 to " + (sourceList.size() - 1) + ".");
+		}
+		
+		return sourceList.get(index);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getChangeSourceCount() {
+		return sourceList.size();
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void initialize(Map<String, Object> metaData) {
+		for (BranchSource source : sourceList) {
+			source.branch.initialize(metaData);
+		}
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void process(ChangeContainer change) {
+		// The change is passed to multiple threads therefore must be made
+		// read-only to prevent them impacting each other.
+		change.getEntityContainer().getEntity().makeReadOnly();
+		
+		for (BranchSource source : sourceList) {
+			source.branch.add(change);
+		}
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void complete() {
+		for (BranchSource source : sourceList) {
+			source.branch.complete();
+		}
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void release() {
+		for (BranchSource source : sourceList) {
+			source.branch.release();
+		}
+	}
+	
+	
+	/**
+	 * Instances of this class are returned via the parent class getChangeSource
+	 * method. Each sends the data of one branch to its changeSink.
+	 */
+	private static class BranchSource implements RunnableChangeSource {
+		private TeeBranch<ChangeContainer> branch;
+		private ChangeSink changeSink;
+		
+		
+		/**
+		 * Creates a new instance.
+		 * 
+		 * @param branch
+		 *            The branch providing data.
+		 */
+		BranchSource(TeeBranch<ChangeContainer> branch) {
+			this.branch = branch;
+		}
+		
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void setChangeSink(ChangeSink changeSink) {
+			this.changeSink = changeSink;
+		}
+		
+		
+		/**
+		 * Sends all data of the branch to the changeSink.
+		 */
+		@Override
+		public void run() {
+			try {
+				changeSink.initialize(branch.outputInitialize());
+				
+				while (branch.hasNext()) {
+					changeSink.process(branch.getNext());
+				}
+				
+				changeSink.complete();
+				branch.outputComplete();
+				
+			} finally {
+				changeSink.release();
+				branch.outputRelease();
+			}
+		}
+	}
+}
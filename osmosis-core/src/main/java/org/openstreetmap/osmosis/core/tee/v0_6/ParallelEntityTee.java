@@ -0,0 +1,167 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.tee.v0_6;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
+import org.openstreetmap.osmosis.core.task.v0_6.RunnableSource;
+import org.openstreetmap.osmosis.core.task.v0_6.Sink;
+import org.openstreetmap.osmosis.core.task.v0_6.SinkMultiRunnableSource;
+
+
+/**
+ * Sends input data to multiple output destinations, each of which runs in its
+ * own thread. Each output has its own buffer so that a slow output only
+ * delays the others once its buffer is full, and not at all if the spill
+ * policy is used. Entities are made read-only and shared between all outputs
+ * rather than being copied.
+ */
+public class ParallelEntityTee implements SinkMultiRunnableSource {
+	
+	private List<BranchSource> sourceList;
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param outputCount
+	 *            The number of output destinations to write to.
+	 * @param bufferCapacity
+	 *            The number of entities to hold in memory for each output.
+	 * @param overflowPolicy
+	 *            The action to take when the buffer of an output is full.
+	 */
+	public ParallelEntityTee(int outputCount, int bufferCapacity, OverflowPolicy overflowPolicy) {
+		sourceList = new ArrayList<BranchSource>();
+		
+		for (int i = 0; i < outputCount; i++) {
+			sourceList.add(new BranchSource(new TeeBranch<EntityContainer>(bufferCapacity, overflowPolicy)));
+		}
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public RunnableSource getSource(int index) {
+		if (index < 0 || index >= sourceList.size()) {
+			throw new OsmosisRuntimeException("Source index " + index
+					+ " is in the range 0 to " + (sourceList.size() - 1) + ".");
+		}
+		
+		return sourceList.get(index);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getSourceCount() {
+		return sourceList.size();
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void initialize(Map<String, Object> metaData) {
+		for (BranchSource source : sourceList) {
+			source.branch.initialize(metaData);
+		}
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void process(EntityContainer entityContainer) {
+		// The entity is passed to multiple threads therefore must be made
+		// read-only to prevent them impacting each other.
+		entityContainer.getEntity().makeReadOnly();
+		
+		for (BranchSource source : sourceList) {
+			source.branch.add(entityContainer);
+		}
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void complete() {
+		for (BranchSource source : sourceList) {
+			source.branch.complete();
+		}
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void release() {
+		for (BranchSource source : sourceList) {
+			source.branch.release();
+		}
+	}
+	
+	
+	/**
+	 * Instances of this class are returned via the parent class getSource
+	 * method. Each sends the data of one branch to its sink.
+	 */
+	private static class BranchSource implements RunnableSource {
+		private TeeBranch<EntityContainer> branch;
+		private Sink sink;
+		
+		
+		/**
+		 * Creates a new instance.
+		 * 
+		 * @param branch
+		 *            The branch providing data.
+		 */
+		BranchSource(TeeBranch<EntityContainer> branch) {
+			this.branch = branch;
+		}
+		
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void setSink(Sink sink) {
+			this.sink = sink;
+		}
+		
+		
+		/**
+		 * Sends all data of the branch to the sink.
+		 */
+		@Override
+		public void run() {
+			try {
+				sink.initialize(branch.outputInitialize());
+				
+				while (branch.hasNext()) {
+					sink.process(branch.getNext());
+				}
+				
+				sink.complete();
+				branch.outputComplete();
+				
+			} finally {
+				sink.release();
+				branch.outputRelease();
+			}
+		}
+	}
+}
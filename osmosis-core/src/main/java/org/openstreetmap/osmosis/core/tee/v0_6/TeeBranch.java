@@ -0,0 +1,257 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.tee.v0_6;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.store.DataPostbox;
+import org.openstreetmap.osmosis.core.store.GenericObjectSerializationFactory;
+import org.openstreetmap.osmosis.core.store.SpillFile;
+import org.openstreetmap.osmosis.core.store.StorageFormat;
+import org.openstreetmap.osmosis.core.store.Storeable;
+
+
+/**
+ * Passes data from the input thread of a parallel tee to the thread of one of
+ * its outputs. Objects are passed in chunks through a bounded postbox. If the
+ * output falls behind and the spill policy is in use, chunks are written to a
+ * temporary file in place of the postbox and a reference to the file location
+ * is queued instead. Chunks are always delivered in the order they were
+ * created.
+ * <p>
+ * The input methods follow the same call sequence as the input methods of
+ * {@link DataPostbox}, as do the output methods.
+ * 
+ * @param <T>
+ *            The type of data passed to the output.
+ */
+class TeeBranch<T extends Storeable> {
+	
+	private static final Logger LOG = Logger.getLogger(TeeBranch.class.getName());
+	
+	private static final int MAX_CHUNK_SIZE = 1000;
+	
+	private OverflowPolicy overflowPolicy;
+	private int chunkSize;
+	private DataPostbox<Chunk<T>> postbox;
+	private SpillFile<T> spillFile;
+	private List<T> inputChunk;
+	private LinkedList<Chunk<T>> spilledChunks;
+	private long spilledObjectCount;
+	private List<T> outputChunk;
+	private int outputPosition;
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param bufferCapacity
+	 *            The number of objects to hold in memory for the output.
+	 * @param overflowPolicy
+	 *            The action to take when the buffer is full.
+	 */
+	TeeBranch(int bufferCapacity, OverflowPolicy overflowPolicy) {
+		this.overflowPolicy = overflowPolicy;
+		
+		chunkSize = Math.max(1, Math.min(MAX_CHUNK_SIZE, bufferCapacity / 8));
+		postbox = new DataPostbox<Chunk<T>>(Math.max(1, bufferCapacity / chunkSize));
+		
+		if (overflowPolicy == OverflowPolicy.Spill) {
+			spillFile = new SpillFile<T>(new GenericObjectSerializationFactory(), StorageFormat.Compact, "teespill");
+		}
+		
+		inputChunk = new ArrayList<T>(chunkSize);
+		spilledChunks = new LinkedList<Chunk<T>>();
+	}
+	
+	
+	/**
+	 * Initializes the input, blocking until the output has initialized.
+	 * 
+	 * @param metaData
+	 *            The meta data to pass to the output.
+	 */
+	public void initialize(Map<String, Object> metaData) {
+		postbox.initialize(metaData);
+	}
+	
+	
+	/**
+	 * Adds an object to be passed to the output.
+	 * 
+	 * @param object
+	 *            The object.
+	 */
+	public void add(T object) {
+		inputChunk.add(object);
+		
+		if (inputChunk.size() >= chunkSize) {
+			publishChunk();
+		}
+	}
+	
+	
+	private void publishChunk() {
+		Chunk<T> chunk;
+		
+		chunk = new Chunk<T>(inputChunk);
+		inputChunk = new ArrayList<T>(chunkSize);
+		
+		if (overflowPolicy == OverflowPolicy.Block) {
+			postbox.put(chunk);
+			return;
+		}
+		
+		// Once a chunk has been spilled, newer chunks must queue behind it to
+		// preserve ordering.
+		if (spilledChunks.isEmpty() && postbox.offer(chunk)) {
+			return;
+		}
+		
+		spilledObjectCount += chunk.objects.size();
+		spilledChunks.add(new Chunk<T>(spillFile.write(chunk.objects)));
+		
+		while (!spilledChunks.isEmpty() && postbox.offer(spilledChunks.getFirst())) {
+			spilledChunks.removeFirst();
+		}
+	}
+	
+	
+	/**
+	 * Flushes all remaining data to the output, blocking until the output has
+	 * completed.
+	 */
+	public void complete() {
+		if (inputChunk.size() > 0) {
+			publishChunk();
+		}
+		
+		while (!spilledChunks.isEmpty()) {
+			postbox.put(spilledChunks.removeFirst());
+		}
+		
+		postbox.complete();
+	}
+	
+	
+	/**
+	 * Releases the input, blocking until the output has released.
+	 */
+	public void release() {
+		postbox.release();
+		
+		inputChunk.clear();
+		spilledChunks.clear();
+		
+		if (spillFile != null) {
+			if (spilledObjectCount > 0) {
+				LOG.fine("Spilled " + spilledObjectCount + " objects occupying " + spillFile.getSize()
+						+ " bytes to disk.");
+			}
+			spillFile.release();
+		}
+	}
+	
+	
+	/**
+	 * Initializes the output, blocking until the input has initialized.
+	 * 
+	 * @return The meta data passed by the input.
+	 */
+	public Map<String, Object> outputInitialize() {
+		return postbox.outputInitialize();
+	}
+	
+	
+	/**
+	 * Indicates if data is available for output, blocking until data is
+	 * available or the input has completed.
+	 * 
+	 * @return True if data is available.
+	 */
+	public boolean hasNext() {
+		while (outputChunk == null || outputPosition >= outputChunk.size()) {
+			Chunk<T> chunk;
+			
+			if (!postbox.hasNext()) {
+				outputChunk = null;
+				return false;
+			}
+			
+			chunk = postbox.getNext();
+			if (chunk.objects != null) {
+				outputChunk = chunk.objects;
+			} else {
+				outputChunk = spillFile.read(chunk.spillPosition);
+			}
+			outputPosition = 0;
+		}
+		
+		return true;
+	}
+	
+	
+	/**
+	 * Returns the next object for output. This should be preceded by a call to
+	 * hasNext.
+	 * 
+	 * @return The next object.
+	 */
+	public T getNext() {
+		if (hasNext()) {
+			// Clear the reference so the object can be garbage collected
+			// independently of the chunk.
+			return outputChunk.set(outputPosition++, null);
+			
+		} else {
+			throw new OsmosisRuntimeException("No data is available, should call hasNext first.");
+		}
+	}
+	
+	
+	/**
+	 * Completes the output, blocking until the input has completed.
+	 */
+	public void outputComplete() {
+		postbox.outputComplete();
+	}
+	
+	
+	/**
+	 * Releases the output, blocking until the input has released.
+	 */
+	public void outputRelease() {
+		outputChunk = null;
+		
+		postbox.outputRelease();
+	}
+	
+	
+	/**
+	 * A group of objects, either held in memory or written to the spill file.
+	 */
+	private static class Chunk<T> {
+		private List<T> objects;
+		private long spillPosition;
+		
+		
+		/**
+		 * Creates a chunk held in memory.
+		 */
+		Chunk(List<T> objects) {
+			this.objects = objects;
+		}
+		
+		
+		/**
+		 * Creates a chunk written to the spill file.
+		 */
+		Chunk(long spillPosition) {
+			this.spillPosition = spillPosition;
+		}
+	}
+}
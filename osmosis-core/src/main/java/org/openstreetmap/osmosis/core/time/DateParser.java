@@ -16,233 +16,263 @@ import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
 
 /**
  * Handles a number of different date formats encountered in OSM. This is built
- * based on similar code in JOSM. This class is not threadsafe, a separate
- * instance must be created per thread.
+ * based on similar code in JOSM. Dates in the standard formats are parsed
+ * directly from their characters, and the result for the most recent date is
+ * retained because consecutive entities often share a timestamp. This class is
+ * not threadsafe, a separate instance must be created per thread.
  * 
  * @author Brett Henderson
  */
 public class DateParser {
+	
+	private static final int SHORT_FORMAT_LENGTH = 20;
+	private static final int LONG_FORMAT_LENGTH = 24;
+	
+	/**
+	 * Dates before this year are converted using a calendar so that the
+	 * switch from the Julian calendar is handled.
+	 */
+	private static final int MIN_ARITHMETIC_YEAR = 1600;
+	
+	private static final long NOT_STANDARD = Long.MIN_VALUE;
+	
 	private DatatypeFactory datatypeFactory;
 	private FallbackDateParser fallbackDateParser;
 	private Calendar calendar;
+	private char[] dateChars;
+	private char[] cachedDateChars;
+	private int cachedDateLength;
+	private long cachedMillis;
 	
 	
 	/**
 	 * Creates a new instance.
 	 */
 	public DateParser() {
-		// Build an xml data type factory.
-		try {
-			datatypeFactory = DatatypeFactory.newInstance();
-			
-		} catch (DatatypeConfigurationException e) {
-			throw new OsmosisRuntimeException("Unable to instantiate xml datatype factory.", e);
-		}
-		
-		fallbackDateParser = new FallbackDateParser();
-		
 		calendar = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+		
+		dateChars = new char[LONG_FORMAT_LENGTH];
+		cachedDateChars = new char[LONG_FORMAT_LENGTH];
 	}
 	
 	
-	private boolean isDateInShortStandardFormat(String date) {
-		char[] dateChars;
-		// We can only parse the date if it is in a very specific format.
-		// eg. 2007-09-23T08:25:43Z
-		
-		if (date.length() != 20) {
-			return false;
-		}
-		
-		dateChars = date.toCharArray();
-		
-		// Make sure any fixed characters are in the correct place.
-		if (dateChars[4] != '-') {
-			return false;
-		}
-		if (dateChars[7] != '-') {
-			return false;
-		}
-		if (dateChars[10] != 'T') {
-			return false;
-		}
-		if (dateChars[13] != ':') {
-			return false;
-		}
-		if (dateChars[16] != ':') {
-			return false;
-		}
-		if (dateChars[19] != 'Z') {
-			return false;
-		}
-		
-		// Ensure all remaining characters are numbers.
-		for (int i = 0; i < 4; i++) {
-			if (dateChars[i] < '0' || dateChars[i] > '9') {
-				return false;
-			}
-		}
-		for (int i = 5; i < 7; i++) {
-			if (dateChars[i] < '0' || dateChars[i] > '9') {
-				return false;
-			}
-		}
-		for (int i = 8; i < 10; i++) {
-			if (dateChars[i] < '0' || dateChars[i] > '9') {
-				return false;
-			}
-		}
-		for (int i = 11; i < 13; i++) {
-			if (dateChars[i] < '0' || dateChars[i] > '9') {
-				return false;
-			}
-		}
-		for (int i = 14; i < 16; i++) {
-			if (dateChars[i] < '0' || dateChars[i] > '9') {
-				return false;
-			}
-		}
-		for (int i = 17; i < 19; i++) {
-			if (dateChars[i] < '0' || dateChars[i] > '9') {
+	private static boolean isDigits(char[] data, int offset, int count) {
+		for (int i = offset; i < offset + count; i++) {
+			if (data[i] < '0' || data[i] > '9') {
 				return false;
 			}
 		}
 		
-		// No problems found so it is in the special case format.
 		return true;
 	}
 	
 	
-	private boolean isDateInLongStandardFormat(String date) {
-		char[] dateChars;
-		// We can only parse the date if it is in a very specific format.
-		// eg. 2007-09-23T08:25:43.000Z
+	private static int parseDigits(char[] data, int offset, int count) {
+		int value;
 		
-		if (date.length() != 24) {
-			return false;
+		value = 0;
+		for (int i = offset; i < offset + count; i++) {
+			value = value * 10 + data[i] - '0';
 		}
 		
-		dateChars = date.toCharArray();
-		
+		return value;
+	}
+	
+	
+	/**
+	 * Checks if a date is in one of the two standard formats, eg.
+	 * 2007-09-23T08:25:43Z or 2007-09-23T08:25:43.000Z.
+	 * 
+	 * @param data
+	 *            The buffer containing the date.
+	 * @param offset
+	 *            The position of the date in the buffer.
+	 * @param length
+	 *            The length of the date.
+	 * @return True if the date is in a standard format.
+	 */
+	private static boolean isDateInStandardFormat(char[] data, int offset, int length) {
 		// Make sure any fixed characters are in the correct place.
-		if (dateChars[4] != '-') {
-			return false;
-		}
-		if (dateChars[7] != '-') {
+		if (data[offset + 4] != '-' || data[offset + 7] != '-' || data[offset + 10] != 'T'
+				|| data[offset + 13] != ':' || data[offset + 16] != ':' || data[offset + length - 1] != 'Z') {
 			return false;
 		}
-		if (dateChars[10] != 'T') {
-			return false;
-		}
-		if (dateChars[13] != ':') {
-			return false;
-		}
-		if (dateChars[16] != ':') {
-			return false;
-		}
-		if (dateChars[19] != '.') {
-			return false;
-		}
-		if (dateChars[23] != 'Z') {
+		if (length == LONG_FORMAT_LENGTH && (data[offset + 19] != '.' || !isDigits(data, offset + 20, 3))) {
 			return false;
 		}
 		
 		// Ensure all remaining characters are numbers.
-		for (int i = 0; i < 4; i++) {
-			if (dateChars[i] < '0' || dateChars[i] > '9') {
-				return false;
-			}
-		}
-		for (int i = 5; i < 7; i++) {
-			if (dateChars[i] < '0' || dateChars[i] > '9') {
-				return false;
-			}
-		}
-		for (int i = 8; i < 10; i++) {
-			if (dateChars[i] < '0' || dateChars[i] > '9') {
-				return false;
-			}
-		}
-		for (int i = 11; i < 13; i++) {
-			if (dateChars[i] < '0' || dateChars[i] > '9') {
-				return false;
-			}
-		}
-		for (int i = 14; i < 16; i++) {
-			if (dateChars[i] < '0' || dateChars[i] > '9') {
-				return false;
-			}
-		}
-		for (int i = 17; i < 19; i++) {
-			if (dateChars[i] < '0' || dateChars[i] > '9') {
-				return false;
-			}
-		}
-		for (int i = 20; i < 23; i++) {
-			if (dateChars[i] < '0' || dateChars[i] > '9') {
-				return false;
-			}
+		return isDigits(data, offset, 4) && isDigits(data, offset + 5, 2) && isDigits(data, offset + 8, 2)
+				&& isDigits(data, offset + 11, 2) && isDigits(data, offset + 14, 2) && isDigits(data, offset + 17, 2);
+	}
+	
+	
+	/**
+	 * Calculates the number of days between the epoch and the specified date
+	 * in the proleptic Gregorian calendar.
+	 * 
+	 * @param year
+	 *            The year, this must not be negative.
+	 * @param month
+	 *            The month, 1 to 12.
+	 * @param day
+	 *            The day of the month.
+	 * @return The number of days since the epoch.
+	 */
+	private static long daysSinceEpoch(int year, int month, int day) {
+		int shiftedYear;
+		int shiftedMonth;
+		int era;
+		int yearOfEra;
+		int dayOfYear;
+		
+		// The calculation uses years starting on the 1st of March so that the
+		// leap day falls at the end of the year.
+		if (month > 2) {
+			shiftedYear = year;
+			shiftedMonth = month - 3;
+		} else {
+			shiftedYear = year - 1;
+			shiftedMonth = month + 9;
 		}
 		
-		// No problems found so it is in the special case format.
-		return true;
+		era = shiftedYear / 400;
+		yearOfEra = shiftedYear - era * 400;
+		dayOfYear = (153 * shiftedMonth + 2) / 5 + day - 1;
+		
+		return era * 146097L + yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear - 719468;
 	}
 	
 	
-	private Date parseShortStandardDate(String date) {
+	/**
+	 * Parses a date in one of the standard formats. Out of range fields are
+	 * rolled over in the same way as a lenient calendar, eg. a 13th month
+	 * becomes January of the following year.
+	 * 
+	 * @param data
+	 *            The buffer containing the date.
+	 * @param offset
+	 *            The position of the date in the buffer.
+	 * @param length
+	 *            The length of the date.
+	 * @return The date in milliseconds since the epoch.
+	 */
+	private long parseStandardDate(char[] data, int offset, int length) {
 		int year;
 		int month;
 		int day;
 		int hour;
 		int minute;
 		int second;
+		int millisecond;
+		int normalizedYear;
+		int monthIndex;
 		
-		year = Integer.parseInt(date.substring(0, 4));
-		month = Integer.parseInt(date.substring(5, 7));
-		day = Integer.parseInt(date.substring(8, 10));
-		hour = Integer.parseInt(date.substring(11, 13));
-		minute = Integer.parseInt(date.substring(14, 16));
-		second = Integer.parseInt(date.substring(17, 19));
+		year = parseDigits(data, offset, 4);
+		month = parseDigits(data, offset + 5, 2);
+		day = parseDigits(data, offset + 8, 2);
+		hour = parseDigits(data, offset + 11, 2);
+		minute = parseDigits(data, offset + 14, 2);
+		second = parseDigits(data, offset + 17, 2);
+		if (length == LONG_FORMAT_LENGTH) {
+			millisecond = parseDigits(data, offset + 20, 3);
+		} else {
+			millisecond = 0;
+		}
 		
-		calendar.clear();
-		calendar.set(Calendar.YEAR, year);
-		calendar.set(Calendar.MONTH, month - 1);
-		calendar.set(Calendar.DAY_OF_MONTH, day);
-		calendar.set(Calendar.HOUR_OF_DAY, hour);
-		calendar.set(Calendar.MINUTE, minute);
-		calendar.set(Calendar.SECOND, second);
+		normalizedYear = year;
+		monthIndex = month - 1;
+		if (monthIndex < 0) {
+			normalizedYear--;
+			monthIndex += 12;
+		}
+		normalizedYear += monthIndex / 12;
+		monthIndex %= 12;
+		
+		if (normalizedYear < MIN_ARITHMETIC_YEAR) {
+			calendar.clear();
+			calendar.set(Calendar.YEAR, year);
+			calendar.set(Calendar.MONTH, month - 1);
+			calendar.set(Calendar.DAY_OF_MONTH, day);
+			calendar.set(Calendar.HOUR_OF_DAY, hour);
+			calendar.set(Calendar.MINUTE, minute);
+			calendar.set(Calendar.SECOND, second);
+			calendar.set(Calendar.MILLISECOND, millisecond);
+			
+			return calendar.getTimeInMillis();
+		}
 		
-		return calendar.getTime();
+		return (((daysSinceEpoch(normalizedYear, monthIndex + 1, 1) + day - 1) * 24 + hour) * 60 + minute) * 60000L
+				+ second * 1000L + millisecond;
 	}
 	
 	
-	private Date parseLongStandardDate(String date) {
-		int year;
-		int month;
-		int day;
-		int hour;
-		int minute;
-		int second;
-		int millisecond;
+	/**
+	 * Parses a date that may be in one of the standard formats. The result of
+	 * the previous call is re-used if the date is unchanged.
+	 * 
+	 * @param data
+	 *            The buffer containing the date.
+	 * @param offset
+	 *            The position of the date in the buffer.
+	 * @param length
+	 *            The length of the date.
+	 * @return The date in milliseconds since the epoch, or NOT_STANDARD if the
+	 *         date is not in a standard format.
+	 */
+	private long parseStandardDateCached(char[] data, int offset, int length) {
+		long millis;
+		
+		if (length != SHORT_FORMAT_LENGTH && length != LONG_FORMAT_LENGTH) {
+			return NOT_STANDARD;
+		}
+		
+		// Consecutive entities often share a timestamp.
+		if (length == cachedDateLength) {
+			boolean match = true;
+			
+			for (int i = length - 1; match && i >= 0; i--) {
+				match = data[offset + i] == cachedDateChars[i];
+			}
+			if (match) {
+				return cachedMillis;
+			}
+		}
+		
+		if (!isDateInStandardFormat(data, offset, length)) {
+			return NOT_STANDARD;
+		}
 		
-		year = Integer.parseInt(date.substring(0, 4));
-		month = Integer.parseInt(date.substring(5, 7));
-		day = Integer.parseInt(date.substring(8, 10));
-		hour = Integer.parseInt(date.substring(11, 13));
-		minute = Integer.parseInt(date.substring(14, 16));
-		second = Integer.parseInt(date.substring(17, 19));
-		millisecond = Integer.parseInt(date.substring(20, 23));
+		millis = parseStandardDate(data, offset, length);
 		
-		calendar.clear();
-		calendar.set(Calendar.YEAR, year);
-		calendar.set(Calendar.MONTH, month - 1);
-		calendar.set(Calendar.DAY_OF_MONTH, day);
-		calendar.set(Calendar.HOUR_OF_DAY, hour);
-		calendar.set(Calendar.MINUTE, minute);
-		calendar.set(Calendar.SECOND, second);
-		calendar.set(Calendar.MILLISECOND, millisecond);
+		System.arraycopy(data, offset, cachedDateChars, 0, length);
+		cachedDateLength = length;
+		cachedMillis = millis;
 		
-		return calendar.getTime();
+		return millis;
+	}
+	
+	
+	private Date parseNonStandardDate(String date) {
+		// The parsers for other formats are only created when first required
+		// because they are expensive to build.
+		if (datatypeFactory == null) {
+			try {
+				datatypeFactory = DatatypeFactory.newInstance();
+				
+			} catch (DatatypeConfigurationException e) {
+				throw new OsmosisRuntimeException("Unable to instantiate xml datatype factory.", e);
+			}
+			
+			fallbackDateParser = new FallbackDateParser();
+		}
+		
+		try {
+			return datatypeFactory.newXMLGregorianCalendar(date).toGregorianCalendar().getTime();
+			
+		} catch (IllegalArgumentException e) {
+			return fallbackDateParser.parse(date);
+		}
 	}
 	
 	
@@ -254,17 +284,32 @@ public class DateParser {
 	 * @return The date.
 	 */
 	public Date parse(String date) {
-		try {
-			if (isDateInShortStandardFormat(date)) {
-				return parseShortStandardDate(date);
-			} else if (isDateInLongStandardFormat(date)) {
-				return parseLongStandardDate(date);
-			} else {
-				return datatypeFactory.newXMLGregorianCalendar(date).toGregorianCalendar().getTime();
-			}
+		return new Date(parseMillis(date));
+	}
+	
+	
+	/**
+	 * Attempts to parse the specified date without creating a Date object
+	 * for dates in the standard formats.
+	 * 
+	 * @param date
+	 *            The date to parse.
+	 * @return The date in milliseconds since the epoch.
+	 */
+	public long parseMillis(String date) {
+		int length;
+		
+		length = date.length();
+		if (length == SHORT_FORMAT_LENGTH || length == LONG_FORMAT_LENGTH) {
+			long millis;
 			
-		} catch (IllegalArgumentException e) {
-			return fallbackDateParser.parse(date);
+			date.getChars(0, length, dateChars, 0);
+			millis = parseStandardDateCached(dateChars, 0, length);
+			if (millis != NOT_STANDARD) {
+				return millis;
+			}
 		}
+		
+		return parseNonStandardDate(date).getTime();
 	}
 }
@@ -0,0 +1,517 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+
+
+/**
+ * Splits bzip2 data into its individual compressed blocks so that they can be
+ * decompressed independently. Blocks aren't byte aligned and their lengths
+ * aren't recorded, so the data is searched at every bit position for the 48
+ * bit magic numbers marking the start of a block or the end of a stream.
+ * <p>
+ * A magic number may occur by chance within compressed data which causes a
+ * block to be split in two. Such a split can't be detected here, both parts
+ * will fail to decompress and must be joined using {@link Block#append(Block)}.
+ */
+class BZip2BlockScanner {
+	
+	private static final long BLOCK_MAGIC = 0x314159265359L;
+	private static final long END_OF_STREAM_MAGIC = 0x177245385090L;
+	private static final int MAGIC_BITS = 48;
+	private static final int CRC_BITS = 32;
+	private static final long MAGIC_MASK = (1L << MAGIC_BITS) - 1;
+	private static final int READ_SIZE = 65536;
+	
+	/**
+	 * The largest compressed block accepted. Blocks contain at most 900000
+	 * symbols so valid blocks are far smaller, this prevents unbounded
+	 * buffering of data that isn't bzip2 compressed.
+	 */
+	private static final int MAX_BLOCK_LENGTH = 8 * 1024 * 1024;
+	
+	/**
+	 * Identifies the values of the second last byte read when a magic number
+	 * may end within the last byte read. This allows most bytes to be skipped
+	 * without testing every bit position.
+	 */
+	private static final boolean[] MAGIC_BYTES = buildMagicBytes();
+	
+	private InputStream in;
+	private byte[] buffer;
+	private int count;
+	private boolean endOfInput;
+	private int position;
+	private int level;
+	private boolean inStream;
+	private boolean streamFound;
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param in
+	 *            The stream to read bzip2 data from.
+	 */
+	BZip2BlockScanner(InputStream in) {
+		this.in = in;
+		
+		buffer = new byte[2 * READ_SIZE];
+	}
+	
+	
+	private static boolean[] buildMagicBytes() {
+		boolean[] magicBytes = new boolean[256];
+		
+		for (int shift = 0; shift < 8; shift++) {
+			magicBytes[(int) ((BLOCK_MAGIC << shift) >>> 8) & 0xff] = true;
+			magicBytes[(int) ((END_OF_STREAM_MAGIC << shift) >>> 8) & 0xff] = true;
+		}
+		
+		return magicBytes;
+	}
+	
+	
+	private boolean fill() throws IOException {
+		int readCount;
+		
+		if (endOfInput) {
+			return false;
+		}
+		
+		if (buffer.length - count < READ_SIZE) {
+			buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, count + READ_SIZE));
+		}
+		
+		readCount = in.read(buffer, count, buffer.length - count);
+		if (readCount < 0) {
+			endOfInput = true;
+			return false;
+		}
+		count += readCount;
+		
+		return true;
+	}
+	
+	
+	private boolean ensureBits(long bitCount) throws IOException {
+		while (count * 8L < bitCount) {
+			if (!fill()) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	
+	private void requireBits(long bitCount) throws IOException {
+		if (!ensureBits(bitCount)) {
+			throw new IOException("Unexpected end of bzip2 data.");
+		}
+	}
+	
+	
+	private long readBits(int bitPosition, int bitCount) {
+		int index = bitPosition >>> 3;
+		int offset = bitPosition & 7;
+		int byteCount = (offset + bitCount + 7) >>> 3;
+		long value = 0;
+		
+		for (int i = 0; i < byteCount; i++) {
+			value = (value << 8) | (buffer[index + i] & 0xff);
+		}
+		
+		return (value >>> (byteCount * 8 - offset - bitCount)) & ((1L << bitCount) - 1);
+	}
+	
+	
+	private boolean isStreamHeader(int index) {
+		return buffer[index] == 'B' && buffer[index + 1] == 'Z' && buffer[index + 2] == 'h'
+				&& buffer[index + 3] >= '1' && buffer[index + 3] <= '9';
+	}
+	
+	
+	private static int getNextStreamPosition(int endOfStreamPosition) {
+		return (endOfStreamPosition + MAGIC_BITS + CRC_BITS + 7) & ~7;
+	}
+	
+	
+	/**
+	 * Checks that an end of stream magic number is followed by either the end
+	 * of the data or the header of another stream. This rejects most end of
+	 * stream magic numbers occurring by chance.
+	 * 
+	 * @param bitPosition
+	 *            The position of the magic number.
+	 * @return True if the position is a valid end of stream.
+	 * @throws IOException
+	 *             if the data cannot be read.
+	 */
+	private boolean isValidEndOfStream(int bitPosition) throws IOException {
+		int nextPosition = getNextStreamPosition(bitPosition);
+		
+		if (!ensureBits(nextPosition)) {
+			return false;
+		}
+		if (!ensureBits(nextPosition + 32)) {
+			return count * 8L == nextPosition;
+		}
+		
+		return isStreamHeader(nextPosition >>> 3);
+	}
+	
+	
+	/**
+	 * Finds the next block or end of stream magic number.
+	 * 
+	 * @param from
+	 *            The first bit position at which the magic number may start.
+	 * @return The bit position of the magic number.
+	 * @throws IOException
+	 *             if no magic number is found.
+	 */
+	private int findBoundary(int from) throws IOException {
+		int index = from >>> 3;
+		long window = 0;
+		
+		for (;;) {
+			for (; index < count; index++) {
+				window = (window << 8) | (buffer[index] & 0xff);
+				
+				if (MAGIC_BYTES[(int) (window >>> 8) & 0xff]) {
+					int end = (index + 1) << 3;
+					
+					// Test the earliest start positions first.
+					for (int shift = 7; shift >= 0; shift--) {
+						long candidate = (window >>> shift) & MAGIC_MASK;
+						int start = end - shift - MAGIC_BITS;
+						
+						if (start >= from
+								&& (candidate == BLOCK_MAGIC
+								|| (candidate == END_OF_STREAM_MAGIC && isValidEndOfStream(start)))) {
+							return start;
+						}
+					}
+				}
+			}
+			
+			if (count - (from >>> 3) > MAX_BLOCK_LENGTH) {
+				throw new IOException("No bzip2 block boundary found within " + MAX_BLOCK_LENGTH + " bytes.");
+			}
+			if (!fill()) {
+				throw new IOException("Unexpected end of bzip2 data.");
+			}
+		}
+	}
+	
+	
+	/**
+	 * Discards data preceding the current position.
+	 */
+	private void compact() {
+		int discardCount = position >>> 3;
+		
+		System.arraycopy(buffer, discardCount, buffer, 0, count - discardCount);
+		count -= discardCount;
+		position -= discardCount << 3;
+	}
+	
+	
+	/**
+	 * Reads the header at the start of a stream.
+	 * 
+	 * @return False if the end of the data has been reached.
+	 * @throws IOException
+	 *             if the data isn't a bzip2 stream.
+	 */
+	private boolean beginStream() throws IOException {
+		if (!ensureBits(position + 32)) {
+			if (streamFound && count * 8L == position) {
+				return false;
+			}
+			throw new IOException("Stream is not in the BZip2 format.");
+		}
+		if (!isStreamHeader(position >>> 3)) {
+			throw new IOException("Stream is not in the BZip2 format.");
+		}
+		
+		level = buffer[(position >>> 3) + 3] - '0';
+		position += 32;
+		inStream = true;
+		streamFound = true;
+		
+		return true;
+	}
+	
+	
+	private void endStream() {
+		position = getNextStreamPosition(position);
+		inStream = false;
+	}
+	
+	
+	/**
+	 * Reads the next compressed block.
+	 * 
+	 * @return The block, or null if the end of the data has been reached.
+	 * @throws IOException
+	 *             if the data cannot be read or isn't valid bzip2 data.
+	 */
+	public Block next() throws IOException {
+		compact();
+		
+		for (;;) {
+			long magic;
+			
+			if (!inStream && !beginStream()) {
+				return null;
+			}
+			
+			requireBits(position + MAGIC_BITS + CRC_BITS);
+			magic = readBits(position, MAGIC_BITS);
+			
+			if (magic == BLOCK_MAGIC) {
+				int end = findBoundary(position + MAGIC_BITS + CRC_BITS);
+				Block block;
+				
+				block = new Block(
+						copyBits(buffer, position, end - position), end - position, level,
+						(int) readBits(position + MAGIC_BITS, CRC_BITS));
+				
+				position = end;
+				if (readBits(position, MAGIC_BITS) == END_OF_STREAM_MAGIC) {
+					block.setStreamEnd((int) readBits(position + MAGIC_BITS, CRC_BITS));
+					endStream();
+				}
+				
+				return block;
+				
+			} else if (magic == END_OF_STREAM_MAGIC) {
+				// A stream containing no blocks.
+				endStream();
+				
+			} else {
+				throw new IOException("Invalid bzip2 block header.");
+			}
+		}
+	}
+	
+	
+	private static byte[] copyBits(byte[] source, int sourcePosition, int bitCount) {
+		byte[] result = new byte[(bitCount + 7) >>> 3];
+		
+		copyBits(source, sourcePosition, result, 0, bitCount);
+		
+		return result;
+	}
+	
+	
+	/**
+	 * Copies bits between arrays. The destination bits must be zero.
+	 * 
+	 * @param source
+	 *            The source data.
+	 * @param sourcePosition
+	 *            The bit position in the source to copy from.
+	 * @param destination
+	 *            The destination data.
+	 * @param destinationPosition
+	 *            The bit position in the destination to copy to.
+	 * @param bitCount
+	 *            The number of bits to copy.
+	 */
+	private static void copyBits(
+			byte[] source, int sourcePosition, byte[] destination, int destinationPosition, int bitCount) {
+		int copied = 0;
+		
+		// Copy whole bytes when the destination is byte aligned.
+		if ((destinationPosition & 7) == 0) {
+			int sourceIndex = sourcePosition >>> 3;
+			int destinationIndex = destinationPosition >>> 3;
+			int shift = sourcePosition & 7;
+			int byteCount = bitCount >>> 3;
+			
+			if (shift == 0) {
+				System.arraycopy(source, sourceIndex, destination, destinationIndex, byteCount);
+			} else {
+				for (int i = 0; i < byteCount; i++) {
+					destination[destinationIndex + i] = (byte) ((source[sourceIndex + i] << shift)
+							| ((source[sourceIndex + i + 1] & 0xff) >>> (8 - shift)));
+				}
+			}
+			
+			copied = byteCount << 3;
+		}
+		
+		for (; copied < bitCount; copied++) {
+			int sourceBit = sourcePosition + copied;
+			int destinationBit = destinationPosition + copied;
+			
+			if ((source[sourceBit >>> 3] & (0x80 >>> (sourceBit & 7))) != 0) {
+				destination[destinationBit >>> 3] |= 0x80 >>> (destinationBit & 7);
+			}
+		}
+	}
+	
+	
+	private static void writeBits(byte[] destination, int destinationPosition, long value, int bitCount) {
+		for (int i = 0; i < bitCount; i++) {
+			int destinationBit = destinationPosition + i;
+			
+			if (((value >>> (bitCount - 1 - i)) & 1) != 0) {
+				destination[destinationBit >>> 3] |= 0x80 >>> (destinationBit & 7);
+			}
+		}
+	}
+	
+	
+	/**
+	 * A single compressed block, beginning with its magic number.
+	 */
+	static class Block {
+		private byte[] data;
+		private int bitLength;
+		private int level;
+		private int crc;
+		private boolean streamEnd;
+		private int streamCrc;
+		
+		
+		/**
+		 * Creates a new instance.
+		 * 
+		 * @param data
+		 *            The compressed block data.
+		 * @param bitLength
+		 *            The number of bits in the block.
+		 * @param level
+		 *            The block size level of the stream containing the block.
+		 * @param crc
+		 *            The CRC of the uncompressed block data.
+		 */
+		Block(byte[] data, int bitLength, int level, int crc) {
+			this.data = data;
+			this.bitLength = bitLength;
+			this.level = level;
+			this.crc = crc;
+		}
+		
+		
+		/**
+		 * Marks this block as the last in its stream.
+		 * 
+		 * @param newStreamCrc
+		 *            The combined CRC recorded at the end of the stream.
+		 */
+		void setStreamEnd(int newStreamCrc) {
+			streamEnd = true;
+			streamCrc = newStreamCrc;
+		}
+		
+		
+		/**
+		 * Indicates if this block is the last in its stream.
+		 * 
+		 * @return True if this is the last block.
+		 */
+		public boolean isStreamEnd() {
+			return streamEnd;
+		}
+		
+		
+		/**
+		 * Gets the combined CRC recorded at the end of the stream. This is
+		 * only available for the last block in a stream.
+		 * 
+		 * @return The combined CRC.
+		 */
+		public int getStreamCrc() {
+			return streamCrc;
+		}
+		
+		
+		/**
+		 * Gets the CRC of the uncompressed block data.
+		 * 
+		 * @return The CRC.
+		 */
+		public int getCrc() {
+			return crc;
+		}
+		
+		
+		/**
+		 * Creates a block containing the data of this block followed by the
+		 * data of the next block. This rejoins a block that was split by a
+		 * magic number occurring by chance.
+		 * 
+		 * @param next
+		 *            The block following this one.
+		 * @return The joined block.
+		 */
+		public Block append(Block next) {
+			byte[] joinedData;
+			Block joined;
+			
+			joinedData = Arrays.copyOf(data, (bitLength + next.bitLength + 7) >>> 3);
+			copyBits(next.data, 0, joinedData, bitLength, next.bitLength);
+			
+			joined = new Block(joinedData, bitLength + next.bitLength, level, crc);
+			joined.streamEnd = next.streamEnd;
+			joined.streamCrc = next.streamCrc;
+			
+			return joined;
+		}
+		
+		
+		/**
+		 * Decompresses the block by wrapping it in a single block stream.
+		 * 
+		 * @return The uncompressed data.
+		 * @throws IOException
+		 *             if the block is invalid.
+		 */
+		public byte[] decompress() throws IOException {
+			byte[] stream;
+			InputStream decompressor;
+			byte[] result;
+			int resultLength;
+			
+			stream = new byte[(32 + bitLength + MAGIC_BITS + CRC_BITS + 7) >>> 3];
+			stream[0] = 'B';
+			stream[1] = 'Z';
+			stream[2] = 'h';
+			stream[3] = (byte) ('0' + level);
+			copyBits(data, 0, stream, 32, bitLength);
+			// The combined CRC of a stream with a single block is the block CRC.
+			writeBits(stream, 32 + bitLength, END_OF_STREAM_MAGIC, MAGIC_BITS);
+			writeBits(stream, 32 + bitLength + MAGIC_BITS, crc & 0xffffffffL, CRC_BITS);
+			
+			decompressor = new BZip2CompressorInputStream(new ByteArrayInputStream(stream));
+			
+			result = new byte[level * 100000];
+			resultLength = 0;
+			for (;;) {
+				int readCount;
+				
+				if (resultLength == result.length) {
+					result = Arrays.copyOf(result, result.length * 2);
+				}
+				
+				readCount = decompressor.read(result, resultLength, result.length - resultLength);
+				if (readCount < 0) {
+					break;
+				}
+				resultLength += readCount;
+			}
+			
+			return Arrays.copyOf(result, resultLength);
+		}
+	}
+}
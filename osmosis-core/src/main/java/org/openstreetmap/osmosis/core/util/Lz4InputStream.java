@@ -0,0 +1,261 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+
+/**
+ * Decompresses data written by a {@link Lz4OutputStream}.
+ */
+public class Lz4InputStream extends InputStream {
+	private InputStream in;
+	private byte[] header;
+	private byte[] block;
+	private int blockLength;
+	private int blockPosition;
+	private byte[] compressedBlock;
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param in
+	 *            The stream to read compressed data from.
+	 */
+	public Lz4InputStream(InputStream in) {
+		this.in = in;
+		
+		header = new byte[8];
+		block = new byte[Lz4OutputStream.BLOCK_SIZE];
+		compressedBlock = new byte[Lz4OutputStream.BLOCK_SIZE];
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int read() throws IOException {
+		if (blockPosition == blockLength && !readBlock()) {
+			return -1;
+		}
+		
+		return block[blockPosition++] & 0xFF;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int count;
+		
+		if (len == 0) {
+			return 0;
+		}
+		if (blockPosition == blockLength && !readBlock()) {
+			return -1;
+		}
+		
+		count = Math.min(len, blockLength - blockPosition);
+		System.arraycopy(block, blockPosition, b, off, count);
+		blockPosition += count;
+		
+		return count;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int available() {
+		return blockLength - blockPosition;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+	
+	
+	/**
+	 * Reads as many bytes as are available up to the requested length.
+	 * 
+	 * @return The number of bytes read which is only less than the requested
+	 *         length at the end of the stream.
+	 */
+	private int readAvailable(byte[] buffer, int length) throws IOException {
+		int offset;
+		
+		offset = 0;
+		while (offset < length) {
+			int count;
+			
+			count = in.read(buffer, offset, length - offset);
+			if (count < 0) {
+				break;
+			}
+			offset += count;
+		}
+		
+		return offset;
+	}
+	
+	
+	private void readFully(byte[] buffer, int length) throws IOException {
+		if (readAvailable(buffer, length) < length) {
+			throw new EOFException("The compressed stream ended part way through a block.");
+		}
+	}
+	
+	
+	private static int readInt(byte[] buffer, int offset) {
+		return ((buffer[offset] & 0xFF) << 24)
+				| ((buffer[offset + 1] & 0xFF) << 16)
+				| ((buffer[offset + 2] & 0xFF) << 8)
+				| (buffer[offset + 3] & 0xFF);
+	}
+	
+	
+	/**
+	 * Reads the next block from the underlying stream.
+	 * 
+	 * @return False if the end of the stream has been reached.
+	 */
+	private boolean readBlock() throws IOException {
+		int headerLength;
+		int compressedLength;
+		int rawLength;
+		
+		headerLength = readAvailable(header, header.length);
+		if (headerLength == 0) {
+			return false;
+		}
+		if (headerLength < header.length) {
+			throw new EOFException("The compressed stream ended part way through a block header.");
+		}
+		
+		compressedLength = readInt(header, 0);
+		rawLength = readInt(header, 4);
+		
+		if (rawLength <= 0 || rawLength > Lz4OutputStream.BLOCK_SIZE
+				|| compressedLength < 0 || compressedLength >= rawLength) {
+			throw new IOException("The compressed stream contains an invalid block header.");
+		}
+		
+		if (compressedLength == 0) {
+			readFully(block, rawLength);
+		} else {
+			readFully(compressedBlock, compressedLength);
+			decompress(compressedBlock, compressedLength, block, rawLength);
+		}
+		
+		blockLength = rawLength;
+		blockPosition = 0;
+		
+		return true;
+	}
+	
+	
+	private static IOException createCorruptBlockException() {
+		return new IOException("The compressed stream contains a corrupt block.");
+	}
+	
+	
+	private static void decompress(byte[] src, int srcLength, byte[] dst, int dstLength) throws IOException {
+		int in;
+		int out;
+		
+		in = 0;
+		out = 0;
+		
+		while (true) {
+			int token;
+			int literalLength;
+			int matchOffset;
+			int matchLength;
+			int reference;
+			
+			if (in >= srcLength) {
+				throw createCorruptBlockException();
+			}
+			token = src[in++] & 0xFF;
+			
+			literalLength = token >>> 4;
+			if (literalLength == 15) {
+				int b;
+				
+				do {
+					if (in >= srcLength) {
+						throw createCorruptBlockException();
+					}
+					b = src[in++] & 0xFF;
+					literalLength += b;
+				} while (b == 255);
+			}
+			
+			if (literalLength > srcLength - in || literalLength > dstLength - out) {
+				throw createCorruptBlockException();
+			}
+			System.arraycopy(src, in, dst, out, literalLength);
+			in += literalLength;
+			out += literalLength;
+			
+			// The final sequence of a block contains only literals.
+			if (in == srcLength) {
+				break;
+			}
+			
+			if (in + 2 > srcLength) {
+				throw createCorruptBlockException();
+			}
+			matchOffset = (src[in] & 0xFF) | ((src[in + 1] & 0xFF) << 8);
+			in += 2;
+			if (matchOffset == 0 || matchOffset > out) {
+				throw createCorruptBlockException();
+			}
+			
+			matchLength = token & 0x0F;
+			if (matchLength == 15) {
+				int b;
+				
+				do {
+					if (in >= srcLength) {
+						throw createCorruptBlockException();
+					}
+					b = src[in++] & 0xFF;
+					matchLength += b;
+				} while (b == 255);
+			}
+			matchLength += Lz4OutputStream.MIN_MATCH;
+			
+			if (matchLength > dstLength - out) {
+				throw createCorruptBlockException();
+			}
+			
+			reference = out - matchOffset;
+			if (matchOffset >= matchLength) {
+				System.arraycopy(dst, reference, dst, out, matchLength);
+				out += matchLength;
+			} else {
+				// Overlapping matches repeat the most recent bytes so must be
+				// copied a byte at a time.
+				for (int i = 0; i < matchLength; i++) {
+					dst[out++] = dst[reference++];
+				}
+			}
+		}
+		
+		if (out != dstLength) {
+			throw createCorruptBlockException();
+		}
+	}
+}
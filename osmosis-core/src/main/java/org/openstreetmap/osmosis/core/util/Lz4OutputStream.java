@@ -0,0 +1,281 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+
+/**
+ * Compresses data using the LZ4 block format. LZ4 trades compression ratio
+ * for speed, it compresses several times faster than gzip which makes it
+ * suitable for short lived temporary files.
+ * <p>
+ * Data is split into independent blocks of up to 64KB. Each block is preceded
+ * by its compressed length and its uncompressed length as big endian integers,
+ * a compressed length of zero indicates that the block is stored uncompressed.
+ * Blocks don't refer to previous blocks, so the output of several streams may
+ * be concatenated and read by a single {@link Lz4InputStream}.
+ */
+public class Lz4OutputStream extends OutputStream {
+	/**
+	 * The maximum number of uncompressed bytes in a block.
+	 */
+	static final int BLOCK_SIZE = 65536;
+	/**
+	 * The minimum length of a match.
+	 */
+	static final int MIN_MATCH = 4;
+	
+	private static final int HASH_LOG = 14;
+	private static final int MATCH_FIND_LIMIT = 12;
+	private static final int LAST_LITERALS = 5;
+	private static final int MAX_DISTANCE = 65535;
+	private static final int SKIP_TRIGGER = 6;
+	
+	private OutputStream out;
+	private byte[] block;
+	private int blockLength;
+	private byte[] compressedBlock;
+	private int[] hashTable;
+	private boolean closed;
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param out
+	 *            The stream to write compressed data to.
+	 */
+	public Lz4OutputStream(OutputStream out) {
+		this.out = out;
+		
+		block = new byte[BLOCK_SIZE];
+		compressedBlock = new byte[8 + BLOCK_SIZE + BLOCK_SIZE / 255 + 16];
+		hashTable = new int[1 << HASH_LOG];
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void write(int b) throws IOException {
+		if (blockLength == BLOCK_SIZE) {
+			writeBlock();
+		}
+		block[blockLength++] = (byte) b;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		int offset;
+		int remaining;
+		
+		offset = off;
+		remaining = len;
+		while (remaining > 0) {
+			int count;
+			
+			if (blockLength == BLOCK_SIZE) {
+				writeBlock();
+			}
+			
+			count = Math.min(remaining, BLOCK_SIZE - blockLength);
+			System.arraycopy(b, offset, block, blockLength, count);
+			blockLength += count;
+			offset += count;
+			remaining -= count;
+		}
+	}
+	
+	
+	/**
+	 * Flushes the underlying stream. Buffered data is not written until a
+	 * block is complete or the stream is closed, this avoids small blocks
+	 * being created by frequent flushes.
+	 * 
+	 * @throws IOException
+	 *             if an IO exception occurs.
+	 */
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void close() throws IOException {
+		if (!closed) {
+			closed = true;
+			writeBlock();
+			out.close();
+		}
+	}
+	
+	
+	private void writeBlock() throws IOException {
+		int compressedLength;
+		
+		if (blockLength == 0) {
+			return;
+		}
+		
+		compressedLength = compress(block, blockLength, compressedBlock, 8);
+		
+		if (compressedLength >= blockLength) {
+			writeInt(compressedBlock, 0, 0);
+			writeInt(compressedBlock, 4, blockLength);
+			out.write(compressedBlock, 0, 8);
+			out.write(block, 0, blockLength);
+		} else {
+			writeInt(compressedBlock, 0, compressedLength);
+			writeInt(compressedBlock, 4, blockLength);
+			out.write(compressedBlock, 0, 8 + compressedLength);
+		}
+		
+		blockLength = 0;
+	}
+	
+	
+	private static void writeInt(byte[] buffer, int offset, int value) {
+		buffer[offset] = (byte) (value >>> 24);
+		buffer[offset + 1] = (byte) (value >>> 16);
+		buffer[offset + 2] = (byte) (value >>> 8);
+		buffer[offset + 3] = (byte) value;
+	}
+	
+	
+	private static int readInt(byte[] buffer, int offset) {
+		return (buffer[offset] & 0xFF)
+				| ((buffer[offset + 1] & 0xFF) << 8)
+				| ((buffer[offset + 2] & 0xFF) << 16)
+				| ((buffer[offset + 3] & 0xFF) << 24);
+	}
+	
+	
+	private static int hash(int sequence) {
+		return (sequence * -1640531535) >>> (32 - HASH_LOG);
+	}
+	
+	
+	private static int writeLength(int length, byte[] dst, int initialOffset) {
+		int remaining;
+		int offset;
+		
+		remaining = length;
+		offset = initialOffset;
+		while (remaining >= 255) {
+			dst[offset++] = (byte) 255;
+			remaining -= 255;
+		}
+		dst[offset++] = (byte) remaining;
+		
+		return offset;
+	}
+	
+	
+	private static int writeLiterals(byte[] src, int anchor, int literalLength, byte[] dst, int initialOffset) {
+		int offset;
+		
+		offset = initialOffset;
+		if (literalLength >= 15) {
+			offset = writeLength(literalLength - 15, dst, offset);
+		}
+		System.arraycopy(src, anchor, dst, offset, literalLength);
+		
+		return offset + literalLength;
+	}
+	
+	
+	/**
+	 * Compresses a block of data.
+	 * 
+	 * @return The number of compressed bytes.
+	 */
+	private int compress(byte[] src, int length, byte[] dst, int dstOffset) {
+		int anchor;
+		int position;
+		int offset;
+		int literalLength;
+		
+		anchor = 0;
+		offset = dstOffset;
+		
+		if (length > MATCH_FIND_LIMIT) {
+			int matchStartLimit;
+			int matchEndLimit;
+			
+			Arrays.fill(hashTable, -1);
+			
+			matchStartLimit = length - MATCH_FIND_LIMIT;
+			matchEndLimit = length - LAST_LITERALS;
+			position = 0;
+			
+			while (position < matchStartLimit) {
+				int sequence;
+				int hashIndex;
+				int reference;
+				int matchLength;
+				int tokenOffset;
+				int token;
+				
+				sequence = readInt(src, position);
+				hashIndex = hash(sequence);
+				reference = hashTable[hashIndex];
+				hashTable[hashIndex] = position;
+				
+				if (reference < 0 || position - reference > MAX_DISTANCE || readInt(src, reference) != sequence) {
+					// Skip ahead faster the longer no match has been found.
+					position += 1 + ((position - anchor) >>> SKIP_TRIGGER);
+					continue;
+				}
+				
+				// Extend the match backwards over unwritten literals.
+				while (position > anchor && reference > 0 && src[position - 1] == src[reference - 1]) {
+					position--;
+					reference--;
+				}
+				
+				matchLength = MIN_MATCH;
+				while (position + matchLength < matchEndLimit
+						&& src[position + matchLength] == src[reference + matchLength]) {
+					matchLength++;
+				}
+				
+				literalLength = position - anchor;
+				tokenOffset = offset++;
+				offset = writeLiterals(src, anchor, literalLength, dst, offset);
+				
+				dst[offset++] = (byte) (position - reference);
+				dst[offset++] = (byte) ((position - reference) >>> 8);
+				
+				if (matchLength - MIN_MATCH >= 15) {
+					offset = writeLength(matchLength - MIN_MATCH - 15, dst, offset);
+					token = 15;
+				} else {
+					token = matchLength - MIN_MATCH;
+				}
+				token |= Math.min(literalLength, 15) << 4;
+				dst[tokenOffset] = (byte) token;
+				
+				position += matchLength;
+				anchor = position;
+			}
+		}
+		
+		// The block always ends with a sequence containing only literals.
+		literalLength = length - anchor;
+		dst[offset++] = (byte) (Math.min(literalLength, 15) << 4);
+		offset = writeLiterals(src, anchor, literalLength, dst, offset);
+		
+		return offset - dstOffset;
+	}
+}
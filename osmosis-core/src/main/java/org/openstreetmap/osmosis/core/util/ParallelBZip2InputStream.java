@@ -0,0 +1,249 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+/**
+ * Decompresses bzip2 data using multiple threads. The compressed data is split
+ * into blocks on the calling thread, the blocks are decompressed on worker
+ * threads, and the results are returned in their original order. Files
+ * containing a single stream or several concatenated streams are supported.
+ */
+public class ParallelBZip2InputStream extends InputStream {
+	
+	/**
+	 * The maximum number of blocks that are joined when retrying a block that
+	 * was split by a magic number occurring by chance.
+	 */
+	private static final int MAX_JOINED_BLOCKS = 4;
+	
+	private InputStream in;
+	private BZip2BlockScanner scanner;
+	private ExecutorService executorService;
+	private int maxPendingBlocks;
+	private Deque<PendingBlock> pendingBlocks;
+	private boolean endOfBlocks;
+	private int combinedCrc;
+	private byte[] current;
+	private int currentPosition;
+	private boolean closed;
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param in
+	 *            The stream to read compressed data from.
+	 * @param workers
+	 *            The number of worker threads to decompress blocks with.
+	 */
+	public ParallelBZip2InputStream(InputStream in, int workers) {
+		if (workers <= 0) {
+			throw new IllegalArgumentException("A worker count of " + workers + " is invalid, must be greater than 0.");
+		}
+		
+		this.in = in;
+		
+		scanner = new BZip2BlockScanner(in);
+		executorService = Executors.newFixedThreadPool(workers);
+		maxPendingBlocks = workers * 2;
+		pendingBlocks = new ArrayDeque<PendingBlock>(maxPendingBlocks);
+		
+		current = new byte[0];
+	}
+	
+	
+	private void submitBlocks() throws IOException {
+		while (!endOfBlocks && pendingBlocks.size() < maxPendingBlocks) {
+			final BZip2BlockScanner.Block block = scanner.next();
+			
+			if (block == null) {
+				endOfBlocks = true;
+			} else {
+				pendingBlocks.addLast(new PendingBlock(block, executorService.submit(new Callable<byte[]>() {
+					@Override
+					public byte[] call() throws IOException {
+						return block.decompress();
+					}
+				})));
+			}
+		}
+	}
+	
+	
+	private static byte[] tryDecompress(BZip2BlockScanner.Block block) {
+		try {
+			return block.decompress();
+		} catch (IOException e) {
+			return null;
+		} catch (RuntimeException e) {
+			return null;
+		}
+	}
+	
+	
+	/**
+	 * Makes the next block of decompressed data current.
+	 * 
+	 * @return False if no more data is available.
+	 * @throws IOException
+	 *             if the data cannot be read or decompressed.
+	 */
+	private boolean nextBlock() throws IOException {
+		PendingBlock pendingBlock;
+		BZip2BlockScanner.Block block;
+		byte[] data;
+		
+		submitBlocks();
+		if (pendingBlocks.isEmpty()) {
+			return false;
+		}
+		
+		pendingBlock = pendingBlocks.removeFirst();
+		block = pendingBlock.getBlock();
+		try {
+			data = pendingBlock.getResult().get();
+			
+		} catch (InterruptedException e) {
+			throw new IOException("Thread was interrupted while waiting for a block to be decompressed.", e);
+		} catch (ExecutionException e) {
+			// The block may have been split by a magic number occurring by
+			// chance, retry with the following blocks joined to it before
+			// reporting the failure.
+			data = null;
+			for (int i = 1; data == null && i < MAX_JOINED_BLOCKS && !block.isStreamEnd(); i++) {
+				PendingBlock nextPendingBlock;
+				
+				submitBlocks();
+				if (pendingBlocks.isEmpty()) {
+					break;
+				}
+				
+				nextPendingBlock = pendingBlocks.removeFirst();
+				nextPendingBlock.getResult().cancel(true);
+				
+				block = block.append(nextPendingBlock.getBlock());
+				data = tryDecompress(block);
+			}
+			
+			if (data == null) {
+				throw new IOException("Unable to decompress bzip2 block.", e.getCause());
+			}
+		}
+		
+		combinedCrc = ((combinedCrc << 1) | (combinedCrc >>> 31)) ^ block.getCrc();
+		if (block.isStreamEnd()) {
+			if (combinedCrc != block.getStreamCrc()) {
+				throw new IOException("BZip2 CRC error, the stream CRC is incorrect.");
+			}
+			combinedCrc = 0;
+		}
+		
+		current = data;
+		currentPosition = 0;
+		
+		return true;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int read() throws IOException {
+		while (currentPosition == current.length) {
+			if (!nextBlock()) {
+				return -1;
+			}
+		}
+		
+		return current[currentPosition++] & 0xff;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int count;
+		
+		if (len == 0) {
+			return 0;
+		}
+		
+		while (currentPosition == current.length) {
+			if (!nextBlock()) {
+				return -1;
+			}
+		}
+		
+		count = Math.min(len, current.length - currentPosition);
+		System.arraycopy(current, currentPosition, b, off, count);
+		currentPosition += count;
+		
+		return count;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		
+		for (PendingBlock pendingBlock : pendingBlocks) {
+			pendingBlock.getResult().cancel(true);
+		}
+		pendingBlocks.clear();
+		executorService.shutdownNow();
+		
+		in.close();
+	}
+	
+	
+	/**
+	 * A block being decompressed by a worker thread.
+	 */
+	private static class PendingBlock {
+		private BZip2BlockScanner.Block block;
+		private Future<byte[]> result;
+		
+		
+		/**
+		 * Creates a new instance.
+		 * 
+		 * @param block
+		 *            The compressed block.
+		 * @param result
+		 *            The result of the decompression.
+		 */
+		PendingBlock(BZip2BlockScanner.Block block, Future<byte[]> result) {
+			this.block = block;
+			this.result = result;
+		}
+		
+		
+		public BZip2BlockScanner.Block getBlock() {
+			return block;
+		}
+		
+		
+		public Future<byte[]> getResult() {
+			return result;
+		}
+	}
+}
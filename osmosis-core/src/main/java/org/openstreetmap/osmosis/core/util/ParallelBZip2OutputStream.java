@@ -0,0 +1,70 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+
+
+/**
+ * Compresses data into the bzip2 format using multiple threads. Data is split
+ * into blocks which are compressed independently and written as consecutive
+ * bzip2 streams in the same way as pbzip2. The result can be read by the bzip2
+ * utility and by any reader supporting concatenated streams.
+ */
+public class ParallelBZip2OutputStream extends ParallelCompressorOutputStream {
+	
+	/**
+	 * The default number of uncompressed bytes in each stream, this matches
+	 * the largest bzip2 block size.
+	 */
+	public static final int DEFAULT_BLOCK_SIZE = 900000;
+	
+	
+	/**
+	 * Creates a new instance using the default block size.
+	 * 
+	 * @param out
+	 *            The stream to write compressed data to.
+	 * @param workers
+	 *            The number of worker threads to compress blocks with.
+	 */
+	public ParallelBZip2OutputStream(OutputStream out, int workers) {
+		this(out, workers, DEFAULT_BLOCK_SIZE);
+	}
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param out
+	 *            The stream to write compressed data to.
+	 * @param workers
+	 *            The number of worker threads to compress blocks with.
+	 * @param blockSize
+	 *            The number of uncompressed bytes in each stream.
+	 */
+	public ParallelBZip2OutputStream(OutputStream out, int workers, int blockSize) {
+		super(out, workers, blockSize);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected byte[] compress(byte[] data, int length) throws IOException {
+		ByteArrayOutputStream buffer;
+		BZip2CompressorOutputStream compressor;
+		
+		buffer = new ByteArrayOutputStream(length / 4 + 64);
+		compressor = new BZip2CompressorOutputStream(
+				buffer, BZip2CompressorOutputStream.chooseBlockSize(length));
+		compressor.write(data, 0, length);
+		compressor.close();
+		
+		return buffer.toByteArray();
+	}
+}
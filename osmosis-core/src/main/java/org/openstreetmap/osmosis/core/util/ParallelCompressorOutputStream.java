@@ -0,0 +1,221 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+/**
+ * Base class for output streams that split data into fixed size blocks and
+ * compress each block independently on a pool of worker threads. The
+ * compressed blocks are written to the underlying stream in the order the data
+ * was written, so the compression format must allow independently compressed
+ * blocks to be concatenated.
+ */
+public abstract class ParallelCompressorOutputStream extends OutputStream {
+	
+	private OutputStream out;
+	private int blockSize;
+	private ExecutorService executorService;
+	private int maxPendingBlocks;
+	private Deque<Future<byte[]>> pendingBlocks;
+	private byte[] block;
+	private int blockLength;
+	private boolean blockWritten;
+	private boolean closed;
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param out
+	 *            The stream to write compressed data to.
+	 * @param workers
+	 *            The number of worker threads to compress blocks with.
+	 * @param blockSize
+	 *            The number of uncompressed bytes in each block.
+	 */
+	protected ParallelCompressorOutputStream(OutputStream out, int workers, int blockSize) {
+		if (workers <= 0) {
+			throw new IllegalArgumentException("A worker count of " + workers + " is invalid, must be greater than 0.");
+		}
+		if (blockSize <= 0) {
+			throw new IllegalArgumentException("A block size of " + blockSize + " is invalid, must be greater than 0.");
+		}
+		
+		this.out = out;
+		this.blockSize = blockSize;
+		
+		executorService = Executors.newFixedThreadPool(workers);
+		
+		// Allow one extra block per worker to be queued so that workers don't
+		// sit idle while the calling thread is writing completed blocks.
+		maxPendingBlocks = workers * 2;
+		pendingBlocks = new ArrayDeque<Future<byte[]>>(maxPendingBlocks);
+		
+		block = new byte[blockSize];
+	}
+	
+	
+	/**
+	 * Compresses a single block of data. This is called on a worker thread and
+	 * must not modify any state shared with other blocks.
+	 * 
+	 * @param data
+	 *            The buffer containing the data to be compressed.
+	 * @param length
+	 *            The number of bytes in the buffer to be compressed.
+	 * @return The compressed block.
+	 * @throws IOException
+	 *             if the data cannot be compressed.
+	 */
+	protected abstract byte[] compress(byte[] data, int length) throws IOException;
+	
+	
+	/**
+	 * Writes completed blocks to the underlying stream in their original order
+	 * until no more than the target number of blocks remain in progress.
+	 * 
+	 * @param targetQueueSize
+	 *            The number of blocks allowed to remain in progress.
+	 * @throws IOException
+	 *             if a block cannot be compressed or written.
+	 */
+	private void writePendingBlocks(int targetQueueSize) throws IOException {
+		while (pendingBlocks.size() > targetQueueSize) {
+			byte[] compressedBlock;
+			
+			try {
+				compressedBlock = pendingBlocks.removeFirst().get();
+			} catch (InterruptedException e) {
+				throw new IOException("Thread was interrupted while waiting for a block to be compressed.", e);
+			} catch (ExecutionException e) {
+				throw new IOException("A block compression worker thread failed.", e.getCause());
+			}
+			
+			out.write(compressedBlock);
+		}
+	}
+	
+	
+	/**
+	 * Passes the current block to a worker thread for compression and begins a
+	 * new block.
+	 * 
+	 * @throws IOException
+	 *             if an earlier block cannot be compressed or written.
+	 */
+	private void submitBlock() throws IOException {
+		final byte[] data = block;
+		final int length = blockLength;
+		
+		pendingBlocks.addLast(executorService.submit(new Callable<byte[]>() {
+			@Override
+			public byte[] call() throws IOException {
+				return compress(data, length);
+			}
+		}));
+		
+		block = new byte[blockSize];
+		blockLength = 0;
+		blockWritten = true;
+		
+		// Once the queue is full we must wait for the oldest block to complete
+		// before accepting any more.
+		writePendingBlocks(maxPendingBlocks - 1);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void write(int b) throws IOException {
+		if (blockLength == blockSize) {
+			submitBlock();
+		}
+		block[blockLength++] = (byte) b;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		int offset;
+		int remaining;
+		
+		offset = off;
+		remaining = len;
+		while (remaining > 0) {
+			int count;
+			
+			if (blockLength == blockSize) {
+				submitBlock();
+			}
+			
+			count = Math.min(remaining, blockSize - blockLength);
+			System.arraycopy(b, offset, block, blockLength, count);
+			blockLength += count;
+			offset += count;
+			remaining -= count;
+		}
+	}
+	
+	
+	/**
+	 * Compresses all data written so far and flushes it to the underlying
+	 * stream. The current block is ended early, so frequent flushing reduces
+	 * the compression ratio.
+	 * 
+	 * @throws IOException
+	 *             if the data cannot be compressed or written.
+	 */
+	@Override
+	public void flush() throws IOException {
+		if (blockLength > 0) {
+			submitBlock();
+		}
+		writePendingBlocks(0);
+		
+		out.flush();
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		
+		try {
+			// An empty block is still required to produce a valid empty file.
+			if (blockLength > 0 || !blockWritten) {
+				submitBlock();
+			}
+			writePendingBlocks(0);
+			
+		} finally {
+			// Discard any blocks still queued if writing failed.
+			for (Future<byte[]> pendingBlock : pendingBlocks) {
+				pendingBlock.cancel(true);
+			}
+			pendingBlocks.clear();
+			executorService.shutdownNow();
+			
+			out.close();
+		}
+	}
+}
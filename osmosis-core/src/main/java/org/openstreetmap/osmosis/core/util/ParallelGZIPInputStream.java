@@ -0,0 +1,402 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+
+/**
+ * Decompresses gzip data using multiple threads. Members with a header
+ * recording their compressed length, as written by
+ * {@link ParallelGZIPOutputStream} or by BGZF tools such as bgzip, are read
+ * whole and decompressed on worker threads. Once a member without a recorded
+ * length is found the remaining data is decompressed on the calling thread by
+ * a {@link MultiMemberGZIPInputStream}, so any gzip file may be read.
+ */
+public class ParallelGZIPInputStream extends InputStream {
+	
+	private static final int FIXED_HEADER_LENGTH = 10;
+	private static final int TRAILER_LENGTH = 8;
+	private static final int FLAG_HEADER_CRC = 2;
+	private static final int FLAG_EXTRA = 4;
+	private static final int FLAG_NAME = 8;
+	private static final int FLAG_COMMENT = 16;
+	private static final byte BGZF_ID1 = 'B';
+	private static final byte BGZF_ID2 = 'C';
+	
+	private InputStream in;
+	private ExecutorService executorService;
+	private int maxPendingMembers;
+	private Deque<Future<byte[]>> pendingMembers;
+	private boolean endOfMembers;
+	private InputStream remainderStream;
+	private byte[] current;
+	private int currentPosition;
+	private boolean closed;
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param in
+	 *            The stream to read compressed data from.
+	 * @param workers
+	 *            The number of worker threads to decompress members with.
+	 */
+	public ParallelGZIPInputStream(InputStream in, int workers) {
+		if (workers <= 0) {
+			throw new IllegalArgumentException("A worker count of " + workers + " is invalid, must be greater than 0.");
+		}
+		
+		this.in = in;
+		
+		executorService = Executors.newFixedThreadPool(workers);
+		maxPendingMembers = workers * 2;
+		pendingMembers = new ArrayDeque<Future<byte[]>>(maxPendingMembers);
+		
+		current = new byte[0];
+	}
+	
+	
+	private static int readUnsignedShort(byte[] buffer, int offset) {
+		return (buffer[offset] & 0xff) | ((buffer[offset + 1] & 0xff) << 8);
+	}
+	
+	
+	private static int readInt(byte[] buffer, int offset) {
+		return readUnsignedShort(buffer, offset) | (readUnsignedShort(buffer, offset + 2) << 16);
+	}
+	
+	
+	private int readFully(byte[] buffer, int offset, int length) throws IOException {
+		int total;
+		
+		total = 0;
+		while (total < length) {
+			int count = in.read(buffer, offset + total, length - total);
+			
+			if (count < 0) {
+				break;
+			}
+			total += count;
+		}
+		
+		return total;
+	}
+	
+	
+	/**
+	 * Searches the extra field of a member header for a sub-field recording
+	 * the length of the member.
+	 * 
+	 * @param header
+	 *            The header data.
+	 * @param offset
+	 *            The offset of the first sub-field.
+	 * @param end
+	 *            The offset of the end of the extra field.
+	 * @return The length of the member, or -1 if it isn't recorded.
+	 */
+	private static long findMemberLength(byte[] header, int offset, int end) {
+		int position;
+		
+		position = offset;
+		while (position + 4 <= end) {
+			byte id1 = header[position];
+			byte id2 = header[position + 1];
+			int length = readUnsignedShort(header, position + 2);
+			
+			position += 4;
+			if (position + length > end) {
+				break;
+			}
+			
+			if (id1 == ParallelGZIPOutputStream.MEMBER_LENGTH_ID1
+					&& id2 == ParallelGZIPOutputStream.MEMBER_LENGTH_ID2 && length == 4) {
+				return readInt(header, position) & 0xffffffffL;
+			}
+			if (id1 == BGZF_ID1 && id2 == BGZF_ID2 && length == 2) {
+				return readUnsignedShort(header, position) + 1;
+			}
+			
+			position += length;
+		}
+		
+		return -1;
+	}
+	
+	
+	/**
+	 * Reads the next member from the underlying stream and passes it to a
+	 * worker thread for decompression. If the member length isn't recorded in
+	 * its header, the remainder of the stream is prepared for decompression
+	 * on the calling thread instead.
+	 * 
+	 * @return True if a member was submitted, false if no more members can be
+	 *         submitted.
+	 * @throws IOException
+	 *             if the data cannot be read.
+	 */
+	private boolean submitMember() throws IOException {
+		byte[] header;
+		int headerLength;
+		
+		header = new byte[FIXED_HEADER_LENGTH + 2];
+		headerLength = readFully(header, 0, FIXED_HEADER_LENGTH);
+		if (headerLength == 0) {
+			return false;
+		}
+		
+		if (headerLength == FIXED_HEADER_LENGTH && header[0] == (byte) 0x1f && header[1] == (byte) 0x8b
+				&& header[2] == 8 && (header[3] & FLAG_EXTRA) != 0) {
+			headerLength += readFully(header, headerLength, 2);
+			
+			if (headerLength == header.length) {
+				int extraLength = readUnsignedShort(header, FIXED_HEADER_LENGTH);
+				long memberLength;
+				
+				header = Arrays.copyOf(header, headerLength + extraLength);
+				headerLength += readFully(header, headerLength, extraLength);
+				
+				memberLength = findMemberLength(header, FIXED_HEADER_LENGTH + 2, headerLength);
+				if (memberLength >= headerLength + TRAILER_LENGTH && memberLength <= Integer.MAX_VALUE) {
+					final byte[] member = Arrays.copyOf(header, (int) memberLength);
+					
+					if (readFully(member, headerLength, member.length - headerLength)
+							< member.length - headerLength) {
+						throw new EOFException("Unexpected end of gzip data.");
+					}
+					
+					pendingMembers.addLast(executorService.submit(new Callable<byte[]>() {
+						@Override
+						public byte[] call() throws IOException {
+							return decompressMember(member);
+						}
+					}));
+					
+					return true;
+				}
+			}
+		}
+		
+		// The member length is unknown, the remaining data must be
+		// decompressed sequentially.
+		remainderStream = new MultiMemberGZIPInputStream(
+				new SequenceInputStream(new ByteArrayInputStream(header, 0, headerLength), in));
+		
+		return false;
+	}
+	
+	
+	private static int skipString(byte[] member, int offset) throws IOException {
+		int position;
+		
+		position = offset;
+		while (position < member.length && member[position] != 0) {
+			position++;
+		}
+		if (position == member.length) {
+			throw new ZipException("Invalid gzip member header.");
+		}
+		
+		return position + 1;
+	}
+	
+	
+	/**
+	 * Decompresses a complete gzip member.
+	 * 
+	 * @param member
+	 *            The member data including the header and trailer.
+	 * @return The decompressed data.
+	 * @throws IOException
+	 *             if the member is corrupt.
+	 */
+	private static byte[] decompressMember(byte[] member) throws IOException {
+		int flags;
+		int position;
+		int trailerPosition;
+		long expectedLength;
+		byte[] data;
+		int dataLength;
+		Inflater inflater;
+		CRC32 crc;
+		
+		flags = member[3];
+		position = FIXED_HEADER_LENGTH;
+		if ((flags & FLAG_EXTRA) != 0) {
+			position += 2 + readUnsignedShort(member, position);
+		}
+		if ((flags & FLAG_NAME) != 0) {
+			position = skipString(member, position);
+		}
+		if ((flags & FLAG_COMMENT) != 0) {
+			position = skipString(member, position);
+		}
+		if ((flags & FLAG_HEADER_CRC) != 0) {
+			position += 2;
+		}
+		
+		trailerPosition = member.length - TRAILER_LENGTH;
+		if (position > trailerPosition) {
+			throw new ZipException("Invalid gzip member header.");
+		}
+		
+		expectedLength = readInt(member, trailerPosition + 4) & 0xffffffffL;
+		if (expectedLength > Integer.MAX_VALUE) {
+			throw new ZipException("The gzip member is too large to be decompressed in memory.");
+		}
+		data = new byte[(int) expectedLength];
+		dataLength = 0;
+		
+		inflater = new Inflater(true);
+		try {
+			inflater.setInput(member, position, trailerPosition - position);
+			
+			while (dataLength < data.length) {
+				int count = inflater.inflate(data, dataLength, data.length - dataLength);
+				
+				if (count == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+					throw new ZipException("Corrupt gzip member, the decompressed length is incorrect.");
+				}
+				dataLength += count;
+			}
+			
+			// All data has been produced, the end of the deflate stream must
+			// coincide with the start of the trailer.
+			if (!inflater.finished() && inflater.inflate(new byte[1]) != 0) {
+				throw new ZipException("Corrupt gzip member, the decompressed length is incorrect.");
+			}
+			if (!inflater.finished() || inflater.getRemaining() != 0) {
+				throw new ZipException("Corrupt gzip member, the compressed length is incorrect.");
+			}
+			
+		} catch (DataFormatException e) {
+			throw new ZipException("Corrupt gzip member. " + e.getMessage());
+		} finally {
+			inflater.end();
+		}
+		
+		crc = new CRC32();
+		crc.update(data);
+		if ((int) crc.getValue() != readInt(member, trailerPosition)) {
+			throw new ZipException("Corrupt gzip member, the CRC is incorrect.");
+		}
+		
+		return data;
+	}
+	
+	
+	/**
+	 * Makes the next block of decompressed data current.
+	 * 
+	 * @return False if no more data is available.
+	 * @throws IOException
+	 *             if the data cannot be read or decompressed.
+	 */
+	private boolean nextMember() throws IOException {
+		while (!endOfMembers && pendingMembers.size() < maxPendingMembers) {
+			endOfMembers = !submitMember();
+		}
+		
+		if (pendingMembers.isEmpty()) {
+			return false;
+		}
+		
+		try {
+			current = pendingMembers.removeFirst().get();
+		} catch (InterruptedException e) {
+			throw new IOException("Thread was interrupted while waiting for a member to be decompressed.", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Unable to decompress gzip member.", e.getCause());
+		}
+		currentPosition = 0;
+		
+		return true;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int read() throws IOException {
+		while (currentPosition == current.length) {
+			if (!nextMember()) {
+				if (remainderStream != null) {
+					return remainderStream.read();
+				}
+				return -1;
+			}
+		}
+		
+		return current[currentPosition++] & 0xff;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int count;
+		
+		if (len == 0) {
+			return 0;
+		}
+		
+		while (currentPosition == current.length) {
+			if (!nextMember()) {
+				if (remainderStream != null) {
+					return remainderStream.read(b, off, len);
+				}
+				return -1;
+			}
+		}
+		
+		count = Math.min(len, current.length - currentPosition);
+		System.arraycopy(current, currentPosition, b, off, count);
+		currentPosition += count;
+		
+		return count;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		
+		for (Future<byte[]> pendingMember : pendingMembers) {
+			pendingMember.cancel(true);
+		}
+		pendingMembers.clear();
+		executorService.shutdownNow();
+		
+		if (remainderStream != null) {
+			remainderStream.close();
+		} else {
+			in.close();
+		}
+	}
+}
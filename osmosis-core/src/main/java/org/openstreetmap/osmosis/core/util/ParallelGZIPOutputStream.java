@@ -0,0 +1,139 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.util;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+
+/**
+ * Compresses data into the gzip format using multiple threads. Data is split
+ * into blocks which are compressed independently and written as separate gzip
+ * members, the result can be read by any gzip implementation supporting multi
+ * member files including {@link MultiMemberGZIPInputStream}.
+ * <p>
+ * The header of each member contains an extra field holding the compressed
+ * length of the member. This allows {@link ParallelGZIPInputStream} to locate
+ * members without decompressing them, other readers ignore the field.
+ */
+public class ParallelGZIPOutputStream extends ParallelCompressorOutputStream {
+	
+	/**
+	 * The default number of uncompressed bytes in each member.
+	 */
+	public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+	
+	/**
+	 * The first byte of the extra sub-field identifier holding the member length.
+	 */
+	static final byte MEMBER_LENGTH_ID1 = 'O';
+	/**
+	 * The second byte of the extra sub-field identifier holding the member length.
+	 */
+	static final byte MEMBER_LENGTH_ID2 = 'S';
+	
+	private static final int HEADER_LENGTH = 20;
+	private static final int TRAILER_LENGTH = 8;
+	
+	private int level;
+	
+	
+	/**
+	 * Creates a new instance using the default compression level and block size.
+	 * 
+	 * @param out
+	 *            The stream to write compressed data to.
+	 * @param workers
+	 *            The number of worker threads to compress blocks with.
+	 */
+	public ParallelGZIPOutputStream(OutputStream out, int workers) {
+		this(out, workers, Deflater.DEFAULT_COMPRESSION, DEFAULT_BLOCK_SIZE);
+	}
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param out
+	 *            The stream to write compressed data to.
+	 * @param workers
+	 *            The number of worker threads to compress blocks with.
+	 * @param level
+	 *            The deflate compression level.
+	 * @param blockSize
+	 *            The number of uncompressed bytes in each member.
+	 */
+	public ParallelGZIPOutputStream(OutputStream out, int workers, int level, int blockSize) {
+		super(out, workers, blockSize);
+		
+		this.level = level;
+	}
+	
+	
+	private static void writeInt(byte[] buffer, int offset, int value) {
+		buffer[offset] = (byte) value;
+		buffer[offset + 1] = (byte) (value >>> 8);
+		buffer[offset + 2] = (byte) (value >>> 16);
+		buffer[offset + 3] = (byte) (value >>> 24);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected byte[] compress(byte[] data, int length) {
+		Deflater deflater;
+		CRC32 crc;
+		byte[] member;
+		int memberLength;
+		
+		member = new byte[HEADER_LENGTH + length + (length >> 10) + 64 + TRAILER_LENGTH];
+		memberLength = HEADER_LENGTH;
+		
+		deflater = new Deflater(level, true);
+		try {
+			deflater.setInput(data, 0, length);
+			deflater.finish();
+			while (!deflater.finished()) {
+				if (memberLength == member.length) {
+					member = Arrays.copyOf(member, member.length * 2);
+				}
+				memberLength += deflater.deflate(member, memberLength, member.length - memberLength);
+			}
+		} finally {
+			deflater.end();
+		}
+		
+		crc = new CRC32();
+		crc.update(data, 0, length);
+		
+		if (memberLength + TRAILER_LENGTH > member.length) {
+			member = Arrays.copyOf(member, memberLength + TRAILER_LENGTH);
+		}
+		writeInt(member, memberLength, (int) crc.getValue());
+		writeInt(member, memberLength + 4, length);
+		memberLength += TRAILER_LENGTH;
+		
+		// Magic number, deflate method, extra field flag, no modification
+		// time, no extra flags and an unknown operating system.
+		member[0] = (byte) 0x1f;
+		member[1] = (byte) 0x8b;
+		member[2] = 8;
+		member[3] = 4;
+		member[9] = (byte) 0xff;
+		// An extra field containing one sub-field with the member length.
+		member[10] = 8;
+		member[12] = MEMBER_LENGTH_ID1;
+		member[13] = MEMBER_LENGTH_ID2;
+		member[14] = 4;
+		writeInt(member, 16, memberLength);
+		
+		if (memberLength < member.length) {
+			member = Arrays.copyOf(member, memberLength);
+		}
+		
+		return member;
+	}
+}
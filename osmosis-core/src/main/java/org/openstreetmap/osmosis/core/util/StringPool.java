@@ -0,0 +1,298 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.util;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+
+
+/**
+ * A bounded pool of strings allowing equal strings created by readers to be
+ * replaced by a single shared instance. Tag keys, common tag values and user
+ * names repeat many times within a data set so sharing them reduces the
+ * memory consumed by entities held in memory.
+ * <p>
+ * The pool is a fixed size hash table where each string can only occupy the
+ * slot selected by its hash code. A string replaces any different string
+ * occupying its slot which keeps the size of the pool bounded and means
+ * frequently used strings are retained while rarely used ones are discarded.
+ * Slots are accessed atomically so the pool may be used by multiple threads
+ * without locking. Hits and misses are counted separately by each thread and
+ * only combined when the statistics are requested, so that readers running on
+ * parallel workers don't contend on shared counters. The counts of threads
+ * that have finished are folded into shared totals so that pools used by many
+ * short lived threads don't accumulate their counters.
+ */
+public class StringPool {
+	/**
+	 * The number of strings held by the shared pool if not configured
+	 * otherwise.
+	 */
+	public static final int DEFAULT_CAPACITY = 65536;
+	
+	/**
+	 * Strings longer than this are rarely repeated and are returned without
+	 * being pooled.
+	 */
+	private static final int MAX_POOLED_LENGTH = 64;
+	
+	private static volatile StringPool sharedPool = new StringPool(DEFAULT_CAPACITY);
+	
+	private AtomicReferenceArray<String> slots;
+	private int mask;
+	private ThreadLocal<LookupCounter> threadCounter;
+	private List<LookupCounter> counters;
+	private long finishedHitCount;
+	private long finishedMissCount;
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param capacity
+	 *            The maximum number of strings to hold. This is rounded up to
+	 *            the next power of two. A capacity of 0 disables pooling.
+	 */
+	public StringPool(int capacity) {
+		int slotCount;
+		
+		if (capacity < 0) {
+			throw new OsmosisRuntimeException("String pool capacity " + capacity + " must not be negative.");
+		}
+		
+		if (capacity > 0) {
+			slotCount = Integer.highestOneBit(capacity);
+			if (slotCount < capacity) {
+				slotCount <<= 1;
+			}
+			slots = new AtomicReferenceArray<String>(slotCount);
+			mask = slotCount - 1;
+		}
+		
+		counters = new ArrayList<LookupCounter>();
+		threadCounter = new ThreadLocal<LookupCounter>() {
+			@Override
+			protected LookupCounter initialValue() {
+				LookupCounter counter = new LookupCounter(Thread.currentThread());
+				
+				synchronized (counters) {
+					retireFinishedCounters();
+					counters.add(counter);
+				}
+				
+				return counter;
+			}
+		};
+	}
+	
+	
+	/**
+	 * Removes the counters of threads that have finished, adding their counts
+	 * to the totals of finished threads. The caller must hold the counters
+	 * lock.
+	 */
+	private void retireFinishedCounters() {
+		for (Iterator<LookupCounter> i = counters.iterator(); i.hasNext();) {
+			LookupCounter counter = i.next();
+			
+			if (counter.isFinished()) {
+				finishedHitCount += counter.hits.get();
+				finishedMissCount += counter.misses.get();
+				i.remove();
+			}
+		}
+	}
+	
+	
+	/**
+	 * Gets the pool shared by all readers.
+	 * 
+	 * @return The shared pool.
+	 */
+	public static StringPool getShared() {
+		return sharedPool;
+	}
+	
+	
+	/**
+	 * Replaces the pool shared by all readers. Strings already returned by
+	 * the previous pool are not affected.
+	 * 
+	 * @param pool
+	 *            The new shared pool.
+	 */
+	public static void setShared(StringPool pool) {
+		sharedPool = pool;
+	}
+	
+	
+	/**
+	 * Returns a pooled instance of the string. If an equal string is held by
+	 * the pool it is returned, otherwise the string is added to the pool and
+	 * returned.
+	 * 
+	 * @param value
+	 *            The string to be pooled, may be null.
+	 * @return The pooled string.
+	 */
+	public String intern(String value) {
+		int hash;
+		int slot;
+		String existing;
+		
+		if (slots == null || value == null || value.length() > MAX_POOLED_LENGTH) {
+			return value;
+		}
+		
+		hash = value.hashCode();
+		slot = (hash ^ (hash >>> 16)) & mask;
+		
+		existing = slots.get(slot);
+		if (existing != null && existing.equals(value)) {
+			threadCounter.get().recordHit();
+			return existing;
+		}
+		
+		// Other threads don't need to see the new string immediately, a
+		// thread that misses it simply stores its own equal copy.
+		slots.lazySet(slot, value);
+		threadCounter.get().recordMiss();
+		
+		return value;
+	}
+	
+	
+	/**
+	 * Gets the maximum number of strings held by the pool.
+	 * 
+	 * @return The capacity, 0 if pooling is disabled.
+	 */
+	public int getCapacity() {
+		if (slots == null) {
+			return 0;
+		} else {
+			return slots.length();
+		}
+	}
+	
+	
+	/**
+	 * Gets the number of lookups that returned a string already held by the
+	 * pool.
+	 * 
+	 * @return The number of hits.
+	 */
+	public long getHitCount() {
+		long total;
+		
+		synchronized (counters) {
+			retireFinishedCounters();
+			
+			total = finishedHitCount;
+			for (LookupCounter counter : counters) {
+				total += counter.hits.get();
+			}
+		}
+		
+		return total;
+	}
+	
+	
+	/**
+	 * Gets the number of lookups that added a string to the pool.
+	 * 
+	 * @return The number of misses.
+	 */
+	public long getMissCount() {
+		long total;
+		
+		synchronized (counters) {
+			retireFinishedCounters();
+			
+			total = finishedMissCount;
+			for (LookupCounter counter : counters) {
+				total += counter.misses.get();
+			}
+		}
+		
+		return total;
+	}
+	
+	
+	/**
+	 * Gets the proportion of lookups that returned a string already held by
+	 * the pool.
+	 * 
+	 * @return The hit rate between 0 and 1, or 0 if no lookups have occurred.
+	 */
+	public double getHitRate() {
+		long hits;
+		long total;
+		
+		hits = getHitCount();
+		total = hits + getMissCount();
+		if (total == 0) {
+			return 0;
+		}
+		
+		return (double) hits / total;
+	}
+	
+	
+	/**
+	 * The lookup statistics of a single thread. Only the owning thread updates
+	 * the counts so they are incremented with ordered writes rather than
+	 * atomic read-modify-write operations.
+	 */
+	private static class LookupCounter {
+		private WeakReference<Thread> owner;
+		private AtomicLong hits = new AtomicLong();
+		private AtomicLong misses = new AtomicLong();
+		
+		
+		/**
+		 * Creates a new instance.
+		 * 
+		 * @param owner
+		 *            The thread updating the counts. It is only weakly
+		 *            referenced so that the counter doesn't retain it.
+		 */
+		LookupCounter(Thread owner) {
+			this.owner = new WeakReference<Thread>(owner);
+		}
+		
+		
+		/**
+		 * Indicates if the owning thread has finished and will make no further
+		 * updates.
+		 * 
+		 * @return True if the owning thread has finished.
+		 */
+		public boolean isFinished() {
+			Thread thread = owner.get();
+			
+			return thread == null || !thread.isAlive();
+		}
+		
+		
+		/**
+		 * Records a lookup that returned a pooled string.
+		 */
+		public void recordHit() {
+			hits.lazySet(hits.get() + 1);
+		}
+		
+		
+		/**
+		 * Records a lookup that added a string to the pool.
+		 */
+		public void recordMiss() {
+			misses.lazySet(misses.get() + 1);
+		}
+	}
+}
@@ -9,6 +9,8 @@ import org.junit.Test;
 
 import org.openstreetmap.osmosis.core.LogLevels;
 import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.store.StorageCompression;
+import org.openstreetmap.osmosis.core.util.StringPool;
 
 
 /**
@@ -127,6 +129,65 @@ public class CommandLineParserTest {
 	}
 	
 	
+	/**
+	 * Validates the temporary file compression option.
+	 */
+	@Test
+	public void testTempCompressionOption() {
+		CommandLineParser commandLineParser;
+		
+		commandLineParser = new CommandLineParser();
+		commandLineParser.parse(new String [] {});
+		Assert.assertEquals("Incorrect default compression.", StorageCompression.getDefault(),
+				commandLineParser.getTempCompression());
+		
+		commandLineParser = new CommandLineParser();
+		commandLineParser.parse(new String [] {"-tc", "lz4"});
+		Assert.assertEquals("Incorrect compression.", StorageCompression.Lz4, commandLineParser.getTempCompression());
+	}
+	
+	
+	/**
+	 * Validates the string pool option.
+	 */
+	@Test
+	public void testStringPoolOption() {
+		CommandLineParser commandLineParser;
+		
+		commandLineParser = new CommandLineParser();
+		commandLineParser.parse(new String [] {});
+		Assert.assertEquals("Incorrect default capacity.", StringPool.DEFAULT_CAPACITY,
+				commandLineParser.getStringPoolCapacity());
+		
+		commandLineParser = new CommandLineParser();
+		commandLineParser.parse(new String [] {"-sp", "0"});
+		Assert.assertEquals("Incorrect capacity.", 0, commandLineParser.getStringPoolCapacity());
+	}
+	
+	
+	/**
+	 * Validates the metrics option.
+	 */
+	@Test
+	public void testMetricsOption() {
+		CommandLineParser commandLineParser;
+		
+		commandLineParser = new CommandLineParser();
+		commandLineParser.parse(new String [] {});
+		Assert.assertFalse("Metrics should be disabled by default.", commandLineParser.isMetricsEnabled());
+		
+		commandLineParser = new CommandLineParser();
+		commandLineParser.parse(new String [] {"-m"});
+		Assert.assertTrue("Metrics should be enabled.", commandLineParser.isMetricsEnabled());
+		Assert.assertNull("No metrics file should be set.", commandLineParser.getMetricsFile());
+		
+		commandLineParser = new CommandLineParser();
+		commandLineParser.parse(new String [] {"-metrics", "metrics.json", "5"});
+		Assert.assertEquals("Incorrect metrics file.", "metrics.json", commandLineParser.getMetricsFile().getName());
+		Assert.assertEquals("Incorrect metrics interval.", 5, commandLineParser.getMetricsIntervalSeconds());
+	}
+	
+	
 	/**
 	 * Validates failure when an unknown option is specified.
 	 */
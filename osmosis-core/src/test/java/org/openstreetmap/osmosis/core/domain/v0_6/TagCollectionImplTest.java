@@ -0,0 +1,112 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.domain.v0_6;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openstreetmap.osmosis.core.store.DataInputStoreReader;
+import org.openstreetmap.osmosis.core.store.DataOutputStoreWriter;
+import org.openstreetmap.osmosis.core.store.DynamicStoreClassRegister;
+import org.openstreetmap.osmosis.core.store.StoreClassRegister;
+
+
+/**
+ * Tests the tag collection implementation.
+ */
+public class TagCollectionImplTest {
+	
+	/**
+	 * Tests that tags added by key and value can be retrieved by index and by
+	 * iteration.
+	 */
+	@Test
+	public void testAddAndGet() {
+		TagCollectionImpl tags = new TagCollectionImpl();
+		Iterator<Tag> iterator;
+		
+		for (int i = 0; i < 10; i++) {
+			tags.add("key" + i, "value" + i);
+		}
+		tags.add(new Tag("highway", "primary"));
+		
+		Assert.assertEquals("Incorrect size.", 11, tags.size());
+		Assert.assertEquals("Incorrect key.", "key3", tags.getKey(3));
+		Assert.assertEquals("Incorrect value.", "value3", tags.getValue(3));
+		Assert.assertEquals("Incorrect key.", "highway", tags.getKey(10));
+		
+		iterator = tags.iterator();
+		for (int i = 0; i < 10; i++) {
+			Assert.assertEquals("Incorrect tag.", 0, new Tag("key" + i, "value" + i).compareTo(iterator.next()));
+		}
+		Assert.assertEquals("Incorrect tag.", 0, new Tag("highway", "primary").compareTo(iterator.next()));
+		Assert.assertFalse("Too many tags.", iterator.hasNext());
+		
+		Assert.assertEquals("Incorrect map.", "value5", tags.buildMap().get("key5"));
+	}
+	
+	
+	/**
+	 * Tests that tags are matched by key and value when checking for and
+	 * removing tags.
+	 */
+	@Test
+	public void testContainsAndRemove() {
+		TagCollectionImpl tags = new TagCollectionImpl(Arrays.asList(
+				new Tag("a", "1"), new Tag("b", "2"), new Tag("c", "3")));
+		Iterator<Tag> iterator;
+		
+		Assert.assertTrue("Tag not found.", tags.contains(new Tag("b", "2")));
+		Assert.assertFalse("Tag with different value found.", tags.contains(new Tag("b", "3")));
+		
+		Assert.assertTrue("Tag not removed.", tags.remove(new Tag("b", "2")));
+		Assert.assertFalse("Removed tag found.", tags.contains(new Tag("b", "2")));
+		Assert.assertEquals("Incorrect key after removal.", "c", tags.getKey(1));
+		
+		iterator = tags.iterator();
+		iterator.next();
+		iterator.remove();
+		Assert.assertEquals("Incorrect size after iterator removal.", 1, tags.size());
+		Assert.assertEquals("Incorrect remaining tag.", 0, new Tag("c", "3").compareTo(iterator.next()));
+	}
+	
+	
+	/**
+	 * Tests that indexes beyond the end of the collection are rejected.
+	 */
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testIndexOutOfRange() {
+		TagCollectionImpl tags = new TagCollectionImpl(10);
+		
+		tags.add("a", "1");
+		tags.getKey(1);
+	}
+	
+	
+	/**
+	 * Tests that the collection is correctly written to and read from a store.
+	 */
+	@Test
+	public void testStore() {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		StoreClassRegister scr = new DynamicStoreClassRegister();
+		TagCollectionImpl tags = new TagCollectionImpl();
+		TagCollectionImpl readTags;
+		
+		tags.add("name", "Main Street");
+		tags.add("highway", "residential");
+		tags.store(new DataOutputStoreWriter(new DataOutputStream(out)), scr);
+		
+		readTags = new TagCollectionImpl(
+				new DataInputStoreReader(new DataInputStream(new ByteArrayInputStream(out.toByteArray()))), scr);
+		
+		Assert.assertEquals("Incorrect size.", 2, readTags.size());
+		Assert.assertEquals("Incorrect key.", "highway", readTags.getKey(1));
+		Assert.assertEquals("Incorrect value.", "residential", readTags.getValue(1));
+	}
+}
@@ -0,0 +1,111 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.domain.v0_6;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.domain.common.SimpleTimestampContainer;
+import org.openstreetmap.osmosis.core.store.DataInputStoreReader;
+import org.openstreetmap.osmosis.core.store.DataOutputStoreWriter;
+import org.openstreetmap.osmosis.core.store.DynamicStoreClassRegister;
+import org.openstreetmap.osmosis.core.store.StoreClassRegister;
+
+
+/**
+ * Tests the way class and its primitive way node and timestamp storage.
+ */
+public class WayTest {
+	
+	private Way buildWay() {
+		TagCollectionImpl tags = new TagCollectionImpl();
+		
+		tags.add("highway", "primary");
+		
+		return new Way(new CommonEntityData(5, 2, 1234567890000L, new OsmUser(3, "user"), 7, tags),
+				new long[] {10, 11, 12, 10});
+	}
+	
+	
+	/**
+	 * Tests that a way built from a node id array exposes the ids as way nodes.
+	 */
+	@Test
+	public void testWayNodeIds() {
+		Way way = buildWay();
+		List<WayNode> wayNodes;
+		
+		wayNodes = way.getWayNodes();
+		Assert.assertEquals("Incorrect way node count.", 4, wayNodes.size());
+		Assert.assertEquals("Incorrect way node.", 11, wayNodes.get(1).getNodeId());
+		Assert.assertEquals("Incorrect way node id.", 12, way.getWayNodeId(2));
+		Assert.assertTrue("Way should be closed.", way.isClosed());
+		
+		wayNodes.add(new WayNode(13));
+		wayNodes.remove(0);
+		Assert.assertEquals("Incorrect way node id after modification.", 13, way.getWayNodeId(3));
+		Assert.assertFalse("Way should not be closed.", way.isClosed());
+	}
+	
+	
+	/**
+	 * Tests that primitive timestamps are available both as dates and as
+	 * milliseconds.
+	 */
+	@Test
+	public void testTimestamp() {
+		Way way = buildWay();
+		
+		Assert.assertEquals("Incorrect timestamp.", new Date(1234567890000L), way.getTimestamp());
+		Assert.assertEquals("Incorrect timestamp millis.", 1234567890000L, way.getTimestampMillis());
+		Assert.assertEquals("Incorrect timestamp container.", new Date(1234567890000L),
+				way.getTimestampContainer().getTimestamp());
+		
+		way.setTimestamp(new Date(1000));
+		Assert.assertEquals("Incorrect updated timestamp millis.", 1000, way.getTimestampMillis());
+	}
+	
+	
+	/**
+	 * Tests that entities without a timestamp report the fact.
+	 */
+	@Test(expected = OsmosisRuntimeException.class)
+	public void testMissingTimestamp() {
+		Way way = new Way(new CommonEntityData(1, 1, new SimpleTimestampContainer(null), OsmUser.NONE, 1,
+				new TagCollectionImpl()), new long[0]);
+		
+		Assert.assertNull("Timestamp should not exist.", way.getTimestamp());
+		way.getTimestampMillis();
+	}
+	
+	
+	/**
+	 * Tests that a way is correctly written to and read from a store, and that
+	 * copies compare equal to the original.
+	 */
+	@Test
+	public void testStore() {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		StoreClassRegister scr = new DynamicStoreClassRegister();
+		Way way = buildWay();
+		Way readWay;
+		
+		way.store(new DataOutputStoreWriter(new DataOutputStream(out)), scr);
+		readWay = new Way(new DataInputStoreReader(new DataInputStream(new ByteArrayInputStream(out.toByteArray()))),
+				scr);
+		
+		Assert.assertEquals("Way not equal after retrieval from store.", 0, way.compareTo(readWay));
+		Assert.assertEquals("Incorrect way node id.", 12, readWay.getWayNodeId(2));
+		Assert.assertEquals("Incorrect timestamp millis.", 1234567890000L, readWay.getTimestampMillis());
+		Assert.assertEquals("Incorrect tag.", "primary", readWay.getTags().iterator().next().getValue());
+		
+		way.makeReadOnly();
+		Assert.assertEquals("Writeable copy not equal.", 0, way.compareTo(way.getWriteableInstance()));
+	}
+}
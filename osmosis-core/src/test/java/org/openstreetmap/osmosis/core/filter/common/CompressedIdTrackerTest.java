@@ -0,0 +1,138 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.filter.common;
+
+import java.util.Iterator;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Tests the compressed id tracker implementation.
+ */
+public class CompressedIdTrackerTest extends IdTrackerBase {
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected IdTracker getImplementation() {
+		return new CompressedIdTracker();
+	}
+	
+	
+	private void assertSameIds(TreeSet<Long> expected, IdTracker actual) {
+		Iterator<Long> actualIds = actual.iterator();
+		
+		for (Long id : expected) {
+			Assert.assertTrue("Id " + id + " is not set.", actual.get(id));
+			Assert.assertTrue("Iterator ended before id " + id + ".", actualIds.hasNext());
+			Assert.assertEquals("Incorrect iteration order.", id, actualIds.next());
+		}
+		Assert.assertFalse("Iterator returned unexpected ids.", actualIds.hasNext());
+	}
+	
+	
+	private void addRandomIds(Random random, TreeSet<Long> expected, IdTracker tracker, long base) {
+		// Mix sparse ids, dense ids and consecutive blocks so that all container
+		// representations are used.
+		for (int i = 0; i < 3000; i++) {
+			long id = base + random.nextInt(1000000);
+			
+			expected.add(id);
+			tracker.set(id);
+		}
+		for (int i = 0; i < 20000; i++) {
+			long id = base + 2000000 + random.nextInt(30000);
+			
+			expected.add(id);
+			tracker.set(id);
+		}
+		for (int block = 0; block < 100; block++) {
+			long blockBase = base + 3000000 + random.nextInt(500000);
+			
+			for (int i = 0; i < 200; i++) {
+				expected.add(blockBase + i);
+				tracker.set(blockBase + i);
+			}
+		}
+	}
+	
+	
+	/**
+	 * Tests that ids are returned in order and are all found regardless of the
+	 * container representation selected.
+	 */
+	@Test
+	public void testContainerConversions() {
+		Random random = new Random(1);
+		TreeSet<Long> expected = new TreeSet<Long>();
+		IdTracker tracker = new CompressedIdTracker();
+		
+		addRandomIds(random, expected, tracker, -5000000);
+		addRandomIds(random, expected, tracker, 10000000000L);
+		
+		assertSameIds(expected, tracker);
+		Assert.assertFalse("Unset id found.", tracker.get(-20000000));
+		Assert.assertFalse("Unset id found.", tracker.get(20000000000L));
+	}
+	
+	
+	/**
+	 * Tests that merging compressed trackers produces the same ids as setting
+	 * them individually.
+	 */
+	@Test
+	public void testSetAllCompressed() {
+		Random random = new Random(2);
+		TreeSet<Long> expected = new TreeSet<Long>();
+		IdTracker first = new CompressedIdTracker();
+		IdTracker second = new CompressedIdTracker();
+		TreeSet<Long> secondExpected = new TreeSet<Long>();
+		
+		addRandomIds(random, expected, first, 0);
+		addRandomIds(random, secondExpected, second, 1500000);
+		addRandomIds(random, secondExpected, second, -100000);
+		expected.addAll(secondExpected);
+		
+		first.setAll(second);
+		
+		assertSameIds(expected, first);
+		assertSameIds(secondExpected, second);
+		
+		// Containers copied from the source tracker must not be shared with it.
+		for (long id = 4500000; id < 5000000; id++) {
+			if (!secondExpected.contains(id)) {
+				first.set(id);
+				Assert.assertFalse("Source tracker was modified.", second.get(id));
+				break;
+			}
+		}
+	}
+	
+	
+	/**
+	 * Tests merging ids from a different tracker implementation.
+	 */
+	@Test
+	public void testSetAllOther() {
+		IdTracker tracker = new CompressedIdTracker();
+		IdTracker other = new ListIdTracker();
+		TreeSet<Long> expected = new TreeSet<Long>();
+		
+		for (long id = 10; id < 100000; id += 7) {
+			tracker.set(id);
+			expected.add(id);
+		}
+		for (long id = 0; id < 200000; id += 11) {
+			other.set(id);
+			expected.add(id);
+		}
+		
+		tracker.setAll(other);
+		
+		assertSameIds(expected, tracker);
+	}
+}
@@ -0,0 +1,159 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.filter.common;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+
+
+/**
+ * Tests the concurrent id tracker implementation.
+ */
+public class ConcurrentIdTrackerTest extends IdTrackerBase {
+	private static final int THREAD_COUNT = 8;
+	private static final int IDS_PER_THREAD = 200000;
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected IdTracker getImplementation() {
+		return new ConcurrentIdTracker();
+	}
+	
+	
+	/**
+	 * Generates the id set by a thread. Threads interleave their ids so that
+	 * they contend for the same words, pages and directories. Negative and
+	 * very large ids are included.
+	 */
+	private static long generateId(int thread, int index) {
+		long id;
+		
+		id = (long) index * THREAD_COUNT + thread;
+		if (index % 3 == 0) {
+			return -id - 1;
+		} else if (index % 3 == 1) {
+			return id * 7919 + 10000000000L;
+		} else {
+			return id;
+		}
+	}
+	
+	
+	/**
+	 * Sets ids from multiple threads at once while other threads check ids,
+	 * and verifies that no updates are lost.
+	 * 
+	 * @throws Exception
+	 *             if a thread is interrupted.
+	 */
+	@Test
+	public void testConcurrentSet() throws Exception {
+		final IdTracker tracker = new ConcurrentIdTracker();
+		final CountDownLatch startSignal = new CountDownLatch(1);
+		final AtomicBoolean failed = new AtomicBoolean(false);
+		List<Thread> threads;
+		int idCount;
+		long previousId;
+		
+		threads = new ArrayList<Thread>();
+		for (int t = 0; t < THREAD_COUNT; t++) {
+			final int thread = t;
+			
+			threads.add(new Thread() {
+				@Override
+				public void run() {
+					try {
+						startSignal.await();
+						for (int i = 0; i < IDS_PER_THREAD; i++) {
+							long id = generateId(thread, i);
+							
+							tracker.set(id);
+							if (!tracker.get(id)) {
+								failed.set(true);
+							}
+							// Check an id owned by another thread, it may or may
+							// not have been set yet but must not cause errors.
+							tracker.get(generateId((thread + 1) % THREAD_COUNT, i));
+						}
+					} catch (InterruptedException e) {
+						failed.set(true);
+					}
+				}
+			});
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		startSignal.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		
+		Assert.assertFalse("A thread could not see its own update.", failed.get());
+		for (int t = 0; t < THREAD_COUNT; t++) {
+			for (int i = 0; i < IDS_PER_THREAD; i++) {
+				Assert.assertTrue("An update was lost.", tracker.get(generateId(t, i)));
+			}
+		}
+		
+		idCount = 0;
+		previousId = Long.MIN_VALUE;
+		for (Iterator<Long> i = tracker.iterator(); i.hasNext();) {
+			long id = i.next();
+			
+			Assert.assertTrue("Ids are not in ascending order.", id > previousId);
+			previousId = id;
+			idCount++;
+		}
+		Assert.assertEquals("Incorrect number of ids.", THREAD_COUNT * IDS_PER_THREAD, idCount);
+	}
+	
+	
+	/**
+	 * Tests merging one concurrent tracker into another.
+	 */
+	@Test
+	public void testSetAllConcurrent() {
+		IdTracker first = new ConcurrentIdTracker();
+		IdTracker second = new ConcurrentIdTracker();
+		int idCount;
+		
+		for (int i = 0; i < 10000; i++) {
+			first.set(generateId(0, i));
+			second.set(generateId(1, i));
+		}
+		
+		first.setAll(second);
+		
+		for (int i = 0; i < 10000; i++) {
+			Assert.assertTrue("First tracker id missing.", first.get(generateId(0, i)));
+			Assert.assertTrue("Merged id missing.", first.get(generateId(1, i)));
+		}
+		idCount = 0;
+		for (Iterator<Long> i = first.iterator(); i.hasNext(); i.next()) {
+			idCount++;
+		}
+		Assert.assertEquals("Incorrect number of ids.", 20000, idCount);
+	}
+	
+	
+	/**
+	 * Tests that ids outside the supported range are rejected.
+	 */
+	@Test(expected = OsmosisRuntimeException.class)
+	public void testOutOfRange() {
+		IdTracker tracker = new ConcurrentIdTracker();
+		
+		Assert.assertFalse("Out of range id found.", tracker.get(Long.MAX_VALUE));
+		tracker.set(Long.MAX_VALUE);
+	}
+}
@@ -0,0 +1,167 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.metrics;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openstreetmap.osmosis.core.domain.v0_6.EntityType;
+
+
+/**
+ * Tests the pipeline metrics classes.
+ */
+public class PipelineMetricsTest {
+	
+	private static void spin(long nanos) {
+		long start = System.nanoTime();
+		
+		while (System.nanoTime() - start < nanos) {
+			Thread.yield();
+		}
+	}
+	
+	
+	/**
+	 * Verifies that time spent in a nested call is excluded from the self time
+	 * of the enclosing call.
+	 */
+	@Test
+	public void testNestedTime() {
+		ConnectionMetrics outer = new ConnectionMetrics("1-outer", 0);
+		ConnectionMetrics inner = new ConnectionMetrics("2-inner", 0);
+		CallTimer timer = new CallTimer(1);
+		long outerNestedStart;
+		long outerStart;
+		long innerNestedStart;
+		long innerStart;
+		
+		outerNestedStart = timer.getNestedNanos();
+		outerStart = timer.start();
+		spin(20000000);
+		
+		innerNestedStart = timer.getNestedNanos();
+		innerStart = timer.start();
+		spin(40000000);
+		inner.record(EntityType.Node, timer, innerStart, innerNestedStart);
+		
+		outer.record(EntityType.Node, timer, outerStart, outerNestedStart);
+		
+		Assert.assertEquals("Incorrect outer node count.", 1, outer.getNodeCount());
+		Assert.assertEquals("Incorrect inner node count.", 1, inner.getNodeCount());
+		Assert.assertEquals("Incorrect inner self time.", inner.getProcessMillis(), inner.getSelfMillis());
+		Assert.assertTrue("Outer process time should include the inner time.",
+				outer.getProcessMillis() >= inner.getProcessMillis() + 20);
+		Assert.assertTrue("Outer self time should exclude the inner time.",
+				outer.getSelfMillis() < outer.getProcessMillis() - 30);
+	}
+	
+	
+	/**
+	 * Verifies that only a sample of calls are timed and that the timings are
+	 * scaled to cover all calls.
+	 */
+	@Test
+	public void testSampledTime() {
+		ConnectionMetrics metrics = new ConnectionMetrics("1-sampled", 0);
+		CallTimer timer = new CallTimer(4);
+		int timedCount;
+		
+		timedCount = 0;
+		for (int i = 0; i < 400; i++) {
+			long nestedStart = timer.getNestedNanos();
+			long start = timer.start();
+			
+			if (start != 0) {
+				timedCount++;
+				spin(1000000);
+			}
+			metrics.record(EntityType.Way, timer, start, nestedStart);
+		}
+		
+		Assert.assertEquals("Incorrect way count.", 400, metrics.getWayCount());
+		Assert.assertTrue("Too few calls were timed.", timedCount > 40);
+		Assert.assertTrue("Too many calls were timed.", timedCount < 200);
+		Assert.assertTrue("Time should be weighted by the sample interval.",
+				metrics.getProcessMillis() >= timedCount * 4);
+	}
+	
+	
+	/**
+	 * Verifies that a batch of mixed entities is counted by type and that
+	 * batches are always timed.
+	 */
+	@Test
+	public void testBatch() {
+		ConnectionMetrics metrics = new ConnectionMetrics("1-batch", 0);
+		CallTimer timer = new CallTimer(Integer.MAX_VALUE);
+		long nestedStart;
+		long start;
+		
+		nestedStart = timer.getNestedNanos();
+		start = timer.startBatch();
+		Assert.assertTrue("Batch should be timed.", start != 0);
+		spin(10000000);
+		metrics.record(new int[] {0, 5, 2, 1}, timer, start, nestedStart);
+		
+		Assert.assertTrue("Incorrect batch time.", metrics.getProcessMillis() >= 10);		
+		Assert.assertEquals("Incorrect bound count.", 0, metrics.getBoundCount());
+		Assert.assertEquals("Incorrect node count.", 5, metrics.getNodeCount());
+		Assert.assertEquals("Incorrect way count.", 2, metrics.getWayCount());
+		Assert.assertEquals("Incorrect relation count.", 1, metrics.getRelationCount());
+	}
+	
+	
+	/**
+	 * Verifies that a final snapshot is written to the metrics file when
+	 * metrics are disabled.
+	 * 
+	 * @throws IOException
+	 *             if the metrics file cannot be read.
+	 */
+	@Test
+	public void testSnapshotFile() throws IOException {
+		File file = File.createTempFile("metricstest", null);
+		BufferedReader reader;
+		String line;
+		
+		try {
+			PipelineMetrics.enable(file, 60);
+			try {
+				ConnectionMetrics connection;
+				PostboxMetrics postbox;
+				CallTimer timer;
+				
+				connection = PipelineMetrics.getInstance().createConnectionMetrics("1-\"quoted\"", 2);
+				timer = new CallTimer(1);
+				connection.record(EntityType.Way, timer, timer.start(), timer.getNestedNanos());
+				
+				postbox = PipelineMetrics.getInstance().createPostboxMetrics(100);
+				postbox.recordPublish(25);
+				
+			} finally {
+				PipelineMetrics.disable();
+			}
+			Assert.assertNull("Metrics should be disabled.", PipelineMetrics.getInstance());
+			
+			reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+			try {
+				line = reader.readLine();
+				Assert.assertNull("Only one snapshot should be written.", reader.readLine());
+			} finally {
+				reader.close();
+			}
+			
+			Assert.assertTrue("Task identifier missing.", line.contains("\"task\":\"1-\\\"quoted\\\"\",\"input\":2"));
+			Assert.assertTrue("Way count missing.", line.contains("\"way\":1"));
+			Assert.assertTrue("Postbox fill missing.", line.contains("\"capacity\":100,\"fill\":25"));
+			
+		} finally {
+			Assert.assertTrue("Unable to delete the test file.", file.delete());
+		}
+	}
+}
@@ -0,0 +1,178 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.sort.common;
+
+import java.util.Comparator;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openstreetmap.osmosis.core.lifecycle.ReleasableIterator;
+import org.openstreetmap.osmosis.core.store.SingleClassObjectSerializationFactory;
+
+
+/**
+ * Tests the {@link ParallelFileBasedSort} class.
+ */
+public class ParallelFileBasedSortTest {
+
+	private Comparator<SampleStoreable> comparator = new Comparator<SampleStoreable>() {
+		@Override
+		public int compare(SampleStoreable o1, SampleStoreable o2) {
+			long value1 = o1.getValue();
+			long value2 = o2.getValue();
+
+			if (value1 > value2) {
+				return 1;
+			} else if (value1 < value2) {
+				return -1;
+			} else {
+				return 0;
+			}
+		}
+	};
+
+
+	/**
+	 * Adds random values to the sorter and verifies that they are returned in
+	 * the correct sequence.
+	 *
+	 * @param sorter
+	 *            The sorter to be tested.
+	 * @param itemCount
+	 *            The number of items to sort.
+	 */
+	private void sortRandomValues(ParallelFileBasedSort<SampleStoreable> sorter, int itemCount) {
+		// Add randomly generated test values into the sorter.
+		Random random = new Random();
+		for (int i = 0; i < itemCount; i++) {
+			sorter.add(new SampleStoreable(random.nextInt()));
+		}
+
+		// Read back all values in the sorter and verify that they are
+		// sorted correctly.
+		ReleasableIterator<SampleStoreable> resultIterator = sorter.iterate();
+		try {
+			int lastValue = Integer.MIN_VALUE;
+			int resultCount = 0;
+			while (resultIterator.hasNext()) {
+				int currentValue = resultIterator.next().getValue();
+				Assert.assertTrue(currentValue >= lastValue);
+				lastValue = currentValue;
+				resultCount++;
+			}
+			Assert.assertEquals("Incorrect number of results.", itemCount, resultCount);
+		} finally {
+			resultIterator.release();
+		}
+	}
+
+
+	/**
+	 * Sorts fewer items than a single run which should be sorted entirely in
+	 * memory.
+	 */
+	@Test
+	public void testInMemory() {
+		ParallelFileBasedSort<SampleStoreable> sorter = new ParallelFileBasedSort<SampleStoreable>(
+				new SingleClassObjectSerializationFactory(SampleStoreable.class), comparator, true);
+
+		try {
+			sortRandomValues(sorter, 10000);
+
+			Assert.assertEquals("No runs should have been written.", 0, sorter.getRunCount());
+			Assert.assertEquals("No data should have been written.", 0, sorter.getBytesSpilled());
+
+		} finally {
+			sorter.release();
+		}
+	}
+
+
+	/**
+	 * Sorts enough items with a small memory budget to produce more runs than
+	 * can be merged in a single pass which triggers intermediate merge passes.
+	 */
+	@Test
+	public void testMultiplePasses() {
+		ParallelFileBasedSort<SampleStoreable> sorter = new ParallelFileBasedSort<SampleStoreable>(
+				new SingleClassObjectSerializationFactory(SampleStoreable.class), comparator, true, 8000, 4, 4);
+
+		try {
+			sortRandomValues(sorter, 10000);
+
+			Assert.assertTrue("Too few runs were written.", sorter.getRunCount() > 16);
+			Assert.assertTrue("Intermediate merges should have occurred.", sorter.getMergePassCount() > 1);
+			Assert.assertTrue("Data should have been written.", sorter.getBytesSpilled() > 0);
+
+		} finally {
+			sorter.release();
+		}
+	}
+
+
+	/**
+	 * Verifies that the merge fan-in is reduced when the memory held by the
+	 * run readers would exceed the memory budget.
+	 */
+	@Test
+	public void testFanInLimitedByBudget() {
+		ParallelFileBasedSort<SampleStoreable> sorter = new ParallelFileBasedSort<SampleStoreable>(
+				new SingleClassObjectSerializationFactory(SampleStoreable.class), comparator, true, 8000, 2, 64);
+
+		try {
+			sortRandomValues(sorter, 3000);
+
+			// The runs would fit within the configured fan-in if memory wasn't
+			// considered.
+			Assert.assertTrue("Too few runs were written.", sorter.getRunCount() > 2);
+			Assert.assertTrue("Too many runs were written.", sorter.getRunCount() <= 64);
+			Assert.assertTrue("The fan-in should have been limited by the budget.", sorter.getMergePassCount() > 0);
+
+		} finally {
+			sorter.release();
+		}
+	}
+
+
+	/**
+	 * Verifies that objects with equal keys are returned in the order they
+	 * were added.
+	 */
+	@Test
+	public void testStable() {
+		ParallelFileBasedSort<SampleStoreable> sorter = new ParallelFileBasedSort<SampleStoreable>(
+				new SingleClassObjectSerializationFactory(SampleStoreable.class),
+				new Comparator<SampleStoreable>() {
+					@Override
+					public int compare(SampleStoreable o1, SampleStoreable o2) {
+						// Only compare the lowest digit, higher digits record the
+						// insertion order.
+						return (o1.getValue() % 10) - (o2.getValue() % 10);
+					}
+				},
+				false, 448, 3, 2);
+
+		try {
+			for (int i = 0; i < 1000; i++) {
+				sorter.add(new SampleStoreable((i * 10) + (i % 3)));
+			}
+
+			ReleasableIterator<SampleStoreable> resultIterator = sorter.iterate();
+			try {
+				SampleStoreable previous = null;
+				while (resultIterator.hasNext()) {
+					SampleStoreable current = resultIterator.next();
+					if (previous != null && previous.getValue() % 10 == current.getValue() % 10) {
+						Assert.assertTrue(previous.getValue() < current.getValue());
+					}
+					previous = current;
+				}
+			} finally {
+				resultIterator.release();
+			}
+
+		} finally {
+			sorter.release();
+		}
+	}
+}
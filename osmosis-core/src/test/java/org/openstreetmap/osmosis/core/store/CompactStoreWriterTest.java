@@ -0,0 +1,191 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.store;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openstreetmap.osmosis.core.domain.v0_6.CommonEntityData;
+import org.openstreetmap.osmosis.core.domain.v0_6.Entity;
+import org.openstreetmap.osmosis.core.domain.v0_6.EntityType;
+import org.openstreetmap.osmosis.core.domain.v0_6.Node;
+import org.openstreetmap.osmosis.core.domain.v0_6.OsmUser;
+import org.openstreetmap.osmosis.core.domain.v0_6.Relation;
+import org.openstreetmap.osmosis.core.domain.v0_6.RelationMember;
+import org.openstreetmap.osmosis.core.domain.v0_6.Tag;
+import org.openstreetmap.osmosis.core.domain.v0_6.Way;
+import org.openstreetmap.osmosis.core.domain.v0_6.WayNode;
+import org.openstreetmap.osmosis.core.lifecycle.ReleasableIterator;
+import org.openstreetmap.osmosis.core.util.FixedPrecisionCoordinateConvertor;
+
+
+/**
+ * Tests the compact store writer and reader.
+ */
+public class CompactStoreWriterTest {
+	
+	/**
+	 * Verifies that extreme values of each type are read back unchanged.
+	 */
+	@Test
+	public void testValueRoundTrip() {
+		long[] longs = {0, 1, -1, Long.MAX_VALUE, Long.MIN_VALUE, 1234567890123L, Long.MIN_VALUE, 5};
+		int[] integers = {0, -1, Integer.MAX_VALUE, Integer.MIN_VALUE, 900000000, -900000000, 7, 8, 9, 10};
+		char[] longString = new char[70000];
+		Arrays.fill(longString, 'x');
+		String[] strings = {"", "highway", "\u0000", "straße", "東京", "😀", "\ud800",
+				new String(longString), "highway", "straße"};
+		
+		ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+		CompactStoreWriter writer = new CompactStoreWriter(new DataOutputStream(outStream));
+		for (int i = 0; i < 2; i++) {
+			writer.beginObject();
+			writer.writeBoolean(true);
+			writer.writeByte((byte) -3);
+			writer.writeCharacter('\uffff');
+			writer.writeDouble(-1.5);
+			for (long value : longs) {
+				writer.writeLong(value);
+			}
+			for (int value : integers) {
+				writer.writeInteger(value);
+			}
+			for (String value : strings) {
+				writer.writeString(value);
+			}
+		}
+		
+		CompactStoreReader reader = new CompactStoreReader(
+				new DataInputStream(new ByteArrayInputStream(outStream.toByteArray())));
+		for (int i = 0; i < 2; i++) {
+			reader.beginObject();
+			Assert.assertTrue(reader.readBoolean());
+			Assert.assertEquals(-3, reader.readByte());
+			Assert.assertEquals('\uffff', reader.readCharacter());
+			Assert.assertEquals(-1.5, reader.readDouble(), 0);
+			for (long value : longs) {
+				Assert.assertEquals(value, reader.readLong());
+			}
+			for (int value : integers) {
+				Assert.assertEquals(value, reader.readInteger());
+			}
+			for (String value : strings) {
+				Assert.assertEquals(value, reader.readString());
+			}
+		}
+		
+		boolean endReached = false;
+		try {
+			reader.readByte();
+		} catch (EndOfStoreException e) {
+			endReached = true;
+		}
+		Assert.assertTrue("The end of the stream should have been reached.", endReached);
+	}
+	
+	
+	private List<Entity> buildEntities() {
+		List<Entity> entities = new ArrayList<Entity>();
+		OsmUser user = new OsmUser(12, "mapper");
+		
+		for (int i = 0; i < 100; i++) {
+			List<Tag> tags = new ArrayList<Tag>();
+			tags.add(new Tag("highway", "residential"));
+			tags.add(new Tag("name", "Street " + i));
+			
+			Node node = new Node(
+					new CommonEntityData(1000 + i, 1 + i % 3, new Date(1300000000000L + i * 1000), user, 55, tags),
+					FixedPrecisionCoordinateConvertor.convertToDouble(-335000000 + i * 10),
+					FixedPrecisionCoordinateConvertor.convertToDouble(1512000000 - i * 10));
+			entities.add(node);
+			
+			List<WayNode> wayNodes = new ArrayList<WayNode>();
+			wayNodes.add(new WayNode(1000 + i));
+			wayNodes.add(new WayNode(1001 + i));
+			wayNodes.add(new WayNode(1000 + i));
+			entities.add(new Way(new CommonEntityData(2000 + i, 2, new Date(1300000000000L), OsmUser.NONE, 56,
+					tags), wayNodes));
+			
+			List<RelationMember> members = new ArrayList<RelationMember>();
+			members.add(new RelationMember(2000 + i, EntityType.Way, "outer"));
+			members.add(new RelationMember(1000 + i, EntityType.Node, ""));
+			entities.add(new Relation(new CommonEntityData(3000 + i, 1, new Date(1200000000000L), user, 57, tags),
+					members));
+		}
+		
+		return entities;
+	}
+	
+	
+	/**
+	 * Verifies that entities are read back unchanged from a compact store.
+	 */
+	@Test
+	public void testEntityStore() {
+		List<Entity> entities = buildEntities();
+		
+		SimpleObjectStore<Entity> store = new SimpleObjectStore<Entity>(
+				new GenericObjectSerializationFactory(), "cst", false, StorageFormat.Compact);
+		try {
+			for (Entity entity : entities) {
+				store.add(entity);
+			}
+			
+			ReleasableIterator<Entity> iterator = store.iterate();
+			try {
+				for (Entity entity : entities) {
+					Assert.assertTrue("An entity is missing.", iterator.hasNext());
+					Assert.assertEquals("The entity is incorrect.", entity, iterator.next());
+				}
+				Assert.assertFalse("Too many entities were returned.", iterator.hasNext());
+			} finally {
+				iterator.release();
+			}
+			
+		} finally {
+			store.release();
+		}
+	}
+	
+	
+	/**
+	 * Verifies that chunks of a compact store can be read independently.
+	 */
+	@Test
+	public void testChunkedStore() {
+		List<Entity> entities = buildEntities();
+		
+		ChunkedObjectStore<Entity> store = new ChunkedObjectStore<Entity>(
+				new GenericObjectSerializationFactory(), "cst", "csti", true, StorageFormat.Compact);
+		try {
+			for (int i = 0; i < entities.size(); i++) {
+				store.add(entities.get(i));
+				if (i % 10 == 9) {
+					store.closeChunk();
+				}
+			}
+			
+			for (int chunk = 29; chunk >= 0; chunk -= 7) {
+				ReleasableIterator<Entity> iterator = store.iterate(chunk);
+				try {
+					for (int i = chunk * 10; i < chunk * 10 + 10; i++) {
+						Assert.assertEquals("The entity is incorrect.", entities.get(i), iterator.next());
+					}
+					Assert.assertFalse("Too many entities were returned.", iterator.hasNext());
+				} finally {
+					iterator.release();
+				}
+			}
+			
+		} finally {
+			store.release();
+		}
+	}
+}
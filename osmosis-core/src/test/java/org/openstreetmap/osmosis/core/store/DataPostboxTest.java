@@ -0,0 +1,382 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.store;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+
+
+/**
+ * Tests the data postbox.
+ */
+public class DataPostboxTest {
+	
+	/**
+	 * The longest time to wait for another thread to reach an expected state.
+	 */
+	private static final long WAIT_TIMEOUT = 10000;
+	
+	/**
+	 * The longest time a test may run, a postbox failing to abort a blocked
+	 * thread would otherwise hang the build.
+	 */
+	private static final long TEST_TIMEOUT = 60000;
+	
+	
+	/**
+	 * Waits until a thread is parked in the postbox backoff loop, which only
+	 * occurs while waiting for a free slot or for data.
+	 */
+	private static void waitForParked(Thread thread) {
+		long deadline;
+		
+		deadline = System.currentTimeMillis() + WAIT_TIMEOUT;
+		while (thread.getState() != Thread.State.TIMED_WAITING) {
+			if (System.currentTimeMillis() > deadline) {
+				Assert.fail("Thread " + thread.getName() + " did not block, state is " + thread.getState() + ".");
+			}
+			Thread.yield();
+		}
+	}
+	
+	
+	/**
+	 * Consumes data from a postbox following the output call sequence.
+	 */
+	private static class PostboxReader implements Runnable {
+		private DataPostbox<Integer> postbox;
+		private boolean useHasNext;
+		private Thread abortAfterBlocked;
+		private List<Integer> received;
+		private Map<String, Object> metaData;
+		private boolean completed;
+		private RuntimeException error;
+		
+		
+		/**
+		 * Creates a new instance.
+		 * 
+		 * @param postbox
+		 *            The postbox to read from.
+		 * @param useHasNext
+		 *            If true, hasNext is called before each getNext, otherwise
+		 *            getNext is called until it fails.
+		 * @param abortAfterBlocked
+		 *            If not null, the reader fails without reading once this
+		 *            thread is blocked.
+		 */
+		PostboxReader(DataPostbox<Integer> postbox, boolean useHasNext, Thread abortAfterBlocked) {
+			this.postbox = postbox;
+			this.useHasNext = useHasNext;
+			this.abortAfterBlocked = abortAfterBlocked;
+			
+			received = Collections.synchronizedList(new ArrayList<Integer>());
+		}
+		
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void run() {
+			try {
+				metaData = postbox.outputInitialize();
+				
+				if (abortAfterBlocked != null) {
+					waitForParked(abortAfterBlocked);
+					return;
+				}
+				
+				if (useHasNext) {
+					while (postbox.hasNext()) {
+						received.add(postbox.getNext());
+					}
+				} else {
+					while (true) {
+						received.add(postbox.getNext());
+					}
+				}
+				
+				postbox.outputComplete();
+				completed = true;
+				
+			} catch (RuntimeException e) {
+				error = e;
+				
+			} finally {
+				postbox.outputRelease();
+			}
+		}
+	}
+	
+	
+	private Thread startReader(PostboxReader reader) {
+		Thread thread;
+		
+		thread = new Thread(reader, "postbox-reader");
+		thread.start();
+		
+		return thread;
+	}
+	
+	
+	private void join(Thread thread) throws InterruptedException {
+		thread.join(WAIT_TIMEOUT);
+		Assert.assertFalse("The reader thread did not terminate.", thread.isAlive());
+	}
+	
+	
+	private void checkSequence(List<Integer> received, int count) {
+		Assert.assertEquals("Incorrect number of objects received.", count, received.size());
+		for (int i = 0; i < count; i++) {
+			Assert.assertEquals("Incorrect object received.", Integer.valueOf(i), received.get(i));
+		}
+	}
+	
+	
+	/**
+	 * Passes objects through a postbox and checks that the reader receives them
+	 * all in order.
+	 */
+	private PostboxReader runHandoff(DataPostbox<Integer> postbox, int count) throws InterruptedException {
+		PostboxReader reader;
+		Thread readerThread;
+		Map<String, Object> metaData;
+		
+		reader = new PostboxReader(postbox, true, null);
+		readerThread = startReader(reader);
+		
+		metaData = Collections.<String, Object>singletonMap("count", count);
+		try {
+			postbox.initialize(metaData);
+			for (int i = 0; i < count; i++) {
+				postbox.put(i);
+			}
+			postbox.complete();
+		} finally {
+			postbox.release();
+		}
+		
+		join(readerThread);
+		
+		Assert.assertNull("The reader failed.", reader.error);
+		Assert.assertTrue("The reader did not complete.", reader.completed);
+		Assert.assertSame("Incorrect meta data.", metaData, reader.metaData);
+		checkSequence(reader.received, count);
+		
+		return reader;
+	}
+	
+	
+	/**
+	 * Verifies that objects are received in order when passing through many
+	 * batches, with both threads regularly waiting for the other.
+	 * 
+	 * @throws InterruptedException
+	 *             if the test is interrupted.
+	 */
+	@Test(timeout = TEST_TIMEOUT)
+	public void testOrderedHandoff() throws InterruptedException {
+		// A capacity of 8 uses batches of 2 objects in a ring of 4 slots.
+		runHandoff(new DataPostbox<Integer>(8), 100000);
+	}
+	
+	
+	/**
+	 * Verifies that a partially filled batch is delivered on complete, both
+	 * after full batches and when it is the only batch.
+	 * 
+	 * @throws InterruptedException
+	 *             if the test is interrupted.
+	 */
+	@Test(timeout = TEST_TIMEOUT)
+	public void testCompletePartialBatch() throws InterruptedException {
+		// A capacity of 40 uses batches of 10 objects.
+		runHandoff(new DataPostbox<Integer>(40), 25);
+		runHandoff(new DataPostbox<Integer>(40), 3);
+		runHandoff(new DataPostbox<Integer>(40), 0);
+	}
+	
+	
+	/**
+	 * Verifies that an output failure aborts an input thread blocked waiting
+	 * for a free slot.
+	 * 
+	 * @throws InterruptedException
+	 *             if the test is interrupted.
+	 */
+	@Test(timeout = TEST_TIMEOUT)
+	public void testOutputErrorAbortsBlockedInput() throws InterruptedException {
+		DataPostbox<Integer> postbox;
+		PostboxReader reader;
+		Thread readerThread;
+		int putCount;
+		boolean inputFailed;
+		
+		// A capacity of 4 uses batches of 1 object in a ring of 4 slots.
+		postbox = new DataPostbox<Integer>(4);
+		
+		reader = new PostboxReader(postbox, true, Thread.currentThread());
+		readerThread = startReader(reader);
+		
+		putCount = 0;
+		inputFailed = false;
+		try {
+			postbox.initialize(Collections.<String, Object>emptyMap());
+			for (int i = 0; i < 100; i++) {
+				postbox.put(i);
+				putCount++;
+			}
+			postbox.complete();
+			
+		} catch (OsmosisRuntimeException e) {
+			inputFailed = true;
+			
+		} finally {
+			postbox.release();
+		}
+		
+		join(readerThread);
+		
+		Assert.assertTrue("The input should have been aborted.", inputFailed);
+		Assert.assertEquals("The input should block once the ring is full.", 4, putCount);
+		Assert.assertTrue("The reader should not have read anything.", reader.received.isEmpty());
+	}
+	
+	
+	/**
+	 * Verifies that an input failure aborts an output thread blocked waiting for
+	 * data, and that objects in an unpublished batch are discarded.
+	 */
+	private void checkInputErrorAbortsBlockedOutput(boolean useHasNext) throws InterruptedException {
+		DataPostbox<Integer> postbox;
+		PostboxReader reader;
+		Thread readerThread;
+		long deadline;
+		
+		// A capacity of 8 uses batches of 2 objects.
+		postbox = new DataPostbox<Integer>(8);
+		
+		reader = new PostboxReader(postbox, useHasNext, null);
+		readerThread = startReader(reader);
+		
+		try {
+			postbox.initialize(Collections.<String, Object>emptyMap());
+			
+			// Publish one full batch and start another which is never
+			// published.
+			for (int i = 0; i < 3; i++) {
+				postbox.put(i);
+			}
+			
+			// Wait for the reader to consume the published batch and block
+			// waiting for the next one.
+			deadline = System.currentTimeMillis() + WAIT_TIMEOUT;
+			while (reader.received.size() < 2) {
+				Assert.assertTrue("The reader did not receive the published batch.",
+						System.currentTimeMillis() < deadline);
+				Thread.yield();
+			}
+			waitForParked(readerThread);
+			checkSequence(reader.received, 2);
+			
+		} finally {
+			// Releasing without completing signals an input failure.
+			postbox.release();
+		}
+		
+		join(readerThread);
+		
+		Assert.assertTrue("The output should have been aborted.", reader.error instanceof OsmosisRuntimeException);
+		Assert.assertFalse("The reader should not have completed.", reader.completed);
+		checkSequence(reader.received, 2);
+	}
+	
+	
+	/**
+	 * Verifies that an input failure aborts an output thread blocked in
+	 * hasNext.
+	 * 
+	 * @throws InterruptedException
+	 *             if the test is interrupted.
+	 */
+	@Test(timeout = TEST_TIMEOUT)
+	public void testInputErrorAbortsBlockedHasNext() throws InterruptedException {
+		checkInputErrorAbortsBlockedOutput(true);
+	}
+	
+	
+	/**
+	 * Verifies that an input failure aborts an output thread blocked in
+	 * getNext.
+	 * 
+	 * @throws InterruptedException
+	 *             if the test is interrupted.
+	 */
+	@Test(timeout = TEST_TIMEOUT)
+	public void testInputErrorAbortsBlockedGetNext() throws InterruptedException {
+		checkInputErrorAbortsBlockedOutput(false);
+	}
+	
+	
+	/**
+	 * Verifies that a postbox can be re-used after successful runs and after
+	 * failures on either side, and that no data from a failed run is delivered
+	 * to the next one.
+	 * 
+	 * @throws InterruptedException
+	 *             if the test is interrupted.
+	 */
+	@Test(timeout = TEST_TIMEOUT)
+	public void testReuse() throws InterruptedException {
+		DataPostbox<Integer> postbox;
+		PostboxReader reader;
+		Thread readerThread;
+		boolean inputFailed;
+		
+		postbox = new DataPostbox<Integer>(8);
+		
+		runHandoff(postbox, 11);
+		runHandoff(postbox, 5);
+		
+		// Fail the output with data still in the ring.
+		reader = new PostboxReader(postbox, true, Thread.currentThread());
+		readerThread = startReader(reader);
+		inputFailed = false;
+		try {
+			postbox.initialize(Collections.<String, Object>emptyMap());
+			for (int i = 0; i < 100; i++) {
+				postbox.put(-1);
+			}
+		} catch (OsmosisRuntimeException e) {
+			inputFailed = true;
+		} finally {
+			postbox.release();
+		}
+		join(readerThread);
+		Assert.assertTrue("The input should have been aborted.", inputFailed);
+		
+		runHandoff(postbox, 7);
+		
+		// Fail the input before anything is read.
+		reader = new PostboxReader(postbox, true, null);
+		readerThread = startReader(reader);
+		try {
+			postbox.initialize(Collections.<String, Object>emptyMap());
+			for (int i = 0; i < 5; i++) {
+				postbox.put(-1);
+			}
+		} finally {
+			postbox.release();
+		}
+		join(readerThread);
+		Assert.assertNotNull("The output should have been aborted.", reader.error);
+		
+		runHandoff(postbox, 1000);
+	}
+}
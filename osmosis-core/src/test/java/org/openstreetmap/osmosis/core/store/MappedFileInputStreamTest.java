@@ -0,0 +1,188 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.store;
+
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Iterator;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Tests the memory mapped file input stream and the index searches relying on
+ * it.
+ */
+public class MappedFileInputStreamTest {
+	
+	/**
+	 * Verifies that reads spanning mapped segments return the correct data.
+	 * 
+	 * @throws IOException
+	 *             if an IO exception occurs.
+	 */
+	@Test
+	public void testSegmentedRead() throws IOException {
+		File file = File.createTempFile("mfistest", null);
+		try {
+			DataOutputStream outStream = new DataOutputStream(new FileOutputStream(file));
+			try {
+				for (long i = 0; i < 100; i++) {
+					outStream.writeLong(i * 1000003);
+				}
+				outStream.writeByte(7);
+			} finally {
+				outStream.close();
+			}
+			
+			// Use 64 byte segments so that reads cross segment boundaries.
+			MappedFileInputStream inStream = new MappedFileInputStream(file, 6);
+			try {
+				Assert.assertEquals("Incorrect length.", 801, inStream.length());
+				
+				// Longs at odd offsets span segment boundaries.
+				Assert.assertEquals("Incorrect long.", 5 * 1000003, inStream.readLong(40));
+				Assert.assertEquals("Incorrect long.", (59L * 1000003 << 24) | (60L * 1000003 >>> 40),
+						inStream.readLong(475));
+				
+				byte[] buffer = new byte[200];
+				inStream.seek(700);
+				Assert.assertEquals("Incorrect read count.", 101, inStream.read(buffer, 0, buffer.length));
+				Assert.assertEquals("Incorrect position.", 801, inStream.position());
+				Assert.assertEquals("Incorrect final byte.", 7, buffer[100]);
+				Assert.assertEquals("Stream should be finished.", -1, inStream.read());
+				
+				inStream.seek(8);
+				Assert.assertEquals("Incorrect byte.", 0, inStream.read());
+				Assert.assertEquals("Incorrect skip.", 6, inStream.skip(6));
+				Assert.assertEquals("Incorrect byte.", 1000003 & 0xFF, inStream.read());
+				
+			} finally {
+				inStream.close();
+			}
+			
+		} finally {
+			Assert.assertTrue("Unable to delete the test file.", file.delete());
+		}
+	}
+	
+	
+	/**
+	 * Verifies that closing the stream removes the file mapping.
+	 * 
+	 * @throws IOException
+	 *             if an IO exception occurs.
+	 */
+	@Test
+	public void testCloseUnmaps() throws IOException {
+		File file = File.createTempFile("mfistest", null);
+		try {
+			FileOutputStream outStream = new FileOutputStream(file);
+			try {
+				outStream.write(new byte[4096]);
+			} finally {
+				outStream.close();
+			}
+			
+			MappedFileInputStream inStream = new MappedFileInputStream(file);
+			Assert.assertTrue("The file should be mapped.", isMapped(file));
+			inStream.close();
+			inStream.close();
+			
+			boolean closed = false;
+			try {
+				inStream.read();
+			} catch (IOException e) {
+				closed = true;
+			}
+			Assert.assertTrue("Reads should fail after close.", closed);
+			
+			if (MappedFileInputStream.isUnmapSupported()) {
+				Assert.assertFalse("The file should no longer be mapped.", isMapped(file));
+			}
+			
+		} finally {
+			Assert.assertTrue("Unable to delete the test file.", file.delete());
+		}
+	}
+	
+	
+	/**
+	 * Checks the process memory map for a mapping of the file. Platforms without
+	 * a /proc file system are treated as having the file mapped.
+	 * 
+	 * @param file
+	 *            The file to look for.
+	 * @return True if the file is mapped.
+	 * @throws IOException
+	 *             if the memory map cannot be read.
+	 */
+	private boolean isMapped(File file) throws IOException {
+		File maps = new File("/proc/self/maps");
+		if (!maps.canRead()) {
+			return true;
+		}
+		
+		BufferedReader reader = new BufferedReader(new FileReader(maps));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.endsWith(file.getCanonicalPath())) {
+					return true;
+				}
+			}
+			return false;
+			
+		} finally {
+			reader.close();
+		}
+	}
+	
+	
+	/**
+	 * Verifies that index lookups locate elements and ranges correctly.
+	 */
+	@Test
+	public void testIndexSearch() {
+		IndexStore<Long, LongLongIndexElement> indexStore = new IndexStore<Long, LongLongIndexElement>(
+				LongLongIndexElement.class, new ComparableComparator<Long>(), "mfisidx");
+		try {
+			// Write keys out of order to force a sort, including negative keys.
+			for (long i = 999; i >= 0; i--) {
+				indexStore.write(new LongLongIndexElement(i * 3 - 1500, i));
+			}
+			indexStore.complete();
+			
+			IndexStoreReader<Long, LongLongIndexElement> reader = indexStore.createReader();
+			try {
+				Assert.assertEquals("Incorrect first value.", 0, reader.get(-1500L).getValue());
+				Assert.assertEquals("Incorrect middle value.", 500, reader.get(0L).getValue());
+				Assert.assertEquals("Incorrect last value.", 999, reader.get(1497L).getValue());
+				
+				boolean missing = false;
+				try {
+					reader.get(1L);
+				} catch (NoSuchIndexElementException e) {
+					missing = true;
+				}
+				Assert.assertTrue("A missing key should not be found.", missing);
+				
+				Iterator<LongLongIndexElement> range = reader.getRange(-1L, 7L);
+				for (long expected = 500; expected <= 502; expected++) {
+					Assert.assertEquals("Incorrect range value.", expected, range.next().getValue());
+				}
+				Assert.assertFalse("Too many range values.", range.hasNext());
+				
+			} finally {
+				reader.release();
+			}
+			
+		} finally {
+			indexStore.release();
+		}
+	}
+}
@@ -0,0 +1,157 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.store;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openstreetmap.osmosis.core.lifecycle.ReleasableIterator;
+
+
+/**
+ * Tests the storage compression methods.
+ */
+public class StorageCompressionTest {
+	
+	private byte[] buildData(Random random, int length) {
+		byte[] data = new byte[length];
+		
+		for (int i = 0; i < length;) {
+			if (i > 100 && random.nextBoolean()) {
+				// Repeat a previous sequence to allow matches, including
+				// overlapping ones.
+				int offset = 1 + random.nextInt(100);
+				int count = Math.min(random.nextInt(300), length - i);
+				for (int j = 0; j < count; j++) {
+					data[i] = data[i - offset];
+					i++;
+				}
+			} else {
+				data[i++] = (byte) random.nextInt(8);
+			}
+		}
+		
+		return data;
+	}
+	
+	
+	private byte[] compress(StorageCompression compression, byte[] data) throws IOException {
+		ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+		OutputStream compressedStream = compression.createOutputStream(outStream);
+		
+		// Write in uneven pieces to exercise block boundaries.
+		for (int offset = 0; offset < data.length;) {
+			int count = Math.min(data.length - offset, 1 + offset % 70000);
+			compressedStream.write(data, offset, count);
+			offset += count;
+		}
+		compressedStream.close();
+		
+		return outStream.toByteArray();
+	}
+	
+	
+	/**
+	 * Verifies that data written by each method is read back unchanged, and
+	 * that concatenated streams can be read as a single stream.
+	 * 
+	 * @throws IOException
+	 *             if an IO exception occurs.
+	 */
+	@Test
+	public void testRoundTrip() throws IOException {
+		Random random = new Random(7);
+		byte[] first = buildData(random, 300000);
+		byte[] second = new byte[100000];
+		random.nextBytes(second);
+		
+		for (StorageCompression compression : StorageCompression.values()) {
+			ByteArrayOutputStream concatenated = new ByteArrayOutputStream();
+			concatenated.write(compress(compression, first));
+			concatenated.write(compress(compression, new byte[0]));
+			concatenated.write(compress(compression, second));
+			
+			DataInputStream inStream = new DataInputStream(
+					compression.createInputStream(new ByteArrayInputStream(concatenated.toByteArray())));
+			byte[] result = new byte[first.length];
+			inStream.readFully(result);
+			Assert.assertArrayEquals("First stream is incorrect for " + compression + ".", first, result);
+			result = new byte[second.length];
+			inStream.readFully(result);
+			Assert.assertArrayEquals("Second stream is incorrect for " + compression + ".", second, result);
+			Assert.assertEquals("Stream should be finished for " + compression + ".", -1, inStream.read());
+			inStream.close();
+		}
+	}
+	
+	
+	/**
+	 * Verifies that a truncated stream is detected.
+	 * 
+	 * @throws IOException
+	 *             if an IO exception occurs.
+	 */
+	@Test(expected = IOException.class)
+	public void testTruncatedLz4Stream() throws IOException {
+		byte[] compressed = compress(StorageCompression.Lz4, buildData(new Random(3), 1000));
+		byte[] truncated = new byte[compressed.length - 1];
+		System.arraycopy(compressed, 0, truncated, 0, truncated.length);
+		
+		InputStream inStream = StorageCompression.Lz4.createInputStream(new ByteArrayInputStream(truncated));
+		new DataInputStream(inStream).readFully(new byte[1000]);
+	}
+	
+	
+	/**
+	 * Verifies that chunked stores can begin reading at chunk boundaries with
+	 * each compression method.
+	 */
+	@Test
+	public void testChunkedStore() {
+		StorageCompression originalCompression = StorageCompression.getDefault();
+		
+		try {
+			for (StorageCompression compression : StorageCompression.values()) {
+				StorageCompression.setDefault(compression);
+				
+				ChunkedObjectStore<LongLongIndexElement> store = new ChunkedObjectStore<LongLongIndexElement>(
+						new SingleClassObjectSerializationFactory(LongLongIndexElement.class), "sct", "scti", true);
+				try {
+					for (int i = 0; i < 1000; i++) {
+						store.add(new LongLongIndexElement(i, i * 3));
+						if (i % 100 == 99) {
+							store.closeChunk();
+						}
+					}
+					
+					for (int chunk = 9; chunk >= 0; chunk -= 4) {
+						ReleasableIterator<LongLongIndexElement> iterator = store.iterate(chunk);
+						try {
+							for (int i = chunk * 100; i < chunk * 100 + 100; i++) {
+								LongLongIndexElement element = iterator.next();
+								Assert.assertEquals("Incorrect id for " + compression + ".", i, element.getId());
+								Assert.assertEquals("Incorrect value for " + compression + ".", i * 3,
+										element.getValue());
+							}
+							Assert.assertFalse("Too many elements were returned.", iterator.hasNext());
+						} finally {
+							iterator.release();
+						}
+					}
+					
+				} finally {
+					store.release();
+				}
+			}
+			
+		} finally {
+			StorageCompression.setDefault(originalCompression);
+		}
+	}
+}
@@ -0,0 +1,162 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.store;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+
+
+/**
+ * Tests the storeable factory registry.
+ */
+public class StoreableFactoryRegistryTest {
+	
+	private Storeable writeAndRead(Storeable value) {
+		ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+		StoreClassRegister storeClassRegister = new DynamicStoreClassRegister();
+		
+		new GenericObjectWriter(new DataOutputStoreWriter(new DataOutputStream(outStream)), storeClassRegister)
+				.writeObject(value);
+		
+		return new GenericObjectReader(
+				new DataInputStoreReader(new DataInputStream(new ByteArrayInputStream(outStream.toByteArray()))),
+				storeClassRegister).readObject();
+	}
+	
+	
+	/**
+	 * Tests that classes without a registered factory are loaded through their
+	 * storeable constructor.
+	 */
+	@Test
+	public void testReflectiveFactory() {
+		Assert.assertEquals("Incorrect value.", 7, ((StoredValue) writeAndRead(new StoredValue(7))).getValue());
+	}
+	
+	
+	/**
+	 * Tests that a registered factory is used in preference to reflection.
+	 */
+	@Test
+	public void testRegisteredFactory() {
+		StoreableFactoryRegistry.register(RegisteredValue.class, new StoreableFactory() {
+			@Override
+			public Storeable create(StoreReader sr, StoreClassRegister scr) {
+				return new RegisteredValue(sr.readInteger() + 1);
+			}
+		});
+		
+		Assert.assertEquals("The registered factory was not used.", 6,
+				((RegisteredValue) writeAndRead(new RegisteredValue(5))).getValue());
+	}
+	
+	
+	/**
+	 * Tests that core classes are loaded through their registered factories.
+	 */
+	@Test
+	public void testCoreFactory() {
+		LongLongIndexElement element = (LongLongIndexElement) writeAndRead(new LongLongIndexElement(3, 4));
+		
+		Assert.assertEquals("Incorrect id.", 3, element.getId());
+		Assert.assertEquals("Incorrect value.", 4, element.getValue());
+	}
+	
+	
+	/**
+	 * Tests that classes which can't be loaded are rejected when written.
+	 */
+	@Test(expected = OsmosisRuntimeException.class)
+	public void testMissingConstructor() {
+		writeAndRead(new UnloadableValue(1));
+	}
+	
+	
+	/**
+	 * A storeable class relying on reflection to be loaded.
+	 */
+	public static class StoredValue implements Storeable {
+		private int value;
+		
+		
+		/**
+		 * Creates a new instance.
+		 * 
+		 * @param value
+		 *            The value to store.
+		 */
+		public StoredValue(int value) {
+			this.value = value;
+		}
+		
+		
+		/**
+		 * Creates a new instance.
+		 * 
+		 * @param sr
+		 *            The store to read state from.
+		 * @param scr
+		 *            Maintains the mapping between classes and their
+		 *            identifiers within the store.
+		 */
+		public StoredValue(StoreReader sr, StoreClassRegister scr) {
+			value = sr.readInteger();
+		}
+		
+		
+		/**
+		 * Gets the stored value.
+		 * 
+		 * @return The value.
+		 */
+		public int getValue() {
+			return value;
+		}
+		
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void store(StoreWriter sw, StoreClassRegister scr) {
+			sw.writeInteger(value);
+		}
+	}
+	
+	
+	/**
+	 * A storeable class with a registered factory.
+	 */
+	public static class RegisteredValue extends StoredValue {
+		/**
+		 * Creates a new instance.
+		 * 
+		 * @param value
+		 *            The value to store.
+		 */
+		public RegisteredValue(int value) {
+			super(value);
+		}
+	}
+	
+	
+	/**
+	 * A storeable class without a storeable constructor.
+	 */
+	public static class UnloadableValue extends StoredValue {
+		/**
+		 * Creates a new instance.
+		 * 
+		 * @param value
+		 *            The value to store.
+		 */
+		public UnloadableValue(int value) {
+			super(value);
+		}
+	}
+}
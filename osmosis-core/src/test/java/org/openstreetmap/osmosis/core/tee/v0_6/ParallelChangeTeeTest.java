@@ -0,0 +1,252 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.tee.v0_6;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.container.v0_6.ChangeContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.NodeContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.WayContainer;
+import org.openstreetmap.osmosis.core.domain.v0_6.CommonEntityData;
+import org.openstreetmap.osmosis.core.domain.v0_6.Node;
+import org.openstreetmap.osmosis.core.domain.v0_6.OsmUser;
+import org.openstreetmap.osmosis.core.domain.v0_6.Tag;
+import org.openstreetmap.osmosis.core.domain.v0_6.Way;
+import org.openstreetmap.osmosis.core.task.common.ChangeAction;
+import org.openstreetmap.osmosis.core.task.v0_6.ChangeSink;
+import org.openstreetmap.osmosis.testutil.v0_6.SinkChangeInspector;
+
+
+/**
+ * Tests the parallel change tee.
+ */
+public class ParallelChangeTeeTest {
+	private static final int CHANGE_COUNT = 5000;
+	private static final int FAILURE_POSITION = 2500;
+	
+	
+	/**
+	 * A sink that pauses regularly so that it falls behind its producer.
+	 */
+	private static class SlowSinkChangeInspector extends SinkChangeInspector {
+		private int count;
+		
+		
+		@Override
+		public void process(ChangeContainer change) {
+			if (++count % 500 == 0) {
+				try {
+					Thread.sleep(20);
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}
+			super.process(change);
+		}
+	}
+	
+	
+	/**
+	 * A sink that fails part way through the data.
+	 */
+	private static class FailingSinkChangeInspector extends SinkChangeInspector {
+		private int count;
+		
+		
+		@Override
+		public void process(ChangeContainer change) {
+			if (++count == FAILURE_POSITION) {
+				throw new IllegalStateException("Simulated output failure.");
+			}
+			super.process(change);
+		}
+	}
+	
+	
+	private static ChangeContainer buildChange(long id) {
+		CommonEntityData entityData;
+		ChangeAction action;
+		
+		entityData = new CommonEntityData(
+				id, 1, new Date(id * 1000), new OsmUser(1, "user"), 2,
+				Collections.singletonList(new Tag("key", "value" + id)));
+		
+		action = ChangeAction.values()[(int) (id % ChangeAction.values().length)];
+		
+		if (id % 10 == 0) {
+			return new ChangeContainer(new WayContainer(new Way(entityData, new long[] {id - 1})), action);
+		} else {
+			return new ChangeContainer(new NodeContainer(new Node(entityData, id / 1000.0, -id / 1000.0)), action);
+		}
+	}
+	
+	
+	private List<Thread> startOutputs(ParallelChangeTee tee, List<? extends ChangeSink> sinks,
+			final List<Throwable> outputErrors) {
+		List<Thread> threads;
+		
+		threads = new ArrayList<Thread>();
+		for (int i = 0; i < sinks.size(); i++) {
+			Thread thread;
+			
+			tee.getChangeSource(i).setChangeSink(sinks.get(i));
+			
+			thread = new Thread(tee.getChangeSource(i));
+			thread.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+				@Override
+				public void uncaughtException(Thread t, Throwable e) {
+					outputErrors.add(e);
+				}
+			});
+			threads.add(thread);
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		
+		return threads;
+	}
+	
+	
+	private void joinOutputs(List<Thread> threads) throws InterruptedException {
+		for (Thread thread : threads) {
+			thread.join(60000);
+			Assert.assertFalse("An output thread did not terminate.", thread.isAlive());
+		}
+	}
+	
+	
+	private List<SinkChangeInspector> runTee(OverflowPolicy overflowPolicy) throws InterruptedException {
+		ParallelChangeTee tee;
+		List<SinkChangeInspector> inspectors;
+		List<Throwable> outputErrors;
+		List<Thread> threads;
+		
+		tee = new ParallelChangeTee(2, 10, overflowPolicy);
+		inspectors = new ArrayList<SinkChangeInspector>();
+		inspectors.add(new SinkChangeInspector());
+		inspectors.add(new SlowSinkChangeInspector());
+		outputErrors = Collections.synchronizedList(new ArrayList<Throwable>());
+		
+		threads = startOutputs(tee, inspectors, outputErrors);
+		
+		tee.initialize(Collections.<String, Object>emptyMap());
+		for (long id = 1; id <= CHANGE_COUNT; id++) {
+			tee.process(buildChange(id));
+		}
+		tee.complete();
+		tee.release();
+		
+		joinOutputs(threads);
+		Assert.assertEquals("No output errors should occur.", Collections.emptyList(), outputErrors);
+		
+		return inspectors;
+	}
+	
+	
+	private void checkOutput(SinkChangeInspector inspector) {
+		long expectedId;
+		
+		expectedId = 1;
+		for (ChangeContainer change : inspector.getProcessedChanges()) {
+			ChangeContainer expectedChange = buildChange(expectedId);
+			
+			Assert.assertEquals("Incorrect entity id.", expectedId, change.getEntityContainer().getEntity().getId());
+			Assert.assertEquals("Incorrect change action.", expectedChange.getAction(), change.getAction());
+			Assert.assertEquals("Incorrect entity type.",
+					expectedChange.getEntityContainer().getEntity().getType(),
+					change.getEntityContainer().getEntity().getType());
+			Assert.assertEquals("Incorrect tag value.", "value" + expectedId,
+					change.getEntityContainer().getEntity().getTags().iterator().next().getValue());
+			expectedId++;
+		}
+		Assert.assertEquals("Incorrect number of changes.", CHANGE_COUNT, expectedId - 1);
+	}
+	
+	
+	/**
+	 * Verifies that all outputs receive all changes in order when the producer
+	 * blocks on a full buffer.
+	 * 
+	 * @throws InterruptedException
+	 *             if the test is interrupted.
+	 */
+	@Test
+	public void testBlock() throws InterruptedException {
+		for (SinkChangeInspector inspector : runTee(OverflowPolicy.Block)) {
+			checkOutput(inspector);
+		}
+	}
+	
+	
+	/**
+	 * Verifies that all outputs receive all changes in order when a slow output
+	 * causes changes to be spilled to disk.
+	 * 
+	 * @throws InterruptedException
+	 *             if the test is interrupted.
+	 */
+	@Test
+	public void testSpill() throws InterruptedException {
+		for (SinkChangeInspector inspector : runTee(OverflowPolicy.Spill)) {
+			checkOutput(inspector);
+		}
+	}
+	
+	
+	/**
+	 * Verifies that the failure of one output is reported to the producer, that
+	 * the remaining outputs are aborted rather than completed, and that no
+	 * thread is left blocked.
+	 * 
+	 * @throws InterruptedException
+	 *             if the test is interrupted.
+	 */
+	@Test
+	public void testOutputFailure() throws InterruptedException {
+		for (OverflowPolicy overflowPolicy : OverflowPolicy.values()) {
+			ParallelChangeTee tee;
+			List<SinkChangeInspector> inspectors;
+			List<Throwable> outputErrors;
+			List<Thread> threads;
+			boolean producerFailed;
+			
+			tee = new ParallelChangeTee(2, 10, overflowPolicy);
+			inspectors = new ArrayList<SinkChangeInspector>();
+			inspectors.add(new FailingSinkChangeInspector());
+			inspectors.add(new SinkChangeInspector());
+			outputErrors = Collections.synchronizedList(new ArrayList<Throwable>());
+			
+			threads = startOutputs(tee, inspectors, outputErrors);
+			
+			producerFailed = false;
+			try {
+				tee.initialize(Collections.<String, Object>emptyMap());
+				for (long id = 1; id <= CHANGE_COUNT; id++) {
+					tee.process(buildChange(id));
+				}
+				tee.complete();
+				
+			} catch (OsmosisRuntimeException e) {
+				producerFailed = true;
+				
+			} finally {
+				tee.release();
+			}
+			
+			joinOutputs(threads);
+			
+			Assert.assertTrue("The producer should see the output failure with policy " + overflowPolicy + ".",
+					producerFailed);
+			Assert.assertEquals("Both outputs should fail with policy " + overflowPolicy + ".",
+					2, outputErrors.size());
+			Assert.assertEquals("The failing output received the wrong number of changes.",
+					FAILURE_POSITION - 1, inspectors.get(0).getProcessedChanges().size());
+		}
+	}
+}
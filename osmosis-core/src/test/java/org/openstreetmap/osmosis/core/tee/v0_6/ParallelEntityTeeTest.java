@@ -0,0 +1,143 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.tee.v0_6;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.NodeContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.WayContainer;
+import org.openstreetmap.osmosis.core.domain.v0_6.CommonEntityData;
+import org.openstreetmap.osmosis.core.domain.v0_6.Node;
+import org.openstreetmap.osmosis.core.domain.v0_6.OsmUser;
+import org.openstreetmap.osmosis.core.domain.v0_6.Tag;
+import org.openstreetmap.osmosis.core.domain.v0_6.Way;
+import org.openstreetmap.osmosis.testutil.v0_6.SinkEntityInspector;
+
+
+/**
+ * Tests the parallel entity tee.
+ */
+public class ParallelEntityTeeTest {
+	private static final int ENTITY_COUNT = 5000;
+	
+	
+	/**
+	 * A sink that pauses regularly so that it falls behind its producer.
+	 */
+	private static class SlowSinkEntityInspector extends SinkEntityInspector {
+		private int count;
+		
+		
+		@Override
+		public void process(EntityContainer entityContainer) {
+			if (++count % 500 == 0) {
+				try {
+					Thread.sleep(20);
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			}
+			super.process(entityContainer);
+		}
+	}
+	
+	
+	private static EntityContainer buildEntity(long id) {
+		CommonEntityData entityData;
+		
+		entityData = new CommonEntityData(
+				id, 1, new Date(id * 1000), new OsmUser(1, "user"), 2,
+				Collections.singletonList(new Tag("key", "value" + id)));
+		
+		if (id % 10 == 0) {
+			return new WayContainer(new Way(entityData, new long[] {id - 1}));
+		} else {
+			return new NodeContainer(new Node(entityData, id / 1000.0, -id / 1000.0));
+		}
+	}
+	
+	
+	private List<SinkEntityInspector> runTee(OverflowPolicy overflowPolicy) throws InterruptedException {
+		ParallelEntityTee tee;
+		List<SinkEntityInspector> inspectors;
+		List<Thread> threads;
+		
+		tee = new ParallelEntityTee(2, 10, overflowPolicy);
+		inspectors = new ArrayList<SinkEntityInspector>();
+		inspectors.add(new SinkEntityInspector());
+		inspectors.add(new SlowSinkEntityInspector());
+		
+		threads = new ArrayList<Thread>();
+		for (int i = 0; i < inspectors.size(); i++) {
+			tee.getSource(i).setSink(inspectors.get(i));
+			threads.add(new Thread(tee.getSource(i)));
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		
+		tee.initialize(Collections.<String, Object>emptyMap());
+		for (long id = 1; id <= ENTITY_COUNT; id++) {
+			tee.process(buildEntity(id));
+		}
+		tee.complete();
+		tee.release();
+		
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		
+		return inspectors;
+	}
+	
+	
+	private void checkOutput(SinkEntityInspector inspector) {
+		long expectedId;
+		
+		expectedId = 1;
+		for (EntityContainer entityContainer : inspector.getProcessedEntities()) {
+			Assert.assertEquals("Incorrect entity id.", expectedId, entityContainer.getEntity().getId());
+			Assert.assertEquals("Incorrect entity type.",
+					buildEntity(expectedId).getEntity().getType(), entityContainer.getEntity().getType());
+			Assert.assertEquals("Incorrect tag value.", "value" + expectedId,
+					entityContainer.getEntity().getTags().iterator().next().getValue());
+			expectedId++;
+		}
+		Assert.assertEquals("Incorrect number of entities.", ENTITY_COUNT, expectedId - 1);
+	}
+	
+	
+	/**
+	 * Verifies that all outputs receive all entities in order when the
+	 * producer blocks on a full buffer.
+	 * 
+	 * @throws InterruptedException
+	 *             if the test is interrupted.
+	 */
+	@Test
+	public void testBlock() throws InterruptedException {
+		for (SinkEntityInspector inspector : runTee(OverflowPolicy.Block)) {
+			checkOutput(inspector);
+		}
+	}
+	
+	
+	/**
+	 * Verifies that all outputs receive all entities in order when a slow
+	 * output causes entities to be spilled to disk.
+	 * 
+	 * @throws InterruptedException
+	 *             if the test is interrupted.
+	 */
+	@Test
+	public void testSpill() throws InterruptedException {
+		for (SinkEntityInspector inspector : runTee(OverflowPolicy.Spill)) {
+			checkOutput(inspector);
+		}
+	}
+}
@@ -0,0 +1,112 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.time;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Tests the date parser.
+ */
+public class DateParserTest {
+	
+	private Calendar calendar = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+	
+	
+	private long calculateExpected(int year, int month, int day, int hour, int minute, int second, int millisecond) {
+		calendar.clear();
+		calendar.set(year, month - 1, day, hour, minute, second);
+		calendar.set(Calendar.MILLISECOND, millisecond);
+		
+		return calendar.getTimeInMillis();
+	}
+	
+	
+	/**
+	 * Verifies that dates in the standard formats are parsed identically to a
+	 * lenient calendar, including dates with out of range fields and dates
+	 * before the Gregorian calendar was introduced.
+	 */
+	@Test
+	public void testStandardFormats() {
+		DateParser parser = new DateParser();
+		Random random = new Random(42);
+		
+		for (int i = 0; i < 100000; i++) {
+			int year;
+			int month;
+			int day;
+			int hour;
+			int minute;
+			int second;
+			int millisecond;
+			String date;
+			
+			if (i % 10 == 0) {
+				year = random.nextInt(10000);
+				month = random.nextInt(100);
+				day = random.nextInt(100);
+				hour = random.nextInt(100);
+				minute = random.nextInt(100);
+				second = random.nextInt(100);
+			} else {
+				year = 1970 + random.nextInt(70);
+				month = 1 + random.nextInt(12);
+				day = 1 + random.nextInt(28);
+				hour = random.nextInt(24);
+				minute = random.nextInt(60);
+				second = random.nextInt(60);
+			}
+			
+			date = String.format("%04d-%02d-%02dT%02d:%02d:%02d", year, month, day, hour, minute, second);
+			
+			Assert.assertEquals("Incorrect date for " + date + "Z.",
+					calculateExpected(year, month, day, hour, minute, second, 0), parser.parseMillis(date + "Z"));
+			
+			millisecond = random.nextInt(1000);
+			date = String.format("%s.%03dZ", date, millisecond);
+			Assert.assertEquals("Incorrect date for " + date + ".",
+					calculateExpected(year, month, day, hour, minute, second, millisecond),
+					parser.parse(date).getTime());
+		}
+	}
+	
+	
+	/**
+	 * Verifies that the result for a repeated date is re-used correctly.
+	 */
+	@Test
+	public void testRepeatedDates() {
+		DateParser parser = new DateParser();
+		String first = "2011-03-13T07:06:40Z";
+		String second = "2011-03-13T07:06:41Z";
+		long firstMillis = calculateExpected(2011, 3, 13, 7, 6, 40, 0);
+		
+		Assert.assertEquals("Incorrect date.", firstMillis, parser.parseMillis(first));
+		Assert.assertEquals("Incorrect date.", firstMillis, parser.parseMillis(new String(first)));
+		Assert.assertEquals("Incorrect date.", firstMillis + 1000, parser.parseMillis(second));
+		Assert.assertEquals("Incorrect date.", firstMillis, parser.parseMillis(first));
+		Assert.assertEquals("Incorrect date.", firstMillis + 123,
+				parser.parseMillis("2011-03-13T07:06:40.123Z"));
+		Assert.assertNotSame("Dates must not be shared.", parser.parse(first), parser.parse(first));
+	}
+	
+	
+	/**
+	 * Verifies that dates in other formats are parsed.
+	 */
+	@Test
+	public void testOtherFormats() {
+		DateParser parser = new DateParser();
+		long expected = calculateExpected(2007, 2, 12, 18, 43, 1, 0);
+		
+		Assert.assertEquals("Incorrect date.", expected, parser.parseMillis("2007-02-12T19:43:01+01:00"));
+		Assert.assertEquals("Incorrect date.", expected, parser.parseMillis("2007-02-12T18:43:01.0Z"));
+		Assert.assertEquals("Incorrect date.", expected, parser.parseMillis("2007-02-12 18:43:01 UTC"));
+	}
+}
@@ -0,0 +1,164 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Tests the parallel bzip2 input and output streams.
+ */
+public class ParallelBZip2StreamTest {
+	
+	private byte[] compressSequential(byte[] data) throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		OutputStream out = new BZip2CompressorOutputStream(buffer, 1);
+		
+		out.write(data);
+		out.close();
+		
+		return buffer.toByteArray();
+	}
+	
+	
+	private byte[] compressParallel(byte[] data) throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		OutputStream out = new ParallelBZip2OutputStream(buffer, 3, 30000);
+		
+		out.write(data);
+		out.close();
+		
+		return buffer.toByteArray();
+	}
+	
+	
+	/**
+	 * Verifies that a single stream containing many blocks is decompressed.
+	 * 
+	 * @throws IOException
+	 *             if the data cannot be compressed.
+	 */
+	@Test
+	public void testSingleStream() throws IOException {
+		byte[] data = ParallelGZIPStreamTest.buildData(1000000);
+		
+		Assert.assertArrayEquals("Incorrect data.", data, ParallelGZIPStreamTest.readAll(
+				new ParallelBZip2InputStream(new ByteArrayInputStream(compressSequential(data)), 3)));
+	}
+	
+	
+	/**
+	 * Verifies that data compressed in parallel is decompressed by both the
+	 * parallel and standard readers.
+	 * 
+	 * @throws IOException
+	 *             if the data cannot be compressed.
+	 */
+	@Test
+	public void testConcatenatedStreams() throws IOException {
+		byte[] data = ParallelGZIPStreamTest.buildData(200000);
+		byte[] compressed = compressParallel(data);
+		
+		Assert.assertArrayEquals("Incorrect data.", data, ParallelGZIPStreamTest.readAll(
+				new ParallelBZip2InputStream(new ByteArrayInputStream(compressed), 2)));
+		Assert.assertArrayEquals("Incorrect data.", data, ParallelGZIPStreamTest.readAll(
+				new BZip2CompressorInputStream(new ByteArrayInputStream(compressed), true)));
+	}
+	
+	
+	/**
+	 * Verifies that empty streams are handled.
+	 * 
+	 * @throws IOException
+	 *             if the data cannot be compressed.
+	 */
+	@Test
+	public void testEmpty() throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		
+		new ParallelBZip2OutputStream(buffer, 2).close();
+		
+		Assert.assertEquals("Data should be empty.", 0, ParallelGZIPStreamTest.readAll(
+				new ParallelBZip2InputStream(new ByteArrayInputStream(buffer.toByteArray()), 2)).length);
+	}
+	
+	
+	/**
+	 * Verifies that a block which has been split in two is decompressed once
+	 * the parts are joined. This occurs when a magic number appears by chance
+	 * within compressed data.
+	 * 
+	 * @throws IOException
+	 *             if the data cannot be compressed.
+	 */
+	@Test
+	public void testJoinSplitBlock() throws IOException {
+		byte[] data = ParallelGZIPStreamTest.buildData(50000);
+		byte[] stream = compressSequential(data);
+		BZip2BlockScanner.Block block;
+		int blockBits;
+		int splitBit;
+		BZip2BlockScanner.Block first;
+		BZip2BlockScanner.Block second;
+		boolean firstValid;
+		
+		block = new BZip2BlockScanner(new ByteArrayInputStream(stream)).next();
+		Assert.assertTrue("Expected a single block.", block.isStreamEnd());
+		
+		// The block lies between the 4 byte stream header and the end of
+		// stream magic number, which is followed by a CRC and padding.
+		blockBits = stream.length * 8 - 32 - 48 - 32;
+		while (readBits(stream, 32 + blockBits, 48) != 0x177245385090L) {
+			blockBits--;
+		}
+		
+		splitBit = 1237;
+		first = new BZip2BlockScanner.Block(subBits(stream, 32, splitBit), splitBit, 1, block.getCrc());
+		second = new BZip2BlockScanner.Block(
+				subBits(stream, 32 + splitBit, blockBits - splitBit), blockBits - splitBit, 1, 0);
+		
+		firstValid = true;
+		try {
+			first.decompress();
+		} catch (IOException e) {
+			firstValid = false;
+		}
+		Assert.assertFalse("The first part of the block should not be valid.", firstValid);
+		Assert.assertArrayEquals("Incorrect data.", data, first.append(second).decompress());
+	}
+	
+	
+	private long readBits(byte[] source, int position, int bitCount) {
+		long value = 0;
+		
+		for (int i = 0; i < bitCount; i++) {
+			int bit = position + i;
+			
+			value = (value << 1) | ((source[bit / 8] >>> (7 - bit % 8)) & 1);
+		}
+		
+		return value;
+	}
+	
+	
+	private byte[] subBits(byte[] source, int position, int bitCount) {
+		byte[] result = new byte[(bitCount + 7) / 8];
+		
+		for (int i = 0; i < bitCount; i++) {
+			int bit = position + i;
+			
+			if ((source[bit / 8] & (0x80 >>> (bit % 8))) != 0) {
+				result[i / 8] |= 0x80 >>> (i % 8);
+			}
+		}
+		
+		return result;
+	}
+}
@@ -0,0 +1,192 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Tests the parallel gzip input and output streams.
+ */
+public class ParallelGZIPStreamTest {
+	
+	/**
+	 * Builds test data containing a mixture of repetitive and random text.
+	 * 
+	 * @param length
+	 *            The number of bytes to build.
+	 * @return The data.
+	 */
+	static byte[] buildData(int length) {
+		Random random = new Random(42);
+		byte[] data = new byte[length];
+		
+		for (int i = 0; i < length; i++) {
+			if (random.nextInt(4) == 0) {
+				data[i] = (byte) ('a' + random.nextInt(26));
+			} else {
+				data[i] = (byte) ("<node id=\"".charAt(i % 10));
+			}
+		}
+		
+		return data;
+	}
+	
+	
+	/**
+	 * Reads all data from a stream using reads of varying sizes.
+	 * 
+	 * @param in
+	 *            The stream to read.
+	 * @return The data.
+	 * @throws IOException
+	 *             if the stream cannot be read.
+	 */
+	static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		byte[] buffer = new byte[10000];
+		int readSize = 1;
+		
+		try {
+			for (;;) {
+				int count;
+				
+				if (readSize == 1) {
+					int b = in.read();
+					if (b < 0) {
+						break;
+					}
+					result.write(b);
+				} else {
+					count = in.read(buffer, 0, readSize);
+					if (count < 0) {
+						break;
+					}
+					result.write(buffer, 0, count);
+				}
+				
+				readSize = readSize * 7 % buffer.length + 1;
+			}
+		} finally {
+			in.close();
+		}
+		
+		return result.toByteArray();
+	}
+	
+	
+	private byte[] compress(byte[] data, int blockSize) throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		OutputStream out = new ParallelGZIPOutputStream(buffer, 3, Deflater.DEFAULT_COMPRESSION, blockSize);
+		
+		out.write(data, 0, 1);
+		out.write(data, 1, data.length - 1);
+		out.close();
+		
+		return buffer.toByteArray();
+	}
+	
+	
+	/**
+	 * Verifies that data compressed in parallel is decompressed in parallel.
+	 * 
+	 * @throws IOException
+	 *             if the data cannot be compressed.
+	 */
+	@Test
+	public void testRoundTrip() throws IOException {
+		byte[] data = buildData(500000);
+		byte[] compressed = compress(data, 10000);
+		
+		Assert.assertArrayEquals("Incorrect data.", data,
+				readAll(new ParallelGZIPInputStream(new ByteArrayInputStream(compressed), 3)));
+	}
+	
+	
+	/**
+	 * Verifies that data compressed in parallel can be read by a standard
+	 * multi member gzip reader.
+	 * 
+	 * @throws IOException
+	 *             if the data cannot be compressed.
+	 */
+	@Test
+	public void testReadBySequentialReader() throws IOException {
+		byte[] data = buildData(100000);
+		byte[] compressed = compress(data, 7000);
+		
+		Assert.assertArrayEquals("Incorrect data.", data,
+				readAll(new MultiMemberGZIPInputStream(new ByteArrayInputStream(compressed))));
+	}
+	
+	
+	/**
+	 * Verifies that gzip data without member lengths is decompressed, including
+	 * when it follows members with recorded lengths.
+	 * 
+	 * @throws IOException
+	 *             if the data cannot be compressed.
+	 */
+	@Test
+	public void testReadStandardMembers() throws IOException {
+		byte[] data = buildData(100000);
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		OutputStream out;
+		byte[] expected;
+		
+		buffer.write(compress(data, 9000));
+		out = new GZIPOutputStream(buffer);
+		out.write(data);
+		out.close();
+		
+		expected = new byte[data.length * 2];
+		System.arraycopy(data, 0, expected, 0, data.length);
+		System.arraycopy(data, 0, expected, data.length, data.length);
+		
+		Assert.assertArrayEquals("Incorrect data.", expected,
+				readAll(new ParallelGZIPInputStream(new ByteArrayInputStream(buffer.toByteArray()), 2)));
+	}
+	
+	
+	/**
+	 * Verifies that an empty stream produces a valid gzip file.
+	 * 
+	 * @throws IOException
+	 *             if the data cannot be compressed.
+	 */
+	@Test
+	public void testEmpty() throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		
+		new ParallelGZIPOutputStream(buffer, 2).close();
+		
+		Assert.assertEquals("Data should be empty.", 0,
+				readAll(new MultiMemberGZIPInputStream(new ByteArrayInputStream(buffer.toByteArray()))).length);
+		Assert.assertEquals("Data should be empty.", 0,
+				readAll(new ParallelGZIPInputStream(new ByteArrayInputStream(buffer.toByteArray()), 2)).length);
+	}
+	
+	
+	/**
+	 * Verifies that corrupt data is detected.
+	 * 
+	 * @throws IOException
+	 *             if the data is corrupt.
+	 */
+	@Test(expected = IOException.class)
+	public void testCorrupt() throws IOException {
+		byte[] compressed = compress(buildData(100000), 10000);
+		
+		compressed[compressed.length / 2]++;
+		readAll(new ParallelGZIPInputStream(new ByteArrayInputStream(compressed), 2));
+	}
+}
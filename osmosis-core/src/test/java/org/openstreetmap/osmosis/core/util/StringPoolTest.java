@@ -0,0 +1,150 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.core.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Tests the string pool.
+ */
+public class StringPoolTest {
+	
+	/**
+	 * Tests that equal strings are replaced by the pooled instance.
+	 */
+	@Test
+	public void testIntern() {
+		StringPool pool = new StringPool(16);
+		String first = new String("highway");
+		String second = new String("highway");
+		
+		Assert.assertSame("The first string should be pooled.", first, pool.intern(first));
+		Assert.assertSame("The pooled string was not returned.", first, pool.intern(second));
+		Assert.assertNull("Null should be returned unchanged.", pool.intern(null));
+		
+		Assert.assertEquals("Incorrect hit count.", 1, pool.getHitCount());
+		Assert.assertEquals("Incorrect miss count.", 1, pool.getMissCount());
+		Assert.assertEquals("Incorrect hit rate.", 0.5, pool.getHitRate(), 0);
+	}
+	
+	
+	/**
+	 * Tests that the pool does not grow beyond its capacity and that long
+	 * strings aren't pooled.
+	 */
+	@Test
+	public void testBounded() {
+		StringPool pool = new StringPool(100);
+		StringBuilder longValue;
+		String value;
+		
+		Assert.assertEquals("Capacity should be rounded to a power of two.", 128, pool.getCapacity());
+		
+		for (int i = 0; i < 10000; i++) {
+			value = "value" + i;
+			Assert.assertEquals("Incorrect string returned.", value, pool.intern(value));
+		}
+		Assert.assertEquals("Incorrect miss count.", 10000, pool.getMissCount());
+		
+		longValue = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			longValue.append('a');
+		}
+		value = longValue.toString();
+		pool.intern(value);
+		Assert.assertNotSame("Long strings should not be pooled.", value, pool.intern(new String(value)));
+	}
+	
+	
+	/**
+	 * Tests that a pool with no capacity returns strings unchanged.
+	 */
+	@Test
+	public void testDisabled() {
+		StringPool pool = new StringPool(0);
+		String value = new String("name");
+		
+		pool.intern("name");
+		Assert.assertSame("Strings should not be pooled.", value, pool.intern(value));
+		Assert.assertEquals("Incorrect capacity.", 0, pool.getCapacity());
+		Assert.assertEquals("Incorrect hit rate.", 0, pool.getHitRate(), 0);
+	}
+	
+	
+	/**
+	 * Tests that the pool returns equal strings when used by multiple threads.
+	 * 
+	 * @throws Exception
+	 *             if a thread is interrupted.
+	 */
+	@Test
+	public void testConcurrentIntern() throws Exception {
+		final StringPool pool = new StringPool(64);
+		final AtomicBoolean failed = new AtomicBoolean(false);
+		List<Thread> threads;
+		
+		threads = new ArrayList<Thread>();
+		for (int t = 0; t < 4; t++) {
+			threads.add(new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 100000; i++) {
+						String value = "key" + (i % 200);
+						
+						if (!value.equals(pool.intern(value))) {
+							failed.set(true);
+						}
+					}
+				}
+			});
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		
+		Assert.assertFalse("An incorrect string was returned.", failed.get());
+		Assert.assertEquals("Incorrect lookup count.", 400000, pool.getHitCount() + pool.getMissCount());
+	}
+	
+	
+	/**
+	 * Tests that the lookups of threads that have finished are still counted.
+	 * 
+	 * @throws Exception
+	 *             if a thread is interrupted.
+	 */
+	@Test
+	public void testFinishedThreadCounts() throws Exception {
+		final StringPool pool = new StringPool(64);
+		
+		for (int t = 0; t < 50; t++) {
+			Thread thread = new Thread() {
+				@Override
+				public void run() {
+					pool.intern("key");
+					pool.intern("key");
+				}
+			};
+			
+			thread.start();
+			thread.join();
+			
+			// Requesting the statistics after each thread has finished
+			// retires its counter.
+			Assert.assertEquals("Incorrect hit count.", 2 * t + 1, pool.getHitCount());
+		}
+		
+		pool.intern("other");
+		
+		Assert.assertEquals("Incorrect hit count.", 99, pool.getHitCount());
+		Assert.assertEquals("Incorrect miss count.", 2, pool.getMissCount());
+	}
+}
@@ -23,10 +23,6 @@ import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 
-enum CompressFlags {
-    NONE, DEFLATE
-}
-
 public class BlockOutputStream {
 
     public BlockOutputStream(OutputStream output) {
@@ -0,0 +1,138 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.osmbinary.file;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A block output stream that compresses blocks on a pool of worker threads.
+ * Blocks are handed to the workers in the order they are written, and the
+ * encoded results are written to the underlying stream in that same order so
+ * the resulting file is identical to one produced by {@link BlockOutputStream}.
+ */
+public class ParallelBlockOutputStream extends BlockOutputStream {
+
+    private ExecutorService executorService;
+    private int maxPendingBlocks;
+    private Queue<Future<EncodedBlock>> pendingBlocks;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param output
+     *            The stream to write encoded blocks to.
+     * @param workers
+     *            The number of worker threads to compress blocks with.
+     */
+    public ParallelBlockOutputStream(OutputStream output, int workers) {
+        super(output);
+
+        if (workers <= 0) {
+            throw new IllegalArgumentException("A worker count of " + workers
+                    + " is invalid, must be greater than 0.");
+        }
+
+        executorService = Executors.newFixedThreadPool(workers);
+
+        // Allow one extra block per worker to be queued so that workers don't
+        // sit idle while the calling thread is writing completed blocks.
+        maxPendingBlocks = workers * 2;
+        pendingBlocks = new LinkedList<Future<EncodedBlock>>();
+    }
+
+    /** Queue a block for compression on a worker thread with specific compression flags. */
+    @Override
+    public void write(final FileBlock block, final CompressFlags compression)
+            throws IOException {
+        pendingBlocks.add(executorService.submit(new Callable<EncodedBlock>() {
+            @Override
+            public EncodedBlock call() throws IOException {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                FileBlockPosition position = block.writeTo(buffer, compression);
+
+                return new EncodedBlock(buffer, position);
+            }
+        }));
+
+        // Once the queue is full we must wait for the oldest block to complete
+        // before accepting any more.
+        writePendingBlocks(maxPendingBlocks - 1);
+    }
+
+    /**
+     * Writes completed blocks to the underlying stream in their original
+     * order until no more than the target number of blocks remain in
+     * progress. This blocks until the required blocks have been encoded.
+     */
+    private void writePendingBlocks(int targetQueueSize) throws IOException {
+        while (pendingBlocks.size() > targetQueueSize) {
+            EncodedBlock encodedBlock;
+
+            try {
+                encodedBlock = pendingBlocks.remove().get();
+            } catch (InterruptedException e) {
+                throw new IOException("Thread was interrupted while waiting for a block to be compressed.", e);
+            } catch (ExecutionException e) {
+                throw new IOException("A block compression worker thread failed.", e.getCause());
+            }
+
+            encodedBlock.getBuffer().writeTo(outwrite);
+            writtenblocks.add(encodedBlock.getPosition());
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writePendingBlocks(0);
+        super.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            writePendingBlocks(0);
+            super.close();
+        } finally {
+            try {
+                // Discard any blocks still queued if writing failed.
+                for (Future<EncodedBlock> pendingBlock : pendingBlocks) {
+                    pendingBlock.cancel(true);
+                }
+                pendingBlocks.clear();
+                executorService.shutdownNow();
+            } finally {
+                // The underlying stream must be closed even if writing
+                // failed, closing it again after a successful close has no
+                // effect.
+                outwrite.close();
+            }
+        }
+    }
+
+    /** The output of a single block compression job. */
+    private static class EncodedBlock {
+        private ByteArrayOutputStream buffer;
+        private FileBlockPosition position;
+
+        public EncodedBlock(ByteArrayOutputStream buffer, FileBlockPosition position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        public ByteArrayOutputStream getBuffer() {
+            return buffer;
+        }
+
+        public FileBlockPosition getPosition() {
+            return position;
+        }
+    }
+}
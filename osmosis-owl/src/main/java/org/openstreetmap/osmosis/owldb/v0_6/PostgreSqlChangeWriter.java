@@ -11,6 +11,7 @@ import org.openstreetmap.osmosis.core.domain.v0_6.Entity;
 import org.openstreetmap.osmosis.core.task.common.ChangeAction;
 import org.openstreetmap.osmosis.core.task.v0_6.ChangeSink;
 import org.openstreetmap.osmosis.owldb.common.DatabaseContext;
+import org.openstreetmap.osmosis.owldb.v0_6.impl.BatchChangeWriter;
 import org.openstreetmap.osmosis.owldb.v0_6.impl.ChangeWriter;
 import org.openstreetmap.osmosis.owldb.v0_6.impl.InvalidActionsMode;
 
@@ -41,8 +42,34 @@ public class PostgreSqlChangeWriter implements ChangeSink {
 	 */
 	public PostgreSqlChangeWriter(DatabaseLoginCredentials loginCredentials, DatabasePreferences preferences,
 			InvalidActionsMode invalidActionsMode) throws SQLException {
+		this(loginCredentials, preferences, invalidActionsMode, false);
+	}
+
+
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param loginCredentials
+	 *            Contains all information required to connect to the database.
+	 * @param preferences
+	 *            Contains preferences configuring database behaviour.
+	 * @param invalidActionsMode
+	 *            The handling of invalid actions.
+	 * @param batchApply
+	 *            If true, changes are staged and applied to the database in a
+	 *            single batch when complete is called. Otherwise each change
+	 *            is applied as it is received.
+	 * @throws SQLException
+	 *             if the database cannot be accessed.
+	 */
+	public PostgreSqlChangeWriter(DatabaseLoginCredentials loginCredentials, DatabasePreferences preferences,
+			InvalidActionsMode invalidActionsMode, boolean batchApply) throws SQLException {
 		dbCtx = new DatabaseContext(loginCredentials);
-		changeWriter = new ChangeWriter(dbCtx, invalidActionsMode);
+		if (batchApply) {
+			changeWriter = new BatchChangeWriter(dbCtx, invalidActionsMode);
+		} else {
+			changeWriter = new ChangeWriter(dbCtx, invalidActionsMode);
+		}
 		initialized = false;
 	}
 
@@ -18,6 +18,8 @@ import org.openstreetmap.osmosis.owldb.v0_6.impl.InvalidActionsMode;
  * @author Paweł Paprota
  */
 public class PostgreSqlChangeWriterFactory extends DatabaseTaskManagerFactory {
+	private static final String ARG_BATCH_APPLY = "batchApply";
+	private static final boolean DEFAULT_BATCH_APPLY = false;
 
 	/**
 	 * {@inheritDoc}
@@ -26,14 +28,16 @@ public class PostgreSqlChangeWriterFactory extends DatabaseTaskManagerFactory {
 	protected TaskManager createTaskManagerImpl(TaskConfiguration taskConfig) {
 		DatabaseLoginCredentials loginCredentials;
 		DatabasePreferences preferences;
+		boolean batchApply;
 
 		// Get the task arguments.
 		loginCredentials = getDatabaseLoginCredentials(taskConfig);
 		preferences = getDatabasePreferences(taskConfig);
+		batchApply = getBooleanArgument(taskConfig, ARG_BATCH_APPLY, DEFAULT_BATCH_APPLY);
 
 		try {
 			return new ChangeSinkManager(taskConfig.getId(), new PostgreSqlChangeWriter(loginCredentials, preferences,
-					getInvalidActionsMode(taskConfig)), taskConfig.getPipeArgs());
+					getInvalidActionsMode(taskConfig), batchApply), taskConfig.getPipeArgs());
 		} catch (SQLException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
@@ -6,7 +6,7 @@ import java.util.Map;
 
 import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
 import org.openstreetmap.osmosis.core.task.v0_6.Sink;
-import org.openstreetmap.osmosis.owldb.common.NodeLocationStoreType;
+import org.openstreetmap.osmosis.pgsql.common.NodeLocationStoreType;
 import org.openstreetmap.osmosis.owldb.v0_6.impl.CopyFilesetBuilder;
 import org.openstreetmap.osmosis.owldb.v0_6.impl.DirectoryCopyFileset;
 
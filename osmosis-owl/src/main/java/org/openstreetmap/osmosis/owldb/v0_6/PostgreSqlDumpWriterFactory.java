@@ -7,7 +7,7 @@ import org.openstreetmap.osmosis.core.pipeline.common.TaskConfiguration;
 import org.openstreetmap.osmosis.core.pipeline.common.TaskManager;
 import org.openstreetmap.osmosis.core.pipeline.common.TaskManagerFactory;
 import org.openstreetmap.osmosis.core.pipeline.v0_6.SinkManager;
-import org.openstreetmap.osmosis.owldb.common.NodeLocationStoreType;
+import org.openstreetmap.osmosis.pgsql.common.NodeLocationStoreType;
 
 
 /**
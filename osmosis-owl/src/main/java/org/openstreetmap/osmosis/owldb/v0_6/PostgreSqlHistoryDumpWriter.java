@@ -8,7 +8,7 @@ import java.util.Map;
 import java.util.logging.Logger;
 
 import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
-import org.openstreetmap.osmosis.owldb.common.NodeLocationStoreType;
+import org.openstreetmap.osmosis.pgsql.common.NodeLocationStoreType;
 
 
 /**
@@ -0,0 +1,289 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.owldb.v0_6.impl;
+
+import java.io.File;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.openstreetmap.osmosis.core.domain.v0_6.Entity;
+import org.openstreetmap.osmosis.core.task.common.ChangeAction;
+import org.openstreetmap.osmosis.owldb.common.DatabaseContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+
+/**
+ * Writes changes to a database in batches. Changes are staged in COPY files by
+ * a {@link ChangeCopyFilesetBuilder} until complete is called, at which point
+ * they are loaded into temporary tables and applied using a fixed number of
+ * set based statements per entity type. The result is the same as applying each change in turn with
+ * {@link ChangeWriter}.
+ * <p>
+ * The temporary tables are dropped when the transaction commits so a commit
+ * must follow each call to complete.
+ */
+public class BatchChangeWriter extends ChangeWriter {
+	private static final Logger LOG = Logger.getLogger(BatchChangeWriter.class.getName());
+
+	private static final String STAGING_PREFIX = "change_";
+
+	private JdbcTemplate jdbcTemplate;
+	private DatabaseContext dbCtx;
+	private NodeMapper nodeMapper;
+	private WayMapper wayMapper;
+	private RelationMapper relationMapper;
+	private TempCopyFileset copyFileset;
+	private ChangeCopyFilesetBuilder batchBuilder;
+
+
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param dbCtx
+	 *            The database context to use for accessing the database.
+	 * @param invalidActionsMode
+	 *            The handling of invalid actions.
+	 * @throws SQLException
+	 *             if the database cannot be accessed.
+	 */
+	public BatchChangeWriter(DatabaseContext dbCtx, InvalidActionsMode invalidActionsMode) throws SQLException {
+		super(dbCtx, invalidActionsMode);
+
+		this.dbCtx = dbCtx;
+		jdbcTemplate = dbCtx.getJdbcTemplate();
+
+		nodeMapper = new NodeMapper();
+		wayMapper = new WayMapper();
+		relationMapper = new RelationMapper();
+
+		copyFileset = new TempCopyFileset();
+	}
+
+
+	private void initializeBatch() {
+		if (batchBuilder == null) {
+			batchBuilder = new ChangeCopyFilesetBuilder(copyFileset);
+		}
+	}
+
+
+	private void releaseBatch() {
+		if (batchBuilder != null) {
+			batchBuilder.release();
+			batchBuilder = null;
+		}
+
+		copyFileset.release();
+	}
+
+
+	/**
+	 * Stages the change for writing to the database when complete is called.
+	 * 
+	 * @param newEntity
+	 *            Must not be null.
+	 * @param existingEntity
+	 *            Ignored, existing entities are checked during complete.
+	 * @param action
+	 *            Action to perform.
+	 * @throws SQLException
+	 *             Not thrown, changes are only staged.
+	 */
+	@Override
+	public void write(Entity newEntity, Entity existingEntity, ChangeAction action) throws SQLException {
+		LOG.finest(action.name() + " " + newEntity.getType() + " " + newEntity.getId() + " " + newEntity.getVersion());
+
+		initializeBatch();
+
+		if (!batchBuilder.process(newEntity, action)) {
+			LOG.warning("Cannot process entity " + newEntity);
+		}
+	}
+
+
+	private String getStagingTableName(String tableName) {
+		return STAGING_PREFIX + tableName;
+	}
+
+
+	private String joinColumns(String prefix, List<String> columns) {
+		StringBuilder result;
+
+		result = new StringBuilder();
+		for (String column : columns) {
+			if (result.length() > 0) {
+				result.append(", ");
+			}
+			result.append(prefix).append(column);
+		}
+
+		return result.toString();
+	}
+
+
+	/**
+	 * Creates a temporary table with the same column types as the source
+	 * table, prefixed by the change sequence and action columns, then loads it
+	 * from a COPY file.
+	 */
+	private void loadStagingTable(File copyFile, String tableName, List<String> columns, String... changeColumns) {
+		String stagingTableName;
+		List<String> copyColumns;
+
+		stagingTableName = getStagingTableName(tableName);
+
+		jdbcTemplate.execute("CREATE TEMPORARY TABLE " + stagingTableName + " ON COMMIT DROP AS"
+				+ " SELECT 0::bigint AS seq, ''::text AS action, " + joinColumns("", columns) + " FROM " + tableName
+				+ " LIMIT 0");
+
+		copyColumns = new ArrayList<String>();
+		copyColumns.addAll(Arrays.asList(changeColumns));
+		copyColumns.addAll(columns);
+
+		dbCtx.loadCopyFile(copyFile, stagingTableName, copyColumns.toArray(new String[0]));
+	}
+
+
+	private void applyUsers() {
+		int updateCount;
+		int insertCount;
+
+		updateCount = jdbcTemplate.update("UPDATE users u SET name = s.name FROM change_users s"
+				+ " WHERE u.id = s.id AND u.name <> s.name");
+		insertCount = jdbcTemplate.update("INSERT INTO users (id, name) SELECT s.id, s.name FROM change_users s"
+				+ " WHERE NOT EXISTS (SELECT 1 FROM users u WHERE u.id = s.id)");
+
+		LOG.fine("Added " + insertCount + " and updated " + updateCount + " users.");
+	}
+
+
+	/**
+	 * Removes staged entities that must not be written. An entity is skipped
+	 * if an earlier change in the batch or an existing row has the same id and
+	 * version.
+	 */
+	private void removeExistingEntities(EntityMapper<?> mapper) {
+		String tableName;
+		String stagingTableName;
+
+		tableName = mapper.getEntityName() + "s";
+		stagingTableName = getStagingTableName(tableName);
+
+		jdbcTemplate.update("DELETE FROM " + stagingTableName + " s USING " + stagingTableName + " d"
+				+ " WHERE d.id = s.id AND d.version = s.version AND d.seq < s.seq");
+		jdbcTemplate.update("DELETE FROM " + stagingTableName + " s USING " + tableName + " e"
+				+ " WHERE e.id = s.id AND e.version = s.version");
+	}
+
+
+	/**
+	 * Inserts the staged entities. Existing rows lose their current flag, the
+	 * last change to each entity becomes current, and rev numbers continue on
+	 * from the highest existing rev in change order.
+	 */
+	private void insertEntities(EntityMapper<?> mapper) {
+		String tableName;
+		String stagingTableName;
+		List<String> columns;
+		StringBuilder sql;
+		int insertCount;
+
+		tableName = mapper.getEntityName() + "s";
+		stagingTableName = getStagingTableName(tableName);
+		columns = mapper.getDataColumnNames();
+
+		jdbcTemplate.update("UPDATE " + tableName + " SET current = false"
+				+ " WHERE current AND id IN (SELECT id FROM " + stagingTableName + ")");
+
+		sql = new StringBuilder();
+		sql.append("INSERT INTO ").append(tableName).append(" (").append(joinColumns("", columns));
+		if (mapper.isRevSupported()) {
+			sql.append(", rev");
+		}
+		sql.append(", current) SELECT ").append(joinColumns("s.", columns));
+		if (mapper.isRevSupported()) {
+			sql.append(", COALESCE(r.rev, 0) + row_number() OVER (PARTITION BY s.id ORDER BY s.seq)");
+		}
+		sql.append(", row_number() OVER (PARTITION BY s.id ORDER BY s.seq DESC) = 1");
+		sql.append(" FROM ").append(stagingTableName).append(" s");
+		if (mapper.isRevSupported()) {
+			sql.append(" LEFT OUTER JOIN (SELECT id, MAX(rev) AS rev FROM ").append(tableName);
+			sql.append(" WHERE id IN (SELECT id FROM ").append(stagingTableName).append(") GROUP BY id) r");
+			sql.append(" ON r.id = s.id");
+		}
+
+		insertCount = jdbcTemplate.update(sql.toString());
+
+		LOG.fine("Added " + insertCount + " " + tableName + ".");
+	}
+
+
+	/**
+	 * Replaces the members of modified and deleted relations. Only the members
+	 * of a relation's last modification within the batch are kept, matching
+	 * the result of applying each change in turn.
+	 */
+	private void applyRelationMembers() {
+		jdbcTemplate.update("DELETE FROM relation_members"
+				+ " WHERE relation_id IN (SELECT id FROM change_relations WHERE action <> 'C')");
+		jdbcTemplate.update("INSERT INTO relation_members"
+				+ " (relation_id, version, member_id, member_type, member_role, sequence_id)"
+				+ " SELECT s.id, s.version, m.member_id, m.member_type, m.member_role, m.sequence_id"
+				+ " FROM change_relation_members m INNER JOIN change_relations s ON s.seq = m.seq"
+				+ " WHERE s.action <> 'D' AND NOT EXISTS (SELECT 1 FROM change_relations l"
+				+ " WHERE l.id = s.id AND l.seq > s.seq AND l.action <> 'C')");
+	}
+
+
+	/**
+	 * Writes all staged changes to the database.
+	 */
+	@Override
+	public void complete() {
+		if (batchBuilder == null) {
+			return;
+		}
+
+		try {
+			batchBuilder.complete();
+
+			LOG.fine("Applying " + batchBuilder.getChangeCount() + " changes.");
+
+			loadStagingTable(copyFileset.getUserFile(), "users", Arrays.asList("id", "name"));
+			loadStagingTable(copyFileset.getNodeFile(), "nodes", nodeMapper.getDataColumnNames(), "seq", "action");
+			loadStagingTable(copyFileset.getWayFile(), "ways", wayMapper.getDataColumnNames(), "seq", "action");
+			loadStagingTable(copyFileset.getRelationFile(), "relations", relationMapper.getDataColumnNames(), "seq",
+					"action");
+			loadStagingTable(copyFileset.getRelationMemberFile(), "relation_members",
+					Arrays.asList("member_id", "member_type", "member_role", "sequence_id"), "seq");
+
+			applyUsers();
+
+			removeExistingEntities(nodeMapper);
+			insertEntities(nodeMapper);
+
+			removeExistingEntities(wayMapper);
+			insertEntities(wayMapper);
+
+			removeExistingEntities(relationMapper);
+			applyRelationMembers();
+			insertEntities(relationMapper);
+
+		} finally {
+			releaseBatch();
+		}
+	}
+
+
+	/**
+	 * Releases all resources.
+	 */
+	@Override
+	public void release() {
+		releaseBatch();
+
+		super.release();
+	}
+}
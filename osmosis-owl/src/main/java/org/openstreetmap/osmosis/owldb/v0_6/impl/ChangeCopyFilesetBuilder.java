@@ -0,0 +1,239 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.owldb.v0_6.impl;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.domain.v0_6.Entity;
+import org.openstreetmap.osmosis.core.domain.v0_6.Node;
+import org.openstreetmap.osmosis.core.domain.v0_6.OsmUser;
+import org.openstreetmap.osmosis.core.domain.v0_6.Relation;
+import org.openstreetmap.osmosis.core.domain.v0_6.RelationMember;
+import org.openstreetmap.osmosis.core.domain.v0_6.Tag;
+import org.openstreetmap.osmosis.core.domain.v0_6.Way;
+import org.openstreetmap.osmosis.core.domain.v0_6.WayNode;
+import org.openstreetmap.osmosis.core.lifecycle.Completable;
+import org.openstreetmap.osmosis.core.lifecycle.CompletableContainer;
+import org.openstreetmap.osmosis.core.task.common.ChangeAction;
+import org.openstreetmap.osmosis.hstore.PGHStore;
+import org.openstreetmap.osmosis.pgsql.common.CopyFileWriter;
+import org.openstreetmap.osmosis.pgsql.common.PointBuilder;
+
+
+/**
+ * Stages a batch of changes to a set of COPY files for loading into the
+ * staging tables used by {@link BatchChangeWriter}. Each entity record is
+ * prefixed by its sequence number within the batch and its change action so
+ * that the changes can be applied in the order they were received. Relation
+ * members reference the sequence number of their relation.
+ */
+public class ChangeCopyFilesetBuilder implements Completable {
+
+	private CompletableContainer writerContainer;
+	private MemberTypeValueMapper memberTypeValueMapper;
+	private PointBuilder pointBuilder;
+	private CopyFileWriter userWriter;
+	private CopyFileWriter nodeWriter;
+	private CopyFileWriter wayWriter;
+	private CopyFileWriter relationWriter;
+	private CopyFileWriter relationMemberWriter;
+	private Set<Integer> userSet;
+	private long changeCount;
+
+
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param copyFileset
+	 *            The set of COPY files to be populated.
+	 */
+	public ChangeCopyFilesetBuilder(CopyFileset copyFileset) {
+		writerContainer = new CompletableContainer();
+
+		userWriter = writerContainer.add(new CopyFileWriter(copyFileset.getUserFile()));
+		nodeWriter = writerContainer.add(new CopyFileWriter(copyFileset.getNodeFile()));
+		wayWriter = writerContainer.add(new CopyFileWriter(copyFileset.getWayFile()));
+		relationWriter = writerContainer.add(new CopyFileWriter(copyFileset.getRelationFile()));
+		relationMemberWriter = writerContainer.add(new CopyFileWriter(copyFileset.getRelationMemberFile()));
+
+		memberTypeValueMapper = new MemberTypeValueMapper();
+		pointBuilder = new PointBuilder();
+
+		userSet = new HashSet<Integer>();
+		changeCount = 0;
+	}
+
+
+	/**
+	 * Gets the number of changes staged so far. This is also the sequence
+	 * number of the most recent change.
+	 * 
+	 * @return The number of changes.
+	 */
+	public long getChangeCount() {
+		return changeCount;
+	}
+
+
+	private ChangesetAction getChangesetAction(ChangeAction action) {
+		switch (action) {
+		case Create:
+			return ChangesetAction.CREATE;
+		case Modify:
+			return ChangesetAction.MODIFY;
+		case Delete:
+			return ChangesetAction.DELETE;
+		default:
+			throw new OsmosisRuntimeException("Change action " + action + " is not supported.");
+		}
+	}
+
+
+	private void stageUser(OsmUser user) {
+		// Users will only be updated in the database once per batch.
+		if (!OsmUser.NONE.equals(user) && !userSet.contains(user.getId())) {
+			userWriter.writeField(user.getId());
+			userWriter.writeField(user.getName());
+			userWriter.endRecord();
+
+			userSet.add(user.getId());
+		}
+	}
+
+
+	private PGHStore buildTags(Entity entity) {
+		PGHStore tags;
+
+		tags = new PGHStore();
+		for (Tag tag : entity.getTags()) {
+			tags.put(tag.getKey(), tag.getValue());
+		}
+
+		return tags;
+	}
+
+
+	/**
+	 * Writes the staging columns shared by all entity types. The column order
+	 * matches {@link EntityMapper#getDataColumnNames()}.
+	 */
+	private void stageCommonFields(CopyFileWriter writer, ChangesetAction action, Entity entity) {
+		writer.writeField(changeCount);
+		writer.writeField(action.getDatabaseValue());
+		writer.writeField(entity.getId());
+		writer.writeField(entity.getVersion());
+		writer.writeField(entity.getUser().getId());
+		writer.writeField(entity.isVisible());
+		writer.writeField(entity.getTimestamp());
+		writer.writeField(entity.getChangesetId());
+		writer.writeField(buildTags(entity));
+	}
+
+
+	private void stageNode(Node node, ChangesetAction action) {
+		stageCommonFields(nodeWriter, action, node);
+		nodeWriter.writeField(pointBuilder.createPoint(node.getLatitude(), node.getLongitude()));
+		nodeWriter.endRecord();
+	}
+
+
+	private void stageWay(Way way, ChangesetAction action) {
+		List<Long> nodeIds;
+
+		nodeIds = new ArrayList<Long>(way.getWayNodes().size());
+		for (WayNode wayNode : way.getWayNodes()) {
+			nodeIds.add(wayNode.getNodeId());
+		}
+
+		stageCommonFields(wayWriter, action, way);
+		wayWriter.writeField(nodeIds);
+		wayWriter.endRecord();
+	}
+
+
+	private void stageRelation(Relation relation, ChangesetAction action) {
+		int memberSequenceId;
+
+		stageCommonFields(relationWriter, action, relation);
+		relationWriter.endRecord();
+
+		memberSequenceId = 0;
+		for (RelationMember member : relation.getMembers()) {
+			relationMemberWriter.writeField(changeCount);
+			relationMemberWriter.writeField(member.getMemberId());
+			relationMemberWriter.writeField(memberTypeValueMapper.getMemberType(member.getMemberType()));
+			relationMemberWriter.writeField(member.getMemberRole());
+			relationMemberWriter.writeField(memberSequenceId++);
+			relationMemberWriter.endRecord();
+		}
+	}
+
+
+	/**
+	 * Stages a change.
+	 * 
+	 * @param entity
+	 *            The new state of the entity.
+	 * @param action
+	 *            The action to perform.
+	 * @return True if the change was staged, false if the entity type is not
+	 *         supported.
+	 */
+	public boolean process(Entity entity, ChangeAction action) {
+		ChangesetAction changesetAction;
+
+		// We can't write an entity with a null timestamp.
+		if (entity.getTimestamp() == null) {
+			throw new OsmosisRuntimeException("Entity(" + entity.getType() + ") " + entity.getId()
+					+ " does not have a timestamp set.");
+		}
+
+		changesetAction = getChangesetAction(action);
+
+		switch (entity.getType()) {
+		case Node:
+			changeCount++;
+			stageNode((Node) entity, changesetAction);
+			break;
+
+		case Way:
+			changeCount++;
+			stageWay((Way) entity, changesetAction);
+			break;
+
+		case Relation:
+			changeCount++;
+			stageRelation((Relation) entity, changesetAction);
+			break;
+
+		default:
+			return false;
+		}
+
+		stageUser(entity.getUser());
+
+		return true;
+	}
+
+
+	/**
+	 * Flushes all staged changes to the COPY files. Files are written for all
+	 * entity types, including those without changes.
+	 */
+	@Override
+	public void complete() {
+		writerContainer.complete();
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void release() {
+		writerContainer.release();
+	}
+}
@@ -24,9 +24,10 @@ import org.openstreetmap.osmosis.core.domain.v0_6.WayNode;
 import org.openstreetmap.osmosis.core.lifecycle.CompletableContainer;
 import org.openstreetmap.osmosis.core.task.v0_6.Sink;
 import org.openstreetmap.osmosis.hstore.PGHStore;
-import org.openstreetmap.osmosis.owldb.common.CopyFileWriter;
-import org.openstreetmap.osmosis.owldb.common.NodeLocationStoreType;
-import org.openstreetmap.osmosis.owldb.common.PointBuilder;
+import org.openstreetmap.osmosis.pgsql.common.CopyFileWriter;
+import org.openstreetmap.osmosis.pgsql.common.NodeLocationStoreType;
+import org.openstreetmap.osmosis.pgsql.common.PointBuilder;
+import org.openstreetmap.osmosis.pgsql.v0_6.impl.WayGeometryBuilder;
 import org.postgis.Geometry;
 
 
@@ -2,7 +2,9 @@
 package org.openstreetmap.osmosis.owldb.v0_6.impl;
 
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 
 import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
@@ -85,6 +87,39 @@ public abstract class EntityMapper<T extends Entity> {
 	protected abstract String[] getTypeSpecificFieldNames();
 
 
+	/**
+	 * Indicates if the entity table contains a rev column numbering the rows
+	 * of each entity in the order they were written.
+	 * 
+	 * @return True if the rev column is maintained.
+	 */
+	public boolean isRevSupported() {
+		return true;
+	}
+
+
+	/**
+	 * Gets the entity table columns populated directly from entity data. This
+	 * excludes the rev and current columns which are derived from existing
+	 * rows.
+	 * 
+	 * @return The column names.
+	 */
+	public List<String> getDataColumnNames() {
+		List<String> columnNames;
+
+		columnNames = new ArrayList<String>();
+		columnNames.addAll(Arrays.asList("id", "version", "user_id", "visible", "tstamp", "changeset_id", "tags"));
+		for (String fieldName : getTypeSpecificFieldNames()) {
+			if (!fieldName.equals("linestring")) {
+				columnNames.add(fieldName);
+			}
+		}
+
+		return columnNames;
+	}
+
+
 	/**
 	 * The SQL SELECT statement for retrieving entity details.
 	 * 
@@ -3,15 +3,13 @@ package org.openstreetmap.osmosis.owldb.v0_6.impl;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.Collection;
-import java.util.Date;
 import java.util.Map.Entry;
 
 import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
 import org.openstreetmap.osmosis.core.domain.v0_6.CommonEntityData;
 import org.openstreetmap.osmosis.core.domain.v0_6.Entity;
 import org.openstreetmap.osmosis.core.domain.v0_6.OsmUser;
-import org.openstreetmap.osmosis.core.domain.v0_6.Tag;
+import org.openstreetmap.osmosis.core.domain.v0_6.TagCollectionImpl;
 import org.openstreetmap.osmosis.hstore.PGHStore;
 import org.springframework.jdbc.core.RowMapper;
 
@@ -67,21 +65,24 @@ public abstract class EntityRowMapper<T extends Entity> implements RowMapper<T>
 	protected CommonEntityData mapCommonEntityData(ResultSet rs) throws SQLException {
 		CommonEntityData entityData;
 		PGHStore dbTags;
-		Collection<Tag> tags;
+		TagCollectionImpl tags;
 		
+		// The timestamp is held in primitive form, avoiding the creation of a
+		// Date and timestamp container per row.
+		tags = new TagCollectionImpl();
 		entityData = new CommonEntityData(
 			rs.getLong("id"),
 			rs.getInt("version"),
-			new Date(rs.getTimestamp("tstamp").getTime()),
+			rs.getTimestamp("tstamp").getTime(),
 			buildUser(rs),
-			rs.getLong("changeset_id")
+			rs.getLong("changeset_id"),
+			tags
 		);
 		
 		dbTags = (PGHStore) rs.getObject("tags");
 		if (dbTags != null) {
-			tags = entityData.getTags();
 			for (Entry<String, String> tagEntry : dbTags.entrySet()) {
-				tags.add(new Tag(tagEntry.getKey(), tagEntry.getValue()));
+				tags.add(tagEntry.getKey(), tagEntry.getValue());
 			}
 		}
 		
@@ -123,6 +123,15 @@ public class WayMapper extends EntityMapper<Way> {
 	}
 
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isRevSupported() {
+		return false;
+	}
+
+
 	@Override
 	public String getSqlInsert(int rowCount) {
 		return getSql(false, rowCount);
@@ -0,0 +1,291 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.owldb.v0_6.impl;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.domain.v0_6.CommonEntityData;
+import org.openstreetmap.osmosis.core.domain.v0_6.Entity;
+import org.openstreetmap.osmosis.core.domain.v0_6.EntityType;
+import org.openstreetmap.osmosis.core.domain.v0_6.Node;
+import org.openstreetmap.osmosis.core.domain.v0_6.OsmUser;
+import org.openstreetmap.osmosis.core.domain.v0_6.Relation;
+import org.openstreetmap.osmosis.core.domain.v0_6.RelationMember;
+import org.openstreetmap.osmosis.core.domain.v0_6.Way;
+import org.openstreetmap.osmosis.core.domain.v0_6.WayNode;
+import org.openstreetmap.osmosis.core.task.common.ChangeAction;
+import org.openstreetmap.osmosis.testutil.AbstractDataTest;
+
+
+/**
+ * Tests the staging of change batches to COPY files. No database is required.
+ */
+public class ChangeCopyFilesetBuilderTest extends AbstractDataTest {
+	
+	private static final OsmUser USER = new OsmUser(7, "user7");
+	
+	
+	private CommonEntityData buildEntityData(long id, int version, OsmUser user) {
+		return new CommonEntityData(id, version, new Date(1262304000000L + id * 1000), user, 3);
+	}
+	
+	
+	private Node buildNode(long id, int version, OsmUser user) {
+		return new Node(buildEntityData(id, version, user), 1.5, -2.5);
+	}
+	
+	
+	private Way buildWay(long id, int version) {
+		return new Way(buildEntityData(id, version, USER), Arrays.asList(new WayNode(1), new WayNode(2)));
+	}
+	
+	
+	private Relation buildRelation(long id, int version) {
+		return new Relation(buildEntityData(id, version, USER), Arrays.asList(
+				new RelationMember(10, EntityType.Way, "outer"),
+				new RelationMember(1, EntityType.Node, "label")));
+	}
+	
+	
+	private List<String[]> readRecords(File file) throws IOException {
+		List<String[]> records;
+		BufferedReader reader;
+		
+		records = new ArrayList<String[]>();
+		
+		reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		try {
+			String line;
+			
+			while ((line = reader.readLine()) != null) {
+				records.add(line.split("\t"));
+			}
+			
+		} finally {
+			reader.close();
+		}
+		
+		return records;
+	}
+	
+	
+	/**
+	 * Checks the leading sequence, action, id and version columns of an entity
+	 * record.
+	 */
+	private void assertEntityRecord(String[] record, long seq, String action, long id, int version) {
+		Assert.assertEquals("Incorrect sequence.", Long.toString(seq), record[0]);
+		Assert.assertEquals("Incorrect action.", action, record[1]);
+		Assert.assertEquals("Incorrect id.", Long.toString(id), record[2]);
+		Assert.assertEquals("Incorrect version.", Integer.toString(version), record[3]);
+	}
+	
+	
+	private void stage(ChangeCopyFilesetBuilder builder, Entity entity, ChangeAction action) {
+		Assert.assertTrue("The change should have been staged.", builder.process(entity, action));
+	}
+	
+	
+	/**
+	 * Verifies that changes are numbered in the order received across all
+	 * entity types, and that relation members reference their relation's
+	 * change.
+	 * 
+	 * @throws IOException
+	 *             if any file operations fail.
+	 */
+	@Test
+	public void testChangeOrdering() throws IOException {
+		CopyFileset copyFileset;
+		ChangeCopyFilesetBuilder builder;
+		List<String[]> records;
+		
+		copyFileset = new DirectoryCopyFileset(dataUtils.newFolder());
+		
+		builder = new ChangeCopyFilesetBuilder(copyFileset);
+		try {
+			stage(builder, buildNode(1, 1, USER), ChangeAction.Create);
+			stage(builder, buildNode(1, 2, USER), ChangeAction.Modify);
+			stage(builder, buildWay(10, 1), ChangeAction.Create);
+			stage(builder, buildNode(1, 3, USER), ChangeAction.Delete);
+			stage(builder, buildRelation(20, 1), ChangeAction.Create);
+			stage(builder, buildRelation(20, 2), ChangeAction.Modify);
+			builder.complete();
+			
+			Assert.assertEquals("Incorrect change count.", 6, builder.getChangeCount());
+			
+		} finally {
+			builder.release();
+		}
+		
+		records = readRecords(copyFileset.getNodeFile());
+		Assert.assertEquals("Incorrect number of nodes.", 3, records.size());
+		assertEntityRecord(records.get(0), 1, "C", 1, 1);
+		assertEntityRecord(records.get(1), 2, "M", 1, 2);
+		assertEntityRecord(records.get(2), 4, "D", 1, 3);
+		
+		records = readRecords(copyFileset.getWayFile());
+		Assert.assertEquals("Incorrect number of ways.", 1, records.size());
+		assertEntityRecord(records.get(0), 3, "C", 10, 1);
+		
+		records = readRecords(copyFileset.getRelationFile());
+		Assert.assertEquals("Incorrect number of relations.", 2, records.size());
+		assertEntityRecord(records.get(0), 5, "C", 20, 1);
+		assertEntityRecord(records.get(1), 6, "M", 20, 2);
+		
+		records = readRecords(copyFileset.getRelationMemberFile());
+		Assert.assertEquals("Incorrect number of relation members.", 4, records.size());
+		Assert.assertArrayEquals("Incorrect member.", new String[] {"5", "10", "W", "outer", "0"}, records.get(0));
+		Assert.assertArrayEquals("Incorrect member.", new String[] {"5", "1", "N", "label", "1"}, records.get(1));
+		Assert.assertArrayEquals("Incorrect member.", new String[] {"6", "10", "W", "outer", "0"}, records.get(2));
+		Assert.assertArrayEquals("Incorrect member.", new String[] {"6", "1", "N", "label", "1"}, records.get(3));
+	}
+	
+	
+	/**
+	 * Verifies that completing a batch writes every COPY file, including those
+	 * for entity types without changes, so that all staging tables can be
+	 * loaded.
+	 * 
+	 * @throws IOException
+	 *             if any file operations fail.
+	 */
+	@Test
+	public void testCompleteWritesAllFiles() throws IOException {
+		CopyFileset copyFileset;
+		ChangeCopyFilesetBuilder builder;
+		
+		copyFileset = new DirectoryCopyFileset(dataUtils.newFolder());
+		
+		builder = new ChangeCopyFilesetBuilder(copyFileset);
+		try {
+			stage(builder, buildNode(1, 1, USER), ChangeAction.Create);
+			builder.complete();
+		} finally {
+			builder.release();
+		}
+		
+		Assert.assertEquals("Incorrect number of users.", 1, readRecords(copyFileset.getUserFile()).size());
+		Assert.assertEquals("Incorrect number of nodes.", 1, readRecords(copyFileset.getNodeFile()).size());
+		Assert.assertEquals("Incorrect number of ways.", 0, readRecords(copyFileset.getWayFile()).size());
+		Assert.assertEquals("Incorrect number of relations.", 0, readRecords(copyFileset.getRelationFile()).size());
+		Assert.assertEquals("Incorrect number of relation members.", 0,
+				readRecords(copyFileset.getRelationMemberFile()).size());
+	}
+	
+	
+	/**
+	 * Verifies that a new batch staged to the same files starts numbering
+	 * changes from the beginning and doesn't retain records from the previous
+	 * batch.
+	 * 
+	 * @throws IOException
+	 *             if any file operations fail.
+	 */
+	@Test
+	public void testBatchBoundary() throws IOException {
+		CopyFileset copyFileset;
+		ChangeCopyFilesetBuilder builder;
+		List<String[]> records;
+		
+		copyFileset = new DirectoryCopyFileset(dataUtils.newFolder());
+		
+		builder = new ChangeCopyFilesetBuilder(copyFileset);
+		try {
+			stage(builder, buildNode(1, 1, USER), ChangeAction.Create);
+			stage(builder, buildNode(2, 1, USER), ChangeAction.Create);
+			stage(builder, buildRelation(20, 1), ChangeAction.Create);
+			builder.complete();
+		} finally {
+			builder.release();
+		}
+		
+		builder = new ChangeCopyFilesetBuilder(copyFileset);
+		try {
+			stage(builder, buildWay(10, 2), ChangeAction.Modify);
+			builder.complete();
+			
+			Assert.assertEquals("Incorrect change count.", 1, builder.getChangeCount());
+			
+		} finally {
+			builder.release();
+		}
+		
+		Assert.assertEquals("Incorrect number of nodes.", 0, readRecords(copyFileset.getNodeFile()).size());
+		Assert.assertEquals("Incorrect number of relations.", 0, readRecords(copyFileset.getRelationFile()).size());
+		Assert.assertEquals("Incorrect number of relation members.", 0,
+				readRecords(copyFileset.getRelationMemberFile()).size());
+		
+		records = readRecords(copyFileset.getWayFile());
+		Assert.assertEquals("Incorrect number of ways.", 1, records.size());
+		assertEntityRecord(records.get(0), 1, "M", 10, 2);
+		
+		// The user must be staged again because the previous batch's staging
+		// tables no longer exist.
+		records = readRecords(copyFileset.getUserFile());
+		Assert.assertEquals("Incorrect number of users.", 1, records.size());
+		Assert.assertArrayEquals("Incorrect user.", new String[] {"7", "user7"}, records.get(0));
+	}
+	
+	
+	/**
+	 * Verifies that each user is staged once per batch and that anonymous
+	 * changes don't create users.
+	 * 
+	 * @throws IOException
+	 *             if any file operations fail.
+	 */
+	@Test
+	public void testUsersStagedOnce() throws IOException {
+		CopyFileset copyFileset;
+		ChangeCopyFilesetBuilder builder;
+		List<String[]> records;
+		
+		copyFileset = new DirectoryCopyFileset(dataUtils.newFolder());
+		
+		builder = new ChangeCopyFilesetBuilder(copyFileset);
+		try {
+			stage(builder, buildNode(1, 1, USER), ChangeAction.Create);
+			stage(builder, buildNode(2, 1, OsmUser.NONE), ChangeAction.Create);
+			stage(builder, buildNode(3, 1, new OsmUser(8, "user8")), ChangeAction.Create);
+			stage(builder, buildNode(1, 2, USER), ChangeAction.Modify);
+			builder.complete();
+		} finally {
+			builder.release();
+		}
+		
+		records = readRecords(copyFileset.getUserFile());
+		Assert.assertEquals("Incorrect number of users.", 2, records.size());
+		Assert.assertArrayEquals("Incorrect user.", new String[] {"7", "user7"}, records.get(0));
+		Assert.assertArrayEquals("Incorrect user.", new String[] {"8", "user8"}, records.get(1));
+	}
+	
+	
+	/**
+	 * Verifies that changes without a timestamp are rejected.
+	 * 
+	 * @throws IOException
+	 *             if any file operations fail.
+	 */
+	@Test(expected = OsmosisRuntimeException.class)
+	public void testMissingTimestamp() throws IOException {
+		ChangeCopyFilesetBuilder builder;
+		
+		builder = new ChangeCopyFilesetBuilder(new DirectoryCopyFileset(dataUtils.newFolder()));
+		try {
+			builder.process(new Node(new CommonEntityData(1, 1, (Date) null, USER, 3), 0, 0), ChangeAction.Create);
+		} finally {
+			builder.release();
+		}
+	}
+}
@@ -22,6 +22,7 @@ import org.openstreetmap.osmosis.core.domain.v0_6.Tag;
 import org.openstreetmap.osmosis.core.domain.v0_6.Way;
 import org.openstreetmap.osmosis.core.domain.v0_6.WayNode;
 import org.openstreetmap.osmosis.core.task.v0_6.Sink;
+import org.openstreetmap.osmosis.core.util.StringPool;
 
 import org.openstreetmap.osmosis.osmbinary.BinaryParser;
 import org.openstreetmap.osmosis.osmbinary.Osmformat;
@@ -30,6 +31,17 @@ import org.openstreetmap.osmosis.osmbinary.Osmformat.DenseInfo;
 /** Class that reads and parses binary files and sends the contained entities to the sink. */
 public class OsmosisBinaryParser extends BinaryParser {
 
+    private StringPool stringPool = StringPool.getShared();
+
+    /** Get a string from the string table, shared via the string pool so that
+     * strings repeated across blocks are only held once.
+     * @param id The index of the string.
+     * @return The string. */
+    @Override
+    protected String getStringById(int id) {
+        return stringPool.intern(super.getStringById(id));
+    }
+
     @Override
     public void complete() {
         sink.complete();
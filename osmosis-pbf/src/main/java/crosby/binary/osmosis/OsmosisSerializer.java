@@ -25,8 +25,9 @@ import org.openstreetmap.osmosis.core.domain.v0_6.OsmUser;
 import org.openstreetmap.osmosis.core.domain.v0_6.Relation;
 import org.openstreetmap.osmosis.core.domain.v0_6.RelationMember;
 import org.openstreetmap.osmosis.core.domain.v0_6.Tag;
+import org.openstreetmap.osmosis.core.domain.v0_6.TagCollection;
+import org.openstreetmap.osmosis.core.domain.v0_6.TagCollectionImpl;
 import org.openstreetmap.osmosis.core.domain.v0_6.Way;
-import org.openstreetmap.osmosis.core.domain.v0_6.WayNode;
 import org.openstreetmap.osmosis.core.task.v0_6.Sink;
 
 import org.openstreetmap.osmosis.osmbinary.BinarySerializer;
@@ -85,14 +86,25 @@ public class OsmosisSerializer extends BinarySerializer implements Sink {
             contents.add(item);
         }
 
+        /** Get the tags of an entity in a form that can be accessed by index
+         * without creating Tag objects.
+         * @param entity The entity to get the tags of. */
+        public TagCollection getTagCollection(Entity entity) {
+            Collection<Tag> tags = entity.getTags();
+            if (tags instanceof TagCollection) {
+                return (TagCollection) tags;
+            }
+            return new TagCollectionImpl(tags);
+        }
+
         /** Add all of the tags of all entities in the queue to the stringtable. */
         public void addStringsToStringtable() {
             StringTable stable = getStringTable();
             for (T i : contents) {
-                Collection<Tag> tags = i.getTags();
-                for (Tag tag : tags) {
-                    stable.incr(tag.getKey());
-                    stable.incr(tag.getValue());
+                TagCollection tags = getTagCollection(i);
+                for (int k = 0; k < tags.size(); k++) {
+                    stable.incr(tags.getKey(k));
+                    stable.incr(tags.getValue(k));
                 }
                 if (!omit_metadata) {
                     stable.incr(i.getUser().getName());
@@ -116,7 +128,7 @@ public class OsmosisSerializer extends BinarySerializer implements Sink {
             }
 				int uid = e.getUser().getId();
 				int userSid = stable.getIndex(e.getUser().getName());
-				int timestamp = (int) (e.getTimestamp().getTime() / date_granularity);
+				int timestamp = (int) (e.getTimestampMillis() / date_granularity);
 				int version = e.getVersion();
 				long changeset = e.getChangesetId();
 
@@ -144,7 +156,7 @@ public class OsmosisSerializer extends BinarySerializer implements Sink {
                     b.setUid(e.getUser().getId());
                     b.setUserSid(stable.getIndex(e.getUser().getName()));
                 }
-                b.setTimestamp((int) (e.getTimestamp().getTime() / date_granularity));
+                b.setTimestamp((int) (e.getTimestampMillis() / date_granularity));
                 b.setVersion(e.getVersion());
                 b.setChangeset(e.getChangesetId());
             }
@@ -200,9 +212,10 @@ public class OsmosisSerializer extends BinarySerializer implements Sink {
 
                 // Then we must include tag information.
                 if (doesBlockHaveTags) {
-                  for (Tag t : i.getTags()) {
-                      bi.addKeysVals(stable.getIndex(t.getKey()));
-                      bi.addKeysVals(stable.getIndex(t.getValue()));
+                  TagCollection tags = getTagCollection(i);
+                  for (int k = 0; k < tags.size(); k++) {
+                      bi.addKeysVals(stable.getIndex(tags.getKey(k)));
+                      bi.addKeysVals(stable.getIndex(tags.getValue(k)));
                   }
                   bi.addKeysVals(0); // Add delimiter.
                 }
@@ -232,9 +245,10 @@ public class OsmosisSerializer extends BinarySerializer implements Sink {
             bi.setId(id);
             bi.setLon(lon);
             bi.setLat(lat);
-            for (Tag t : i.getTags()) {
-              bi.addKeys(stable.getIndex(t.getKey()));
-              bi.addVals(stable.getIndex(t.getValue()));
+            TagCollection tags = getTagCollection(i);
+            for (int k = 0; k < tags.size(); k++) {
+              bi.addKeys(stable.getIndex(tags.getKey(k)));
+              bi.addVals(stable.getIndex(tags.getValue(k)));
             }
             if (!omit_metadata) {
               bi.setInfo(serializeMetadata(i));
@@ -262,14 +276,16 @@ public class OsmosisSerializer extends BinarySerializer implements Sink {
                 Osmformat.Way.Builder bi = Osmformat.Way.newBuilder();
                 bi.setId(i.getId());
                 long lastid = 0;
-                for (WayNode j : i.getWayNodes()) {
-                    long id = j.getNodeId();
+                int wayNodeCount = i.getWayNodes().size();
+                for (int k = 0; k < wayNodeCount; k++) {
+                    long id = i.getWayNodeId(k);
                     bi.addRefs(id - lastid);
                     lastid = id;
                 }
-                for (Tag t : i.getTags()) {
-                    bi.addKeys(stable.getIndex(t.getKey()));
-                    bi.addVals(stable.getIndex(t.getValue()));
+                TagCollection tags = getTagCollection(i);
+                for (int k = 0; k < tags.size(); k++) {
+                    bi.addKeys(stable.getIndex(tags.getKey(k)));
+                    bi.addVals(stable.getIndex(tags.getValue(k)));
                 }
                 if (!omit_metadata) {
                     bi.setInfo(serializeMetadata(i));
@@ -323,9 +339,10 @@ public class OsmosisSerializer extends BinarySerializer implements Sink {
                     bi.addRolesSid(stable.getIndex(j.getMemberRole()));
                 }
 
-                for (Tag t : i.getTags()) {
-                    bi.addKeys(stable.getIndex(t.getKey()));
-                    bi.addVals(stable.getIndex(t.getValue()));
+                TagCollection tags = getTagCollection(i);
+                for (int k = 0; k < tags.size(); k++) {
+                    bi.addKeys(stable.getIndex(tags.getKey(k)));
+                    bi.addVals(stable.getIndex(tags.getValue(k)));
                 }
                 if (!omit_metadata) {
                     bi.setInfo(serializeMetadata(i));
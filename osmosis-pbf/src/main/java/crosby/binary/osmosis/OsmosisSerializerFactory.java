@@ -12,6 +12,7 @@ import org.openstreetmap.osmosis.core.pipeline.common.TaskManagerFactory;
 import org.openstreetmap.osmosis.core.pipeline.v0_6.SinkManager;
 
 import org.openstreetmap.osmosis.osmbinary.file.BlockOutputStream;
+import org.openstreetmap.osmosis.osmbinary.file.ParallelBlockOutputStream;
 
 /**
  * The task manager factory for a binary (PBF) writer.
@@ -19,6 +20,8 @@ import org.openstreetmap.osmosis.osmbinary.file.BlockOutputStream;
 public class OsmosisSerializerFactory extends TaskManagerFactory {
     private static final String ARG_FILE_NAME = "file";
     private static final String DEFAULT_FILE_NAME = "dump.osm.pbf";
+    private static final String ARG_WORKERS = "workers";
+    private static final int DEFAULT_WORKERS = 1;
 
     @Override
     protected TaskManager createTaskManagerImpl(TaskConfiguration taskConfig) {
@@ -26,18 +29,30 @@ public class OsmosisSerializerFactory extends TaskManagerFactory {
         String fileName;
         File file;
         OsmosisSerializer task = null;
+        int workers;
 
         // Get the task arguments.
         fileName = getStringArgument(taskConfig, ARG_FILE_NAME,
                 getDefaultStringArgument(taskConfig, DEFAULT_FILE_NAME));
+        workers = getIntegerArgument(taskConfig, ARG_WORKERS, DEFAULT_WORKERS);
+        if (workers <= 0) {
+            throw new OsmosisRuntimeException("Argument " + ARG_WORKERS + " for task " + taskConfig.getId()
+                    + " must be greater than 0.");
+        }
 
         // Create a file object from the file name provided.
         file = new File(fileName);
 
         // Build the task object.
         try {
-            BlockOutputStream output = new BlockOutputStream(
-                    new FileOutputStream(file));
+            // A single worker compresses blocks on the pipeline thread,
+            // additional workers compress blocks on a thread pool.
+            BlockOutputStream output;
+            if (workers > 1) {
+                output = new ParallelBlockOutputStream(new FileOutputStream(file), workers);
+            } else {
+                output = new BlockOutputStream(new FileOutputStream(file));
+            }
             task = new OsmosisSerializer(output);
             task.configBatchLimit(this.getIntegerArgument(taskConfig,
                     "batchlimit", 8000));
@@ -49,4 +49,45 @@ public class OsmosisReaderAndSerializerTest extends AbstractDataTest {
         // Validate that the output file matches the input file.
         dataUtils.compareFiles(inputXmlFile, outputXmlFile);
 	}
+
+
+	/**
+	 * Tests that writing a PBF file with multiple compression workers produces
+	 * exactly the same file as writing it on a single thread.
+	 * 
+	 * @throws IOException
+	 *             if any file operations fail.
+	 */
+	@Test
+	public void testParallelWriteMatchesSerial() throws IOException {
+		// Generate data files.
+		File inputXmlFile = dataUtils.createDataFile("v0_6/data-snapshot.osm");
+		File serialPbfFile = dataUtils.newFile();
+		File parallelPbfFile = dataUtils.newFile();
+
+		// Write the PBF on a single thread. A small batch limit is used to
+		// produce a large number of blocks.
+		Osmosis.run(new String[] {
+				"-q",
+				"--read-xml-0.6",
+				inputXmlFile.getPath(),
+				"--write-pbf-0.6",
+				"file=" + serialPbfFile.getPath(),
+				"batchlimit=3"
+		});
+
+		// Write the same PBF using multiple workers.
+		Osmosis.run(new String[] {
+				"-q",
+				"--read-xml-0.6",
+				inputXmlFile.getPath(),
+				"--write-pbf-0.6",
+				"file=" + parallelPbfFile.getPath(),
+				"batchlimit=3",
+				"workers=3"
+		});
+
+		// Blocks must be written in their original order.
+		dataUtils.compareFiles(serialPbfFile, parallelPbfFile);
+	}
 }
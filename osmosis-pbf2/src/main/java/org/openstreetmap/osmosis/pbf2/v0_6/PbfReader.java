@@ -7,19 +7,30 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
 import org.openstreetmap.osmosis.core.task.v0_6.RunnableSource;
 import org.openstreetmap.osmosis.core.task.v0_6.Sink;
+import org.openstreetmap.osmosis.pbf2.v0_6.impl.PbfBlockFilter;
+import org.openstreetmap.osmosis.pbf2.v0_6.impl.PbfBlockIndex;
 import org.openstreetmap.osmosis.pbf2.v0_6.impl.PbfDecoder;
+import org.openstreetmap.osmosis.pbf2.v0_6.impl.PbfIndexedStreamSplitter;
+import org.openstreetmap.osmosis.pbf2.v0_6.impl.PbfRawBlob;
 import org.openstreetmap.osmosis.pbf2.v0_6.impl.PbfStreamSplitter;
 
 
 /**
  * An OSM data source reading from a PBF file. The entire contents of the file
- * are read.
+ * are read unless a filter is provided.
+ * <p>
+ * When reading a regular file, an index describing the location and contents
+ * of each blob is written alongside the file. Later reads using a restrictive
+ * filter use the index to seek directly to the blobs they require, skipping
+ * the remainder of the file. The filter is also applied to every entity, so
+ * the index only affects performance and never the data produced.
  * 
  * @author Brett Henderson
  */
@@ -28,6 +39,9 @@ public class PbfReader implements RunnableSource {
 	private File file;
 	private Sink sink;
 	private int workers;
+	private int window;
+	private PbfBlockFilter filter;
+	private boolean useBlockIndex;
 
 
 	/**
@@ -39,8 +53,50 @@ public class PbfReader implements RunnableSource {
 	 *            The number of worker threads for decoding PBF blocks.
 	 */
 	public PbfReader(File file, int workers) {
+		this(file, workers, new PbfBlockFilter(), false);
+	}
+
+
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param file
+	 *            The file to read.
+	 * @param workers
+	 *            The number of worker threads for decoding PBF blocks.
+	 * @param filter
+	 *            The filter selecting the blobs and entities to be read.
+	 * @param useBlockIndex
+	 *            If true, a block index will be used to skip blobs rejected by
+	 *            the filter, and will be created if it doesn't already exist.
+	 */
+	public PbfReader(File file, int workers, PbfBlockFilter filter, boolean useBlockIndex) {
+		this(file, workers, workers + 1, filter, useBlockIndex);
+	}
+
+
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param file
+	 *            The file to read.
+	 * @param workers
+	 *            The number of worker threads for decoding PBF blocks.
+	 * @param window
+	 *            The maximum number of blobs that may be decoded ahead of the
+	 *            blob currently being sent to the sink.
+	 * @param filter
+	 *            The filter selecting the blobs and entities to be read.
+	 * @param useBlockIndex
+	 *            If true, a block index will be used to skip blobs rejected by
+	 *            the filter, and will be created if it doesn't already exist.
+	 */
+	public PbfReader(File file, int workers, int window, PbfBlockFilter filter, boolean useBlockIndex) {
 		this.file = file;
 		this.workers = workers;
+		this.window = window;
+		this.filter = filter;
+		this.useBlockIndex = useBlockIndex;
 	}
 
 
@@ -52,35 +108,65 @@ public class PbfReader implements RunnableSource {
 
 	@Override
 	public void run() {
-		PbfStreamSplitter streamSplitter = null;
+		PbfStreamSplitter sequentialSplitter = null;
+		PbfIndexedStreamSplitter indexedSplitter = null;
 		ExecutorService executorService = Executors.newFixedThreadPool(workers);
 
 		try {
-			InputStream inputStream;
-
 			sink.initialize(Collections.<String, Object>emptyMap());
 
-			// make "-" an alias for /dev/stdin
-			if (file.getName().equals("-")) {
-				inputStream = System.in;
-			} else {
-				inputStream = new FileInputStream(file);
+			// Standard input can't be indexed.
+			boolean indexable = useBlockIndex && !file.getName().equals("-");
+
+			// Use an existing index to skip unwanted blobs if possible,
+			// otherwise read the whole file and build a new index as we go.
+			PbfBlockIndex existingIndex = null;
+			PbfBlockIndex newIndex = null;
+			if (indexable) {
+				existingIndex = PbfBlockIndex.load(file);
+				if (existingIndex == null) {
+					newIndex = new PbfBlockIndex();
+				}
 			}
 
-			// Create a stream splitter to break the PBF stream into blobs.
-			streamSplitter = new PbfStreamSplitter(new DataInputStream(inputStream));
+			Iterator<PbfRawBlob> streamSplitter;
+			if (existingIndex != null && filter.isRestrictive()) {
+				indexedSplitter = new PbfIndexedStreamSplitter(file, existingIndex, filter);
+				streamSplitter = indexedSplitter;
+			} else {
+				InputStream inputStream;
+
+				// make "-" an alias for /dev/stdin
+				if (file.getName().equals("-")) {
+					inputStream = System.in;
+				} else {
+					inputStream = new FileInputStream(file);
+				}
+
+				// Create a stream splitter to break the PBF stream into blobs.
+				sequentialSplitter = new PbfStreamSplitter(new DataInputStream(inputStream));
+				streamSplitter = sequentialSplitter;
+			}
 
 			// Process all blobs of data in the stream using threads from the
-			// executor service. We allow the decoder to issue an extra blob
-			// than there are workers to ensure there is another blob
-			// immediately ready for processing when a worker thread completes.
-			// The main thread is responsible for splitting blobs from the
-			// request stream, and sending decoded entities to the sink.
-			PbfDecoder pbfDecoder = new PbfDecoder(streamSplitter, executorService, workers + 1, sink);
+			// executor service. The window should exceed the number of workers
+			// to ensure there is another blob immediately ready for processing
+			// when a worker thread completes, and a larger window allows
+			// workers to continue past a slow blob. The main thread is
+			// responsible for splitting blobs from the request stream, and
+			// sending decoded entities to the sink.
+			PbfDecoder pbfDecoder =
+					new PbfDecoder(streamSplitter, executorService, window, sink, filter, newIndex);
 			pbfDecoder.run();
 
 			sink.complete();
 
+			// The index is only saved once the entire file has been read
+			// successfully.
+			if (newIndex != null) {
+				newIndex.save(file);
+			}
+
 		} catch (IOException e) {
 			throw new OsmosisRuntimeException("Unable to read PBF file " + file + ".", e);
 		} finally {
@@ -88,8 +174,11 @@ public class PbfReader implements RunnableSource {
 
 			executorService.shutdownNow();
 
-			if (streamSplitter != null) {
-				streamSplitter.release();
+			if (sequentialSplitter != null) {
+				sequentialSplitter.release();
+			}
+			if (indexedSplitter != null) {
+				indexedSplitter.release();
 			}
 		}
 	}
@@ -2,11 +2,16 @@
 package org.openstreetmap.osmosis.pbf2.v0_6;
 
 import java.io.File;
+import java.util.EnumSet;
+import java.util.Set;
 
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.domain.v0_6.EntityType;
 import org.openstreetmap.osmosis.core.pipeline.common.TaskConfiguration;
 import org.openstreetmap.osmosis.core.pipeline.common.TaskManager;
 import org.openstreetmap.osmosis.core.pipeline.common.TaskManagerFactory;
 import org.openstreetmap.osmosis.core.pipeline.v0_6.RunnableSourceManager;
+import org.openstreetmap.osmosis.pbf2.v0_6.impl.PbfBlockFilter;
 
 
 /**
@@ -19,6 +24,41 @@ public class PbfReaderFactory extends TaskManagerFactory {
 	private static final String DEFAULT_FILE_NAME = "dump.osm.pbf";
 	private static final String ARG_WORKERS = "workers";
 	private static final int DEFAULT_WORKERS = 1;
+	private static final String ARG_WINDOW = "window";
+	private static final String ARG_TYPES = "types";
+	private static final String DEFAULT_TYPES = "node,way,relation";
+	private static final String ARG_LEFT = "left";
+	private static final String ARG_RIGHT = "right";
+	private static final String ARG_TOP = "top";
+	private static final String ARG_BOTTOM = "bottom";
+	private static final double DEFAULT_LEFT = -180;
+	private static final double DEFAULT_RIGHT = 180;
+	private static final double DEFAULT_TOP = 90;
+	private static final double DEFAULT_BOTTOM = -90;
+	private static final String ARG_BLOCK_INDEX = "blockIndex";
+	private static final boolean DEFAULT_BLOCK_INDEX = true;
+
+
+	private Set<EntityType> parseEntityTypes(String types) {
+		Set<EntityType> entityTypes = EnumSet.noneOf(EntityType.class);
+
+		for (String type : types.split(",")) {
+			String trimmedType = type.trim();
+
+			if ("node".equalsIgnoreCase(trimmedType)) {
+				entityTypes.add(EntityType.Node);
+			} else if ("way".equalsIgnoreCase(trimmedType)) {
+				entityTypes.add(EntityType.Way);
+			} else if ("relation".equalsIgnoreCase(trimmedType)) {
+				entityTypes.add(EntityType.Relation);
+			} else {
+				throw new OsmosisRuntimeException("Entity type " + trimmedType
+						+ " is not recognised, it must be one of node, way or relation.");
+			}
+		}
+
+		return entityTypes;
+	}
 
 
 	/**
@@ -30,17 +70,43 @@ public class PbfReaderFactory extends TaskManagerFactory {
 		File file;
 		PbfReader task;
 		int workers;
+		int window;
+		Set<EntityType> entityTypes;
+		PbfBlockFilter filter;
+		boolean useBlockIndex;
 
 		// Get the task arguments.
 		fileName = getStringArgument(taskConfig, ARG_FILE_NAME,
 				getDefaultStringArgument(taskConfig, DEFAULT_FILE_NAME));
 		workers = getIntegerArgument(taskConfig, ARG_WORKERS, DEFAULT_WORKERS);
+		window = getIntegerArgument(taskConfig, ARG_WINDOW, workers + 1);
+		entityTypes = parseEntityTypes(getStringArgument(taskConfig, ARG_TYPES, DEFAULT_TYPES));
+		useBlockIndex = getBooleanArgument(taskConfig, ARG_BLOCK_INDEX, DEFAULT_BLOCK_INDEX);
+
+		// Only restrict nodes to a bounding box if one has been specified.
+		if (doesArgumentExist(taskConfig, ARG_LEFT) || doesArgumentExist(taskConfig, ARG_RIGHT)
+				|| doesArgumentExist(taskConfig, ARG_TOP) || doesArgumentExist(taskConfig, ARG_BOTTOM)) {
+			filter = new PbfBlockFilter(entityTypes,
+					getDoubleArgument(taskConfig, ARG_LEFT, DEFAULT_LEFT),
+					getDoubleArgument(taskConfig, ARG_RIGHT, DEFAULT_RIGHT),
+					getDoubleArgument(taskConfig, ARG_TOP, DEFAULT_TOP),
+					getDoubleArgument(taskConfig, ARG_BOTTOM, DEFAULT_BOTTOM));
+		} else {
+			filter = new PbfBlockFilter(entityTypes);
+		}
+
+		if (workers <= 0) {
+			throw new OsmosisRuntimeException("Argument " + ARG_WORKERS + " must be greater than 0.");
+		}
+		if (window < workers) {
+			throw new OsmosisRuntimeException("Argument " + ARG_WINDOW + " must be at least the number of workers.");
+		}
 
 		// Create a file object from the file name provided.
 		file = new File(fileName);
 
 		// Build the task object.
-		task = new PbfReader(file, workers);
+		task = new PbfReader(file, workers, window, filter, useBlockIndex);
 
 		return new RunnableSourceManager(taskConfig.getId(), task, taskConfig.getPipeArgs());
 	}
@@ -2,16 +2,12 @@
 package org.openstreetmap.osmosis.pbf2.v0_6.impl;
 
 import java.io.IOException;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
-import java.util.Date;
-import java.util.Iterator;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.zip.DataFormatException;
-import java.util.zip.Inflater;
 
 import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
 import org.openstreetmap.osmosis.core.container.v0_6.BoundContainer;
@@ -22,29 +18,30 @@ import org.openstreetmap.osmosis.core.container.v0_6.WayContainer;
 import org.openstreetmap.osmosis.core.domain.v0_6.Bound;
 import org.openstreetmap.osmosis.core.domain.v0_6.CommonEntityData;
 import org.openstreetmap.osmosis.core.domain.v0_6.EntityType;
+import org.openstreetmap.osmosis.core.domain.v0_6.Node;
 import org.openstreetmap.osmosis.core.domain.v0_6.OsmUser;
+import org.openstreetmap.osmosis.core.domain.v0_6.Relation;
 import org.openstreetmap.osmosis.core.domain.v0_6.RelationMember;
-import org.openstreetmap.osmosis.core.domain.v0_6.Tag;
-import org.openstreetmap.osmosis.core.domain.v0_6.WayNode;
+import org.openstreetmap.osmosis.core.domain.v0_6.TagCollectionImpl;
+import org.openstreetmap.osmosis.core.domain.v0_6.Way;
+import org.openstreetmap.osmosis.core.util.StringPool;
 import org.openstreetmap.osmosis.osmbinary.Osmformat;
-import org.openstreetmap.osmosis.osmbinary.Fileformat.Blob;
-import org.openstreetmap.osmosis.osmbinary.Osmformat.DenseInfo;
-import org.openstreetmap.osmosis.osmbinary.Osmformat.DenseNodes;
 import org.openstreetmap.osmosis.osmbinary.Osmformat.HeaderBBox;
-import org.openstreetmap.osmosis.osmbinary.Osmformat.Info;
-import org.openstreetmap.osmosis.osmbinary.Osmformat.Node;
-import org.openstreetmap.osmosis.osmbinary.Osmformat.PrimitiveGroup;
-import org.openstreetmap.osmosis.osmbinary.Osmformat.Relation;
-import org.openstreetmap.osmosis.osmbinary.Osmformat.Way;
-import org.openstreetmap.osmosis.osmbinary.Osmformat.Relation.MemberType;
 
-import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.WireFormat;
 
 
 /**
  * Converts PBF block data into decoded entities ready to be passed into an
  * Osmosis pipeline. This class is designed to be passed into a pool of worker
  * threads to allow multi-threaded decoding.
+ * <p>
+ * Primitive blocks are decoded directly from the encoded protobuf data rather
+ * than via the generated message classes. This avoids building an
+ * intermediate object graph and boxing every id, coordinate and string index
+ * before the entities themselves are created. Each worker thread re-uses a
+ * single inflater and decompression buffer across all the blobs it decodes.
  * 
  * @author Brett Henderson
  */
@@ -54,14 +51,119 @@ public class PbfBlobDecoder implements Runnable {
 
 	private static final double COORDINATE_SCALING_FACTOR = 0.000000001;
 	private static final int EMPTY_VERSION = -1;
-	private static final Date EMPTY_TIMESTAMP = new Date(0);
+	private static final long EMPTY_TIMESTAMP = 0;
 	private static final long EMPTY_CHANGESET = -1;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final int DEFAULT_GRANULARITY = 100;
+	private static final int DEFAULT_DATE_GRANULARITY = 1000;
+
+	// Field numbers of the Blob message.
+	private static final int BLOB_RAW = 1;
+	private static final int BLOB_RAW_SIZE = 2;
+	private static final int BLOB_ZLIB_DATA = 3;
+
+	// Field numbers of the PrimitiveBlock message.
+	private static final int BLOCK_STRINGTABLE = 1;
+	private static final int BLOCK_PRIMITIVEGROUP = 2;
+	private static final int BLOCK_GRANULARITY = 17;
+	private static final int BLOCK_DATE_GRANULARITY = 18;
+	private static final int BLOCK_LAT_OFFSET = 19;
+	private static final int BLOCK_LON_OFFSET = 20;
+
+	// Field numbers of the StringTable message.
+	private static final int STRINGTABLE_S = 1;
+
+	// Field numbers of the PrimitiveGroup message.
+	private static final int GROUP_NODES = 1;
+	private static final int GROUP_DENSE = 2;
+	private static final int GROUP_WAYS = 3;
+	private static final int GROUP_RELATIONS = 4;
+
+	// Field numbers shared by the Node, Way and Relation messages.
+	private static final int ENTITY_ID = 1;
+	private static final int ENTITY_KEYS = 2;
+	private static final int ENTITY_VALS = 3;
+	private static final int ENTITY_INFO = 4;
+
+	// Field numbers of the Node message.
+	private static final int NODE_LAT = 8;
+	private static final int NODE_LON = 9;
+
+	// Field numbers of the Way message.
+	private static final int WAY_REFS = 8;
+
+	// Field numbers of the Relation message.
+	private static final int RELATION_ROLES_SID = 8;
+	private static final int RELATION_MEMIDS = 9;
+	private static final int RELATION_TYPES = 10;
+
+	// Field numbers of the Info message.
+	private static final int INFO_VERSION = 1;
+	private static final int INFO_TIMESTAMP = 2;
+	private static final int INFO_CHANGESET = 3;
+	private static final int INFO_UID = 4;
+	private static final int INFO_USER_SID = 5;
+
+	// Field numbers of the DenseNodes message.
+	private static final int DENSE_ID = 1;
+	private static final int DENSE_DENSEINFO = 5;
+	private static final int DENSE_LAT = 8;
+	private static final int DENSE_LON = 9;
+	private static final int DENSE_KEYS_VALS = 10;
+
+	// Field numbers of the DenseInfo message.
+	private static final int DENSEINFO_VERSION = 1;
+	private static final int DENSEINFO_TIMESTAMP = 2;
+	private static final int DENSEINFO_CHANGESET = 3;
+	private static final int DENSEINFO_UID = 4;
+	private static final int DENSEINFO_USER_SID = 5;
+
+	// Relation member type values.
+	private static final int MEMBER_TYPE_NODE = 0;
+	private static final int MEMBER_TYPE_WAY = 1;
+	private static final int MEMBER_TYPE_RELATION = 2;
+
+	/**
+	 * Holds the inflater and decompression buffer owned by each worker thread.
+	 * They are not explicitly released because they are used by pool threads
+	 * that don't signal their exit. The native memory of each inflater is
+	 * freed by finalization once its worker thread terminates, and each
+	 * thread holds only one inflater so the amount pending finalization is
+	 * bounded by the number of workers.
+	 */
+	private static final ThreadLocal<PbfBlobInflater> BLOB_INFLATERS = new ThreadLocal<PbfBlobInflater>() {
+		@Override
+		protected PbfBlobInflater initialValue() {
+			return new PbfBlobInflater();
+		}
+	};
 
 	private String blobType;
 	private byte[] rawBlob;
 	private PbfBlobDecoderListener listener;
 	private List<EntityContainer> decodedEntities;
 
+	private byte[] blockData;
+	private int blockOffset;
+	private int blockLength;
+
+	private PbfRepeatedField tagKeys;
+	private PbfRepeatedField tagValues;
+	private PbfRepeatedField memberIds;
+	private PbfRepeatedField memberRoles;
+	private PbfRepeatedField memberTypes;
+	private long[] wayNodeIds;
+
+	private boolean infoPresent;
+	private int infoVersion;
+	private long infoTimestamp;
+	private long infoChangeset;
+	private int infoUid;
+	private boolean infoUidPresent;
+	private int infoUserSid;
+	private boolean infoUserSidPresent;
+
 
 	/**
 	 * Creates a new instance.
@@ -77,37 +179,77 @@ public class PbfBlobDecoder implements Runnable {
 		this.blobType = blobType;
 		this.rawBlob = rawBlob;
 		this.listener = listener;
+
+		tagKeys = new PbfRepeatedField();
+		tagValues = new PbfRepeatedField();
+		memberIds = new PbfRepeatedField();
+		memberRoles = new PbfRepeatedField();
+		memberTypes = new PbfRepeatedField();
+		wayNodeIds = new long[16];
 	}
 
 
-	private byte[] readBlobContent() throws IOException {
-		Blob blob = Blob.parseFrom(rawBlob);
-		byte[] blobData;
-
-		if (blob.hasRaw()) {
-			blobData = blob.getRaw().toByteArray();
-		} else if (blob.hasZlibData()) {
-			Inflater inflater = new Inflater();
-			inflater.setInput(blob.getZlibData().toByteArray());
-			blobData = new byte[blob.getRawSize()];
-			try {
-				inflater.inflate(blobData);
-			} catch (DataFormatException e) {
-				throw new OsmosisRuntimeException("Unable to decompress PBF blob.", e);
-			}
-			if (!inflater.finished()) {
-				throw new OsmosisRuntimeException("PBF blob contains incomplete compressed data.");
+	/**
+	 * Creates a stream over a section of a buffer. The stream is created over
+	 * the start of the buffer and positioned at the offset so that its byte
+	 * count can be used as an absolute position within the buffer.
+	 */
+	private CodedInputStream createStream(byte[] data, int offset, int length) throws IOException {
+		CodedInputStream stream = CodedInputStream.newInstance(data, 0, offset + length);
+		stream.skipRawBytes(offset);
+
+		return stream;
+	}
+
+
+	private void readBlobContent() throws IOException {
+		CodedInputStream blobStream = CodedInputStream.newInstance(rawBlob);
+		int rawOffset = -1;
+		int rawLength = 0;
+		int zlibOffset = -1;
+		int zlibLength = 0;
+		int rawSize = 0;
+
+		// Locate the data within the blob without copying it.
+		while (!blobStream.isAtEnd()) {
+			int tag = blobStream.readTag();
+
+			switch (WireFormat.getTagFieldNumber(tag)) {
+			case BLOB_RAW:
+				rawLength = blobStream.readRawVarint32();
+				rawOffset = blobStream.getTotalBytesRead();
+				blobStream.skipRawBytes(rawLength);
+				break;
+			case BLOB_RAW_SIZE:
+				rawSize = blobStream.readInt32();
+				break;
+			case BLOB_ZLIB_DATA:
+				zlibLength = blobStream.readRawVarint32();
+				zlibOffset = blobStream.getTotalBytesRead();
+				blobStream.skipRawBytes(zlibLength);
+				break;
+			default:
+				blobStream.skipField(tag);
 			}
+		}
+
+		if (rawOffset >= 0) {
+			blockData = rawBlob;
+			blockOffset = rawOffset;
+			blockLength = rawLength;
+		} else if (zlibOffset >= 0) {
+			blockData = BLOB_INFLATERS.get().inflate(rawBlob, zlibOffset, zlibLength, rawSize);
+			blockOffset = 0;
+			blockLength = rawSize;
 		} else {
 			throw new OsmosisRuntimeException("PBF blob uses unsupported compression, only raw or zlib may be used.");
 		}
-
-		return blobData;
 	}
 
 
-	private void processOsmHeader(byte[] data) throws InvalidProtocolBufferException {
-		Osmformat.HeaderBlock header = Osmformat.HeaderBlock.parseFrom(data);
+	private void processOsmHeader() throws IOException {
+		Osmformat.HeaderBlock header =
+				Osmformat.HeaderBlock.parseFrom(createStream(blockData, blockOffset, blockLength));
 
 		// Build the list of active and unsupported features in the file.
 		List<String> supportedFeatures = Arrays.asList("OsmSchema-V0.6", "DenseNodes");
@@ -144,101 +286,178 @@ public class PbfBlobDecoder implements Runnable {
 	}
 
 
-	private void buildTags(CommonEntityData entityData, List<Integer> keys, List<Integer> values,
-			PbfFieldDecoder fieldDecoder) {
-		Collection<Tag> tags = entityData.getTags();
-
-		// Ensure parallel lists are of equal size.
-		if (keys.size() != values.size()) {
-			throw new OsmosisRuntimeException("Number of tag keys (" + keys.size() + ") and tag values ("
-					+ values.size() + ") don't match");
+	private void readInfo(CodedInputStream stream) throws IOException {
+		int limit = stream.pushLimit(stream.readRawVarint32());
+
+		infoPresent = true;
+		while (!stream.isAtEnd()) {
+			int tag = stream.readTag();
+
+			switch (WireFormat.getTagFieldNumber(tag)) {
+			case INFO_VERSION:
+				infoVersion = stream.readInt32();
+				break;
+			case INFO_TIMESTAMP:
+				infoTimestamp = stream.readInt64();
+				break;
+			case INFO_CHANGESET:
+				infoChangeset = stream.readInt64();
+				break;
+			case INFO_UID:
+				infoUid = stream.readInt32();
+				infoUidPresent = true;
+				break;
+			case INFO_USER_SID:
+				infoUserSid = stream.readUInt32();
+				infoUserSidPresent = true;
+				break;
+			default:
+				stream.skipField(tag);
+			}
 		}
 
-		Iterator<Integer> keyIterator = keys.iterator();
-		Iterator<Integer> valueIterator = values.iterator();
-		while (keyIterator.hasNext()) {
-			String key = fieldDecoder.decodeString(keyIterator.next());
-			String value = fieldDecoder.decodeString(valueIterator.next());
-			Tag tag = new Tag(key, value);
-			tags.add(tag);
-		}
+		stream.popLimit(limit);
 	}
 
 
-	private CommonEntityData buildCommonEntityData(long entityId, List<Integer> keys, List<Integer> values, Info info,
-			PbfFieldDecoder fieldDecoder) {
-		OsmUser user;
-		CommonEntityData entityData;
+	private void resetInfo() {
+		infoPresent = false;
+		infoVersion = EMPTY_VERSION;
+		infoTimestamp = 0;
+		infoChangeset = 0;
+		infoUid = 0;
+		infoUidPresent = false;
+		infoUserSid = 0;
+		infoUserSidPresent = false;
+	}
 
-		// Build the user, but only if one exists.
-		if (info.hasUid() && info.getUid() >= 0 && info.hasUserSid()) {
-			user = new OsmUser(info.getUid(), fieldDecoder.decodeString(info.getUserSid()));
-		} else {
-			user = OsmUser.NONE;
-		}
 
-		entityData = new CommonEntityData(entityId, info.getVersion(),
-				fieldDecoder.decodeTimestamp(info.getTimestamp()), user, info.getChangeset());
+	private TagCollectionImpl buildTags(int messageOffset, int messageLength, PbfFieldDecoder fieldDecoder) {
+		TagCollectionImpl tags = new TagCollectionImpl();
 
-		buildTags(entityData, keys, values, fieldDecoder);
+		tagKeys.reset(blockData, messageOffset, messageLength, ENTITY_KEYS);
+		tagValues.reset(blockData, messageOffset, messageLength, ENTITY_VALS);
 
-		return entityData;
+		while (tagKeys.hasNext()) {
+			if (!tagValues.hasNext()) {
+				throw new OsmosisRuntimeException("Number of tag keys and tag values don't match.");
+			}
+
+			String key = fieldDecoder.decodeString(tagKeys.nextInt());
+			String value = fieldDecoder.decodeString(tagValues.nextInt());
+			tags.add(key, value);
+		}
+
+		// Ensure parallel lists are of equal size.
+		if (tagValues.hasNext()) {
+			throw new OsmosisRuntimeException("Number of tag keys and tag values don't match.");
+		}
+
+		return tags;
 	}
 
 
-	private CommonEntityData buildCommonEntityData(long entityId, List<Integer> keys, List<Integer> values,
+	private CommonEntityData buildCommonEntityData(long entityId, int messageOffset, int messageLength,
 			PbfFieldDecoder fieldDecoder) {
 		CommonEntityData entityData;
+		TagCollectionImpl tags;
+
+		tags = buildTags(messageOffset, messageLength, fieldDecoder);
+
+		if (infoPresent) {
+			OsmUser user;
+
+			// Build the user, but only if one exists.
+			if (infoUidPresent && infoUid >= 0 && infoUserSidPresent) {
+				user = new OsmUser(infoUid, fieldDecoder.decodeString(infoUserSid));
+			} else {
+				user = OsmUser.NONE;
+			}
 
-		entityData = new CommonEntityData(entityId, EMPTY_VERSION, EMPTY_TIMESTAMP, OsmUser.NONE, EMPTY_CHANGESET);
+			entityData = new CommonEntityData(entityId, infoVersion, fieldDecoder.decodeTimestampMillis(infoTimestamp),
+					user, infoChangeset, tags);
 
-		buildTags(entityData, keys, values, fieldDecoder);
+		} else {
+			entityData = new CommonEntityData(entityId, EMPTY_VERSION, EMPTY_TIMESTAMP, OsmUser.NONE,
+					EMPTY_CHANGESET, tags);
+		}
 
 		return entityData;
 	}
 
 
-	private void processNodes(List<Node> nodes, PbfFieldDecoder fieldDecoder) {
-		for (Node node : nodes) {
-			org.openstreetmap.osmosis.core.domain.v0_6.Node osmNode;
-			CommonEntityData entityData;
-
-			if (node.hasInfo()) {
-				entityData = buildCommonEntityData(node.getId(), node.getKeysList(), node.getValsList(),
-						node.getInfo(), fieldDecoder);
+	private void processNode(CodedInputStream stream, PbfFieldDecoder fieldDecoder) throws IOException {
+		int messageLength = stream.readRawVarint32();
+		int messageOffset = stream.getTotalBytesRead();
+		int limit = stream.pushLimit(messageLength);
+		long nodeId = 0;
+		long latitude = 0;
+		long longitude = 0;
 
-			} else {
-				entityData = buildCommonEntityData(node.getId(), node.getKeysList(), node.getValsList(), fieldDecoder);
+		resetInfo();
+		while (!stream.isAtEnd()) {
+			int tag = stream.readTag();
+
+			switch (WireFormat.getTagFieldNumber(tag)) {
+			case ENTITY_ID:
+				nodeId = stream.readSInt64();
+				break;
+			case ENTITY_INFO:
+				readInfo(stream);
+				break;
+			case NODE_LAT:
+				latitude = stream.readSInt64();
+				break;
+			case NODE_LON:
+				longitude = stream.readSInt64();
+				break;
+			default:
+				stream.skipField(tag);
 			}
+		}
+		stream.popLimit(limit);
 
-			osmNode = new org.openstreetmap.osmosis.core.domain.v0_6.Node(entityData, fieldDecoder.decodeLatitude(node
-					.getLat()), fieldDecoder.decodeLatitude(node.getLon()));
+		CommonEntityData entityData = buildCommonEntityData(nodeId, messageOffset, messageLength, fieldDecoder);
+		Node node = new Node(entityData, fieldDecoder.decodeLatitude(latitude),
+				fieldDecoder.decodeLongitude(longitude));
 
-			// Add the bound object to the results.
-			decodedEntities.add(new NodeContainer(osmNode));
-		}
+		decodedEntities.add(new NodeContainer(node));
 	}
 
 
-	private void processNodes(DenseNodes nodes, PbfFieldDecoder fieldDecoder) {
-		List<Long> idList = nodes.getIdList();
-		List<Long> latList = nodes.getLatList();
-		List<Long> lonList = nodes.getLonList();
+	private void processDenseNodes(CodedInputStream stream, PbfFieldDecoder fieldDecoder) throws IOException {
+		int messageLength = stream.readRawVarint32();
+		int messageOffset = stream.getTotalBytesRead();
+		int denseInfoOffset = -1;
+		int denseInfoLength = 0;
 
-		// Ensure parallel lists are of equal size.
-		if ((idList.size() != latList.size()) || (idList.size() != lonList.size())) {
-			throw new OsmosisRuntimeException("Number of ids (" + idList.size() + "), latitudes (" + latList.size()
-					+ "), and longitudes (" + lonList.size() + ") don't match");
+		// Find the location of the dense info message, all other fields are
+		// read directly from the buffer.
+		int limit = stream.pushLimit(messageLength);
+		while (!stream.isAtEnd()) {
+			int tag = stream.readTag();
+
+			if (WireFormat.getTagFieldNumber(tag) == DENSE_DENSEINFO) {
+				denseInfoLength = stream.readRawVarint32();
+				denseInfoOffset = stream.getTotalBytesRead();
+				stream.skipRawBytes(denseInfoLength);
+			} else {
+				stream.skipField(tag);
+			}
 		}
+		stream.popLimit(limit);
 
-		Iterator<Integer> keysValuesIterator = nodes.getKeysValsList().iterator();
+		PbfRepeatedField ids = createField(messageOffset, messageLength, DENSE_ID);
+		PbfRepeatedField latitudes = createField(messageOffset, messageLength, DENSE_LAT);
+		PbfRepeatedField longitudes = createField(messageOffset, messageLength, DENSE_LON);
+		PbfRepeatedField keysValues = createField(messageOffset, messageLength, DENSE_KEYS_VALS);
 
-		DenseInfo denseInfo;
-		if (nodes.hasDenseinfo()) {
-			denseInfo = nodes.getDenseinfo();
-		} else {
-			denseInfo = null;
-		}
+		boolean denseInfoPresent = denseInfoOffset >= 0;
+		PbfRepeatedField versions = createField(denseInfoOffset, denseInfoLength, DENSEINFO_VERSION);
+		PbfRepeatedField timestamps = createField(denseInfoOffset, denseInfoLength, DENSEINFO_TIMESTAMP);
+		PbfRepeatedField changesets = createField(denseInfoOffset, denseInfoLength, DENSEINFO_CHANGESET);
+		PbfRepeatedField userIds = createField(denseInfoOffset, denseInfoLength, DENSEINFO_UID);
+		PbfRepeatedField userSids = createField(denseInfoOffset, denseInfoLength, DENSEINFO_USER_SID);
 
 		long nodeId = 0;
 		long latitude = 0;
@@ -247,21 +466,45 @@ public class PbfBlobDecoder implements Runnable {
 		int userSid = 0;
 		long timestamp = 0;
 		long changesetId = 0;
-		for (int i = 0; i < idList.size(); i++) {
+		while (ids.hasNext()) {
 			CommonEntityData entityData;
-			org.openstreetmap.osmosis.core.domain.v0_6.Node node;
+			TagCollectionImpl tags;
+			Node node;
+
+			// Ensure parallel lists are of equal size.
+			if (!latitudes.hasNext() || !longitudes.hasNext()) {
+				throw new OsmosisRuntimeException("Number of ids, latitudes, and longitudes don't match.");
+			}
 
 			// Delta decode node fields.
-			nodeId += idList.get(i);
-			latitude += latList.get(i);
-			longitude += lonList.get(i);
+			nodeId += ids.nextSignedLong();
+			latitude += latitudes.nextSignedLong();
+			longitude += longitudes.nextSignedLong();
 
-			if (denseInfo != null) {
+			// Build the tags. The key and value string indexes are sequential
+			// in the same PBF array. Each set of tags is delimited by an index
+			// with a value of 0.
+			tags = new TagCollectionImpl();
+			while (keysValues.hasNext()) {
+				int keyIndex = keysValues.nextInt();
+				if (keyIndex == 0) {
+					break;
+				}
+				if (!keysValues.hasNext()) {
+					throw new OsmosisRuntimeException(
+							"The PBF DenseInfo keys/values list contains a key with no corresponding value.");
+				}
+				int valueIndex = keysValues.nextInt();
+
+				tags.add(fieldDecoder.decodeString(keyIndex), fieldDecoder.decodeString(valueIndex));
+			}
+
+			if (denseInfoPresent) {
 				// Delta decode dense info fields.
-				userId += denseInfo.getUid(i);
-				userSid += denseInfo.getUserSid(i);
-				timestamp += denseInfo.getTimestamp(i);
-				changesetId += denseInfo.getChangeset(i);
+				userId += userIds.nextSignedInt();
+				userSid += userSids.nextSignedInt();
+				timestamp += timestamps.nextSignedLong();
+				changesetId += changesets.nextSignedLong();
 
 				// Build the user, but only if one exists.
 				OsmUser user;
@@ -271,149 +514,262 @@ public class PbfBlobDecoder implements Runnable {
 					user = OsmUser.NONE;
 				}
 
-				entityData = new CommonEntityData(nodeId, denseInfo.getVersion(i),
-						fieldDecoder.decodeTimestamp(timestamp), user, changesetId);
+				entityData = new CommonEntityData(nodeId, versions.nextInt(),
+						fieldDecoder.decodeTimestampMillis(timestamp), user, changesetId, tags);
 			} else {
 				entityData = new CommonEntityData(nodeId, EMPTY_VERSION, EMPTY_TIMESTAMP, OsmUser.NONE,
-						EMPTY_CHANGESET);
-			}
-
-			// Build the tags. The key and value string indexes are sequential
-			// in the same PBF array. Each set of tags is delimited by an index
-			// with a value of 0.
-			Collection<Tag> tags = entityData.getTags();
-			while (keysValuesIterator.hasNext()) {
-				int keyIndex = keysValuesIterator.next();
-				if (keyIndex == 0) {
-					break;
-				}
-				if (!keysValuesIterator.hasNext()) {
-					throw new OsmosisRuntimeException(
-							"The PBF DenseInfo keys/values list contains a key with no corresponding value.");
-				}
-				int valueIndex = keysValuesIterator.next();
-
-				Tag tag = new Tag(fieldDecoder.decodeString(keyIndex), fieldDecoder.decodeString(valueIndex));
-				tags.add(tag);
+						EMPTY_CHANGESET, tags);
 			}
 
-			node = new org.openstreetmap.osmosis.core.domain.v0_6.Node(entityData,
-					fieldDecoder.decodeLatitude(latitude), fieldDecoder.decodeLongitude(longitude));
+			node = new Node(entityData, fieldDecoder.decodeLatitude(latitude), fieldDecoder.decodeLongitude(longitude));
 
 			// Add the bound object to the results.
 			decodedEntities.add(new NodeContainer(node));
 		}
+
+		if (latitudes.hasNext() || longitudes.hasNext()) {
+			throw new OsmosisRuntimeException("Number of ids, latitudes, and longitudes don't match.");
+		}
 	}
 
 
-	private void processWays(List<Way> ways, PbfFieldDecoder fieldDecoder) {
-		for (Way way : ways) {
-			org.openstreetmap.osmosis.core.domain.v0_6.Way osmWay;
-			CommonEntityData entityData;
+	private PbfRepeatedField createField(int messageOffset, int messageLength, int fieldNumber) {
+		PbfRepeatedField field = new PbfRepeatedField();
 
-			if (way.hasInfo()) {
-				entityData = buildCommonEntityData(way.getId(), way.getKeysList(), way.getValsList(), way.getInfo(),
-						fieldDecoder);
+		// A missing message is treated as an empty one.
+		if (messageOffset >= 0) {
+			field.reset(blockData, messageOffset, messageLength, fieldNumber);
+		} else {
+			field.reset(blockData, 0, 0, fieldNumber);
+		}
 
-			} else {
-				entityData = buildCommonEntityData(way.getId(), way.getKeysList(), way.getValsList(), fieldDecoder);
-			}
+		return field;
+	}
 
-			osmWay = new org.openstreetmap.osmosis.core.domain.v0_6.Way(entityData);
 
-			// Build up the list of way nodes for the way. The node ids are
-			// delta encoded meaning that each id is stored as a delta against
-			// the previous one.
-			long nodeId = 0;
-			List<WayNode> wayNodes = osmWay.getWayNodes();
-			for (long nodeIdOffset : way.getRefsList()) {
-				nodeId += nodeIdOffset;
-				wayNodes.add(new WayNode(nodeId));
+	private void processWay(CodedInputStream stream, PbfFieldDecoder fieldDecoder) throws IOException {
+		int messageLength = stream.readRawVarint32();
+		int messageOffset = stream.getTotalBytesRead();
+		int limit = stream.pushLimit(messageLength);
+		long wayId = 0;
+
+		resetInfo();
+		while (!stream.isAtEnd()) {
+			int tag = stream.readTag();
+
+			switch (WireFormat.getTagFieldNumber(tag)) {
+			case ENTITY_ID:
+				wayId = stream.readInt64();
+				break;
+			case ENTITY_INFO:
+				readInfo(stream);
+				break;
+			default:
+				stream.skipField(tag);
 			}
+		}
+		stream.popLimit(limit);
 
-			decodedEntities.add(new WayContainer(osmWay));
+		// Build up the list of way nodes for the way. The node ids are
+		// delta encoded meaning that each id is stored as a delta against
+		// the previous one. They are collected in a re-usable buffer and
+		// copied into an exactly sized array owned by the way.
+		long nodeId = 0;
+		int wayNodeCount = 0;
+		memberIds.reset(blockData, messageOffset, messageLength, WAY_REFS);
+		while (memberIds.hasNext()) {
+			nodeId += memberIds.nextSignedLong();
+			if (wayNodeCount == wayNodeIds.length) {
+				wayNodeIds = Arrays.copyOf(wayNodeIds, wayNodeCount * 2);
+			}
+			wayNodeIds[wayNodeCount++] = nodeId;
 		}
+
+		Way way = new Way(buildCommonEntityData(wayId, messageOffset, messageLength, fieldDecoder),
+				Arrays.copyOf(wayNodeIds, wayNodeCount));
+
+		decodedEntities.add(new WayContainer(way));
 	}
 
 
-	private void buildRelationMembers(org.openstreetmap.osmosis.core.domain.v0_6.Relation relation,
-			List<Long> memberIds, List<Integer> memberRoles, List<MemberType> memberTypes,
+	private void buildRelationMembers(Relation relation, int messageOffset, int messageLength,
 			PbfFieldDecoder fieldDecoder) {
 
 		List<RelationMember> members = relation.getMembers();
 
-		// Ensure parallel lists are of equal size.
-		if ((memberIds.size() != memberRoles.size()) || (memberIds.size() != memberTypes.size())) {
-			throw new OsmosisRuntimeException("Number of member ids (" + memberIds.size() + "), member roles ("
-					+ memberRoles.size() + "), and member types (" + memberTypes.size() + ") don't match");
-		}
-
-		Iterator<Long> memberIdIterator = memberIds.iterator();
-		Iterator<Integer> memberRoleIterator = memberRoles.iterator();
-		Iterator<MemberType> memberTypeIterator = memberTypes.iterator();
+		memberIds.reset(blockData, messageOffset, messageLength, RELATION_MEMIDS);
+		memberRoles.reset(blockData, messageOffset, messageLength, RELATION_ROLES_SID);
+		memberTypes.reset(blockData, messageOffset, messageLength, RELATION_TYPES);
 
 		// Build up the list of relation members for the way. The member ids are
 		// delta encoded meaning that each id is stored as a delta against
 		// the previous one.
 		long memberId = 0;
-		while (memberIdIterator.hasNext()) {
-			MemberType memberType = memberTypeIterator.next();
-			memberId += memberIdIterator.next();
+		while (memberIds.hasNext()) {
+			// Ensure parallel lists are of equal size.
+			if (!memberRoles.hasNext() || !memberTypes.hasNext()) {
+				throw new OsmosisRuntimeException("Number of member ids, member roles, and member types don't match");
+			}
+
+			int memberType = memberTypes.nextInt();
+			memberId += memberIds.nextSignedLong();
 			EntityType entityType;
 			RelationMember member;
 
-			if (memberType == MemberType.NODE) {
+			if (memberType == MEMBER_TYPE_NODE) {
 				entityType = EntityType.Node;
-			} else if (memberType == MemberType.WAY) {
+			} else if (memberType == MEMBER_TYPE_WAY) {
 				entityType = EntityType.Way;
-			} else if (memberType == MemberType.RELATION) {
+			} else if (memberType == MEMBER_TYPE_RELATION) {
 				entityType = EntityType.Relation;
 			} else {
 				throw new OsmosisRuntimeException("Member type of " + memberType + " is not supported.");
 			}
 
-			member = new RelationMember(memberId, entityType, fieldDecoder.decodeString(memberRoleIterator.next()));
+			member = new RelationMember(memberId, entityType, fieldDecoder.decodeString(memberRoles.nextInt()));
 
 			members.add(member);
 		}
+
+		if (memberRoles.hasNext() || memberTypes.hasNext()) {
+			throw new OsmosisRuntimeException("Number of member ids, member roles, and member types don't match");
+		}
 	}
 
 
-	private void processRelations(List<Relation> relations, PbfFieldDecoder fieldDecoder) {
-		for (Relation relation : relations) {
-			org.openstreetmap.osmosis.core.domain.v0_6.Relation osmRelation;
-			CommonEntityData entityData;
+	private void processRelation(CodedInputStream stream, PbfFieldDecoder fieldDecoder) throws IOException {
+		int messageLength = stream.readRawVarint32();
+		int messageOffset = stream.getTotalBytesRead();
+		int limit = stream.pushLimit(messageLength);
+		long relationId = 0;
+
+		resetInfo();
+		while (!stream.isAtEnd()) {
+			int tag = stream.readTag();
+
+			switch (WireFormat.getTagFieldNumber(tag)) {
+			case ENTITY_ID:
+				relationId = stream.readInt64();
+				break;
+			case ENTITY_INFO:
+				readInfo(stream);
+				break;
+			default:
+				stream.skipField(tag);
+			}
+		}
+		stream.popLimit(limit);
 
-			if (relation.hasInfo()) {
-				entityData = buildCommonEntityData(relation.getId(), relation.getKeysList(), relation.getValsList(),
-						relation.getInfo(), fieldDecoder);
+		Relation relation = new Relation(buildCommonEntityData(relationId, messageOffset, messageLength,
+				fieldDecoder));
 
-			} else {
-				entityData = buildCommonEntityData(relation.getId(), relation.getKeysList(), relation.getValsList(),
-						fieldDecoder);
+		buildRelationMembers(relation, messageOffset, messageLength, fieldDecoder);
+
+		// Add the bound object to the results.
+		decodedEntities.add(new RelationContainer(relation));
+	}
+
+
+	private void processPrimitiveGroup(CodedInputStream stream, PbfFieldDecoder fieldDecoder) throws IOException {
+		int limit = stream.pushLimit(stream.readRawVarint32());
+
+		while (!stream.isAtEnd()) {
+			int tag = stream.readTag();
+
+			switch (WireFormat.getTagFieldNumber(tag)) {
+			case GROUP_NODES:
+				processNode(stream, fieldDecoder);
+				break;
+			case GROUP_DENSE:
+				processDenseNodes(stream, fieldDecoder);
+				break;
+			case GROUP_WAYS:
+				processWay(stream, fieldDecoder);
+				break;
+			case GROUP_RELATIONS:
+				processRelation(stream, fieldDecoder);
+				break;
+			default:
+				stream.skipField(tag);
 			}
+		}
 
-			osmRelation = new org.openstreetmap.osmosis.core.domain.v0_6.Relation(entityData);
+		stream.popLimit(limit);
+	}
 
-			buildRelationMembers(osmRelation, relation.getMemidsList(), relation.getRolesSidList(),
-					relation.getTypesList(), fieldDecoder);
 
-			// Add the bound object to the results.
-			decodedEntities.add(new RelationContainer(osmRelation));
+	private String[] readStringTable(CodedInputStream stream) throws IOException {
+		List<String> strings = new ArrayList<String>();
+		StringPool stringPool = StringPool.getShared();
+		int limit = stream.pushLimit(stream.readRawVarint32());
+
+		while (!stream.isAtEnd()) {
+			int tag = stream.readTag();
+
+			if (WireFormat.getTagFieldNumber(tag) == STRINGTABLE_S) {
+				int length = stream.readRawVarint32();
+				// Strings repeat across blocks so are shared via the pool.
+				strings.add(stringPool.intern(new String(blockData, stream.getTotalBytesRead(), length, UTF8)));
+				stream.skipRawBytes(length);
+			} else {
+				stream.skipField(tag);
+			}
 		}
+
+		stream.popLimit(limit);
+
+		return strings.toArray(new String[strings.size()]);
 	}
 
 
-	private void processOsmPrimitives(byte[] data) throws InvalidProtocolBufferException {
-		Osmformat.PrimitiveBlock block = Osmformat.PrimitiveBlock.parseFrom(data);
-		PbfFieldDecoder fieldDecoder = new PbfFieldDecoder(block);
+	private void processOsmPrimitives() throws IOException {
+		String[] strings = new String[0];
+		int granularity = DEFAULT_GRANULARITY;
+		int dateGranularity = DEFAULT_DATE_GRANULARITY;
+		long latitudeOffset = 0;
+		long longitudeOffset = 0;
+
+		// The block level fields are written after the primitive groups, so
+		// the first pass reads them and skips over the groups.
+		CodedInputStream stream = createStream(blockData, blockOffset, blockLength);
+		while (!stream.isAtEnd()) {
+			int tag = stream.readTag();
+
+			switch (WireFormat.getTagFieldNumber(tag)) {
+			case BLOCK_STRINGTABLE:
+				strings = readStringTable(stream);
+				break;
+			case BLOCK_GRANULARITY:
+				granularity = stream.readInt32();
+				break;
+			case BLOCK_DATE_GRANULARITY:
+				dateGranularity = stream.readInt32();
+				break;
+			case BLOCK_LAT_OFFSET:
+				latitudeOffset = stream.readInt64();
+				break;
+			case BLOCK_LON_OFFSET:
+				longitudeOffset = stream.readInt64();
+				break;
+			default:
+				stream.skipField(tag);
+			}
+		}
+
+		PbfFieldDecoder fieldDecoder =
+				new PbfFieldDecoder(strings, granularity, latitudeOffset, longitudeOffset, dateGranularity);
+
+		// The second pass decodes the primitive groups.
+		stream = createStream(blockData, blockOffset, blockLength);
+		while (!stream.isAtEnd()) {
+			int tag = stream.readTag();
 
-		for (PrimitiveGroup primitiveGroup : block.getPrimitivegroupList()) {
-			log.finer("Processing OSM primitive group.");
-			processNodes(primitiveGroup.getDense(), fieldDecoder);
-			processNodes(primitiveGroup.getNodesList(), fieldDecoder);
-			processWays(primitiveGroup.getWaysList(), fieldDecoder);
-			processRelations(primitiveGroup.getRelationsList(), fieldDecoder);
+			if (WireFormat.getTagFieldNumber(tag) == BLOCK_PRIMITIVEGROUP) {
+				log.finer("Processing OSM primitive group.");
+				processPrimitiveGroup(stream, fieldDecoder);
+			} else {
+				stream.skipField(tag);
+			}
 		}
 	}
 
@@ -423,10 +779,12 @@ public class PbfBlobDecoder implements Runnable {
 			decodedEntities = new ArrayList<EntityContainer>();
 
 			if ("OSMHeader".equals(blobType)) {
-				processOsmHeader(readBlobContent());
+				readBlobContent();
+				processOsmHeader();
 
 			} else if ("OSMData".equals(blobType)) {
-				processOsmPrimitives(readBlobContent());
+				readBlobContent();
+				processOsmPrimitives();
 
 			} else {
 				if (log.isLoggable(Level.FINER)) {
@@ -436,6 +794,10 @@ public class PbfBlobDecoder implements Runnable {
 
 		} catch (IOException e) {
 			throw new OsmosisRuntimeException("Unable to process PBF blob", e);
+		} finally {
+			// The block data may belong to the worker thread's shared buffer
+			// so it must not be retained.
+			blockData = null;
 		}
 	}
 
@@ -0,0 +1,70 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.pbf2.v0_6.impl;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+
+
+/**
+ * Decompresses zlib blob data. A single inflater and output buffer are re-used
+ * for every blob to avoid allocating them for each blob. Instances are not
+ * thread safe and are intended to be owned by a single worker thread.
+ */
+public class PbfBlobInflater {
+	private Inflater inflater;
+	private byte[] buffer;
+
+
+	/**
+	 * Creates a new instance.
+	 */
+	public PbfBlobInflater() {
+		inflater = new Inflater();
+		buffer = new byte[0];
+	}
+
+
+	/**
+	 * Decompresses a zlib blob. The returned buffer is owned by this object and
+	 * is overwritten by the next call to this method. It may be longer than
+	 * the blob, only the first rawSize bytes are valid.
+	 * 
+	 * @param data
+	 *            The buffer containing the compressed data.
+	 * @param offset
+	 *            The offset of the compressed data within the buffer.
+	 * @param length
+	 *            The length of the compressed data.
+	 * @param rawSize
+	 *            The size of the data once decompressed.
+	 * @return The buffer holding the decompressed data.
+	 */
+	public byte[] inflate(byte[] data, int offset, int length, int rawSize) {
+		int inflatedSize;
+
+		if (buffer.length < rawSize) {
+			buffer = new byte[rawSize];
+		}
+
+		inflater.reset();
+		inflater.setInput(data, offset, length);
+		try {
+			inflatedSize = inflater.inflate(buffer, 0, rawSize);
+		} catch (DataFormatException e) {
+			throw new OsmosisRuntimeException("Unable to decompress PBF blob.", e);
+		}
+		if (!inflater.finished()) {
+			throw new OsmosisRuntimeException("PBF blob contains incomplete compressed data.");
+		}
+		// The buffer is re-used so a short blob would otherwise leave stale
+		// data from the previous blob in the remainder of the buffer.
+		if (inflatedSize != rawSize) {
+			throw new OsmosisRuntimeException("PBF blob decompressed to " + inflatedSize
+					+ " bytes but declared a raw size of " + rawSize + " bytes.");
+		}
+
+		return buffer;
+	}
+}
@@ -2,19 +2,26 @@
 package org.openstreetmap.osmosis.pbf2.v0_6.impl;
 
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
 import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
 
 
 /**
- * Stores the results for a decoded Blob.
+ * Stores the results for a decoded Blob. The worker thread decoding the blob
+ * stores the result, and the thread consuming results may wait for it to do
+ * so. Each result is synchronised independently so that workers completing
+ * different blobs never contend with each other.
  * 
  * @author Brett Henderson
  */
 public class PbfBlobResult {
 	private List<EntityContainer> entities;
-	private boolean complete;
+	private PbfBlockIndexEntry indexEntry;
+	private volatile boolean complete;
 	private boolean success;
+	private CountDownLatch completionLatch;
 
 
 	/**
@@ -23,6 +30,7 @@ public class PbfBlobResult {
 	public PbfBlobResult() {
 		complete = false;
 		success = false;
+		completionLatch = new CountDownLatch(1);
 	}
 
 
@@ -33,9 +41,25 @@ public class PbfBlobResult {
 	 *            The entities from the blob.
 	 */
 	public void storeSuccessResult(List<EntityContainer> decodedEntities) {
+		storeSuccessResult(decodedEntities, null);
+	}
+
+
+	/**
+	 * Stores the results of a successful blob decoding operation.
+	 * 
+	 * @param decodedEntities
+	 *            The entities from the blob.
+	 * @param blobIndexEntry
+	 *            The index entry describing the blob, or null if the blob is
+	 *            not being indexed.
+	 */
+	public void storeSuccessResult(List<EntityContainer> decodedEntities, PbfBlockIndexEntry blobIndexEntry) {
 		entities = decodedEntities;
-		complete = true;
+		indexEntry = blobIndexEntry;
 		success = true;
+		complete = true;
+		completionLatch.countDown();
 	}
 
 
@@ -43,8 +67,22 @@ public class PbfBlobResult {
 	 * Stores a failure result for a blob decoding operation.
 	 */
 	public void storeFailureResult() {
-		complete = true;
 		success = false;
+		complete = true;
+		completionLatch.countDown();
+	}
+
+
+	/**
+	 * Blocks until a success or failure result has been stored.
+	 */
+	public void waitForCompletion() {
+		try {
+			completionLatch.await();
+
+		} catch (InterruptedException e) {
+			throw new OsmosisRuntimeException("Thread was interrupted.", e);
+		}
 	}
 
 
@@ -77,4 +115,15 @@ public class PbfBlobResult {
 	public List<EntityContainer> getEntities() {
 		return entities;
 	}
+
+
+	/**
+	 * Gets the index entry describing the blob. This is only valid after
+	 * complete becomes true, and if success is true.
+	 * 
+	 * @return The index entry, or null if the blob is not being indexed.
+	 */
+	public PbfBlockIndexEntry getIndexEntry() {
+		return indexEntry;
+	}
 }
@@ -0,0 +1,179 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.pbf2.v0_6.impl;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
+import org.openstreetmap.osmosis.core.domain.v0_6.EntityType;
+import org.openstreetmap.osmosis.core.domain.v0_6.Node;
+
+
+/**
+ * Selects the blobs and entities to be read from a PBF file. Entities are
+ * selected by type. Blobs are selected by the entity types they contain and,
+ * for blobs containing nodes, by whether their nodes overlap a bounding box.
+ * Ways and relations carry no coordinates in a PBF file so blobs containing
+ * them are always read if their type is selected. Nodes are checked against
+ * the bounding box individually, so blob selection only avoids decoding data
+ * that would be rejected anyway and the output is the same whether or not a
+ * block index is available.
+ */
+public class PbfBlockFilter {
+	private static final double MAX_LONGITUDE = 180;
+	private static final double MIN_LONGITUDE = -180;
+	private static final Set<EntityType> ALL_DATA_TYPES =
+			EnumSet.of(EntityType.Node, EntityType.Way, EntityType.Relation);
+
+	private Set<EntityType> entityTypes;
+	private boolean bboxEnabled;
+	private double left;
+	private double right;
+	private double top;
+	private double bottom;
+
+
+	/**
+	 * Creates a new instance that accepts all data.
+	 */
+	public PbfBlockFilter() {
+		this(ALL_DATA_TYPES);
+	}
+
+
+	/**
+	 * Creates a new instance that accepts entities of the specified types.
+	 *
+	 * @param entityTypes
+	 *            The entity types to accept.
+	 */
+	public PbfBlockFilter(Set<EntityType> entityTypes) {
+		this.entityTypes = Collections.unmodifiableSet(EnumSet.copyOf(entityTypes));
+		bboxEnabled = false;
+	}
+
+
+	/**
+	 * Creates a new instance that accepts entities of the specified types,
+	 * rejecting nodes that lie outside a bounding box.
+	 *
+	 * @param entityTypes
+	 *            The entity types to accept.
+	 * @param left
+	 *            The longitude marking the left edge of the bounding box.
+	 * @param right
+	 *            The longitude marking the right edge of the bounding box.
+	 * @param top
+	 *            The latitude marking the top edge of the bounding box.
+	 * @param bottom
+	 *            The latitude marking the bottom edge of the bounding box.
+	 */
+	public PbfBlockFilter(Set<EntityType> entityTypes, double left, double right, double top, double bottom) {
+		this(entityTypes);
+
+		bboxEnabled = true;
+		this.left = left;
+		this.right = right;
+		this.top = top;
+		this.bottom = bottom;
+	}
+
+
+	/**
+	 * Indicates if this filter rejects any data. A filter that accepts all
+	 * data gains no benefit from a block index.
+	 *
+	 * @return True if some data may be rejected.
+	 */
+	public boolean isRestrictive() {
+		return bboxEnabled || !entityTypes.containsAll(ALL_DATA_TYPES);
+	}
+
+
+	private boolean longitudeOverlaps(double minimum, double maximum) {
+		if (left <= right) {
+			return minimum <= right && maximum >= left;
+		} else {
+			// The box crosses the anti-meridian.
+			return longitudeOverlaps(minimum, maximum, left, MAX_LONGITUDE)
+					|| longitudeOverlaps(minimum, maximum, MIN_LONGITUDE, right);
+		}
+	}
+
+
+	private boolean longitudeOverlaps(double minimum, double maximum, double boxLeft, double boxRight) {
+		return minimum <= boxRight && maximum >= boxLeft;
+	}
+
+
+	private boolean nodesOverlap(PbfBlockIndexEntry entry) {
+		if (!bboxEnabled) {
+			return true;
+		}
+
+		return entry.getMinimumLatitude() <= top && entry.getMaximumLatitude() >= bottom
+				&& longitudeOverlaps(entry.getMinimumLongitude(), entry.getMaximumLongitude());
+	}
+
+
+	private boolean nodeInside(Node node) {
+		if (!bboxEnabled) {
+			return true;
+		}
+
+		return node.getLatitude() <= top && node.getLatitude() >= bottom
+				&& longitudeOverlaps(node.getLongitude(), node.getLongitude());
+	}
+
+
+	/**
+	 * Indicates if a blob needs to be read.
+	 *
+	 * @param entry
+	 *            The index entry describing the blob.
+	 * @return True if the blob must be read.
+	 */
+	public boolean acceptsBlock(PbfBlockIndexEntry entry) {
+		// Header and unrecognised blobs are always passed through.
+		if (!"OSMData".equals(entry.getBlobType())) {
+			return true;
+		}
+
+		if (entityTypes.contains(EntityType.Way) && entry.containsType(EntityType.Way)) {
+			return true;
+		}
+		if (entityTypes.contains(EntityType.Relation) && entry.containsType(EntityType.Relation)) {
+			return true;
+		}
+		if (entityTypes.contains(EntityType.Node) && entry.containsType(EntityType.Node)) {
+			return nodesOverlap(entry);
+		}
+
+		return false;
+	}
+
+
+	/**
+	 * Indicates if an entity should be passed to the sink.
+	 *
+	 * @param entityContainer
+	 *            The entity.
+	 * @return True if the entity is accepted.
+	 */
+	public boolean acceptsEntity(EntityContainer entityContainer) {
+		EntityType type = entityContainer.getEntity().getType();
+
+		if (type == EntityType.Bound) {
+			return true;
+		}
+		if (!entityTypes.contains(type)) {
+			return false;
+		}
+		if (type == EntityType.Node) {
+			return nodeInside((Node) entityContainer.getEntity());
+		}
+
+		return true;
+	}
+}
@@ -0,0 +1,176 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.pbf2.v0_6.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * An index of the blobs within a PBF file. The index is stored in a sidecar
+ * file alongside the PBF file and allows later reads to seek directly to the
+ * blobs they require. The index records the size and modification time of the
+ * PBF file it was built from and is ignored if the PBF file changes.
+ */
+public class PbfBlockIndex {
+
+	private static final Logger LOG = Logger.getLogger(PbfBlockIndex.class.getName());
+
+	/**
+	 * The suffix appended to the PBF file name to obtain the index file name.
+	 */
+	public static final String FILE_SUFFIX = ".blockidx";
+
+	private static final int FILE_MAGIC = 0x50424958;
+	private static final int FILE_VERSION = 1;
+
+	private List<PbfBlockIndexEntry> entries;
+
+
+	/**
+	 * Creates a new empty instance.
+	 */
+	public PbfBlockIndex() {
+		entries = new ArrayList<PbfBlockIndexEntry>();
+	}
+
+
+	/**
+	 * Gets the index file associated with a PBF file.
+	 *
+	 * @param pbfFile
+	 *            The PBF file.
+	 * @return The index file.
+	 */
+	public static File getIndexFile(File pbfFile) {
+		return new File(pbfFile.getPath() + FILE_SUFFIX);
+	}
+
+
+	/**
+	 * Adds an entry to the end of the index. Entries must be added in file
+	 * order.
+	 *
+	 * @param entry
+	 *            The entry to add.
+	 */
+	public void add(PbfBlockIndexEntry entry) {
+		entries.add(entry);
+	}
+
+
+	/**
+	 * Gets all entries in the index in file order.
+	 *
+	 * @return The index entries.
+	 */
+	public List<PbfBlockIndexEntry> getEntries() {
+		return Collections.unmodifiableList(entries);
+	}
+
+
+	/**
+	 * Loads the index for a PBF file if a valid index exists.
+	 *
+	 * @param pbfFile
+	 *            The PBF file.
+	 * @return The index, or null if no index exists or it is out of date.
+	 */
+	public static PbfBlockIndex load(File pbfFile) {
+		File indexFile = getIndexFile(pbfFile);
+
+		if (!indexFile.isFile()) {
+			return null;
+		}
+
+		try {
+			DataInputStream input =
+					new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+
+			try {
+				if (input.readInt() != FILE_MAGIC || input.readInt() != FILE_VERSION) {
+					LOG.warning("Ignoring PBF block index " + indexFile + " with an unrecognised format.");
+					return null;
+				}
+				if (input.readLong() != pbfFile.length() || input.readLong() != pbfFile.lastModified()) {
+					LOG.fine("Ignoring PBF block index " + indexFile + " because the PBF file has changed.");
+					return null;
+				}
+
+				PbfBlockIndex index = new PbfBlockIndex();
+				int entryCount = input.readInt();
+				for (int i = 0; i < entryCount; i++) {
+					index.add(new PbfBlockIndexEntry(input.readLong(), input.readInt(), input.readUTF(),
+							input.readInt(), input.readLong(), input.readLong(), input.readDouble(),
+							input.readDouble(), input.readDouble(), input.readDouble()));
+				}
+
+				return index;
+
+			} finally {
+				input.close();
+			}
+
+		} catch (IOException e) {
+			LOG.log(Level.WARNING, "Unable to read PBF block index " + indexFile + ", it will be ignored.", e);
+			return null;
+		}
+	}
+
+
+	/**
+	 * Saves the index alongside the PBF file it describes. Failure to write the
+	 * index is logged but otherwise ignored because the index is only an
+	 * optimisation.
+	 *
+	 * @param pbfFile
+	 *            The PBF file.
+	 */
+	public void save(File pbfFile) {
+		File indexFile = getIndexFile(pbfFile);
+
+		try {
+			DataOutputStream output =
+					new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)));
+
+			try {
+				output.writeInt(FILE_MAGIC);
+				output.writeInt(FILE_VERSION);
+				output.writeLong(pbfFile.length());
+				output.writeLong(pbfFile.lastModified());
+				output.writeInt(entries.size());
+				for (PbfBlockIndexEntry entry : entries) {
+					output.writeLong(entry.getFileOffset());
+					output.writeInt(entry.getFileLength());
+					output.writeUTF(entry.getBlobType());
+					output.writeInt(entry.getEntityTypes());
+					output.writeLong(entry.getMinimumId());
+					output.writeLong(entry.getMaximumId());
+					output.writeDouble(entry.getMinimumLatitude());
+					output.writeDouble(entry.getMaximumLatitude());
+					output.writeDouble(entry.getMinimumLongitude());
+					output.writeDouble(entry.getMaximumLongitude());
+				}
+
+			} finally {
+				output.close();
+			}
+
+		} catch (IOException e) {
+			LOG.log(Level.WARNING, "Unable to write PBF block index " + indexFile + ".", e);
+			if (indexFile.exists() && !indexFile.delete()) {
+				LOG.warning("Unable to delete incomplete PBF block index " + indexFile + ".");
+			}
+		}
+	}
+}
@@ -0,0 +1,236 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.pbf2.v0_6.impl;
+
+import java.util.List;
+
+import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
+import org.openstreetmap.osmosis.core.domain.v0_6.Entity;
+import org.openstreetmap.osmosis.core.domain.v0_6.EntityType;
+import org.openstreetmap.osmosis.core.domain.v0_6.Node;
+
+
+/**
+ * Describes the location and contents of a single blob within a PBF file.
+ */
+public class PbfBlockIndexEntry {
+	private long fileOffset;
+	private int fileLength;
+	private String blobType;
+	private int entityTypes;
+	private long minimumId;
+	private long maximumId;
+	private double minimumLatitude;
+	private double maximumLatitude;
+	private double minimumLongitude;
+	private double maximumLongitude;
+
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param fileOffset
+	 *            The offset of the blob within the PBF file.
+	 * @param fileLength
+	 *            The number of bytes occupied by the blob in the PBF file.
+	 * @param blobType
+	 *            The type of the blob.
+	 * @param entityTypes
+	 *            A bit mask of the entity types contained in the blob, built
+	 *            using {@link #getEntityTypeMask(EntityType)}.
+	 * @param minimumId
+	 *            The lowest entity id contained in the blob.
+	 * @param maximumId
+	 *            The highest entity id contained in the blob.
+	 * @param minimumLatitude
+	 *            The lowest node latitude contained in the blob.
+	 * @param maximumLatitude
+	 *            The highest node latitude contained in the blob.
+	 * @param minimumLongitude
+	 *            The lowest node longitude contained in the blob.
+	 * @param maximumLongitude
+	 *            The highest node longitude contained in the blob.
+	 */
+	public PbfBlockIndexEntry(long fileOffset, int fileLength, String blobType, int entityTypes, long minimumId,
+			long maximumId, double minimumLatitude, double maximumLatitude, double minimumLongitude,
+			double maximumLongitude) {
+		this.fileOffset = fileOffset;
+		this.fileLength = fileLength;
+		this.blobType = blobType;
+		this.entityTypes = entityTypes;
+		this.minimumId = minimumId;
+		this.maximumId = maximumId;
+		this.minimumLatitude = minimumLatitude;
+		this.maximumLatitude = maximumLatitude;
+		this.minimumLongitude = minimumLongitude;
+		this.maximumLongitude = maximumLongitude;
+	}
+
+
+	/**
+	 * Builds the index entry for a blob from the entities decoded from it.
+	 *
+	 * @param rawBlob
+	 *            The blob that was decoded.
+	 * @param entities
+	 *            The entities decoded from the blob.
+	 * @return The index entry.
+	 */
+	public static PbfBlockIndexEntry create(PbfRawBlob rawBlob, List<EntityContainer> entities) {
+		int entityTypes = 0;
+		long minimumId = Long.MAX_VALUE;
+		long maximumId = Long.MIN_VALUE;
+		double minimumLatitude = Double.MAX_VALUE;
+		double maximumLatitude = -Double.MAX_VALUE;
+		double minimumLongitude = Double.MAX_VALUE;
+		double maximumLongitude = -Double.MAX_VALUE;
+
+		for (EntityContainer entityContainer : entities) {
+			Entity entity = entityContainer.getEntity();
+			EntityType type = entity.getType();
+
+			if (type == EntityType.Bound) {
+				continue;
+			}
+
+			entityTypes |= getEntityTypeMask(type);
+			minimumId = Math.min(minimumId, entity.getId());
+			maximumId = Math.max(maximumId, entity.getId());
+
+			if (type == EntityType.Node) {
+				Node node = (Node) entity;
+				minimumLatitude = Math.min(minimumLatitude, node.getLatitude());
+				maximumLatitude = Math.max(maximumLatitude, node.getLatitude());
+				minimumLongitude = Math.min(minimumLongitude, node.getLongitude());
+				maximumLongitude = Math.max(maximumLongitude, node.getLongitude());
+			}
+		}
+
+		return new PbfBlockIndexEntry(rawBlob.getFileOffset(), rawBlob.getFileLength(), rawBlob.getType(),
+				entityTypes, minimumId, maximumId, minimumLatitude, maximumLatitude, minimumLongitude,
+				maximumLongitude);
+	}
+
+
+	/**
+	 * Gets the bit used to represent an entity type in entity type masks.
+	 *
+	 * @param type
+	 *            The entity type.
+	 * @return The bit mask for the type.
+	 */
+	public static int getEntityTypeMask(EntityType type) {
+		return 1 << type.ordinal();
+	}
+
+
+	/**
+	 * Gets the offset of the blob within the PBF file.
+	 *
+	 * @return The file offset.
+	 */
+	public long getFileOffset() {
+		return fileOffset;
+	}
+
+
+	/**
+	 * Gets the number of bytes occupied by the blob in the PBF file.
+	 *
+	 * @return The length in bytes.
+	 */
+	public int getFileLength() {
+		return fileLength;
+	}
+
+
+	/**
+	 * Gets the type of the blob.
+	 *
+	 * @return The blob type.
+	 */
+	public String getBlobType() {
+		return blobType;
+	}
+
+
+	/**
+	 * Gets the bit mask of entity types contained in the blob.
+	 *
+	 * @return The entity type mask.
+	 */
+	public int getEntityTypes() {
+		return entityTypes;
+	}
+
+
+	/**
+	 * Indicates if the blob contains entities of the specified type.
+	 *
+	 * @param type
+	 *            The entity type.
+	 * @return True if the blob contains entities of the type.
+	 */
+	public boolean containsType(EntityType type) {
+		return (entityTypes & getEntityTypeMask(type)) != 0;
+	}
+
+
+	/**
+	 * Gets the lowest entity id contained in the blob.
+	 *
+	 * @return The minimum id.
+	 */
+	public long getMinimumId() {
+		return minimumId;
+	}
+
+
+	/**
+	 * Gets the highest entity id contained in the blob.
+	 *
+	 * @return The maximum id.
+	 */
+	public long getMaximumId() {
+		return maximumId;
+	}
+
+
+	/**
+	 * Gets the lowest node latitude contained in the blob.
+	 *
+	 * @return The minimum latitude.
+	 */
+	public double getMinimumLatitude() {
+		return minimumLatitude;
+	}
+
+
+	/**
+	 * Gets the highest node latitude contained in the blob.
+	 *
+	 * @return The maximum latitude.
+	 */
+	public double getMaximumLatitude() {
+		return maximumLatitude;
+	}
+
+
+	/**
+	 * Gets the lowest node longitude contained in the blob.
+	 *
+	 * @return The minimum longitude.
+	 */
+	public double getMinimumLongitude() {
+		return minimumLongitude;
+	}
+
+
+	/**
+	 * Gets the highest node longitude contained in the blob.
+	 *
+	 * @return The maximum longitude.
+	 */
+	public double getMaximumLongitude() {
+		return maximumLongitude;
+	}
+}
@@ -1,33 +1,49 @@
 // This software is released into the Public Domain.  See copying.txt for details.
 package org.openstreetmap.osmosis.pbf2.v0_6.impl;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Queue;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
 import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
+import org.openstreetmap.osmosis.core.task.v0_6.BatchSink;
 import org.openstreetmap.osmosis.core.task.v0_6.Sink;
 
 
 /**
  * Decodes all blocks from a PBF stream using worker threads, and passes the
  * results to the downstream sink.
+ * <p>
+ * Blobs in progress are held in a fixed size ring of result slots in file
+ * order. Workers may run ahead of the sink by up to the size of the ring, and
+ * each slot is completed independently so no lock is shared between workers.
+ * The thread running this class only ever waits for the oldest slot. Where the
+ * sink implements {@link BatchSink}, all entities decoded from a blob are
+ * passed to it in a single call.
  * 
  * @author Brett Henderson
  */
 public class PbfDecoder implements Runnable {
-	private PbfStreamSplitter streamSplitter;
+
+	private static final Logger LOG = Logger.getLogger(PbfDecoder.class.getName());
+
+	private Iterator<PbfRawBlob> streamSplitter;
 	private ExecutorService executorService;
-	private int maxPendingBlobs;
 	private Sink sink;
-	private Lock lock;
-	private Condition dataWaitCondition;
-	private Queue<PbfBlobResult> blobResults;
+	private BatchSink batchSink;
+	private PbfBlockFilter filter;
+	private PbfBlockIndex blockIndex;
+	private PbfBlobResult[] pendingResults;
+	private int pendingHead;
+	private int pendingCount;
+	private long blobCount;
+	private long headOfLineWaitCount;
+	private long headOfLineWaitNanos;
 
 
 	/**
@@ -46,136 +62,199 @@ public class PbfDecoder implements Runnable {
 	 */
 	public PbfDecoder(PbfStreamSplitter streamSplitter, ExecutorService executorService, int maxPendingBlobs,
 			Sink sink) {
+		this(streamSplitter, executorService, maxPendingBlobs, sink, new PbfBlockFilter(), null);
+	}
+
+
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param streamSplitter
+	 *            The source of blobs to be decoded.
+	 * @param executorService
+	 *            The executor service managing the thread pool.
+	 * @param maxPendingBlobs
+	 *            The maximum number of blobs to have in progress at any point
+	 *            in time. This is the distance workers may run ahead of the
+	 *            blob currently being sent to the sink.
+	 * @param sink
+	 *            The sink to send all decoded entities to.
+	 * @param filter
+	 *            The filter selecting the entities to send to the sink.
+	 * @param blockIndex
+	 *            If not null, an index entry describing each decoded blob is
+	 *            added to this index.
+	 */
+	public PbfDecoder(Iterator<PbfRawBlob> streamSplitter, ExecutorService executorService, int maxPendingBlobs,
+			Sink sink, PbfBlockFilter filter, PbfBlockIndex blockIndex) {
+		if (maxPendingBlobs <= 0) {
+			throw new OsmosisRuntimeException("The maximum number of pending blobs must be greater than 0.");
+		}
+
 		this.streamSplitter = streamSplitter;
 		this.executorService = executorService;
-		this.maxPendingBlobs = maxPendingBlobs;
 		this.sink = sink;
+		this.filter = filter;
+		this.blockIndex = blockIndex;
 
-		// Create the thread synchronisation primitives.
-		lock = new ReentrantLock();
-		dataWaitCondition = lock.newCondition();
+		if (sink instanceof BatchSink) {
+			batchSink = (BatchSink) sink;
+		}
 
-		// Create the queue of blobs being decoded.
-		blobResults = new LinkedList<PbfBlobResult>();
+		// Create the ring of blobs being decoded.
+		pendingResults = new PbfBlobResult[maxPendingBlobs];
+		pendingHead = 0;
+		pendingCount = 0;
 	}
 
 
-	/**
-	 * Any thread can call this method when they wish to wait until an update
-	 * has been performed by another thread.
-	 */
-	private void waitForUpdate() {
-		try {
-			dataWaitCondition.await();
+	private void sendToSink(List<EntityContainer> entities) {
+		if (batchSink != null) {
+			if (filter.isRestrictive()) {
+				List<EntityContainer> acceptedEntities = new ArrayList<EntityContainer>(entities.size());
+				for (EntityContainer entity : entities) {
+					if (filter.acceptsEntity(entity)) {
+						acceptedEntities.add(entity);
+					}
+				}
+				batchSink.processBatch(acceptedEntities);
+			} else {
+				batchSink.processBatch(entities);
+			}
 
-		} catch (InterruptedException e) {
-			throw new OsmosisRuntimeException("Thread was interrupted.", e);
+		} else {
+			for (EntityContainer entity : entities) {
+				if (filter.acceptsEntity(entity)) {
+					sink.process(entity);
+				}
+			}
 		}
 	}
 
 
-	/**
-	 * Any thread can call this method when they wish to signal another thread
-	 * that an update has occurred.
-	 */
-	private void signalUpdate() {
-		dataWaitCondition.signal();
+	private void sendNextResultToSink() {
+		// Remove the oldest result from the ring.
+		PbfBlobResult blobResult = pendingResults[pendingHead];
+		pendingResults[pendingHead] = null;
+		pendingHead = (pendingHead + 1) % pendingResults.length;
+		pendingCount--;
+
+		// Wait for the worker to finish decoding, measuring the time we spend
+		// blocked because this blob is holding up the queue.
+		if (!blobResult.isComplete()) {
+			long waitStart = System.nanoTime();
+			blobResult.waitForCompletion();
+			headOfLineWaitNanos += System.nanoTime() - waitStart;
+			headOfLineWaitCount++;
+		}
+
+		if (!blobResult.isSuccess()) {
+			throw new OsmosisRuntimeException("A PBF decoding worker thread failed, aborting.");
+		}
+
+		if (blockIndex != null) {
+			blockIndex.add(blobResult.getIndexEntry());
+		}
+
+		sendToSink(blobResult.getEntities());
 	}
 
 
-	private void sendResultsToSink(int targetQueueSize) {
-		while (blobResults.size() > targetQueueSize) {
-			// Get the next result from the queue and wait for it to complete.
-			PbfBlobResult blobResult = blobResults.remove();
-			while (!blobResult.isComplete()) {
-				// The thread hasn't finished processing yet so wait for an
-				// update from another thread before checking again.
-				waitForUpdate();
-			}
+	private void submitBlob(final PbfRawBlob rawBlob) {
+		// Create the result object to capture the results of the decoded
+		// blob and add it to the end of the ring.
+		final PbfBlobResult blobResult = new PbfBlobResult();
+		pendingResults[(pendingHead + pendingCount) % pendingResults.length] = blobResult;
+		pendingCount++;
 
-			if (!blobResult.isSuccess()) {
-				throw new OsmosisRuntimeException("A PBF decoding worker thread failed, aborting.");
+		// Create the listener object that will update the blob results
+		// based on an event fired by the blob decoder.
+		PbfBlobDecoderListener decoderListener = new PbfBlobDecoderListener() {
+
+			@Override
+			public void error() {
+				blobResult.storeFailureResult();
 			}
 
-			// Send the processed entities to the sink. We can release the lock
-			// for the duration of processing to allow worker threads to post
-			// their results.
-			lock.unlock();
-			try {
-				for (EntityContainer entity : blobResult.getEntities()) {
-					sink.process(entity);
+
+			@Override
+			public void complete(List<EntityContainer> decodedEntities) {
+				// Summarise the blob contents on the worker thread.
+				PbfBlockIndexEntry indexEntry = null;
+				if (blockIndex != null) {
+					indexEntry = PbfBlockIndexEntry.create(rawBlob, decodedEntities);
 				}
-			} finally {
-				lock.lock();
+
+				blobResult.storeSuccessResult(decodedEntities, indexEntry);
 			}
-		}
+		};
+
+		// Create the blob decoder itself and execute it on a worker thread.
+		PbfBlobDecoder blobDecoder = new PbfBlobDecoder(rawBlob.getType(), rawBlob.getData(), decoderListener);
+		executorService.execute(blobDecoder);
+		blobCount++;
 	}
 
 
 	private void processBlobs() {
 		// Process until the PBF stream is exhausted.
 		while (streamSplitter.hasNext()) {
-			// Obtain the next raw blob from the PBF stream.
-			PbfRawBlob rawBlob = streamSplitter.next();
-
-			// Create the result object to capture the results of the decoded
-			// blob and add it to the blob results queue.
-			final PbfBlobResult blobResult = new PbfBlobResult();
-			blobResults.add(blobResult);
-
-			// Create the listener object that will update the blob results
-			// based on an event fired by the blob decoder.
-			PbfBlobDecoderListener decoderListener = new PbfBlobDecoderListener() {
-
-				@Override
-				public void error() {
-					lock.lock();
-					try {
-						blobResult.storeFailureResult();
-						signalUpdate();
-
-					} finally {
-						lock.unlock();
-					}
-				}
+			// If the ring is full we must send the oldest result to the sink
+			// before another blob can be started. This blocks until the
+			// oldest blob has been decoded.
+			if (pendingCount == pendingResults.length) {
+				sendNextResultToSink();
+			}
 
+			submitBlob(streamSplitter.next());
+		}
 
-				@Override
-				public void complete(List<EntityContainer> decodedEntities) {
-					lock.lock();
-					try {
-						blobResult.storeSuccessResult(decodedEntities);
-						signalUpdate();
+		// There are no more entities available in the PBF stream, so send all remaining data to the sink.
+		while (pendingCount > 0) {
+			sendNextResultToSink();
+		}
+	}
 
-					} finally {
-						lock.unlock();
-					}
-				}
-			};
 
-			// Create the blob decoder itself and execute it on a worker thread.
-			PbfBlobDecoder blobDecoder = new PbfBlobDecoder(rawBlob.getType(), rawBlob.getData(), decoderListener);
-			executorService.execute(blobDecoder);
+	/**
+	 * Gets the number of blobs that have been submitted for decoding.
+	 * 
+	 * @return The blob count.
+	 */
+	public long getBlobCount() {
+		return blobCount;
+	}
 
-			// If the number of pending blobs has reached capacity we must begin
-			// sending results to the sink. This method will block until blob
-			// decoding is complete.
-			sendResultsToSink(maxPendingBlobs - 1);
-		}
 
-		// There are no more entities available in the PBF stream, so send all remaining data to the sink.
-		sendResultsToSink(0);
+	/**
+	 * Gets the number of times the sink thread had to wait for the oldest blob
+	 * to finish decoding.
+	 * 
+	 * @return The number of waits.
+	 */
+	public long getHeadOfLineWaitCount() {
+		return headOfLineWaitCount;
+	}
+
+
+	/**
+	 * Gets the total time the sink thread spent waiting for the oldest blob to
+	 * finish decoding.
+	 * 
+	 * @return The wait time in milliseconds.
+	 */
+	public long getHeadOfLineWaitMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(headOfLineWaitNanos);
 	}
 
 
 	@Override
 	public void run() {
-		lock.lock();
-		try {
-			processBlobs();
+		processBlobs();
 
-		} finally {
-			lock.unlock();
+		if (LOG.isLoggable(Level.FINE)) {
+			LOG.fine("Decoded " + blobCount + " PBF blobs, waited " + getHeadOfLineWaitMillis() + "ms for "
+					+ headOfLineWaitCount + " blobs at the head of the queue.");
 		}
 	}
 }
@@ -3,6 +3,7 @@ package org.openstreetmap.osmosis.pbf2.v0_6.impl;
 
 import java.util.Date;
 
+import org.openstreetmap.osmosis.core.util.StringPool;
 import org.openstreetmap.osmosis.osmbinary.Osmformat.PrimitiveBlock;
 import org.openstreetmap.osmosis.osmbinary.Osmformat.StringTable;
 
@@ -37,13 +38,40 @@ public class PbfFieldDecoder {
 		this.dateGranularity = primitiveBlock.getDateGranularity();
 
 		StringTable stringTable = primitiveBlock.getStringtable();
+		StringPool stringPool = StringPool.getShared();
+
 		strings = new String[stringTable.getSCount()];
 		for (int i = 0; i < strings.length; i++) {
-			strings[i] = stringTable.getS(i).toStringUtf8();
+			strings[i] = stringPool.intern(stringTable.getS(i).toStringUtf8());
 		}
 	}
 
 
+	/**
+	 * Creates a new instance from values read directly from an encoded
+	 * primitive block.
+	 * 
+	 * @param strings
+	 *            The string table of the block.
+	 * @param coordGranularity
+	 *            The granularity of coordinates in nanodegrees.
+	 * @param coordLatitudeOffset
+	 *            The offset applied to all latitudes in nanodegrees.
+	 * @param coordLongitudeOffset
+	 *            The offset applied to all longitudes in nanodegrees.
+	 * @param dateGranularity
+	 *            The granularity of timestamps in milliseconds.
+	 */
+	public PbfFieldDecoder(String[] strings, int coordGranularity, long coordLatitudeOffset,
+			long coordLongitudeOffset, int dateGranularity) {
+		this.strings = strings;
+		this.coordGranularity = coordGranularity;
+		this.coordLatitudeOffset = coordLatitudeOffset;
+		this.coordLongitudeOffset = coordLongitudeOffset;
+		this.dateGranularity = dateGranularity;
+	}
+
+
 	/**
 	 * Decodes a raw latitude value into degrees.
 	 * 
@@ -80,6 +108,18 @@ public class PbfFieldDecoder {
 	}
 
 
+	/**
+	 * Decodes a raw timestamp value into milliseconds since the epoch.
+	 * 
+	 * @param rawTimestamp
+	 *            The PBF encoded timestamp.
+	 * @return The timestamp in milliseconds since the epoch.
+	 */
+	public long decodeTimestampMillis(long rawTimestamp) {
+		return dateGranularity * rawTimestamp;
+	}
+
+
 	/**
 	 * Decodes a raw string into a String.
 	 * 
@@ -0,0 +1,136 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.pbf2.v0_6.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.lifecycle.Releasable;
+import org.openstreetmap.osmosis.osmbinary.Fileformat.BlobHeader;
+
+
+/**
+ * Extracts the raw data of selected blobs from a PBF file using a block index
+ * to seek directly to each blob. Blobs rejected by the filter are never read.
+ */
+public class PbfIndexedStreamSplitter implements Iterator<PbfRawBlob>, Releasable {
+
+	private static Logger log = Logger.getLogger(PbfIndexedStreamSplitter.class.getName());
+
+	private RandomAccessFile file;
+	private PbfBlockFilter filter;
+	private Iterator<PbfBlockIndexEntry> entryIterator;
+	private PbfRawBlob nextBlob;
+	private int skippedBlockCount;
+	private long skippedBytes;
+
+
+	/**
+	 * Creates a new instance.
+	 *
+	 * @param pbfFile
+	 *            The PBF file to read.
+	 * @param index
+	 *            The block index of the PBF file.
+	 * @param filter
+	 *            The filter selecting the blobs to be read.
+	 */
+	public PbfIndexedStreamSplitter(File pbfFile, PbfBlockIndex index, PbfBlockFilter filter) {
+		this.filter = filter;
+
+		try {
+			file = new RandomAccessFile(pbfFile, "r");
+		} catch (IOException e) {
+			throw new OsmosisRuntimeException("Unable to open PBF file " + pbfFile + ".", e);
+		}
+
+		List<PbfBlockIndexEntry> entries = index.getEntries();
+		entryIterator = entries.iterator();
+	}
+
+
+	private PbfRawBlob readBlob(PbfBlockIndexEntry entry) throws IOException {
+		file.seek(entry.getFileOffset());
+
+		byte[] headerBuffer = new byte[file.readInt()];
+		file.readFully(headerBuffer);
+		BlobHeader blobHeader = BlobHeader.parseFrom(headerBuffer);
+
+		byte[] blobData = new byte[blobHeader.getDatasize()];
+		file.readFully(blobData);
+
+		return new PbfRawBlob(blobHeader.getType(), blobData, entry.getFileOffset(), entry.getFileLength());
+	}
+
+
+	private void getNextBlob() {
+		while (entryIterator.hasNext()) {
+			PbfBlockIndexEntry entry = entryIterator.next();
+
+			if (filter.acceptsBlock(entry)) {
+				try {
+					nextBlob = readBlob(entry);
+				} catch (IOException e) {
+					throw new OsmosisRuntimeException("Unable to read blob at offset " + entry.getFileOffset()
+							+ " from PBF file.", e);
+				}
+				return;
+			}
+
+			skippedBlockCount++;
+			skippedBytes += entry.getFileLength();
+		}
+	}
+
+
+	@Override
+	public boolean hasNext() {
+		if (nextBlob == null) {
+			getNextBlob();
+		}
+
+		return nextBlob != null;
+	}
+
+
+	@Override
+	public PbfRawBlob next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+
+		PbfRawBlob result = nextBlob;
+		nextBlob = null;
+
+		return result;
+	}
+
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+
+	@Override
+	public void release() {
+		if (file != null) {
+			if (log.isLoggable(Level.FINE)) {
+				log.fine("Skipped " + skippedBlockCount + " PBF blobs containing " + skippedBytes + " bytes.");
+			}
+
+			try {
+				file.close();
+			} catch (IOException e) {
+				log.log(Level.SEVERE, "Unable to close PBF file.", e);
+			}
+		}
+		file = null;
+	}
+}
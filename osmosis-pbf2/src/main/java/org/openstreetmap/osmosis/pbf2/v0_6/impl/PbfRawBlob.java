@@ -10,6 +10,8 @@ package org.openstreetmap.osmosis.pbf2.v0_6.impl;
 public class PbfRawBlob {
 	private String type;
 	private byte[] data;
+	private long fileOffset;
+	private int fileLength;
 
 
 	/**
@@ -22,8 +24,30 @@ public class PbfRawBlob {
 	 *            The raw contents of the blob in binary undecoded form.
 	 */
 	public PbfRawBlob(String type, byte[] data) {
+		this(type, data, -1, 0);
+	}
+
+
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param type
+	 *            The type of data represented by this blob. This corresponds to
+	 *            the type field in the blob header.
+	 * @param data
+	 *            The raw contents of the blob in binary undecoded form.
+	 * @param fileOffset
+	 *            The offset of the start of the blob header length within the
+	 *            PBF file, or -1 if not known.
+	 * @param fileLength
+	 *            The number of bytes occupied by the blob in the PBF file
+	 *            including the header and header length.
+	 */
+	public PbfRawBlob(String type, byte[] data, long fileOffset, int fileLength) {
 		this.type = type;
 		this.data = data;
+		this.fileOffset = fileOffset;
+		this.fileLength = fileLength;
 	}
 
 
@@ -46,4 +70,25 @@ public class PbfRawBlob {
 	public byte[] getData() {
 		return data;
 	}
+
+
+	/**
+	 * Gets the offset of the start of the blob within the PBF file.
+	 * 
+	 * @return The file offset, or -1 if not known.
+	 */
+	public long getFileOffset() {
+		return fileOffset;
+	}
+
+
+	/**
+	 * Gets the number of bytes occupied by the blob in the PBF file including
+	 * the header and header length.
+	 * 
+	 * @return The length in bytes.
+	 */
+	public int getFileLength() {
+		return fileLength;
+	}
 }
@@ -0,0 +1,190 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.pbf2.v0_6.impl;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+
+import com.google.protobuf.CodedInputStream;
+
+
+/**
+ * Iterates over the values of a single repeated varint field within an encoded
+ * protobuf message without decoding the message into objects. Both packed and
+ * unpacked encodings are supported. Instances may be re-used by calling the
+ * reset method which allows several fields of the same message to be read in
+ * lock step without allocating any memory.
+ */
+public class PbfRepeatedField {
+	private static final int TAG_TYPE_BITS = 3;
+	private static final int TAG_TYPE_MASK = 7;
+	private static final int WIRETYPE_VARINT = 0;
+	private static final int WIRETYPE_FIXED64 = 1;
+	private static final int WIRETYPE_LENGTH_DELIMITED = 2;
+	private static final int WIRETYPE_FIXED32 = 5;
+	private static final int FIXED64_SIZE = 8;
+	private static final int FIXED32_SIZE = 4;
+	private static final int MAX_VARINT_SHIFT = 64;
+
+	private byte[] buffer;
+	private int position;
+	private int messageEnd;
+	private int packedEnd;
+	private int fieldNumber;
+	private boolean singleValuePending;
+
+
+	/**
+	 * Prepares this instance to iterate over a field in a new message.
+	 * 
+	 * @param newBuffer
+	 *            The buffer containing the encoded message.
+	 * @param offset
+	 *            The offset of the first byte of the message content within
+	 *            the buffer.
+	 * @param length
+	 *            The length of the message content.
+	 * @param newFieldNumber
+	 *            The number of the field to iterate over.
+	 */
+	public void reset(byte[] newBuffer, int offset, int length, int newFieldNumber) {
+		this.buffer = newBuffer;
+		this.fieldNumber = newFieldNumber;
+
+		position = offset;
+		messageEnd = offset + length;
+		packedEnd = offset;
+		singleValuePending = false;
+	}
+
+
+	/**
+	 * Indicates if more values are available.
+	 * 
+	 * @return True if another value is available.
+	 */
+	public boolean hasNext() {
+		if (singleValuePending || position < packedEnd) {
+			return true;
+		}
+
+		// Search the remainder of the message for the next occurrence of the
+		// field.
+		while (position < messageEnd) {
+			int tag = (int) readVarint();
+			int wireType = tag & TAG_TYPE_MASK;
+
+			if ((tag >>> TAG_TYPE_BITS) == fieldNumber) {
+				if (wireType == WIRETYPE_LENGTH_DELIMITED) {
+					int length = (int) readVarint();
+					packedEnd = position + length;
+					if (packedEnd > messageEnd) {
+						throw new OsmosisRuntimeException("PBF packed field " + fieldNumber
+								+ " extends beyond the end of the message.");
+					}
+					if (length > 0) {
+						return true;
+					}
+				} else if (wireType == WIRETYPE_VARINT) {
+					singleValuePending = true;
+					return true;
+				} else {
+					throw new OsmosisRuntimeException("PBF field " + fieldNumber + " has unsupported wire type "
+							+ wireType + ".");
+				}
+			} else {
+				skipValue(wireType);
+			}
+		}
+
+		return false;
+	}
+
+
+	/**
+	 * Returns the next raw varint value.
+	 * 
+	 * @return The raw value.
+	 */
+	public long next() {
+		if (!hasNext()) {
+			throw new OsmosisRuntimeException("PBF field " + fieldNumber + " contains fewer values than expected.");
+		}
+
+		singleValuePending = false;
+
+		return readVarint();
+	}
+
+
+	/**
+	 * Returns the next value of an int32 or uint32 field.
+	 * 
+	 * @return The value.
+	 */
+	public int nextInt() {
+		return (int) next();
+	}
+
+
+	/**
+	 * Returns the next value of a sint32 field.
+	 * 
+	 * @return The value.
+	 */
+	public int nextSignedInt() {
+		return CodedInputStream.decodeZigZag32((int) next());
+	}
+
+
+	/**
+	 * Returns the next value of a sint64 field.
+	 * 
+	 * @return The value.
+	 */
+	public long nextSignedLong() {
+		return CodedInputStream.decodeZigZag64(next());
+	}
+
+
+	private long readVarint() {
+		long result = 0;
+
+		for (int shift = 0; shift < MAX_VARINT_SHIFT; shift += 7) {
+			if (position >= messageEnd) {
+				throw new OsmosisRuntimeException("PBF message ends part way through a varint.");
+			}
+			byte currentByte = buffer[position++];
+			result |= (long) (currentByte & 0x7F) << shift;
+			if ((currentByte & 0x80) == 0) {
+				return result;
+			}
+		}
+
+		throw new OsmosisRuntimeException("PBF message contains a malformed varint.");
+	}
+
+
+	private void skipValue(int wireType) {
+		switch (wireType) {
+		case WIRETYPE_VARINT:
+			readVarint();
+			break;
+		case WIRETYPE_FIXED64:
+			position += FIXED64_SIZE;
+			break;
+		case WIRETYPE_LENGTH_DELIMITED:
+			// The length must be read before the position is updated.
+			int length = (int) readVarint();
+			position += length;
+			break;
+		case WIRETYPE_FIXED32:
+			position += FIXED32_SIZE;
+			break;
+		default:
+			throw new OsmosisRuntimeException("PBF message contains unsupported wire type " + wireType + ".");
+		}
+
+		if (position > messageEnd) {
+			throw new OsmosisRuntimeException("PBF field extends beyond the end of the message.");
+		}
+	}
+}
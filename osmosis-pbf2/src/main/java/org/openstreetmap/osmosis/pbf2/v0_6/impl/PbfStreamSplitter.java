@@ -24,8 +24,14 @@ public class PbfStreamSplitter implements Iterator<PbfRawBlob>, Releasable {
 
 	private static Logger log = Logger.getLogger(PbfStreamSplitter.class.getName());
 
+	/**
+	 * The number of bytes used to store the length of each blob header.
+	 */
+	static final int HEADER_LENGTH_SIZE = 4;
+
 	private DataInputStream dis;
 	private int dataBlockCount;
+	private long streamPosition;
 	private boolean eof;
 	private PbfRawBlob nextBlob;
 
@@ -39,6 +45,7 @@ public class PbfStreamSplitter implements Iterator<PbfRawBlob>, Releasable {
 	public PbfStreamSplitter(DataInputStream pbfStream) {
 		dis = pbfStream;
 		dataBlockCount = 0;
+		streamPosition = 0;
 		eof = false;
 	}
 
@@ -85,7 +92,11 @@ public class PbfStreamSplitter implements Iterator<PbfRawBlob>, Releasable {
 			}
 			byte[] blobData = readRawBlob(blobHeader);
 
-			nextBlob = new PbfRawBlob(blobHeader.getType(), blobData);
+			// Record where the blob is located in the stream so that it can be
+			// found again without reading the blobs before it.
+			int blobLength = HEADER_LENGTH_SIZE + headerLength + blobData.length;
+			nextBlob = new PbfRawBlob(blobHeader.getType(), blobData, streamPosition, blobLength);
+			streamPosition += blobLength;
 
 		} catch (IOException e) {
 			throw new OsmosisRuntimeException("Unable to get next blob from PBF stream.", e);
@@ -49,4 +49,41 @@ public class OsmosisReaderTest extends AbstractDataTest {
         // Validate that the output file matches the input file.
         dataUtils.compareFiles(inputXmlFile, outputXmlFile);
 	}
+
+
+	/**
+	 * Tests reading PBF files containing non-dense nodes.
+	 * 
+	 * @throws IOException
+	 *             if any file operations fail.
+	 */
+	@Test
+	public void testWriteAndReadNonDense() throws IOException {
+		// Generate data files.
+		File inputXmlFile = dataUtils.createDataFile("v0_6/data-snapshot.osm");
+		File pbfFile = dataUtils.newFile();
+		File outputXmlFile = dataUtils.newFile();
+
+		// Read the XML and write to PBF without using dense nodes.
+		Osmosis.run(new String[] {
+				"-q",
+				"--read-xml-0.6",
+				inputXmlFile.getPath(),
+				"--write-pbf-0.6",
+				"file=" + pbfFile.getPath(),
+				"usedense=false"
+		});
+
+		// Read the PBF using the PBF2 reader and write to XML.
+		Osmosis.run(new String[] {
+				"-q",
+				"--read-pbf-fast-0.6",
+				pbfFile.getPath(),
+				"--write-xml-0.6",
+				outputXmlFile.getPath()
+		});
+
+		// Validate that the output file matches the input file.
+		dataUtils.compareFiles(inputXmlFile, outputXmlFile);
+	}
 }
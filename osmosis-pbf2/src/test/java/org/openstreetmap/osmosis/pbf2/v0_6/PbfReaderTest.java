@@ -0,0 +1,196 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.pbf2.v0_6;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openstreetmap.osmosis.core.Osmosis;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
+import org.openstreetmap.osmosis.core.domain.v0_6.EntityType;
+import org.openstreetmap.osmosis.core.task.v0_6.BatchSink;
+import org.openstreetmap.osmosis.pbf2.v0_6.impl.PbfBlockFilter;
+import org.openstreetmap.osmosis.pbf2.v0_6.impl.PbfBlockIndex;
+import org.openstreetmap.osmosis.testutil.AbstractDataTest;
+import org.openstreetmap.osmosis.testutil.v0_6.SinkEntityInspector;
+
+
+/**
+ * Tests the block index and filtering support of the PbfReader class.
+ */
+public class PbfReaderTest extends AbstractDataTest {
+
+	private File createPbfFile() throws IOException {
+		File inputXmlFile = dataUtils.createDataFile("v0_6/data-snapshot.osm");
+		File pbfFile = dataUtils.newFile();
+
+		// Use a small batch limit to spread the data over several blobs.
+		Osmosis.run(new String[] {
+				"-q",
+				"--read-xml-0.6",
+				inputXmlFile.getPath(),
+				"--write-pbf-0.6",
+				"file=" + pbfFile.getPath(),
+				"batchlimit=2"
+		});
+
+		return pbfFile;
+	}
+
+
+	private Map<EntityType, Integer> read(File pbfFile, PbfBlockFilter filter) {
+		SinkEntityInspector inspector = new SinkEntityInspector();
+		PbfReader reader = new PbfReader(pbfFile, 1, filter, true);
+		reader.setSink(inspector);
+		reader.run();
+
+		Map<EntityType, Integer> counts = new EnumMap<EntityType, Integer>(EntityType.class);
+		for (EntityType type : EntityType.values()) {
+			counts.put(type, 0);
+		}
+		for (EntityContainer entityContainer : inspector.getProcessedEntities()) {
+			EntityType type = entityContainer.getEntity().getType();
+			counts.put(type, counts.get(type) + 1);
+		}
+
+		return counts;
+	}
+
+
+	/**
+	 * Tests that the block index is created by a full read, and that entities
+	 * can then be filtered by type.
+	 * 
+	 * @throws IOException
+	 *             if any file operations fail.
+	 */
+	@Test
+	public void testTypeFilter() throws IOException {
+		File pbfFile = createPbfFile();
+		File indexFile = PbfBlockIndex.getIndexFile(pbfFile);
+
+		Map<EntityType, Integer> counts = read(pbfFile, new PbfBlockFilter());
+		Assert.assertTrue("The block index was not created.", indexFile.exists());
+		Assert.assertEquals(6, counts.get(EntityType.Node).intValue());
+		Assert.assertEquals(3, counts.get(EntityType.Way).intValue());
+		Assert.assertEquals(1, counts.get(EntityType.Relation).intValue());
+
+		counts = read(pbfFile, new PbfBlockFilter(EnumSet.of(EntityType.Way)));
+		Assert.assertEquals(1, counts.get(EntityType.Bound).intValue());
+		Assert.assertEquals(0, counts.get(EntityType.Node).intValue());
+		Assert.assertEquals(3, counts.get(EntityType.Way).intValue());
+		Assert.assertEquals(0, counts.get(EntityType.Relation).intValue());
+
+		indexFile.delete();
+	}
+
+
+	/**
+	 * Tests that node blobs outside a bounding box are skipped.
+	 * 
+	 * @throws IOException
+	 *             if any file operations fail.
+	 */
+	@Test
+	public void testBoundingBoxFilter() throws IOException {
+		File pbfFile = createPbfFile();
+		File indexFile = PbfBlockIndex.getIndexFile(pbfFile);
+
+		// Build the index.
+		read(pbfFile, new PbfBlockFilter());
+
+		// No nodes lie within this box.
+		Map<EntityType, Integer> counts =
+				read(pbfFile, new PbfBlockFilter(EnumSet.of(EntityType.Node), 10, 20, 20, 10));
+		Assert.assertEquals(0, counts.get(EntityType.Node).intValue());
+
+		// Only the nodes in the first blob lie within this box. Ways have no
+		// location so are always returned.
+		counts = read(pbfFile,
+				new PbfBlockFilter(EnumSet.of(EntityType.Node, EntityType.Way), -4.5, 0, 0, -3.5));
+		Assert.assertEquals(2, counts.get(EntityType.Node).intValue());
+		Assert.assertEquals(3, counts.get(EntityType.Way).intValue());
+
+		indexFile.delete();
+	}
+
+
+	/**
+	 * Tests that a bounding box produces the same nodes whether or not a block
+	 * index exists.
+	 * 
+	 * @throws IOException
+	 *             if any file operations fail.
+	 */
+	@Test
+	public void testBoundingBoxWithoutIndex() throws IOException {
+		File pbfFile = createPbfFile();
+		File indexFile = PbfBlockIndex.getIndexFile(pbfFile);
+		PbfBlockFilter filter = new PbfBlockFilter(EnumSet.of(EntityType.Node), -2.5, 0, 0, -1.5);
+
+		// The first read has no index and must check each node.
+		Assert.assertFalse("The block index already exists.", indexFile.exists());
+		Map<EntityType, Integer> counts = read(pbfFile, filter);
+		Assert.assertEquals(1, counts.get(EntityType.Node).intValue());
+
+		// The second read uses the index created by the first.
+		Assert.assertTrue("The block index was not created.", indexFile.exists());
+		counts = read(pbfFile, filter);
+		Assert.assertEquals(1, counts.get(EntityType.Node).intValue());
+
+		indexFile.delete();
+	}
+
+
+	/**
+	 * Tests that entities are passed to a batch sink in file order when several
+	 * workers decode ahead of the sink.
+	 * 
+	 * @throws IOException
+	 *             if any file operations fail.
+	 */
+	@Test
+	public void testBatchSinkOrdering() throws IOException {
+		File pbfFile = createPbfFile();
+
+		SinkEntityInspector expected = new SinkEntityInspector();
+		PbfReader reader = new PbfReader(pbfFile, 1, new PbfBlockFilter(), false);
+		reader.setSink(expected);
+		reader.run();
+
+		BatchSinkEntityInspector actual = new BatchSinkEntityInspector();
+		reader = new PbfReader(pbfFile, 3, 8, new PbfBlockFilter(), false);
+		reader.setSink(actual);
+		reader.run();
+
+		Assert.assertTrue("Entities were not passed in batches.", actual.batchCount > 1);
+		Iterator<EntityContainer> actualEntities = actual.getProcessedEntities().iterator();
+		for (EntityContainer expectedEntity : expected.getProcessedEntities()) {
+			Assert.assertTrue("Entities are missing.", actualEntities.hasNext());
+			EntityContainer actualEntity = actualEntities.next();
+			Assert.assertEquals(expectedEntity.getEntity().getType(), actualEntity.getEntity().getType());
+			Assert.assertEquals(expectedEntity.getEntity().getId(), actualEntity.getEntity().getId());
+		}
+		Assert.assertFalse("Unexpected entities were returned.", actualEntities.hasNext());
+	}
+
+
+	private static class BatchSinkEntityInspector extends SinkEntityInspector implements BatchSink {
+		private int batchCount;
+
+
+		@Override
+		public void processBatch(List<EntityContainer> entityContainers) {
+			batchCount++;
+			for (EntityContainer entityContainer : entityContainers) {
+				process(entityContainer);
+			}
+		}
+	}
+}
@@ -0,0 +1,78 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.pbf2.v0_6.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.protobuf.CodedOutputStream;
+
+
+/**
+ * Tests the {@link PbfRepeatedField} class.
+ */
+public class PbfRepeatedFieldTest {
+
+	private static final int LENGTH_DELIMITED = 2;
+
+
+	private byte[] buildMessage() throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		CodedOutputStream output = CodedOutputStream.newInstance(buffer);
+
+		// Field 1 is a packed sint64 field.
+		ByteArrayOutputStream packedBuffer = new ByteArrayOutputStream();
+		CodedOutputStream packedOutput = CodedOutputStream.newInstance(packedBuffer);
+		packedOutput.writeSInt64NoTag(-5);
+		packedOutput.writeSInt64NoTag(300);
+		packedOutput.flush();
+		output.writeTag(1, LENGTH_DELIMITED);
+		output.writeRawVarint32(packedBuffer.size());
+		output.writeRawBytes(packedBuffer.toByteArray());
+
+		// Unrelated fields of several types must be skipped.
+		output.writeString(2, "ignored");
+		output.writeFixed64(3, 1);
+		output.writeFixed32(4, 1);
+
+		// Field 5 is written unpacked, split either side of a packed value.
+		output.writeInt32(5, 7);
+		output.writeTag(5, LENGTH_DELIMITED);
+		output.writeRawVarint32(1);
+		output.writeRawVarint32(8);
+		output.writeInt32(5, 9);
+
+		output.flush();
+
+		return buffer.toByteArray();
+	}
+
+
+	/**
+	 * Tests reading values from packed and unpacked fields.
+	 * 
+	 * @throws IOException
+	 *             if the test message cannot be built.
+	 */
+	@Test
+	public void testReadFields() throws IOException {
+		byte[] message = buildMessage();
+		PbfRepeatedField field = new PbfRepeatedField();
+
+		field.reset(message, 0, message.length, 1);
+		Assert.assertEquals(-5, field.nextSignedLong());
+		Assert.assertEquals(300, field.nextSignedLong());
+		Assert.assertFalse(field.hasNext());
+
+		field.reset(message, 0, message.length, 5);
+		Assert.assertEquals(7, field.nextInt());
+		Assert.assertEquals(8, field.nextInt());
+		Assert.assertEquals(9, field.nextInt());
+		Assert.assertFalse(field.hasNext());
+
+		field.reset(message, 0, message.length, 6);
+		Assert.assertFalse(field.hasNext());
+	}
+}
@@ -30,7 +30,7 @@ import org.openstreetmap.osmosis.core.domain.v0_6.Way;
 import org.openstreetmap.osmosis.core.domain.v0_6.WayNode;
 import org.openstreetmap.osmosis.core.task.v0_6.Sink;
 import org.openstreetmap.osmosis.pgsimple.common.DatabaseContext;
-import org.openstreetmap.osmosis.pgsimple.common.NodeLocationStoreType;
+import org.openstreetmap.osmosis.pgsql.common.NodeLocationStoreType;
 import org.openstreetmap.osmosis.pgsimple.common.SchemaVersionValidator;
 import org.openstreetmap.osmosis.pgsimple.v0_6.impl.ActionDao;
 import org.openstreetmap.osmosis.pgsimple.v0_6.impl.IndexManager;
@@ -39,7 +39,7 @@ import org.openstreetmap.osmosis.pgsimple.v0_6.impl.RelationMapper;
 import org.openstreetmap.osmosis.pgsimple.v0_6.impl.RelationMemberMapper;
 import org.openstreetmap.osmosis.pgsimple.v0_6.impl.TagMapper;
 import org.openstreetmap.osmosis.pgsimple.v0_6.impl.UserDao;
-import org.openstreetmap.osmosis.pgsimple.v0_6.impl.WayGeometryBuilder;
+import org.openstreetmap.osmosis.pgsql.v0_6.impl.WayGeometryBuilder;
 import org.openstreetmap.osmosis.pgsimple.v0_6.impl.WayMapper;
 import org.openstreetmap.osmosis.pgsimple.v0_6.impl.WayNodeMapper;
 import org.postgis.Geometry;
@@ -9,7 +9,7 @@ import java.util.Date;
 import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
 import org.openstreetmap.osmosis.core.domain.v0_6.CommonEntityData;
 import org.openstreetmap.osmosis.core.domain.v0_6.Node;
-import org.openstreetmap.osmosis.pgsimple.common.PointBuilder;
+import org.openstreetmap.osmosis.pgsql.common.PointBuilder;
 import org.postgis.PGgeometry;
 import org.postgis.Point;
 
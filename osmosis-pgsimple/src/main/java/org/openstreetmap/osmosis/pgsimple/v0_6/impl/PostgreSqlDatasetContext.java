@@ -35,7 +35,7 @@ import org.openstreetmap.osmosis.core.domain.v0_6.Way;
 import org.openstreetmap.osmosis.core.lifecycle.ReleasableContainer;
 import org.openstreetmap.osmosis.core.lifecycle.ReleasableIterator;
 import org.openstreetmap.osmosis.pgsimple.common.DatabaseContext;
-import org.openstreetmap.osmosis.pgsimple.common.PolygonBuilder;
+import org.openstreetmap.osmosis.pgsql.common.PolygonBuilder;
 import org.openstreetmap.osmosis.pgsimple.common.SchemaVersionValidator;
 import org.openstreetmap.osmosis.pgsimple.v0_6.PostgreSqlVersionConstants;
 import org.openstreetmap.osmosis.core.store.MultipleSourceIterator;
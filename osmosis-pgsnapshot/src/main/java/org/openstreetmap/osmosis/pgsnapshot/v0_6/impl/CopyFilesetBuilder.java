@@ -22,9 +22,10 @@ import org.openstreetmap.osmosis.core.domain.v0_6.Tag;
 import org.openstreetmap.osmosis.core.domain.v0_6.Way;
 import org.openstreetmap.osmosis.core.domain.v0_6.WayNode;
 import org.openstreetmap.osmosis.core.lifecycle.CompletableContainer;
-import org.openstreetmap.osmosis.pgsnapshot.common.CopyFileWriter;
-import org.openstreetmap.osmosis.pgsnapshot.common.NodeLocationStoreType;
-import org.openstreetmap.osmosis.pgsnapshot.common.PointBuilder;
+import org.openstreetmap.osmosis.pgsql.common.CopyFileWriter;
+import org.openstreetmap.osmosis.pgsql.common.NodeLocationStoreType;
+import org.openstreetmap.osmosis.pgsql.common.PointBuilder;
+import org.openstreetmap.osmosis.pgsql.v0_6.impl.WayGeometryBuilder;
 import org.openstreetmap.osmosis.core.task.v0_6.Sink;
 import org.openstreetmap.osmosis.hstore.PGHStore;
 
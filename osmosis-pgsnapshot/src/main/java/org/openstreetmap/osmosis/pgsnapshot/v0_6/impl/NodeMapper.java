@@ -4,7 +4,7 @@ package org.openstreetmap.osmosis.pgsnapshot.v0_6.impl;
 import java.util.Map;
 
 import org.openstreetmap.osmosis.core.domain.v0_6.Node;
-import org.openstreetmap.osmosis.pgsnapshot.common.PointBuilder;
+import org.openstreetmap.osmosis.pgsql.common.PointBuilder;
 import org.postgis.PGgeometry;
 import org.springframework.jdbc.core.RowMapper;
 
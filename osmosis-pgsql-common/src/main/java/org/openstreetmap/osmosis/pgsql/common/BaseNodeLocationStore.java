@@ -0,0 +1,37 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.pgsql.common;
+
+
+/**
+ * Provides functionality common to node location store implementations that
+ * have no faster way of retrieving multiple locations than retrieving them one
+ * at a time.
+ */
+public abstract class BaseNodeLocationStore implements NodeLocationStore {
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getNodeLocations(long[] nodeIds, int nodeCount, double[] coordinates) {
+		int validCount;
+		
+		validCount = 0;
+		for (int i = 0; i < nodeCount; i++) {
+			NodeLocation nodeLocation;
+			
+			nodeLocation = getNodeLocation(nodeIds[i]);
+			
+			if (nodeLocation.isValid()) {
+				coordinates[i * 2] = nodeLocation.getLongitude();
+				coordinates[i * 2 + 1] = nodeLocation.getLatitude();
+				validCount++;
+			} else {
+				coordinates[i * 2] = Double.NaN;
+				coordinates[i * 2 + 1] = Double.NaN;
+			}
+		}
+		
+		return validCount;
+	}
+}
@@ -1,5 +1,5 @@
 // This software is released into the Public Domain.  See copying.txt for details.
-package org.openstreetmap.osmosis.owldb.common;
+package org.openstreetmap.osmosis.pgsql.common;
 
 import org.openstreetmap.osmosis.core.store.IndexedObjectStore;
 import org.openstreetmap.osmosis.core.store.IndexedObjectStoreReader;
@@ -15,7 +15,7 @@ import org.openstreetmap.osmosis.core.store.SingleClassObjectSerializationFactor
  * 
  * @author Brett Henderson
  */
-public class CompactPersistentNodeLocationStore implements NodeLocationStore {
+public class CompactPersistentNodeLocationStore extends BaseNodeLocationStore {
 
 	private IndexedObjectStore<CompactPersistentNodeLocation> nodeLocations;
 	private IndexedObjectStoreReader<CompactPersistentNodeLocation> nodeLocationsReader;
@@ -1,5 +1,5 @@
 // This software is released into the Public Domain.  See copying.txt for details.
-package org.openstreetmap.osmosis.owldb.common;
+package org.openstreetmap.osmosis.pgsql.common;
 
 import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
@@ -1,5 +1,5 @@
 // This software is released into the Public Domain.  See copying.txt for details.
-package org.openstreetmap.osmosis.owldb.common;
+package org.openstreetmap.osmosis.pgsql.common;
 
 import java.text.DecimalFormat;
 import java.util.ArrayList;
@@ -193,6 +193,51 @@ public class InMemoryNodeLocationStore implements NodeLocationStore {
 	}
 	
 	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getNodeLocations(long[] nodeIds, int nodeCount, double[] coordinates) {
+		int validCount;
+		
+		validCount = 0;
+		for (int i = 0; i < nodeCount; i++) {
+			long nodeId;
+			int bufferIndex;
+			boolean valid;
+			
+			nodeId = nodeIds[i];
+			bufferIndex = (int) (nodeId / BUFFER_ELEMENT_COUNT);
+			valid = false;
+			
+			if (nodeId >= 0 && bufferIndex < buffers.size()) {
+				byte[] buffer;
+				int bufferOffset;
+				
+				buffer = buffers.get(bufferIndex);
+				bufferOffset = (int) ((nodeId - (bufferIndex * BUFFER_ELEMENT_COUNT)) * NODE_DATA_SIZE);
+				
+				if (buffer[bufferOffset] != 0) {
+					coordinates[i * 2] = FixedPrecisionCoordinateConvertor.convertToDouble(
+							readIntFromBuffer(buffer, bufferOffset + 1));
+					coordinates[i * 2 + 1] = FixedPrecisionCoordinateConvertor.convertToDouble(
+							readIntFromBuffer(buffer, bufferOffset + 5));
+					valid = true;
+				}
+			}
+			
+			if (valid) {
+				validCount++;
+			} else {
+				coordinates[i * 2] = Double.NaN;
+				coordinates[i * 2 + 1] = Double.NaN;
+			}
+		}
+		
+		return validCount;
+	}
+	
+	
 	/**
 	 * {@inheritDoc}
 	 */
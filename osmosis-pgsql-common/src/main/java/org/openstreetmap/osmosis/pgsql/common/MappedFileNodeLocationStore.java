@@ -0,0 +1,235 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.pgsql.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.util.FixedPrecisionCoordinateConvertor;
+
+
+/**
+ * A node location store implementation holding locations in a memory mapped
+ * temporary file. Each node occupies a fixed size slot indexed by node id. The
+ * file is sparse, disk and memory pages are only allocated by the operating
+ * system when a node is written to them, so large gaps in the id range cost
+ * nothing. Data is held outside the JVM heap and is cached by the operating
+ * system, giving near in-memory lookup speed without garbage collection
+ * overhead. Nodes may be added in any order.
+ */
+public class MappedFileNodeLocationStore implements NodeLocationStore {
+	private static final Logger LOG = Logger.getLogger(MappedFileNodeLocationStore.class.getName());
+	
+	private static final int NODE_DATA_SIZE = 9;
+	private static final int SEGMENT_SHIFT = 27;
+	private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+	private static final int NODES_PER_SEGMENT = SEGMENT_SIZE / NODE_DATA_SIZE;
+	
+	
+	private File nodeStorageFile;
+	private RandomAccessFile randomAccessFile;
+	private FileChannel fileChannel;
+	private List<ByteBuffer> segments;
+	private NodeLocation invalidNodeLocation;
+	
+	
+	/**
+	 * Creates a new instance.
+	 */
+	public MappedFileNodeLocationStore() {
+		segments = new ArrayList<ByteBuffer>();
+		
+		invalidNodeLocation = new NodeLocation();
+	}
+	
+	
+	private void initialize() {
+		if (fileChannel == null) {
+			try {
+				nodeStorageFile = File.createTempFile("nodelocation", null);
+				
+				randomAccessFile = new RandomAccessFile(nodeStorageFile, "rw");
+				fileChannel = randomAccessFile.getChannel();
+				
+			} catch (IOException e) {
+				throw new OsmosisRuntimeException("Unable to create node location file " + nodeStorageFile + ".", e);
+			}
+		}
+	}
+	
+	
+	private ByteBuffer getSegment(int segmentIndex) {
+		initialize();
+		
+		while (segments.size() <= segmentIndex) {
+			segments.add(null);
+		}
+		
+		ByteBuffer segment = segments.get(segmentIndex);
+		
+		if (segment == null) {
+			try {
+				// Mapping beyond the end of the file extends it without
+				// allocating the pages in between.
+				segment = fileChannel.map(
+						FileChannel.MapMode.READ_WRITE, ((long) segmentIndex) << SEGMENT_SHIFT, SEGMENT_SIZE);
+				segment.order(ByteOrder.nativeOrder());
+				
+			} catch (IOException e) {
+				throw new OsmosisRuntimeException("Unable to map node location file " + nodeStorageFile + ".", e);
+			}
+			
+			segments.set(segmentIndex, segment);
+		}
+		
+		return segment;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void addLocation(long nodeId, NodeLocation nodeLocation) {
+		ByteBuffer segment;
+		int segmentOffset;
+		
+		if (nodeId < 0) {
+			throw new OsmosisRuntimeException("Node " + nodeId + " cannot be stored, node ids must be positive.");
+		}
+		
+		segment = getSegment((int) (nodeId / NODES_PER_SEGMENT));
+		segmentOffset = (int) (nodeId % NODES_PER_SEGMENT) * NODE_DATA_SIZE;
+		
+		// Prefix with a non-zero byte to identify that data is available for
+		// this node.
+		segment.put(segmentOffset, (byte) 1);
+		segment.putInt(
+				segmentOffset + 1, FixedPrecisionCoordinateConvertor.convertToFixed(nodeLocation.getLongitude()));
+		segment.putInt(
+				segmentOffset + 5, FixedPrecisionCoordinateConvertor.convertToFixed(nodeLocation.getLatitude()));
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public NodeLocation getNodeLocation(long nodeId) {
+		long segmentIndex;
+		
+		if (nodeId < 0) {
+			return invalidNodeLocation;
+		}
+		
+		segmentIndex = nodeId / NODES_PER_SEGMENT;
+		
+		if (segmentIndex < segments.size()) {
+			ByteBuffer segment;
+			
+			segment = segments.get((int) segmentIndex);
+			
+			if (segment != null) {
+				int segmentOffset;
+				
+				segmentOffset = (int) (nodeId % NODES_PER_SEGMENT) * NODE_DATA_SIZE;
+				
+				if (segment.get(segmentOffset) != 0) {
+					return new NodeLocation(
+						FixedPrecisionCoordinateConvertor.convertToDouble(segment.getInt(segmentOffset + 1)),
+						FixedPrecisionCoordinateConvertor.convertToDouble(segment.getInt(segmentOffset + 5))
+					);
+				}
+			}
+		}
+		
+		return invalidNodeLocation;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int getNodeLocations(long[] nodeIds, int nodeCount, double[] coordinates) {
+		int validCount;
+		
+		validCount = 0;
+		for (int i = 0; i < nodeCount; i++) {
+			long nodeId;
+			long segmentIndex;
+			boolean valid;
+			
+			nodeId = nodeIds[i];
+			segmentIndex = nodeId / NODES_PER_SEGMENT;
+			valid = false;
+			
+			if (nodeId >= 0 && segmentIndex < segments.size()) {
+				ByteBuffer segment;
+				
+				segment = segments.get((int) segmentIndex);
+				
+				if (segment != null) {
+					int segmentOffset;
+					
+					segmentOffset = (int) (nodeId % NODES_PER_SEGMENT) * NODE_DATA_SIZE;
+					
+					if (segment.get(segmentOffset) != 0) {
+						coordinates[i * 2] =
+								FixedPrecisionCoordinateConvertor.convertToDouble(segment.getInt(segmentOffset + 1));
+						coordinates[i * 2 + 1] =
+								FixedPrecisionCoordinateConvertor.convertToDouble(segment.getInt(segmentOffset + 5));
+						valid = true;
+					}
+				}
+			}
+			
+			if (valid) {
+				validCount++;
+			} else {
+				coordinates[i * 2] = Double.NaN;
+				coordinates[i * 2 + 1] = Double.NaN;
+			}
+		}
+		
+		return validCount;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void release() {
+		// Mapped buffers are unmapped when they are garbage collected.
+		segments.clear();
+		
+		if (fileChannel != null) {
+			try {
+				fileChannel.close();
+				randomAccessFile.close();
+			} catch (IOException e) {
+				// We cannot throw an exception within a release method.
+				LOG.log(Level.WARNING, "Unable to close node location file.", e);
+			}
+			fileChannel = null;
+			randomAccessFile = null;
+		}
+		
+		if (nodeStorageFile != null) {
+			if (!nodeStorageFile.delete()) {
+				// We cannot throw an exception within a release method.
+				LOG.warning("Unable to delete file " + nodeStorageFile);
+			}
+			nodeStorageFile = null;
+		}
+	}
+}
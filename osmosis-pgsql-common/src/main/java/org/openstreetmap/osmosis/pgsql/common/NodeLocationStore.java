@@ -0,0 +1,55 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.pgsql.common;
+
+import org.openstreetmap.osmosis.core.lifecycle.Releasable;
+
+
+/**
+ * A node location store is used for caching node locations that are
+ * subsequently used to build way geometries.
+ * 
+ * @author Brett Henderson
+ */
+public interface NodeLocationStore extends Releasable {
+	/**
+	 * Adds the specified node location details.
+	 * 
+	 * @param nodeId
+	 *            The node identifier.
+	 * @param nodeLocation
+	 *            The geo-spatial location details.
+	 */
+	void addLocation(long nodeId, NodeLocation nodeLocation);
+	
+	
+	/**
+	 * Gets the location details of the specified node.
+	 * 
+	 * @param nodeId
+	 *            The node identifier.
+	 * @return The geo-spatial location details. If the node doesn't exist, the
+	 *         valid flag will be set to false.
+	 */
+	NodeLocation getNodeLocation(long nodeId);
+	
+	
+	/**
+	 * Gets the locations of a sequence of nodes such as the node list of a
+	 * way. Implementations may retrieve the locations more efficiently than
+	 * individual calls to {@link #getNodeLocation(long)}, and no objects are
+	 * created per node.
+	 * 
+	 * @param nodeIds
+	 *            The node identifiers.
+	 * @param nodeCount
+	 *            The number of node identifiers to be retrieved from the start
+	 *            of the node id array.
+	 * @param coordinates
+	 *            Receives the longitude and latitude pair of each node in the
+	 *            same order as the node ids. It must be at least twice the node
+	 *            count in length. Both values are set to NaN for nodes that
+	 *            don't exist.
+	 * @return The number of nodes that exist.
+	 */
+	int getNodeLocations(long[] nodeIds, int nodeCount, double[] coordinates);
+}
@@ -1,5 +1,5 @@
 // This software is released into the Public Domain.  See copying.txt for details.
-package org.openstreetmap.osmosis.owldb.common;
+package org.openstreetmap.osmosis.pgsql.common;
 
 
 /**
@@ -24,5 +24,12 @@ public enum NodeLocationStoreType {
 	 * temporary file on disk. This is optimised for small datasets, and is less
 	 * efficient for large datasets.
 	 */
-	CompactTempFile
+	CompactTempFile,
+	
+	/**
+	 * A memory mapped temporary file based node location store holds all
+	 * information in a sparse temporary file outside the JVM heap. This
+	 * provides close to in-memory performance for large datasets.
+	 */
+	MappedFile
 }
@@ -1,5 +1,5 @@
 // This software is released into the Public Domain.  See copying.txt for details.
-package org.openstreetmap.osmosis.owldb.common;
+package org.openstreetmap.osmosis.pgsql.common;
 
 import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
@@ -22,7 +22,7 @@ import org.openstreetmap.osmosis.core.util.FixedPrecisionCoordinateConvertor;
  * 
  * @author Brett Henderson
  */
-public class PersistentNodeLocationStore implements NodeLocationStore {
+public class PersistentNodeLocationStore extends BaseNodeLocationStore {
 	
 	private static final Logger LOG = Logger.getLogger(PersistentNodeLocationStore.class.getName());
 	private static final int ZERO_BUFFER_SIZE = 1024 * 1024;
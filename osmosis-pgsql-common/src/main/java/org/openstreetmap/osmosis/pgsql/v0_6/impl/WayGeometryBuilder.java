@@ -0,0 +1,295 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.pgsql.v0_6.impl;
+
+import java.util.List;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.domain.v0_6.Node;
+import org.openstreetmap.osmosis.core.domain.v0_6.Way;
+import org.openstreetmap.osmosis.core.domain.v0_6.WayNode;
+import org.openstreetmap.osmosis.core.lifecycle.Releasable;
+import org.openstreetmap.osmosis.pgsql.common.CompactPersistentNodeLocationStore;
+import org.openstreetmap.osmosis.pgsql.common.InMemoryNodeLocationStore;
+import org.openstreetmap.osmosis.pgsql.common.MappedFileNodeLocationStore;
+import org.openstreetmap.osmosis.pgsql.common.NodeLocation;
+import org.openstreetmap.osmosis.pgsql.common.NodeLocationStore;
+import org.openstreetmap.osmosis.pgsql.common.NodeLocationStoreType;
+import org.openstreetmap.osmosis.pgsql.common.PersistentNodeLocationStore;
+import org.postgis.LineString;
+import org.postgis.LinearRing;
+import org.postgis.Point;
+import org.postgis.Polygon;
+
+
+/**
+ * Caches a set of node latitudes and longitudes and uses these to calculate the
+ * geometries for ways. The node locations of each way are retrieved from the
+ * store in a single batch into primitive arrays that are re-used between ways.
+ * 
+ * @author Brett Henderson
+ */
+public class WayGeometryBuilder implements Releasable {
+	private static final int INITIAL_WAY_NODE_CAPACITY = 256;
+	
+	/**
+	 * Stores the locations of nodes so that they can be used to build the way
+	 * geometries.
+	 */
+	protected NodeLocationStore locationStore;
+	
+	private long[] wayNodeIds;
+	private double[] wayNodeCoordinates;
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param storeType
+	 *            The type of storage to use for holding node locations.
+	 */
+	public WayGeometryBuilder(NodeLocationStoreType storeType) {
+		this(createStore(storeType));
+	}
+	
+	
+	/**
+	 * Creates a new instance using the specified node location store. This
+	 * allows alternative store implementations to be used.
+	 * 
+	 * @param locationStore
+	 *            The store to use for holding node locations. It will be
+	 *            released along with this builder.
+	 */
+	public WayGeometryBuilder(NodeLocationStore locationStore) {
+		this.locationStore = locationStore;
+		
+		wayNodeIds = new long[INITIAL_WAY_NODE_CAPACITY];
+		wayNodeCoordinates = new double[INITIAL_WAY_NODE_CAPACITY * 2];
+	}
+	
+	
+	private static NodeLocationStore createStore(NodeLocationStoreType storeType) {
+		if (NodeLocationStoreType.InMemory.equals(storeType)) {
+			return new InMemoryNodeLocationStore();
+		} else if (NodeLocationStoreType.TempFile.equals(storeType)) {
+			return new PersistentNodeLocationStore();
+		} else if (NodeLocationStoreType.CompactTempFile.equals(storeType)) {
+			return new CompactPersistentNodeLocationStore();
+		} else if (NodeLocationStoreType.MappedFile.equals(storeType)) {
+			return new MappedFileNodeLocationStore();
+		} else {
+			throw new OsmosisRuntimeException("The store type " + storeType + " is not recognized.");
+		}
+	}
+	
+	
+	/**
+	 * Adds the location of the node to the internal store.
+	 * 
+	 * @param node
+	 *            The node to add.
+	 */
+	public void addNodeLocation(Node node) {
+		locationStore.addLocation(node.getId(), new NodeLocation(node.getLongitude(), node.getLatitude()));
+	}
+	
+	
+	/**
+	 * Get NodeLocation from internal store.
+	 * 
+	 * @param nodeId
+	 *            Id of the node we want the location for.
+	 * @return Location of node
+	 */
+	public NodeLocation getNodeLocation(long nodeId) {
+		return locationStore.getNodeLocation(nodeId);
+	}
+	
+	
+	/**
+	 * Retrieves the locations of all nodes in the way into the coordinate
+	 * buffer.
+	 * 
+	 * @param way
+	 *            The way to retrieve node locations for.
+	 * @return The number of nodes that were found.
+	 */
+	private int loadWayNodeLocations(Way way) {
+		List<WayNode> wayNodes;
+		int nodeCount;
+		
+		wayNodes = way.getWayNodes();
+		nodeCount = wayNodes.size();
+		
+		if (nodeCount > wayNodeIds.length) {
+			int capacity;
+			
+			capacity = Math.max(nodeCount, wayNodeIds.length * 2);
+			wayNodeIds = new long[capacity];
+			wayNodeCoordinates = new double[capacity * 2];
+		}
+		
+		for (int i = 0; i < nodeCount; i++) {
+			wayNodeIds[i] = wayNodes.get(i).getNodeId();
+		}
+		
+		return locationStore.getNodeLocations(wayNodeIds, nodeCount, wayNodeCoordinates);
+	}
+	
+	
+	private Polygon createWayBbox(double left, double right, double bottom, double top) {
+		Point[] points;
+		LinearRing ring;
+		Polygon bbox;
+		
+		points = new Point[5];
+		points[0] = new Point(left, bottom);
+		points[1] = new Point(left, top);
+		points[2] = new Point(right, top);
+		points[3] = new Point(right, bottom);
+		points[4] = new Point(left, bottom);
+		
+		ring = new LinearRing(points);
+		
+		bbox = new Polygon(new LinearRing[] {ring});
+		bbox.srid = 4326;
+		
+		return bbox;
+	}
+	
+	
+	/**
+	 * Creates a linestring from a list of points.
+	 * 
+	 * @param points
+	 *            The points making up the line.
+	 * @return The linestring.
+	 */
+	public LineString createLinestring(List<Point> points) {
+		return createLinestring(points.toArray(new Point[points.size()]));
+	}
+	
+	
+	private LineString createLinestring(Point[] points) {
+		LineString lineString;
+		
+		lineString = new LineString(points);
+		lineString.srid = 4326;
+		
+		return lineString;
+	}
+	
+	
+	/**
+	 * Creates a point from the location of a node.
+	 * 
+	 * @param nodeId
+	 *            Id of the node.
+	 * @return Point object
+	 */
+	public Point createPoint(long nodeId) {
+		NodeLocation nodeLocation = locationStore.getNodeLocation(nodeId);
+		Point point = new Point(nodeLocation.getLongitude(), nodeLocation.getLatitude());
+		point.srid = 4326;
+		
+		return point;
+	}
+	
+	
+	/**
+	 * Builds a bounding box geometry object from the node references in the
+	 * specified way. Unknown nodes will be ignored.
+	 * 
+	 * @param way
+	 *            The way to create the bounding box for.
+	 * @return The bounding box surrounding the way.
+	 */
+	public Polygon createWayBbox(Way way) {
+		int nodeCount;
+		double left;
+		double right;
+		double top;
+		double bottom;
+		boolean nodesFound;
+		
+		nodeCount = way.getWayNodes().size();
+		loadWayNodeLocations(way);
+		
+		nodesFound = false;
+		left = 0;
+		right = 0;
+		bottom = 0;
+		top = 0;
+		for (int i = 0; i < nodeCount; i++) {
+			double longitude;
+			double latitude;
+			
+			longitude = wayNodeCoordinates[i * 2];
+			latitude = wayNodeCoordinates[i * 2 + 1];
+			
+			if (!Double.isNaN(longitude)) {
+				if (nodesFound) {
+					if (longitude < left) {
+						left = longitude;
+					}
+					if (longitude > right) {
+						right = longitude;
+					}
+					if (latitude < bottom) {
+						bottom = latitude;
+					}
+					if (latitude > top) {
+						top = latitude;
+					}
+				} else {
+					left = longitude;
+					right = longitude;
+					bottom = latitude;
+					top = latitude;
+					
+					nodesFound = true;
+				}
+			}
+		}
+		
+		return createWayBbox(left, right, bottom, top);
+	}
+	
+	
+	/**
+	 * Builds a linestring geometry object from the node references in the
+	 * specified way. If any node is unknown, or the way has less than two
+	 * nodes, no linestring is created.
+	 * 
+	 * @param way
+	 *            The way to create the linestring for.
+	 * @return The linestring representing the way, or null if it cannot be
+	 *         created.
+	 */
+	public LineString createWayLinestring(Way way) {
+		int nodeCount;
+		Point[] linePoints;
+		
+		nodeCount = way.getWayNodes().size();
+		
+		if (nodeCount < 2 || loadWayNodeLocations(way) < nodeCount) {
+			return null;
+		}
+		
+		linePoints = new Point[nodeCount];
+		for (int i = 0; i < nodeCount; i++) {
+			linePoints[i] = new Point(wayNodeCoordinates[i * 2], wayNodeCoordinates[i * 2 + 1]);
+		}
+		
+		return createLinestring(linePoints);
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void release() {
+		locationStore.release();
+	}
+}
@@ -1,13 +1,9 @@
 // This software is released into the Public Domain.  See copying.txt for details.
-package org.openstreetmap.osmosis.pgsnapshot.v0_6.impl;
+package org.openstreetmap.osmosis.pgsql.common;
 
 import org.junit.Assert;
 import org.junit.Test;
 
-import org.openstreetmap.osmosis.pgsnapshot.common.InMemoryNodeLocationStore;
-import org.openstreetmap.osmosis.pgsnapshot.common.NodeLocation;
-import org.openstreetmap.osmosis.pgsnapshot.common.NodeLocationStore;
-import org.openstreetmap.osmosis.pgsnapshot.common.PersistentNodeLocationStore;
 import org.openstreetmap.osmosis.core.util.FixedPrecisionCoordinateConvertor;
 
 
@@ -56,6 +52,24 @@ public class NodeLocationStoreTest {
 			Assert.assertFalse("The node location should be invalid.", location.isValid());
 		}
 		
+		// Verify that batched retrieval matches individual retrieval.
+		long[] nodeIds = new long[] {4, 5, 199998, 199999, 200000};
+		double[] coordinates = new double[nodeIds.length * 2];
+		Assert.assertEquals("Incorrect number of nodes found.",
+				2, store.getNodeLocations(nodeIds, nodeIds.length, coordinates));
+		for (int i = 0; i < nodeIds.length; i++) {
+			NodeLocation location;
+			
+			location = store.getNodeLocation(nodeIds[i]);
+			if (location.isValid()) {
+				Assert.assertEquals("The longitude is incorrect.", location.getLongitude(), coordinates[i * 2], 0);
+				Assert.assertEquals("The latitude is incorrect.", location.getLatitude(), coordinates[i * 2 + 1], 0);
+			} else {
+				Assert.assertTrue("The longitude should be missing.", Double.isNaN(coordinates[i * 2]));
+				Assert.assertTrue("The latitude should be missing.", Double.isNaN(coordinates[i * 2 + 1]));
+			}
+		}
+		
 		store.release();
 	}
 	
@@ -76,4 +90,13 @@ public class NodeLocationStoreTest {
 	public void testInMemory() {
 		testStoreImplementation(new InMemoryNodeLocationStore());
 	}
+	
+	
+	/**
+	 * Tests the memory mapped file implementation.
+	 */
+	@Test
+	public void testMappedFile() {
+		testStoreImplementation(new MappedFileNodeLocationStore());
+	}
 }
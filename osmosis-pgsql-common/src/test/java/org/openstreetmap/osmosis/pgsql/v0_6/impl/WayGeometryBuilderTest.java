@@ -0,0 +1,108 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.pgsql.v0_6.impl;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openstreetmap.osmosis.core.domain.v0_6.CommonEntityData;
+import org.openstreetmap.osmosis.core.domain.v0_6.Node;
+import org.openstreetmap.osmosis.core.domain.v0_6.OsmUser;
+import org.openstreetmap.osmosis.core.domain.v0_6.Way;
+import org.openstreetmap.osmosis.core.domain.v0_6.WayNode;
+import org.openstreetmap.osmosis.pgsql.common.NodeLocationStoreType;
+import org.postgis.LineString;
+import org.postgis.Point;
+import org.postgis.Polygon;
+
+
+/**
+ * Tests the way geometry builder.
+ */
+public class WayGeometryBuilderTest {
+	
+	private Node buildNode(long id, double latitude, double longitude) {
+		return new Node(new CommonEntityData(id, 1, new Date(), OsmUser.NONE, 0), latitude, longitude);
+	}
+	
+	
+	private Way buildWay(long... nodeIds) {
+		List<WayNode> wayNodes = new ArrayList<WayNode>();
+		for (long nodeId : nodeIds) {
+			wayNodes.add(new WayNode(nodeId));
+		}
+		
+		return new Way(new CommonEntityData(1, 1, new Date(), OsmUser.NONE, 0), wayNodes);
+	}
+	
+	
+	private WayGeometryBuilder buildGeometryBuilder() {
+		WayGeometryBuilder builder = new WayGeometryBuilder(NodeLocationStoreType.InMemory);
+		builder.addNodeLocation(buildNode(1, 1, 2));
+		builder.addNodeLocation(buildNode(2, 3, 4));
+		builder.addNodeLocation(buildNode(3, -1, 5));
+		
+		return builder;
+	}
+	
+	
+	/**
+	 * Tests building a linestring from a way with known nodes.
+	 */
+	@Test
+	public void testLinestring() {
+		WayGeometryBuilder builder = buildGeometryBuilder();
+		
+		LineString lineString = builder.createWayLinestring(buildWay(1, 2, 3));
+		
+		Assert.assertEquals("Incorrect number of points.", 3, lineString.numPoints());
+		Assert.assertEquals("Incorrect srid.", 4326, lineString.srid);
+		Point point = lineString.getPoint(2);
+		Assert.assertEquals("Incorrect longitude.", 5, point.x, 0);
+		Assert.assertEquals("Incorrect latitude.", -1, point.y, 0);
+		
+		builder.release();
+	}
+	
+	
+	/**
+	 * Tests that no linestring is built for ways with unknown nodes or too few
+	 * nodes.
+	 */
+	@Test
+	public void testInvalidLinestring() {
+		WayGeometryBuilder builder = buildGeometryBuilder();
+		
+		Assert.assertNull("A way with a missing node has no linestring.", builder.createWayLinestring(buildWay(1, 4)));
+		Assert.assertNull("A way with a single node has no linestring.", builder.createWayLinestring(buildWay(1)));
+		
+		builder.release();
+	}
+	
+	
+	/**
+	 * Tests that bounding boxes span all known nodes and ignore unknown nodes.
+	 */
+	@Test
+	public void testBbox() {
+		WayGeometryBuilder builder = buildGeometryBuilder();
+		
+		// Use more nodes than the initial buffer size to ensure the buffers grow.
+		long[] nodeIds = new long[1000];
+		for (int i = 0; i < nodeIds.length; i++) {
+			nodeIds[i] = (i % 4) + 1;
+		}
+		Polygon bbox = builder.createWayBbox(buildWay(nodeIds));
+		
+		Point bottomLeft = bbox.getRing(0).getPoint(0);
+		Point topRight = bbox.getRing(0).getPoint(2);
+		Assert.assertEquals("Incorrect left.", 2, bottomLeft.x, 0);
+		Assert.assertEquals("Incorrect bottom.", -1, bottomLeft.y, 0);
+		Assert.assertEquals("Incorrect right.", 5, topRight.x, 0);
+		Assert.assertEquals("Incorrect top.", 3, topRight.y, 0);
+		
+		builder.release();
+	}
+}
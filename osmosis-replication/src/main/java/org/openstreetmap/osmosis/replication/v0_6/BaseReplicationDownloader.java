@@ -11,9 +11,20 @@ import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.util.ArrayDeque;
 import java.util.Collections;
 import java.util.Date;
+import java.util.Deque;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -42,6 +53,9 @@ public abstract class BaseReplicationDownloader implements RunnableTask {
 	private static final String LOCK_FILE = "download.lock";
 	private static final String CONFIG_FILE = "configuration.txt";
 	private static final String LOCAL_STATE_FILE = "state.txt";
+	private static final String TEMP_FILE_PREFIX = "change";
+	private static final String PREFETCH_FILE_SUFFIX = ".prefetch";
+	private static final long PREFETCH_RELEASE_TIMEOUT = 10000;
 	
 	
 	private File workingDirectory;
@@ -81,12 +95,19 @@ public abstract class BaseReplicationDownloader implements RunnableTask {
 	 *            The name of the file to download.
 	 * @param baseUrl
 	 *            The url of the directory containing change files.
+	 * @param directory
+	 *            The directory to create the temporary file in, or null for
+	 *            the default temporary directory.
+	 * @param suffix
+	 *            The suffix of the temporary file, or null for the default
+	 *            suffix.
 	 * @return The temporary file containing the downloaded data.
 	 */
-	private File downloadReplicationFile(String fileName, URL baseUrl) {
+	private File downloadReplicationFile(String fileName, URL baseUrl, File directory, String suffix) {
 		URL changesetUrl;
 		InputStream inputStream = null;
 		OutputStream outputStream = null;
+		File outputFile = null;
 		
 		try {
 			changesetUrl = new URL(baseUrl, fileName);
@@ -97,8 +118,8 @@ public abstract class BaseReplicationDownloader implements RunnableTask {
 		try {
 			BufferedInputStream source;
 			BufferedOutputStream sink;
-			File outputFile;
 			byte[] buffer;
+			File downloadedFile;
 			
 			// Open an input stream for the changeset file on the server.
 			URLConnection connection = changesetUrl.openConnection();
@@ -108,7 +129,7 @@ public abstract class BaseReplicationDownloader implements RunnableTask {
 			source = new BufferedInputStream(inputStream, 65536);
 			
 			// Create a temporary file to write the data to.
-			outputFile = File.createTempFile("change", null);
+			outputFile = File.createTempFile(TEMP_FILE_PREFIX, suffix, directory);
 			
 			// Open a output stream for the destination file.
 			outputStream = new FileOutputStream(outputFile);
@@ -127,7 +148,11 @@ public abstract class BaseReplicationDownloader implements RunnableTask {
 			outputStream.close();
 			outputStream = null;
 			
-			return outputFile;
+			// The file is complete and now belongs to the caller.
+			downloadedFile = outputFile;
+			outputFile = null;
+			
+			return downloadedFile;
 			
 		} catch (IOException e) {
 			throw new OsmosisRuntimeException("Unable to read the changeset file " + fileName + " from the server.", e);
@@ -148,6 +173,10 @@ public abstract class BaseReplicationDownloader implements RunnableTask {
 				// We are already in an error condition so log and continue.
 				LOG.log(Level.WARNING, "Unable to changeset output stream.", e);
 			}
+			if (outputFile != null) {
+				// The download failed so remove the partial file.
+				deleteFile(outputFile);
+			}
 		}
 	}
 	
@@ -164,13 +193,18 @@ public abstract class BaseReplicationDownloader implements RunnableTask {
 			processChangeset(xmlReader, replicationState);
 			
 		} finally {
-			if (!replicationFile.delete()) {
-				LOG.warning("Unable to delete file " + replicationFile.getName());
-			}
+			deleteFile(replicationFile);
 		}
 	}
-
-
+	
+	
+	private static void deleteFile(File file) {
+		if (file.exists() && !file.delete()) {
+			LOG.warning("Unable to delete file " + file.getName());
+		}
+	}
+	
+	
 	/**
 	 * Determines the maximum timestamp of data to be downloaded during this invocation. This may be
 	 * overriden by sub-classes, but the sub-classes must call this implemention first and then
@@ -210,6 +244,7 @@ public abstract class BaseReplicationDownloader implements RunnableTask {
 		URL baseUrl;
 		ReplicationState localState;
 		Date maximumDownloadTimestamp;
+		ReplicationFilePrefetcher prefetcher;
 		
 		localState = initialLocalState;
 		
@@ -222,57 +257,107 @@ public abstract class BaseReplicationDownloader implements RunnableTask {
 		LOG.fine("The maximum timestamp to be downloaded is " + maximumDownloadTimestamp + ".");
 		
 		// Download all files and send their contents to the sink.
-		while (localState.getSequenceNumber() < serverState.getSequenceNumber()) {
-			File replicationFile;
-			long sequenceNumber;
-			ReplicationState fileReplicationState;
-			
-			// Check to see if our local state has already reached the maximum
-			// allowable timestamp. This will typically occur if a job is run
-			// again before new data becomes available, or if an implementation
-			// of this class (eg. ReplicationFileMerger) is waiting for a full
-			// time period of data to become available before processing.
-			if (localState.getTimestamp().compareTo(maximumDownloadTimestamp) >= 0) {
-				break;
-			}
-			
-			// Calculate the next sequence number.
-			sequenceNumber = localState.getSequenceNumber() + 1;
-			LOG.finer("Processing replication sequence " + sequenceNumber + ".");
-			
-			// Get the state associated with the next file.
-			fileReplicationState = serverStateReader.getServerState(baseUrl, sequenceNumber);
-			
-			// Ensure that the next state is within the allowable timestamp
-			// range. We must stop if the next data takes us beyond the maximum
-			// timestamp. This will either occur if a maximum download time
-			// duration limit has been imposed, or if a time-aligned boundary
-			// has been reached.
-			if (fileReplicationState.getTimestamp().compareTo(maximumDownloadTimestamp) > 0) {
-				// We will always allow at least one replication interval
-				// through to deal with the case where a single interval exceeds
-				// the maximum duration. This can happen if the source data has
-				// a long time gap between two intervals due to system downtime.
-				if (localState.getSequenceNumber() != initialLocalState.getSequenceNumber()) {
+		prefetcher = null;
+		try {
+			while (localState.getSequenceNumber() < serverState.getSequenceNumber()) {
+				File replicationFile;
+				long sequenceNumber;
+				ReplicationState fileReplicationState;
+				DownloadedReplicationFile prefetchedFile;
+				
+				// Check to see if our local state has already reached the maximum
+				// allowable timestamp. This will typically occur if a job is run
+				// again before new data becomes available, or if an implementation
+				// of this class (eg. ReplicationFileMerger) is waiting for a full
+				// time period of data to become available before processing.
+				if (localState.getTimestamp().compareTo(maximumDownloadTimestamp) >= 0) {
 					break;
 				}
+				
+				// Calculate the next sequence number.
+				sequenceNumber = localState.getSequenceNumber() + 1;
+				LOG.finer("Processing replication sequence " + sequenceNumber + ".");
+				
+				// Get the state associated with the next file. If prefetching is
+				// enabled the state and file are downloaded together while the
+				// previous files are being processed.
+				if (configuration.getPrefetchCount() > 0) {
+					if (prefetcher == null) {
+						prefetcher = new ReplicationFilePrefetcher(baseUrl, sequenceNumber,
+								serverState.getSequenceNumber(), maximumDownloadTimestamp,
+								configuration.getPrefetchCount());
+					}
+					prefetchedFile = prefetcher.next(sequenceNumber);
+					fileReplicationState = prefetchedFile.getState();
+				} else {
+					prefetchedFile = null;
+					fileReplicationState = serverStateReader.getServerState(baseUrl, sequenceNumber);
+				}
+				
+				// Ensure that the next state is within the allowable timestamp
+				// range. We must stop if the next data takes us beyond the maximum
+				// timestamp. This will either occur if a maximum download time
+				// duration limit has been imposed, or if a time-aligned boundary
+				// has been reached.
+				if (fileReplicationState.getTimestamp().compareTo(maximumDownloadTimestamp) > 0) {
+					// We will always allow at least one replication interval
+					// through to deal with the case where a single interval exceeds
+					// the maximum duration. This can happen if the source data has
+					// a long time gap between two intervals due to system downtime.
+					if (localState.getSequenceNumber() != initialLocalState.getSequenceNumber()) {
+						break;
+					}
+				}
+				
+				// Download the next replication file to a temporary file.
+				if (prefetchedFile != null) {
+					replicationFile = prefetchedFile.getFile();
+				} else {
+					replicationFile = downloadReplicationFile(
+							sequenceFormatter.getFormattedName(sequenceNumber, ".osc.gz"), baseUrl, null, null);
+				}
+				
+				// Process the file and send its contents to the sink.
+				processReplicationFile(replicationFile, fileReplicationState);
+				
+				// Update the local state to reflect the file state just processed.
+				localState = fileReplicationState;
 			}
 			
-			// Download the next replication file to a temporary file.
-			replicationFile =
-				downloadReplicationFile(sequenceFormatter.getFormattedName(sequenceNumber, ".osc.gz"), baseUrl);
-			
-			// Process the file and send its contents to the sink.
-			processReplicationFile(replicationFile, fileReplicationState);
-			
-			// Update the local state to reflect the file state just processed.
-			localState = fileReplicationState;
+		} finally {
+			// Discard any files downloaded beyond the point where processing stopped.
+			if (prefetcher != null) {
+				prefetcher.release();
+			}
 		}
 		
 		return localState;
 	}
 	
 	
+	/**
+	 * Removes prefetched files left behind by a previous invocation whose
+	 * downloads were still running when it exited.
+	 */
+	private void deleteOrphanedPrefetchFiles() {
+		File[] files;
+		
+		files = workingDirectory.listFiles();
+		if (files == null) {
+			return;
+		}
+		
+		for (File file : files) {
+			String name = file.getName();
+			
+			if (name.startsWith(TEMP_FILE_PREFIX) && name.endsWith(PREFETCH_FILE_SUFFIX)) {
+				LOG.fine("Deleting orphaned prefetch file " + name + ".");
+				deleteFile(file);
+			}
+		}
+	}
+	
+	
 	private void runImpl() {
 		try {
 			ReplicationDownloaderConfiguration configuration;
@@ -283,6 +368,8 @@ public abstract class BaseReplicationDownloader implements RunnableTask {
 			// Instantiate utility objects.
 			configuration = new ReplicationDownloaderConfiguration(new File(workingDirectory, CONFIG_FILE));
 			
+			deleteOrphanedPrefetchFiles();
+			
 			// Obtain the server state.
 			LOG.fine("Reading current server state.");
 			serverState = serverStateReader.getServerState(configuration.getBaseUrl());
@@ -349,15 +436,15 @@ public abstract class BaseReplicationDownloader implements RunnableTask {
 	 *            The replication state associated with the changeset file.
 	 */
 	protected abstract void processChangeset(XmlChangeReader xmlReader, ReplicationState replicationState);
-
-
+	
+	
 	/**
 	 * This is implemented by sub-classes and is called when all changesets have been processed.
 	 * This should perform any completion tasks such as committing changes to a database.
 	 */
 	protected abstract void processComplete();
-
-
+	
+	
 	/**
 	 * This is implemented by sub-classes and is called and the completion of all processing
 	 * regardless of whether it was successful or not. This should perform any cleanup tasks such as
@@ -386,4 +473,264 @@ public abstract class BaseReplicationDownloader implements RunnableTask {
 			fileLock.release();
 		}
 	}
+	
+	
+	/**
+	 * A replication state and the change file associated with it.
+	 */
+	private static class DownloadedReplicationFile {
+		private ReplicationState state;
+		private File file;
+		
+		
+		/**
+		 * Creates a new instance.
+		 * 
+		 * @param state
+		 *            The replication state.
+		 * @param file
+		 *            The temporary file containing the change data.
+		 */
+		DownloadedReplicationFile(ReplicationState state, File file) {
+			this.state = state;
+			this.file = file;
+		}
+		
+		
+		/**
+		 * Gets the replication state.
+		 * 
+		 * @return The state.
+		 */
+		public ReplicationState getState() {
+			return state;
+		}
+		
+		
+		/**
+		 * Gets the temporary file containing the change data.
+		 * 
+		 * @return The file.
+		 */
+		public File getFile() {
+			return file;
+		}
+	}
+	
+	
+	/**
+	 * Downloads the state and change files for upcoming sequence numbers on
+	 * worker threads so that the network transfers overlap with the processing
+	 * of earlier files. Files are returned strictly in sequence order.
+	 * <p>
+	 * Each download reads the state first and only downloads the change file if
+	 * the state lies within the maximum timestamp. A later state would stop
+	 * processing before its change file is used, so the change file is skipped
+	 * and no further sequences are requested.
+	 */
+	private class ReplicationFilePrefetcher {
+		private URL baseUrl;
+		private long firstSequenceNumber;
+		private long nextSequenceNumber;
+		private long lastSequenceNumber;
+		private Date maximumTimestamp;
+		private int prefetchCount;
+		private ExecutorService executorService;
+		private Deque<Future<DownloadedReplicationFile>> pendingFiles;
+		private Set<File> unclaimedFiles;
+		private File currentFile;
+		private boolean released;
+		private volatile long boundarySequenceNumber;
+		
+		
+		/**
+		 * Creates a new instance.
+		 * 
+		 * @param baseUrl
+		 *            The url of the directory containing change files.
+		 * @param firstSequenceNumber
+		 *            The first sequence number to be downloaded.
+		 * @param lastSequenceNumber
+		 *            The last sequence number available on the server.
+		 * @param maximumTimestamp
+		 *            The maximum timestamp to be downloaded. The file for the
+		 *            first sequence number is downloaded regardless.
+		 * @param prefetchCount
+		 *            The number of files to download ahead of the file being
+		 *            processed.
+		 */
+		ReplicationFilePrefetcher(URL baseUrl, long firstSequenceNumber, long lastSequenceNumber,
+				Date maximumTimestamp, int prefetchCount) {
+			this.baseUrl = baseUrl;
+			this.firstSequenceNumber = firstSequenceNumber;
+			this.nextSequenceNumber = firstSequenceNumber;
+			this.lastSequenceNumber = lastSequenceNumber;
+			this.maximumTimestamp = maximumTimestamp;
+			this.prefetchCount = prefetchCount;
+			
+			boundarySequenceNumber = Long.MAX_VALUE;
+			
+			// Daemon threads allow the application to exit without waiting for
+			// downloads which are no longer required.
+			executorService = Executors.newFixedThreadPool(prefetchCount, new ThreadFactory() {
+				private ThreadFactory defaultFactory = Executors.defaultThreadFactory();
+				
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = defaultFactory.newThread(r);
+					
+					thread.setDaemon(true);
+					
+					return thread;
+				}
+			});
+			pendingFiles = new ArrayDeque<Future<DownloadedReplicationFile>>();
+			unclaimedFiles = new HashSet<File>();
+			
+			submitDownloads();
+		}
+		
+		
+		private DownloadedReplicationFile download(long sequenceNumber, String fileName) {
+			ReplicationState state;
+			File file;
+			
+			// A previous sequence has already reached the maximum timestamp so
+			// this one will never be processed.
+			if (sequenceNumber > boundarySequenceNumber) {
+				return null;
+			}
+			
+			state = new ServerStateReader().getServerState(baseUrl, sequenceNumber);
+			
+			if (sequenceNumber != firstSequenceNumber && state.getTimestamp().compareTo(maximumTimestamp) > 0) {
+				synchronized (unclaimedFiles) {
+					boundarySequenceNumber = Math.min(boundarySequenceNumber, sequenceNumber);
+				}
+				
+				return new DownloadedReplicationFile(state, null);
+			}
+			
+			file = downloadReplicationFile(fileName, baseUrl, workingDirectory, PREFETCH_FILE_SUFFIX);
+			
+			// Clean up if processing stopped while the file was downloading.
+			synchronized (unclaimedFiles) {
+				if (released) {
+					deleteFile(file);
+				} else {
+					unclaimedFiles.add(file);
+				}
+			}
+			
+			return new DownloadedReplicationFile(state, file);
+		}
+		
+		
+		private void submitDownloads() {
+			while (pendingFiles.size() < prefetchCount && nextSequenceNumber <= lastSequenceNumber
+					&& nextSequenceNumber <= boundarySequenceNumber) {
+				final long sequenceNumber = nextSequenceNumber++;
+				
+				// The formatters aren't thread safe so file names are built here
+				// and each download uses its own state reader.
+				final String fileName = sequenceFormatter.getFormattedName(sequenceNumber, ".osc.gz");
+				
+				pendingFiles.addLast(executorService.submit(new Callable<DownloadedReplicationFile>() {
+					@Override
+					public DownloadedReplicationFile call() {
+						return download(sequenceNumber, fileName);
+					}
+				}));
+			}
+		}
+		
+		
+		/**
+		 * Waits for the next file to be downloaded and starts downloading
+		 * further files.
+		 * 
+		 * @param sequenceNumber
+		 *            The sequence number expected by the caller.
+		 * @return The downloaded state and change file. The file is null if the
+		 *         state lies beyond the maximum timestamp. The caller is
+		 *         responsible for deleting the file once processed.
+		 */
+		public DownloadedReplicationFile next(long sequenceNumber) {
+			DownloadedReplicationFile downloadedFile;
+			
+			if (pendingFiles.isEmpty()) {
+				throw new OsmosisRuntimeException("Replication sequence " + sequenceNumber
+						+ " has not been requested from the server.");
+			}
+			
+			try {
+				downloadedFile = pendingFiles.removeFirst().get();
+			} catch (InterruptedException e) {
+				throw new OsmosisRuntimeException("Interrupted while downloading replication files.", e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw new OsmosisRuntimeException("Unable to download replication files.", e.getCause());
+			}
+			
+			if (downloadedFile == null) {
+				throw new OsmosisRuntimeException("Replication sequence " + sequenceNumber
+						+ " lies beyond the maximum timestamp and was not downloaded.");
+			}
+			
+			// The file is now owned by the caller but must still be deleted if
+			// processing stops before it is used.
+			currentFile = downloadedFile.getFile();
+			if (currentFile != null) {
+				synchronized (unclaimedFiles) {
+					unclaimedFiles.remove(currentFile);
+				}
+			}
+			
+			submitDownloads();
+			
+			return downloadedFile;
+		}
+		
+		
+		/**
+		 * Stops all downloads and deletes any files which have not been
+		 * processed. Downloads blocked on the network may not stop promptly, in
+		 * which case they are abandoned after a short wait. They delete their
+		 * own files if they complete, otherwise the files are removed by the
+		 * next invocation.
+		 */
+		public void release() {
+			// Downloads which are still running will delete their own files
+			// once the released flag has been set.
+			synchronized (unclaimedFiles) {
+				released = true;
+				
+				for (File file : unclaimedFiles) {
+					deleteFile(file);
+				}
+				unclaimedFiles.clear();
+			}
+			
+			if (currentFile != null) {
+				deleteFile(currentFile);
+				currentFile = null;
+			}
+			
+			for (Future<DownloadedReplicationFile> pendingFile : pendingFiles) {
+				pendingFile.cancel(true);
+			}
+			pendingFiles.clear();
+			
+			executorService.shutdownNow();
+			try {
+				if (!executorService.awaitTermination(PREFETCH_RELEASE_TIMEOUT, TimeUnit.MILLISECONDS)) {
+					LOG.warning("Replication downloads are still running and have been abandoned.");
+				}
+			} catch (InterruptedException e) {
+				LOG.log(Level.WARNING, "Interrupted while waiting for replication downloads to stop.", e);
+			}
+		}
+	}
 }
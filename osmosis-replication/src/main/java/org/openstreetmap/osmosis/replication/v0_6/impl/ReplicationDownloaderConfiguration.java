@@ -18,6 +18,7 @@ import org.openstreetmap.osmosis.core.util.PropertiesPersister;
 public class ReplicationDownloaderConfiguration {
 	private static final String KEY_BASE_URL = "baseUrl";
 	private static final String KEY_MAX_INTERVAL = "maxInterval";
+	private static final String KEY_PREFETCH_COUNT = "prefetchCount";
 	
 	
 	private Properties properties;
@@ -65,4 +66,24 @@ public class ReplicationDownloaderConfiguration {
 	public int getMaxInterval() {
 		return Integer.parseInt(properties.getProperty(KEY_MAX_INTERVAL)) * 1000;
 	}
+	
+	
+	/**
+	 * Returns the number of replication files to download ahead of the file
+	 * currently being processed. This is optional to allow existing working
+	 * directories to continue to be used.
+	 * 
+	 * @return The prefetch count, 0 if files are downloaded one at a time.
+	 */
+	public int getPrefetchCount() {
+		String prefetchCount;
+		
+		prefetchCount = properties.getProperty(KEY_PREFETCH_COUNT);
+		
+		if (prefetchCount == null) {
+			return 0;
+		}
+		
+		return Integer.parseInt(prefetchCount.trim());
+	}
 }
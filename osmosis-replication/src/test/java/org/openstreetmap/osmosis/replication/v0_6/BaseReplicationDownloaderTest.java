@@ -0,0 +1,399 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.replication.v0_6;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.container.v0_6.ChangeContainer;
+import org.openstreetmap.osmosis.core.util.PropertiesPersister;
+import org.openstreetmap.osmosis.replication.common.ReplicationSequenceFormatter;
+import org.openstreetmap.osmosis.replication.common.ReplicationState;
+import org.openstreetmap.osmosis.testutil.AbstractDataTest;
+import org.openstreetmap.osmosis.testutil.v0_6.SinkChangeInspector;
+import org.openstreetmap.osmosis.xml.v0_6.XmlChangeReader;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+
+/**
+ * Tests the replication downloader against a local http server, both with and
+ * without prefetching of replication files.
+ */
+public class BaseReplicationDownloaderTest extends AbstractDataTest {
+	
+	private static final long INTERVAL = 60000;
+	private static final long BASE_TIME = 1262304000000L;
+	
+	private HttpServer server;
+	private Map<String, byte[]> serverFiles;
+	private List<String> requestedFiles;
+	private File workingDirectory;
+	
+	
+	private byte[] buildStateFile(long sequenceNumber) throws IOException {
+		Properties properties;
+		ByteArrayOutputStream buffer;
+		
+		properties = new Properties();
+		properties.putAll(
+				new ReplicationState(new Date(BASE_TIME + sequenceNumber * INTERVAL), sequenceNumber).store());
+		
+		buffer = new ByteArrayOutputStream();
+		properties.store(buffer, null);
+		
+		return buffer.toByteArray();
+	}
+	
+	
+	private byte[] buildChangeFile(long sequenceNumber) throws IOException {
+		ByteArrayOutputStream buffer;
+		Writer writer;
+		
+		buffer = new ByteArrayOutputStream();
+		writer = new OutputStreamWriter(new GZIPOutputStream(buffer), "UTF-8");
+		writer.write("<?xml version='1.0' encoding='UTF-8'?>\n"
+				+ "<osmChange version=\"0.6\" generator=\"test\">\n"
+				+ "  <create>\n"
+				+ "    <node id=\"" + sequenceNumber + "\" version=\"1\" timestamp=\"2010-01-01T00:00:00Z\""
+				+ " uid=\"1\" user=\"test\" changeset=\"1\" lat=\"1.0\" lon=\"2.0\"/>\n"
+				+ "  </create>\n"
+				+ "</osmChange>\n");
+		writer.close();
+		
+		return buffer.toByteArray();
+	}
+	
+	
+	/**
+	 * Starts a local http server hosting ten replication intervals.
+	 * 
+	 * @throws IOException
+	 *             if the server cannot be started.
+	 */
+	@Before
+	public void setUp() throws IOException {
+		ReplicationSequenceFormatter sequenceFormatter;
+		
+		sequenceFormatter = new ReplicationSequenceFormatter(9, 3);
+		serverFiles = new HashMap<String, byte[]>();
+		for (long i = 0; i <= 10; i++) {
+			serverFiles.put("/" + sequenceFormatter.getFormattedName(i, ".state.txt"), buildStateFile(i));
+			serverFiles.put("/" + sequenceFormatter.getFormattedName(i, ".osc.gz"), buildChangeFile(i));
+		}
+		serverFiles.put("/state.txt", buildStateFile(10));
+		requestedFiles = Collections.synchronizedList(new ArrayList<String>());
+		
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				byte[] data = serverFiles.get(exchange.getRequestURI().getPath());
+				
+				requestedFiles.add(exchange.getRequestURI().getPath());
+				
+				try {
+					if (data != null) {
+						OutputStream out;
+						
+						exchange.sendResponseHeaders(200, data.length);
+						out = exchange.getResponseBody();
+						out.write(data);
+						out.close();
+					} else {
+						exchange.sendResponseHeaders(404, -1);
+					}
+				} finally {
+					exchange.close();
+				}
+			}
+		});
+		server.start();
+		
+		workingDirectory = dataUtils.newFolder();
+	}
+	
+	
+	/**
+	 * Stops the local http server.
+	 */
+	@After
+	public void tearDown() {
+		server.stop(0);
+	}
+	
+	
+	private void writeConfiguration(int maxInterval, int prefetchCount) throws IOException {
+		Properties properties;
+		OutputStream out;
+		
+		properties = new Properties();
+		properties.setProperty("baseUrl", "http://127.0.0.1:" + server.getAddress().getPort() + "/");
+		properties.setProperty("maxInterval", Integer.toString(maxInterval));
+		if (prefetchCount >= 0) {
+			properties.setProperty("prefetchCount", Integer.toString(prefetchCount));
+		}
+		
+		out = new FileOutputStream(new File(workingDirectory, "configuration.txt"));
+		try {
+			properties.store(out, null);
+		} finally {
+			out.close();
+		}
+		
+		new PropertiesPersister(new File(workingDirectory, "state.txt")).store(
+				new ReplicationState(new Date(BASE_TIME + 2 * INTERVAL), 2).store());
+	}
+	
+	
+	private long getLocalSequenceNumber() {
+		return new ReplicationState(
+				new PropertiesPersister(new File(workingDirectory, "state.txt")).loadMap()).getSequenceNumber();
+	}
+	
+	
+	private void assertNoDownloadedFiles() {
+		for (String fileName : workingDirectory.list()) {
+			Assert.assertFalse("Downloaded file " + fileName + " was not deleted.", fileName.endsWith(".prefetch"));
+		}
+	}
+	
+	
+	/**
+	 * Verifies that all available files are processed in order.
+	 * 
+	 * @throws IOException
+	 *             if the configuration cannot be written.
+	 */
+	@Test
+	public void testDownloadAll() throws IOException {
+		for (int prefetchCount = -1; prefetchCount <= 4; prefetchCount++) {
+			RecordingDownloader downloader;
+			List<Long> expected;
+			
+			writeConfiguration(0, prefetchCount);
+			downloader = new RecordingDownloader(workingDirectory);
+			downloader.run();
+			
+			expected = new ArrayList<Long>();
+			for (long i = 3; i <= 10; i++) {
+				expected.add(i);
+			}
+			Assert.assertEquals("Incorrect sequences processed.", expected, downloader.getProcessedSequences());
+			Assert.assertEquals("Incorrect nodes processed.", expected, downloader.getProcessedNodeIds());
+			Assert.assertEquals("Incorrect local state.", 10, getLocalSequenceNumber());
+			assertNoDownloadedFiles();
+		}
+	}
+	
+	
+	/**
+	 * Verifies that downloading stops at the maximum interval, and that change
+	 * files beyond that point are not downloaded.
+	 * 
+	 * @throws IOException
+	 *             if the configuration cannot be written.
+	 */
+	@Test
+	public void testMaxInterval() throws IOException {
+		for (int prefetchCount = 0; prefetchCount <= 4; prefetchCount++) {
+			RecordingDownloader downloader;
+			
+			writeConfiguration(180, prefetchCount);
+			requestedFiles.clear();
+			downloader = new RecordingDownloader(workingDirectory);
+			downloader.run();
+			
+			Assert.assertEquals("Incorrect sequences processed.", 3, downloader.getProcessedSequences().size());
+			Assert.assertEquals("Incorrect local state.", 5, getLocalSequenceNumber());
+			assertNoDownloadedFiles();
+			for (long i = 6; i <= 10; i++) {
+				Assert.assertFalse("Change file " + i + " should not have been downloaded.",
+						requestedFiles.contains("/000/000/00" + i + ".osc.gz"));
+			}
+		}
+	}
+	
+	
+	/**
+	 * Verifies that a single interval exceeding the maximum interval is still
+	 * downloaded when prefetching.
+	 * 
+	 * @throws IOException
+	 *             if the configuration cannot be written.
+	 */
+	@Test
+	public void testFirstIntervalExceedsMaximum() throws IOException {
+		for (int prefetchCount = 0; prefetchCount <= 2; prefetchCount++) {
+			RecordingDownloader downloader;
+			
+			writeConfiguration(30, prefetchCount);
+			downloader = new RecordingDownloader(workingDirectory);
+			downloader.run();
+			
+			Assert.assertEquals("Incorrect sequences processed.", Collections.singletonList(3L),
+					downloader.getProcessedSequences());
+			Assert.assertEquals("Incorrect local state.", 3, getLocalSequenceNumber());
+			assertNoDownloadedFiles();
+		}
+	}
+	
+	
+	/**
+	 * Verifies that prefetched files abandoned by a previous invocation are
+	 * removed, and that other files in the working directory are left alone.
+	 * 
+	 * @throws IOException
+	 *             if the files cannot be created.
+	 */
+	@Test
+	public void testOrphanedPrefetchFiles() throws IOException {
+		File orphanedFile;
+		File otherFile;
+		
+		writeConfiguration(0, 2);
+		orphanedFile = File.createTempFile("change", ".prefetch", workingDirectory);
+		otherFile = new File(workingDirectory, "changes.txt");
+		Assert.assertTrue("Unable to create file.", otherFile.createNewFile());
+		
+		new RecordingDownloader(workingDirectory).run();
+		
+		Assert.assertFalse("The orphaned file should have been deleted.", orphanedFile.exists());
+		Assert.assertTrue("Other files should be retained.", otherFile.exists());
+	}
+	
+	
+	/**
+	 * Verifies that a missing file on the server fails the download and leaves
+	 * the local state unchanged.
+	 * 
+	 * @throws IOException
+	 *             if the configuration cannot be written.
+	 */
+	@Test
+	public void testMissingFile() throws IOException {
+		serverFiles.remove("/000/000/006.osc.gz");
+		
+		for (int prefetchCount = 0; prefetchCount <= 4; prefetchCount++) {
+			RecordingDownloader downloader;
+			boolean failed;
+			
+			writeConfiguration(0, prefetchCount);
+			downloader = new RecordingDownloader(workingDirectory);
+			
+			failed = false;
+			try {
+				downloader.run();
+			} catch (OsmosisRuntimeException e) {
+				failed = true;
+			}
+			
+			Assert.assertTrue("The download should have failed.", failed);
+			Assert.assertEquals("Incorrect nodes processed.", 3, downloader.getProcessedNodeIds().size());
+			Assert.assertEquals("Incorrect local state.", 2, getLocalSequenceNumber());
+			assertNoDownloadedFiles();
+		}
+	}
+	
+	
+	/**
+	 * Records the replication files processed by the downloader.
+	 */
+	private static class RecordingDownloader extends BaseReplicationDownloader {
+		private List<Long> processedSequences;
+		private SinkChangeInspector changeInspector;
+		
+		
+		/**
+		 * Creates a new instance.
+		 * 
+		 * @param workingDirectory
+		 *            The directory containing configuration and tracking files.
+		 */
+		RecordingDownloader(File workingDirectory) {
+			super(workingDirectory);
+			
+			processedSequences = new ArrayList<Long>();
+			changeInspector = new SinkChangeInspector();
+		}
+		
+		
+		/**
+		 * Gets the sequence numbers of the processed replication files.
+		 * 
+		 * @return The sequence numbers.
+		 */
+		public List<Long> getProcessedSequences() {
+			return processedSequences;
+		}
+		
+		
+		/**
+		 * Gets the ids of the nodes within the processed replication files.
+		 * 
+		 * @return The node ids.
+		 */
+		public List<Long> getProcessedNodeIds() {
+			List<Long> nodeIds;
+			
+			nodeIds = new ArrayList<Long>();
+			for (ChangeContainer change : changeInspector.getProcessedChanges()) {
+				nodeIds.add(change.getEntityContainer().getEntity().getId());
+			}
+			
+			return nodeIds;
+		}
+		
+		
+		@Override
+		protected void processInitialize(Map<String, Object> metaData) {
+			// Do nothing.
+		}
+		
+		
+		@Override
+		protected void processInitializeState(ReplicationState initialState) {
+			// Do nothing.
+		}
+		
+		
+		@Override
+		protected void processChangeset(XmlChangeReader xmlReader, ReplicationState replicationState) {
+			processedSequences.add(replicationState.getSequenceNumber());
+			xmlReader.setChangeSink(changeInspector);
+			xmlReader.run();
+		}
+		
+		
+		@Override
+		protected void processComplete() {
+			// Do nothing.
+		}
+		
+		
+		@Override
+		protected void processRelease() {
+			// Do nothing.
+		}
+	}
+}
@@ -16,6 +16,7 @@ import org.openstreetmap.osmosis.core.pipeline.v0_6.SinkSourceManager;
  * @author Christoph Sommer
  */
 public class UsedNodeFilterFactory extends TaskManagerFactory {
+	private static final String ARG_ID_TRACKER_TYPE = "idTrackerType";
 	private static final IdTrackerType DEFAULT_ID_TRACKER_TYPE = IdTrackerType.Dynamic;
 	
 	
@@ -30,7 +31,8 @@ public class UsedNodeFilterFactory extends TaskManagerFactory {
 	protected IdTrackerType getIdTrackerType(
 			TaskConfiguration taskConfig) {
 		
-		return DEFAULT_ID_TRACKER_TYPE;
+		return IdTrackerType.valueOf(
+				getStringArgument(taskConfig, ARG_ID_TRACKER_TYPE, DEFAULT_ID_TRACKER_TYPE.name()));
 	}
 
 	/**
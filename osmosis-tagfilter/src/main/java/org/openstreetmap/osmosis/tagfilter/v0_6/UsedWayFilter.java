@@ -18,6 +18,7 @@ import org.openstreetmap.osmosis.core.filter.common.IdTrackerType;
 import org.openstreetmap.osmosis.core.lifecycle.ReleasableIterator;
 import org.openstreetmap.osmosis.core.store.SimpleObjectStore;
 import org.openstreetmap.osmosis.core.store.SingleClassObjectSerializationFactory;
+import org.openstreetmap.osmosis.core.store.StorageFormat;
 import org.openstreetmap.osmosis.core.task.v0_6.Sink;
 import org.openstreetmap.osmosis.core.task.v0_6.SinkSource;
 
@@ -46,11 +47,12 @@ public class UsedWayFilter implements SinkSource, EntityProcessor {
 	 */
 	public UsedWayFilter(IdTrackerType idTrackerType) {
 		allNodes = new SimpleObjectStore<NodeContainer>(
-				new SingleClassObjectSerializationFactory(NodeContainer.class), "afnd", true);
+				new SingleClassObjectSerializationFactory(NodeContainer.class), "afnd", true, StorageFormat.Compact);
 		allWays = new SimpleObjectStore<WayContainer>(
-				new SingleClassObjectSerializationFactory(WayContainer.class), "afwy", true);
+				new SingleClassObjectSerializationFactory(WayContainer.class), "afwy", true, StorageFormat.Compact);
 		allRelations = new SimpleObjectStore<RelationContainer>(
-				new SingleClassObjectSerializationFactory(RelationContainer.class), "afrl", true);
+				new SingleClassObjectSerializationFactory(RelationContainer.class), "afrl", true,
+				StorageFormat.Compact);
 
 		requiredWays = IdTrackerFactory.createInstance(idTrackerType);
 	}
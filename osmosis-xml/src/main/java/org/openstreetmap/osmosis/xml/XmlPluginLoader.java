@@ -7,6 +7,7 @@ import java.util.Map;
 import org.openstreetmap.osmosis.core.pipeline.common.TaskManagerFactory;
 import org.openstreetmap.osmosis.core.plugin.PluginLoader;
 import org.openstreetmap.osmosis.xml.v0_6.FastXmlReaderFactory;
+import org.openstreetmap.osmosis.xml.v0_6.ParallelXmlReaderFactory;
 import org.openstreetmap.osmosis.xml.v0_6.XmlChangeReaderFactory;
 import org.openstreetmap.osmosis.xml.v0_6.XmlChangeUploaderFactory;
 import org.openstreetmap.osmosis.xml.v0_6.XmlChangeWriterFactory;
@@ -33,6 +34,7 @@ public class XmlPluginLoader implements PluginLoader {
 		
 		factoryMap.put("read-xml", new XmlReaderFactory());
 		factoryMap.put("fast-read-xml", new FastXmlReaderFactory());
+		factoryMap.put("parallel-read-xml", new ParallelXmlReaderFactory());
 		factoryMap.put("rx", new XmlReaderFactory());
         factoryMap.put("read-xml-change",  new XmlChangeReaderFactory());
         factoryMap.put("upload-xml-change", new XmlChangeUploaderFactory());
@@ -46,6 +48,7 @@ public class XmlPluginLoader implements PluginLoader {
 		
 		factoryMap.put("read-xml-0.6", new XmlReaderFactory());
 		factoryMap.put("fast-read-xml-0.6", new FastXmlReaderFactory());
+		factoryMap.put("parallel-read-xml-0.6", new ParallelXmlReaderFactory());
 		factoryMap.put("read-xml-change-0.6", new XmlChangeReaderFactory());
 		factoryMap.put("write-xml-0.6", new XmlWriterFactory());
 		factoryMap.put("write-xml-change-0.6", new XmlChangeWriterFactory());
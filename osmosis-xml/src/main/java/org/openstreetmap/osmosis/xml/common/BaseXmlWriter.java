@@ -6,7 +6,6 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -29,7 +28,9 @@ public abstract class BaseXmlWriter {
 	private File file;
 	private boolean initialized;
 	private BufferedWriter writer;
+	private XmlOutputBuffer output;
 	private CompressionMethod compressionMethod;
+	private int compressionWorkers;
 	
 	
 	/**
@@ -54,8 +55,24 @@ public abstract class BaseXmlWriter {
 	 *            Specifies the compression method to employ.
 	 */
 	public BaseXmlWriter(File file, CompressionMethod compressionMethod) {
+		this(file, compressionMethod, 1);
+	}
+	
+	
+	/**
+	 * Creates a new instance to write to the specified file.
+	 * 
+	 * @param file
+	 *            The file to write.
+	 * @param compressionMethod
+	 *            Specifies the compression method to employ.
+	 * @param compressionWorkers
+	 *            The number of threads used to compress the file.
+	 */
+	public BaseXmlWriter(File file, CompressionMethod compressionMethod, int compressionWorkers) {
 		this.file = file;
 		this.compressionMethod = compressionMethod;
+		this.compressionWorkers = compressionWorkers;
 		
 		writerProvided = false;
 		closeRequired = true;
@@ -63,12 +80,13 @@ public abstract class BaseXmlWriter {
 	
 	
 	/**
-	 * Sets the writer on the element writer used for this implementation.
+	 * Sets the output buffer on the element writer used for this
+	 * implementation.
 	 * 
-	 * @param resultWriter
-	 *            The writer receiving xml data.
+	 * @param resultOutput
+	 *            The buffer receiving xml data.
 	 */
-	protected abstract void setWriterOnElementWriter(BufferedWriter resultWriter);
+	protected abstract void setOutputOnElementWriter(XmlOutputBuffer resultOutput);
 	
 	
 	/**
@@ -83,35 +101,6 @@ public abstract class BaseXmlWriter {
 	protected abstract void endElementWriter();
 	
 	
-	/**
-	 * Writes data to the output file.
-	 * 
-	 * @param data
-	 *            The data to be written.
-	 */
-	private void write(String data) {
-		try {
-			writer.write(data);
-			
-		} catch (IOException e) {
-			throw new OsmosisRuntimeException("Unable to write data.", e);
-		}
-	}
-	
-	
-	/**
-	 * Writes a new line in the output file.
-	 */
-	private void writeNewLine() {
-		try {
-			writer.newLine();
-			
-		} catch (IOException e) {
-			throw new OsmosisRuntimeException("Unable to write data.", e);
-		}
-	}
-    
-    
 	/**
 	 * Initialize the object.
 	 * 
@@ -135,8 +124,6 @@ public abstract class BaseXmlWriter {
 				OutputStream outStream = null;
 				
 				try {
-					OutputStreamWriter outStreamWriter;
-					
 					// make "-" an alias for /dev/stdout
 					if (file.getName().equals("-")) {
 						outStream = System.out;
@@ -149,11 +136,12 @@ public abstract class BaseXmlWriter {
 					}
 					
 					outStream =
-						new CompressionActivator(compressionMethod).createCompressionOutputStream(outStream);
+						new CompressionActivator(compressionMethod, compressionWorkers)
+							.createCompressionOutputStream(outStream);
 					
-					outStreamWriter = new OutputStreamWriter(outStream, "UTF-8");
-					
-					writer = new BufferedWriter(outStreamWriter);
+					// Xml is encoded directly into bytes by the output buffer,
+					// no character writer is required.
+					output = new XmlOutputBuffer(outStream);
 					
 					outStream = null;
 					
@@ -169,14 +157,16 @@ public abstract class BaseXmlWriter {
 						outStream = null;
 					}
 				}
+			} else {
+				output = new XmlOutputBuffer(writer);
 			}
 			
-			setWriterOnElementWriter(writer);
+			setOutputOnElementWriter(output);
 			
 			initialized = true;
 			
-			write("<?xml version='1.0' encoding='UTF-8'?>");
-			writeNewLine();
+			output.writeRaw("<?xml version='1.0' encoding='UTF-8'?>");
+			output.writeLineSeparator();
 			
 			beginElementWriter();
 		}
@@ -193,19 +183,14 @@ public abstract class BaseXmlWriter {
 
 		endElementWriter();
 
-		try {
-			if (closeRequired) {
-				writer.close();
-				writer = null;
-			} else if (!writerProvided) {
-				writer.flush();
-			}
-
-			initialized = false;
-
-		} catch (IOException e) {
-			throw new OsmosisRuntimeException("Unable to complete writing to the xml stream.", e);
+		if (closeRequired) {
+			output.close();
+			output = null;
+		} else if (!writerProvided) {
+			output.flush();
 		}
+
+		initialized = false;
 	}
 	
 	
@@ -217,14 +202,14 @@ public abstract class BaseXmlWriter {
 			if (closeRequired) {
 				try {
 					try {
-						if (writer != null) {
-							writer.close();
+						if (output != null) {
+							output.close();
 						}
-					} catch (IOException e) {
+					} catch (OsmosisRuntimeException e) {
 						log.log(Level.SEVERE, "Unable to close writer.", e);
 					}
 				} finally {
-					writer = null;
+					output = null;
 				}
 			}
 		} finally {
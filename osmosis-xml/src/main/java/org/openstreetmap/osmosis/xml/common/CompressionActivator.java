@@ -11,6 +11,10 @@ import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream
 
 import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
 import org.openstreetmap.osmosis.core.util.MultiMemberGZIPInputStream;
+import org.openstreetmap.osmosis.core.util.ParallelBZip2InputStream;
+import org.openstreetmap.osmosis.core.util.ParallelBZip2OutputStream;
+import org.openstreetmap.osmosis.core.util.ParallelGZIPInputStream;
+import org.openstreetmap.osmosis.core.util.ParallelGZIPOutputStream;
 
 
 /**
@@ -22,6 +26,7 @@ import org.openstreetmap.osmosis.core.util.MultiMemberGZIPInputStream;
 public class CompressionActivator {
 	
 	private CompressionMethod compressionMethod;
+	private int workers;
 	
 	
 	/**
@@ -31,7 +36,23 @@ public class CompressionActivator {
 	 *            The compression method to employ.
 	 */
 	public CompressionActivator(CompressionMethod compressionMethod) {
+		this(compressionMethod, 1);
+	}
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param compressionMethod
+	 *            The compression method to employ.
+	 * @param workers
+	 *            The number of threads to compress or decompress data with. If
+	 *            greater than 1, gzip data is written as independently
+	 *            compressed members and bzip2 data as concatenated streams.
+	 */
+	public CompressionActivator(CompressionMethod compressionMethod, int workers) {
 		this.compressionMethod = compressionMethod;
+		this.workers = workers;
 	}
 	
 	
@@ -52,10 +73,16 @@ public class CompressionActivator {
 			}
 			
 			if (CompressionMethod.GZip.equals(compressionMethod)) {
+				if (workers > 1) {
+					return new ParallelGZIPOutputStream(destinationStream, workers);
+				}
 				return new GZIPOutputStream(destinationStream);
 			}
 			
 			if (CompressionMethod.BZip2.equals(compressionMethod)) {
+				if (workers > 1) {
+					return new ParallelBZip2OutputStream(destinationStream, workers);
+				}
 				return new BZip2CompressorOutputStream(destinationStream);
 			}
 			
@@ -85,11 +112,19 @@ public class CompressionActivator {
 			}
 			
 			if (CompressionMethod.GZip.equals(compressionMethod)) {
+				if (workers > 1) {
+					return new ParallelGZIPInputStream(sourceStream, workers);
+				}
 				return new MultiMemberGZIPInputStream(sourceStream);
 			}
 			
 			if (CompressionMethod.BZip2.equals(compressionMethod)) {
-				return new BZip2CompressorInputStream(sourceStream);
+				if (workers > 1) {
+					return new ParallelBZip2InputStream(sourceStream, workers);
+				}
+				// Read all concatenated streams, files compressed by pbzip2
+				// contain many streams.
+				return new BZip2CompressorInputStream(sourceStream, true);
 			}
 			
 			throw new OsmosisRuntimeException("Compression method " + compressionMethod + " is not recognized.");
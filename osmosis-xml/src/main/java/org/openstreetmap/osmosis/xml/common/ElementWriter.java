@@ -1,16 +1,14 @@
 // This software is released into the Public Domain.  See copying.txt for details.
 package org.openstreetmap.osmosis.xml.common;
 
-import java.io.IOException;
 import java.io.Writer;
-import java.util.HashMap;
-import java.util.Map;
 
-import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
 import org.openstreetmap.osmosis.core.domain.common.TimestampFormat;
 
 /**
  * Provides common functionality for all classes writing elements to xml.
+ * Output is written as UTF-8 bytes to an {@link XmlOutputBuffer} which may be
+ * shared between all writers of a document.
  *
  * @author Brett Henderson
  */
@@ -21,39 +19,14 @@ public class ElementWriter {
      */
     private static final int INDENT_SPACES_PER_LEVEL = 2;
 
-    /**
-     * Defines the characters that must be replaced by
-     * an encoded string when writing to XML.
-     */
-    private static final Map<Character, String> XML_ENCODING;
+    private static final byte[] END_OPEN_ELEMENT = XmlOutputBuffer.encode(">");
 
-    static {
-        // Define all the characters and their encodings.
-        XML_ENCODING = new HashMap<Character, String>();
-        
-        // Non-xml compatible control characters will not be written
-        // with the exception of tab, carriage return and line feed.
-        for (int i = 0; i <= 0x1F; i++) {
-        	if (i != 0x9 && i != 0xA && i != 0xD) {
-        		XML_ENCODING.put(new Character((char) i), "");
-        	}
-        }
-        XML_ENCODING.put(new Character((char) 0x7F), "");
-        
-        XML_ENCODING.put(new Character('<'), "&lt;");
-        XML_ENCODING.put(new Character('>'), "&gt;");
-        XML_ENCODING.put(new Character('"'), "&quot;");
-        XML_ENCODING.put(new Character('\''), "&apos;");
-        XML_ENCODING.put(new Character('&'), "&amp;");
-        XML_ENCODING.put(new Character('\n'), "&#xA;");
-        XML_ENCODING.put(new Character('\r'), "&#xD;");
-        XML_ENCODING.put(new Character('\t'), "&#x9;");
-    }
+    private static final byte[] CLOSE_OPEN_ELEMENT = XmlOutputBuffer.encode("/>");
 
     /**
      * The output destination for writing all xml.
      */
-    private Writer myWriter;
+    private XmlOutputBuffer myOutput;
 
     /**
      * The name of the element to be written.
@@ -68,10 +41,14 @@ public class ElementWriter {
     private final TimestampFormat myTimestampFormat;
 
     /**
-     * Line separator string.  This is the value of the line.separator
-     * property at the moment that the stream was created.
+     * The indent and the beginning of the opening tag, pre-encoded.
      */
-    private String myLineSeparator;
+    private final byte[] myOpenElementPrefix;
+
+    /**
+     * The indent and the closing tag, pre-encoded.
+     */
+    private final byte[] myCloseElement;
 
     /**
      * Creates a new instance.
@@ -81,11 +58,30 @@ public class ElementWriter {
      */
     protected ElementWriter(final String anElementName,
                             final int anIndentionLevel) {
+        StringBuilder indent;
+
         this.myElementName = anElementName;
         this.myIndentLevel = anIndentionLevel;
 
         myTimestampFormat = new XmlTimestampFormat();
-        this.myLineSeparator = System.getProperty("line.separator");
+
+        indent = new StringBuilder();
+        for (int i = 0; i < myIndentLevel * INDENT_SPACES_PER_LEVEL; i++) {
+            indent.append(' ');
+        }
+        myOpenElementPrefix = XmlOutputBuffer.encode(indent + "<" + myElementName);
+        myCloseElement = XmlOutputBuffer.encode(indent + "</" + myElementName + ">");
+    }
+
+    /**
+     * Pre-encodes the name of an attribute for use with the attribute methods
+     * accepting encoded names.
+     *
+     * @param name The name of the attribute.
+     * @return The encoded name.
+     */
+    protected static byte[] encodeAttributeName(final String name) {
+        return XmlOutputBuffer.encode(" " + name + "=\"");
     }
 
     /**
@@ -97,55 +93,20 @@ public class ElementWriter {
     	if (aWriter == null) {
     		throw new IllegalArgumentException("null writer given");
     	}
-        this.myWriter = aWriter;
+        setOutput(new XmlOutputBuffer(aWriter));
     }
 
     /**
-     * Writes a series of spaces to indent the current line.
+     * Sets the buffer used as the xml output destination. Sub-classes
+     * containing nested element writers must pass the buffer on to them.
      *
-     * @throws IOException if an error occurs.
+     * @param anOutput The output buffer.
      */
-    private void writeIndent() throws IOException {
-        int indentSpaceCount;
-
-        indentSpaceCount = myIndentLevel * INDENT_SPACES_PER_LEVEL;
-
-        for (int i = 0; i < indentSpaceCount; i++) {
-            myWriter.append(' ');
-        }
-    }
-
-    /**
-     * A utility method for encoding data in XML format.
-     *
-     * @param data The data to be formatted.
-     * @return The formatted data. This may be the input
-     *         string if no changes are required.
-     */
-    private String escapeData(final String data) {
-        StringBuilder buffer = null;
-
-        for (int i = 0; i < data.length(); ++i) {
-            char currentChar = data.charAt(i);
-
-            String replacement = XML_ENCODING.get(new Character(currentChar));
-
-            if (replacement != null) {
-                if (buffer == null) {
-                    buffer = new StringBuilder(data.substring(0, i));
-                }
-                buffer.append(replacement);
-
-            } else if (buffer != null) {
-                buffer.append(currentChar);
-            }
-        }
-
-        if (buffer == null) {
-            return data;
-        } else {
-            return buffer.toString();
-        }
+    public void setOutput(final XmlOutputBuffer anOutput) {
+    	if (anOutput == null) {
+    		throw new IllegalArgumentException("null output given");
+    	}
+        this.myOutput = anOutput;
     }
 
     /**
@@ -162,15 +123,7 @@ public class ElementWriter {
      * closing portion of the tag.
      */
     protected void beginOpenElement() {
-        try {
-            writeIndent();
-
-            myWriter.append('<');
-            myWriter.append(this.myElementName);
-
-        } catch (IOException e) {
-            throw new OsmosisRuntimeException("Unable to write data.", e);
-        }
+        myOutput.write(myOpenElementPrefix);
     }
 
     /**
@@ -181,17 +134,13 @@ public class ElementWriter {
      *        tag in the output xml file.
      */
     protected void endOpenElement(final boolean closeElement) {
-        try {
-            if (closeElement) {
-                myWriter.append('/');
-            }
-            myWriter.append('>');
-
-            myWriter.append(this.myLineSeparator);
-
-        } catch (IOException e) {
-            throw new OsmosisRuntimeException("Unable to write data.", e);
+        if (closeElement) {
+            myOutput.write(CLOSE_OPEN_ELEMENT);
+        } else {
+            myOutput.write(END_OPEN_ELEMENT);
         }
+
+        myOutput.writeLineSeparator();
     }
 
     /**
@@ -201,35 +150,74 @@ public class ElementWriter {
      * @param value The value of the attribute.
      */
     protected void addAttribute(final String name, final String value) {
-        try {
-            myWriter.append(' ');
-            myWriter.append(name);
-            myWriter.append("=\"");
+        myOutput.write(' ');
+        myOutput.writeRaw(name);
+        myOutput.write('=');
+        myOutput.write('"');
 
-            myWriter.append(escapeData(value));
+        myOutput.writeEscaped(value);
 
-            myWriter.append('"');
+        myOutput.write('"');
+    }
 
-        } catch (IOException e) {
-            throw new OsmosisRuntimeException("Unable to write data.", e);
-        }
+    /**
+     * Adds an attribute to the element.
+     *
+     * @param encodedName The name of the attribute as returned by
+     *        {@link #encodeAttributeName(String)}.
+     * @param value The value of the attribute.
+     */
+    protected void addAttribute(final byte[] encodedName, final String value) {
+        myOutput.write(encodedName);
+        myOutput.writeEscaped(value);
+        myOutput.write('"');
     }
 
     /**
-     * Writes the closing tag of the element.
+     * Adds a numeric attribute to the element.
+     *
+     * @param encodedName The name of the attribute as returned by
+     *        {@link #encodeAttributeName(String)}.
+     * @param value The value of the attribute.
      */
-    protected void closeElement() {
-        try {
-            writeIndent();
+    protected void addAttribute(final byte[] encodedName, final long value) {
+        myOutput.write(encodedName);
+        myOutput.writeLong(value);
+        myOutput.write('"');
+    }
 
-            myWriter.append("</");
-            myWriter.append(myElementName);
-            myWriter.append('>');
+    /**
+     * Adds a coordinate attribute to the element. Up to seven decimal places
+     * are written.
+     *
+     * @param encodedName The name of the attribute as returned by
+     *        {@link #encodeAttributeName(String)}.
+     * @param value The value of the attribute.
+     */
+    protected void addCoordinateAttribute(final byte[] encodedName, final double value) {
+        myOutput.write(encodedName);
+        myOutput.writeCoordinate(value);
+        myOutput.write('"');
+    }
 
-            myWriter.append(this.myLineSeparator);
+    /**
+     * Adds a timestamp attribute to the element.
+     *
+     * @param encodedName The name of the attribute as returned by
+     *        {@link #encodeAttributeName(String)}.
+     * @param millis The timestamp in milliseconds since the epoch.
+     */
+    protected void addTimestampAttribute(final byte[] encodedName, final long millis) {
+        myOutput.write(encodedName);
+        myOutput.writeTimestamp(millis);
+        myOutput.write('"');
+    }
 
-        } catch (IOException e) {
-            throw new OsmosisRuntimeException("Unable to write data.", e);
-        }
+    /**
+     * Writes the closing tag of the element.
+     */
+    protected void closeElement() {
+        myOutput.write(myCloseElement);
+        myOutput.writeLineSeparator();
     }
 }
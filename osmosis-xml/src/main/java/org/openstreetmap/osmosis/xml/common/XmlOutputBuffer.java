@@ -0,0 +1,567 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.xml.common;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.util.Date;
+import java.util.Locale;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+
+
+/**
+ * Accumulates xml output as UTF-8 bytes in a re-usable buffer. Strings are
+ * escaped and encoded a character at a time, and numbers and timestamps are
+ * formatted directly into the buffer so that no objects are created for
+ * typical data.
+ * <p>
+ * Output is passed either to an output stream, which is the fast path used
+ * when writing files, or to a writer. When writing to a writer the buffer is
+ * passed on at the end of every line so that the writer always holds complete
+ * elements.
+ */
+public class XmlOutputBuffer {
+	
+	private static final int BUFFER_SIZE = 65536;
+	
+	/**
+	 * The largest number of bytes a single character may be written as.
+	 */
+	private static final int MAX_CHARACTER_LENGTH = 6;
+	
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	/**
+	 * The replacement for characters that can't be encoded.
+	 */
+	private static final byte UNMAPPABLE_CHARACTER = '?';
+	
+	/**
+	 * The escaped form of each ASCII character, or null if the character is
+	 * written unchanged.
+	 */
+	private static final byte[][] ESCAPED_CHARACTERS;
+	
+	/**
+	 * The number of decimal places written for coordinates.
+	 */
+	private static final int COORDINATE_DECIMALS = 7;
+	private static final double COORDINATE_SCALE = 1e7;
+	
+	/**
+	 * Coordinates at or above this magnitude are formatted by a DecimalFormat.
+	 * Below it, scaling a coordinate can't move it across a rounding boundary.
+	 */
+	private static final double MAX_FAST_COORDINATE = 1e4;
+	
+	/**
+	 * Scaled coordinates this close to halfway between two values are formatted
+	 * by a DecimalFormat to ensure they are rounded identically.
+	 */
+	private static final double MAX_FAST_ROUNDING = 0.4999;
+	
+	private static final long MILLIS_PER_SECOND = 1000;
+	private static final long SECONDS_PER_DAY = 86400;
+	
+	/**
+	 * Timestamps from this point on have a year with more than four digits and
+	 * are formatted by a DateFormatter.
+	 */
+	private static final long MAX_FAST_TIMESTAMP = 253402300800000L;
+	
+	private static final int TIMESTAMP_LENGTH = 20;
+	
+	static {
+		ESCAPED_CHARACTERS = new byte[128][];
+		
+		// Non-xml compatible control characters will not be written with the
+		// exception of tab, carriage return and line feed.
+		for (int i = 0; i <= 0x1F; i++) {
+			ESCAPED_CHARACTERS[i] = new byte[0];
+		}
+		ESCAPED_CHARACTERS[0x7F] = new byte[0];
+		
+		ESCAPED_CHARACTERS['<'] = encode("&lt;");
+		ESCAPED_CHARACTERS['>'] = encode("&gt;");
+		ESCAPED_CHARACTERS['"'] = encode("&quot;");
+		ESCAPED_CHARACTERS['\''] = encode("&apos;");
+		ESCAPED_CHARACTERS['&'] = encode("&amp;");
+		ESCAPED_CHARACTERS['\n'] = encode("&#xA;");
+		ESCAPED_CHARACTERS['\r'] = encode("&#xD;");
+		ESCAPED_CHARACTERS['\t'] = encode("&#x9;");
+	}
+	
+	private OutputStream outputStream;
+	private Writer writer;
+	private byte[] buffer;
+	private int count;
+	private byte[] lineSeparator;
+	private NumberFormat coordinateFormat;
+	private XmlTimestampFormat timestampFormat;
+	private byte[] timestamp;
+	private long timestampSecond;
+	private long timestampDay;
+	
+	
+	/**
+	 * Creates a new instance writing to an output stream.
+	 * 
+	 * @param outputStream
+	 *            The stream to receive the output.
+	 */
+	public XmlOutputBuffer(OutputStream outputStream) {
+		this(outputStream, null);
+	}
+	
+	
+	/**
+	 * Creates a new instance writing to a writer.
+	 * 
+	 * @param writer
+	 *            The writer to receive the output.
+	 */
+	public XmlOutputBuffer(Writer writer) {
+		this(null, writer);
+	}
+	
+	
+	private XmlOutputBuffer(OutputStream outputStream, Writer writer) {
+		this.outputStream = outputStream;
+		this.writer = writer;
+		
+		buffer = new byte[BUFFER_SIZE];
+		lineSeparator = encode(System.getProperty("line.separator"));
+		
+		timestamp = new byte[TIMESTAMP_LENGTH];
+		timestampSecond = -1;
+		timestampDay = -1;
+	}
+	
+	
+	/**
+	 * Encodes a string as UTF-8 bytes. This is intended for pre-encoding
+	 * constant strings such as element and attribute names.
+	 * 
+	 * @param data
+	 *            The string to encode.
+	 * @return The encoded bytes.
+	 */
+	public static byte[] encode(String data) {
+		return data.getBytes(UTF8);
+	}
+	
+	
+	/**
+	 * Passes all buffered bytes to the destination.
+	 */
+	private void drain() {
+		if (count == 0) {
+			return;
+		}
+		
+		try {
+			if (outputStream != null) {
+				outputStream.write(buffer, 0, count);
+			} else {
+				writer.write(new String(buffer, 0, count, UTF8));
+			}
+			
+		} catch (IOException e) {
+			throw new OsmosisRuntimeException("Unable to write data.", e);
+		}
+		
+		count = 0;
+	}
+	
+	
+	/**
+	 * Ensures that the specified number of bytes may be added to the buffer.
+	 * 
+	 * @param length
+	 *            The number of bytes to be added.
+	 */
+	private void reserve(int length) {
+		if (count + length > buffer.length) {
+			drain();
+		}
+	}
+	
+	
+	/**
+	 * Writes a single ASCII character.
+	 * 
+	 * @param data
+	 *            The character to write.
+	 */
+	public void write(char data) {
+		reserve(1);
+		buffer[count++] = (byte) data;
+	}
+	
+	
+	/**
+	 * Writes pre-encoded bytes.
+	 * 
+	 * @param data
+	 *            The bytes to write.
+	 */
+	public void write(byte[] data) {
+		if (data.length > buffer.length) {
+			drain();
+			try {
+				if (outputStream != null) {
+					outputStream.write(data);
+				} else {
+					writer.write(new String(data, UTF8));
+				}
+			} catch (IOException e) {
+				throw new OsmosisRuntimeException("Unable to write data.", e);
+			}
+			
+		} else {
+			reserve(data.length);
+			System.arraycopy(data, 0, buffer, count, data.length);
+			count += data.length;
+		}
+	}
+	
+	
+	/**
+	 * Writes a string without escaping any characters.
+	 * 
+	 * @param data
+	 *            The string to write.
+	 */
+	public void writeRaw(String data) {
+		writeString(data, false);
+	}
+	
+	
+	/**
+	 * Writes a string, escaping characters with special meaning in xml
+	 * attribute values and leaving out characters that can't appear in xml.
+	 * 
+	 * @param data
+	 *            The string to write.
+	 */
+	public void writeEscaped(String data) {
+		writeString(data, true);
+	}
+	
+	
+	private void writeString(String data, boolean escape) {
+		int length;
+		
+		length = data.length();
+		for (int i = 0; i < length; i++) {
+			char c = data.charAt(i);
+			
+			reserve(MAX_CHARACTER_LENGTH);
+			
+			if (c < 0x80) {
+				byte[] escaped = null;
+				
+				if (escape) {
+					escaped = ESCAPED_CHARACTERS[c];
+				}
+				
+				if (escaped == null) {
+					buffer[count++] = (byte) c;
+				} else {
+					for (int j = 0; j < escaped.length; j++) {
+						buffer[count++] = escaped[j];
+					}
+				}
+				
+			} else if (c < 0x800) {
+				buffer[count++] = (byte) (0xC0 | (c >> 6));
+				buffer[count++] = (byte) (0x80 | (c & 0x3F));
+				
+			} else if (c < Character.MIN_SURROGATE || c > Character.MAX_SURROGATE) {
+				buffer[count++] = (byte) (0xE0 | (c >> 12));
+				buffer[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				buffer[count++] = (byte) (0x80 | (c & 0x3F));
+				
+			} else if (Character.isHighSurrogate(c) && i + 1 < length
+					&& Character.isLowSurrogate(data.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, data.charAt(++i));
+				
+				buffer[count++] = (byte) (0xF0 | (codePoint >> 18));
+				buffer[count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+				buffer[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+				buffer[count++] = (byte) (0x80 | (codePoint & 0x3F));
+				
+			} else {
+				// Unpaired surrogates are replaced in the same way as the
+				// standard UTF-8 encoder.
+				buffer[count++] = UNMAPPABLE_CHARACTER;
+			}
+		}
+	}
+	
+	
+	/**
+	 * Writes the digits of a non-negative number ending before the specified
+	 * position of a buffer.
+	 * 
+	 * @param target
+	 *            The buffer to write to.
+	 * @param value
+	 *            The number to write.
+	 * @param end
+	 *            The position following the last digit.
+	 * @param digits
+	 *            The number of digits to write, including leading zeros.
+	 */
+	private static void writeDigits(byte[] target, long value, int end, int digits) {
+		long remaining;
+		
+		remaining = value;
+		for (int i = end - 1; i >= end - digits; i--) {
+			target[i] = (byte) ('0' + remaining % 10);
+			remaining /= 10;
+		}
+	}
+	
+	
+	private static int countDigits(long value) {
+		int digits;
+		long limit;
+		
+		digits = 1;
+		limit = 10;
+		while (digits < 19 && value >= limit) {
+			digits++;
+			limit *= 10;
+		}
+		
+		return digits;
+	}
+	
+	
+	/**
+	 * Writes a number in decimal form.
+	 * 
+	 * @param value
+	 *            The number to write.
+	 */
+	public void writeLong(long value) {
+		long absolute;
+		int digits;
+		
+		if (value == Long.MIN_VALUE) {
+			writeRaw(Long.toString(value));
+			return;
+		}
+		
+		reserve(20);
+		
+		absolute = value;
+		if (value < 0) {
+			buffer[count++] = '-';
+			absolute = -value;
+		}
+		
+		digits = countDigits(absolute);
+		writeDigits(buffer, absolute, count + digits, digits);
+		count += digits;
+	}
+	
+	
+	/**
+	 * Writes a coordinate with up to seven decimal places and no trailing
+	 * zeros. The output is identical to a DecimalFormat using the pattern
+	 * "0.#######".
+	 * 
+	 * @param value
+	 *            The coordinate to write.
+	 */
+	public void writeCoordinate(double value) {
+		double scaled;
+		double rounded;
+		long fixed;
+		long fraction;
+		int decimals;
+		
+		scaled = value * COORDINATE_SCALE;
+		rounded = Math.rint(scaled);
+		
+		// Values rounding to zero are left to the DecimalFormat because it
+		// retains the sign of small negative values.
+		if (!(Math.abs(value) < MAX_FAST_COORDINATE) || rounded == 0
+				|| Math.abs(scaled - rounded) > MAX_FAST_ROUNDING) {
+			if (coordinateFormat == null) {
+				coordinateFormat = new DecimalFormat("0.#######;-0.#######", new DecimalFormatSymbols(Locale.US));
+			}
+			writeRaw(coordinateFormat.format(value));
+			return;
+		}
+		
+		fixed = (long) rounded;
+		if (fixed < 0) {
+			write('-');
+			fixed = -fixed;
+		}
+		
+		writeLong(fixed / (long) COORDINATE_SCALE);
+		
+		fraction = fixed % (long) COORDINATE_SCALE;
+		if (fraction != 0) {
+			decimals = COORDINATE_DECIMALS;
+			while (fraction % 10 == 0) {
+				fraction /= 10;
+				decimals--;
+			}
+			
+			reserve(decimals + 1);
+			buffer[count++] = '.';
+			writeDigits(buffer, fraction, count + decimals, decimals);
+			count += decimals;
+		}
+	}
+	
+	
+	/**
+	 * Writes a timestamp in the format used by osm xml files. The output is
+	 * identical to that of {@link XmlTimestampFormat}.
+	 * 
+	 * @param millis
+	 *            The timestamp in milliseconds since the epoch.
+	 */
+	public void writeTimestamp(long millis) {
+		long second;
+		
+		if (millis < 0 || millis >= MAX_FAST_TIMESTAMP) {
+			if (timestampFormat == null) {
+				timestampFormat = new XmlTimestampFormat();
+			}
+			writeRaw(timestampFormat.formatTimestamp(new Date(millis)));
+			return;
+		}
+		
+		// Consecutive entities often share a timestamp, so the previous
+		// result is kept and only the changed parts are updated.
+		second = millis / MILLIS_PER_SECOND;
+		if (second != timestampSecond) {
+			long day;
+			int secondOfDay;
+			
+			day = second / SECONDS_PER_DAY;
+			if (day != timestampDay) {
+				formatDate(day);
+				timestampDay = day;
+			}
+			
+			secondOfDay = (int) (second - day * SECONDS_PER_DAY);
+			writeDigits(timestamp, secondOfDay / 3600, 13, 2);
+			timestamp[13] = ':';
+			writeDigits(timestamp, secondOfDay / 60 % 60, 16, 2);
+			timestamp[16] = ':';
+			writeDigits(timestamp, secondOfDay % 60, 19, 2);
+			timestamp[19] = 'Z';
+			
+			timestampSecond = second;
+		}
+		
+		write(timestamp);
+	}
+	
+	
+	/**
+	 * Formats the date portion of the timestamp buffer using the proleptic
+	 * Gregorian calendar.
+	 * 
+	 * @param day
+	 *            The number of days since the epoch.
+	 */
+	private void formatDate(long day) {
+		long shiftedDay;
+		long era;
+		long dayOfEra;
+		long yearOfEra;
+		long dayOfYear;
+		long shiftedMonth;
+		long year;
+		long month;
+		
+		// The calculation uses years starting on the 1st of March so that the
+		// leap day falls at the end of the year.
+		shiftedDay = day + 719468;
+		era = shiftedDay / 146097;
+		dayOfEra = shiftedDay - era * 146097;
+		yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		shiftedMonth = (5 * dayOfYear + 2) / 153;
+		
+		year = yearOfEra + era * 400;
+		if (shiftedMonth < 10) {
+			month = shiftedMonth + 3;
+		} else {
+			month = shiftedMonth - 9;
+			year++;
+		}
+		
+		writeDigits(timestamp, year, 4, 4);
+		timestamp[4] = '-';
+		writeDigits(timestamp, month, 7, 2);
+		timestamp[7] = '-';
+		writeDigits(timestamp, dayOfYear - (153 * shiftedMonth + 2) / 5 + 1, 10, 2);
+		timestamp[10] = 'T';
+	}
+	
+	
+	/**
+	 * Ends the current line. When writing to a writer, the line is passed to
+	 * the writer.
+	 */
+	public void writeLineSeparator() {
+		write(lineSeparator);
+		
+		if (writer != null) {
+			drain();
+		}
+	}
+	
+	
+	/**
+	 * Passes all buffered data to the destination and flushes it.
+	 */
+	public void flush() {
+		drain();
+		
+		try {
+			if (outputStream != null) {
+				outputStream.flush();
+			} else {
+				writer.flush();
+			}
+			
+		} catch (IOException e) {
+			throw new OsmosisRuntimeException("Unable to flush data.", e);
+		}
+	}
+	
+	
+	/**
+	 * Passes all buffered data to the destination and closes it.
+	 */
+	public void close() {
+		drain();
+		
+		try {
+			if (outputStream != null) {
+				outputStream.close();
+			} else {
+				writer.close();
+			}
+			
+		} catch (IOException e) {
+			throw new OsmosisRuntimeException("Unable to close output.", e);
+		}
+	}
+}
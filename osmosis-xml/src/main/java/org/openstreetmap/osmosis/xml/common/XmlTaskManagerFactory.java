@@ -13,6 +13,8 @@ import org.openstreetmap.osmosis.core.pipeline.common.TaskManagerFactory;
  */
 public abstract class XmlTaskManagerFactory extends TaskManagerFactory {
 	private static final String ARG_COMPRESSION_METHOD = "compressionMethod";
+	private static final String ARG_COMPRESSION_WORKERS = "compressionWorkers";
+	private static final int DEFAULT_COMPRESSION_WORKERS = 1;
 	private static final String ARG_ENCODING_HACK = "encodingHack";
 	private static final boolean DEFAULT_ENCODING_HACK = false;
 	
@@ -52,6 +54,29 @@ public abstract class XmlTaskManagerFactory extends TaskManagerFactory {
 	}
 	
 	
+	/**
+	 * Utility method for retrieving the number of threads used to compress or
+	 * decompress the file.
+	 * 
+	 * @param taskConfig
+	 *            Contains all information required to instantiate and configure
+	 *            the task.
+	 * @return The value of the argument.
+	 */
+	protected int getCompressionWorkersArgument(TaskConfiguration taskConfig) {
+		int compressionWorkers;
+		
+		compressionWorkers = getIntegerArgument(taskConfig, ARG_COMPRESSION_WORKERS, DEFAULT_COMPRESSION_WORKERS);
+		if (compressionWorkers <= 0) {
+			throw new OsmosisRuntimeException(
+				"Argument " + ARG_COMPRESSION_WORKERS + " for task " + taskConfig.getId()
+				+ " must be greater than 0.");
+		}
+		
+		return compressionWorkers;
+	}
+	
+	
 	/**
 	 * Utility method for retrieving the argument specifying whether to enable
 	 * the production file encoding hack to work around a bug in the current
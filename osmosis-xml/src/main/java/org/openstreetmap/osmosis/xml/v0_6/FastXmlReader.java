@@ -35,6 +35,7 @@ public class FastXmlReader implements RunnableSource {
 		private final File file;
 		private final boolean enableDateParsing;
 		private final CompressionMethod compressionMethod;
+		private final int compressionWorkers;
 		
 		
 		/**
@@ -49,9 +50,29 @@ public class FastXmlReader implements RunnableSource {
 		 *            Specifies the compression method to employ.
 		 */
 		public FastXmlReader(File file, boolean enableDateParsing, CompressionMethod compressionMethod) {
+			this(file, enableDateParsing, compressionMethod, 1);
+		}
+		
+		
+		/**
+		 * Creates a new instance.
+		 * 
+		 * @param file
+		 *            The file to read.
+		 * @param enableDateParsing
+		 *            If true, dates will be parsed from xml data, else the current
+		 *            date will be used thus saving parsing time.
+		 * @param compressionMethod
+		 *            Specifies the compression method to employ.
+		 * @param compressionWorkers
+		 *            The number of threads used to decompress the file.
+		 */
+		public FastXmlReader(
+				File file, boolean enableDateParsing, CompressionMethod compressionMethod, int compressionWorkers) {
 			this.file = file;
 			this.enableDateParsing = enableDateParsing;
 			this.compressionMethod = compressionMethod;
+			this.compressionWorkers = compressionWorkers;
 		}
 		
 		
@@ -83,7 +104,7 @@ public class FastXmlReader implements RunnableSource {
 				
 				
 				inputStream =
-					new CompressionActivator(compressionMethod).
+					new CompressionActivator(compressionMethod, compressionWorkers).
 						createCompressionInputStream(inputStream);
 				
 		        XMLInputFactory factory = XMLInputFactory.newInstance();
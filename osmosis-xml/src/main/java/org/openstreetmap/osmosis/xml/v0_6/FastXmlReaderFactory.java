@@ -32,6 +32,7 @@ public class FastXmlReaderFactory extends XmlTaskManagerFactory {
 			File file;
 			boolean enableDateParsing;
 			CompressionMethod compressionMethod;
+			int compressionWorkers;
 			FastXmlReader task;
 			
 			// Get the task arguments.
@@ -42,12 +43,13 @@ public class FastXmlReaderFactory extends XmlTaskManagerFactory {
 			);
 			enableDateParsing = getBooleanArgument(taskConfig, ARG_ENABLE_DATE_PARSING, DEFAULT_ENABLE_DATE_PARSING);
 			compressionMethod = getCompressionMethodArgument(taskConfig, fileName);
+			compressionWorkers = getCompressionWorkersArgument(taskConfig);
 			
 			// Create a file object from the file name provided.
 			file = new File(fileName);
 			
 			// Build the task object.
-			task = new FastXmlReader(file, enableDateParsing, compressionMethod);
+			task = new FastXmlReader(file, enableDateParsing, compressionMethod, compressionWorkers);
 			
 			return new RunnableSourceManager(taskConfig.getId(), task, taskConfig.getPipeArgs());
 		}
@@ -0,0 +1,262 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.xml.v0_6;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
+import org.openstreetmap.osmosis.core.domain.common.SimpleTimestampContainer;
+import org.openstreetmap.osmosis.core.domain.common.TimestampContainer;
+import org.openstreetmap.osmosis.core.task.v0_6.BatchSink;
+import org.openstreetmap.osmosis.core.task.v0_6.RunnableSource;
+import org.openstreetmap.osmosis.core.task.v0_6.Sink;
+import org.openstreetmap.osmosis.xml.common.CompressionActivator;
+import org.openstreetmap.osmosis.xml.common.CompressionMethod;
+import org.openstreetmap.osmosis.xml.v0_6.impl.XmlBlockParser;
+import org.openstreetmap.osmosis.xml.v0_6.impl.XmlBlockSplitter;
+
+
+/**
+ * An OSM data source reading from an xml file using multiple threads. The
+ * decompressed data is split into blocks at node, way and relation element
+ * boundaries, the blocks are parsed by worker threads, and the resulting
+ * entities are sent to the sink in their original order. The file must be
+ * UTF-8 encoded.
+ */
+public class ParallelXmlReader implements RunnableSource {
+	
+	private static final Logger LOG = Logger.getLogger(ParallelXmlReader.class.getName());
+	
+	private Sink sink;
+	private BatchSink batchSink;
+	private final File file;
+	private final boolean enableDateParsing;
+	private final CompressionMethod compressionMethod;
+	private final int workers;
+	private final int blockSize;
+	private final int compressionWorkers;
+	private TimestampContainer defaultTimestampContainer;
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param file
+	 *            The file to read.
+	 * @param enableDateParsing
+	 *            If true, dates will be parsed from xml data, else the current
+	 *            date will be used thus saving parsing time.
+	 * @param compressionMethod
+	 *            Specifies the compression method to employ.
+	 * @param workers
+	 *            The number of worker threads parsing blocks.
+	 * @param blockSize
+	 *            The approximate size in bytes of the blocks passed to worker
+	 *            threads.
+	 */
+	public ParallelXmlReader(File file, boolean enableDateParsing, CompressionMethod compressionMethod, int workers,
+			int blockSize) {
+		this(file, enableDateParsing, compressionMethod, workers, blockSize, 1);
+	}
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param file
+	 *            The file to read.
+	 * @param enableDateParsing
+	 *            If true, dates will be parsed from xml data, else the current
+	 *            date will be used thus saving parsing time.
+	 * @param compressionMethod
+	 *            Specifies the compression method to employ.
+	 * @param workers
+	 *            The number of worker threads parsing blocks.
+	 * @param blockSize
+	 *            The approximate size in bytes of the blocks passed to worker
+	 *            threads.
+	 * @param compressionWorkers
+	 *            The number of threads used to decompress the file.
+	 */
+	public ParallelXmlReader(File file, boolean enableDateParsing, CompressionMethod compressionMethod, int workers,
+			int blockSize, int compressionWorkers) {
+		this.file = file;
+		this.enableDateParsing = enableDateParsing;
+		this.compressionMethod = compressionMethod;
+		this.workers = workers;
+		this.blockSize = blockSize;
+		this.compressionWorkers = compressionWorkers;
+	}
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setSink(Sink sink) {
+		this.sink = sink;
+		
+		if (sink instanceof BatchSink) {
+			batchSink = (BatchSink) sink;
+		} else {
+			batchSink = null;
+		}
+	}
+	
+	
+	private void sendToSink(List<EntityContainer> entities) {
+		if (batchSink != null) {
+			batchSink.processBatch(entities);
+		} else {
+			for (EntityContainer entity : entities) {
+				sink.process(entity);
+			}
+		}
+	}
+	
+	
+	private List<EntityContainer> getResult(Future<List<EntityContainer>> pendingBlock) {
+		try {
+			return pendingBlock.get();
+			
+		} catch (InterruptedException e) {
+			throw new OsmosisRuntimeException("Thread was interrupted.", e);
+		} catch (ExecutionException e) {
+			throw new OsmosisRuntimeException("Unable to parse XML file " + file + ".", e.getCause());
+		}
+	}
+	
+	
+	private void processBlocks(XmlBlockSplitter splitter, ExecutorService executorService) {
+		XmlBlockParser headerParser;
+		Deque<Future<List<EntityContainer>>> pendingBlocks;
+		int maxPendingBlocks;
+		long blockCount;
+		
+		// The header is parsed on this thread because it contains the osm
+		// element which must be validated before any entities are read.
+		headerParser = new XmlBlockParser(enableDateParsing, defaultTimestampContainer);
+		sendToSink(headerParser.parse(splitter.getHeader(), 0));
+		if (!headerParser.isOsmElementFound()) {
+			throw new OsmosisRuntimeException("No osm element was found at the start of XML file " + file + ".");
+		}
+		
+		// Blocks are parsed in the order they are submitted but may complete
+		// in any order. Allowing more blocks than workers to be in progress
+		// ensures workers are kept busy while this thread waits for the oldest
+		// block.
+		maxPendingBlocks = workers * 2;
+		pendingBlocks = new ArrayDeque<Future<List<EntityContainer>>>(maxPendingBlocks);
+		blockCount = 0;
+		while (splitter.hasNext()) {
+			if (pendingBlocks.size() == maxPendingBlocks) {
+				sendToSink(getResult(pendingBlocks.removeFirst()));
+			}
+			
+			pendingBlocks.addLast(executorService.submit(new BlockParser(splitter.next(), splitter.getBlockOffset())));
+			blockCount++;
+		}
+		while (!pendingBlocks.isEmpty()) {
+			sendToSink(getResult(pendingBlocks.removeFirst()));
+		}
+		
+		LOG.fine("Parsed " + blockCount + " XML blocks.");
+	}
+	
+	
+	/**
+	 * Reads all data from the file and send it to the sink.
+	 */
+	@Override
+	public void run() {
+		InputStream inputStream = null;
+		ExecutorService executorService = Executors.newFixedThreadPool(workers);
+		
+		try {
+			Calendar calendar;
+			
+			sink.initialize(Collections.<String, Object>emptyMap());
+			
+			calendar = Calendar.getInstance();
+			calendar.set(Calendar.MILLISECOND, 0);
+			defaultTimestampContainer = new SimpleTimestampContainer(calendar.getTime());
+			
+			// make "-" an alias for /dev/stdin
+			if (file.getName().equals("-")) {
+				inputStream = System.in;
+			} else {
+				inputStream = new FileInputStream(file);
+			}
+			
+			inputStream = new CompressionActivator(compressionMethod, compressionWorkers)
+				.createCompressionInputStream(inputStream);
+			
+			processBlocks(new XmlBlockSplitter(inputStream, blockSize), executorService);
+			
+			sink.complete();
+			
+		} catch (IOException e) {
+			throw new OsmosisRuntimeException("Unable to read XML file " + file + ".", e);
+		} finally {
+			sink.release();
+			
+			executorService.shutdownNow();
+			
+			if (inputStream != null) {
+				try {
+					inputStream.close();
+				} catch (IOException e) {
+					LOG.log(Level.SEVERE, "Unable to close input stream.", e);
+				}
+				inputStream = null;
+			}
+		}
+	}
+	
+	
+	/**
+	 * Parses a single block on a worker thread.
+	 */
+	private class BlockParser implements Callable<List<EntityContainer>> {
+		private byte[] block;
+		private long blockOffset;
+		
+		
+		/**
+		 * Creates a new instance.
+		 * 
+		 * @param block
+		 *            The block to be parsed.
+		 * @param blockOffset
+		 *            The position of the block within the stream.
+		 */
+		BlockParser(byte[] block, long blockOffset) {
+			this.block = block;
+			this.blockOffset = blockOffset;
+		}
+		
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public List<EntityContainer> call() {
+			return new XmlBlockParser(enableDateParsing, defaultTimestampContainer).parse(block, blockOffset);
+		}
+	}
+}
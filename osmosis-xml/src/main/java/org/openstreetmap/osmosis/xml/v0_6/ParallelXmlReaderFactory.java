@@ -0,0 +1,69 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.xml.v0_6;
+
+import java.io.File;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.pipeline.common.TaskConfiguration;
+import org.openstreetmap.osmosis.core.pipeline.common.TaskManager;
+import org.openstreetmap.osmosis.core.pipeline.v0_6.RunnableSourceManager;
+import org.openstreetmap.osmosis.xml.common.CompressionMethod;
+import org.openstreetmap.osmosis.xml.common.XmlTaskManagerFactory;
+
+
+/**
+ * The task manager factory for a parallel xml reader.
+ */
+public class ParallelXmlReaderFactory extends XmlTaskManagerFactory {
+	private static final String ARG_FILE_NAME = "file";
+	private static final String DEFAULT_FILE_NAME = "dump.osm";
+	private static final String ARG_ENABLE_DATE_PARSING = "enableDateParsing";
+	private static final boolean DEFAULT_ENABLE_DATE_PARSING = true;
+	private static final String ARG_WORKERS = "workers";
+	private static final String ARG_BLOCK_SIZE = "blockSize";
+	private static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+	
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected TaskManager createTaskManagerImpl(TaskConfiguration taskConfig) {
+		String fileName;
+		File file;
+		boolean enableDateParsing;
+		CompressionMethod compressionMethod;
+		int compressionWorkers;
+		int workers;
+		int blockSize;
+		ParallelXmlReader task;
+		
+		// Get the task arguments.
+		fileName = getStringArgument(
+			taskConfig,
+			ARG_FILE_NAME,
+			getDefaultStringArgument(taskConfig, DEFAULT_FILE_NAME)
+		);
+		enableDateParsing = getBooleanArgument(taskConfig, ARG_ENABLE_DATE_PARSING, DEFAULT_ENABLE_DATE_PARSING);
+		compressionMethod = getCompressionMethodArgument(taskConfig, fileName);
+		compressionWorkers = getCompressionWorkersArgument(taskConfig);
+		workers = getIntegerArgument(taskConfig, ARG_WORKERS, Runtime.getRuntime().availableProcessors());
+		blockSize = getIntegerArgument(taskConfig, ARG_BLOCK_SIZE, DEFAULT_BLOCK_SIZE);
+		
+		if (workers <= 0) {
+			throw new OsmosisRuntimeException("Argument " + ARG_WORKERS + " must be greater than 0.");
+		}
+		if (blockSize <= 0) {
+			throw new OsmosisRuntimeException("Argument " + ARG_BLOCK_SIZE + " must be greater than 0.");
+		}
+		
+		// Create a file object from the file name provided.
+		file = new File(fileName);
+		
+		// Build the task object.
+		task = new ParallelXmlReader(
+				file, enableDateParsing, compressionMethod, workers, blockSize, compressionWorkers);
+		
+		return new RunnableSourceManager(taskConfig.getId(), task, taskConfig.getPipeArgs());
+	}
+}
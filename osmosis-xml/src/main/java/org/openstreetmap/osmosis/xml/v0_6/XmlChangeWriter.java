@@ -8,6 +8,7 @@ import org.openstreetmap.osmosis.core.container.v0_6.ChangeContainer;
 import org.openstreetmap.osmosis.core.task.v0_6.ChangeSink;
 import org.openstreetmap.osmosis.xml.common.BaseXmlWriter;
 import org.openstreetmap.osmosis.xml.common.CompressionMethod;
+import org.openstreetmap.osmosis.xml.common.XmlOutputBuffer;
 import org.openstreetmap.osmosis.xml.v0_6.impl.OsmChangeWriter;
 
 
@@ -43,12 +44,27 @@ public class XmlChangeWriter extends BaseXmlWriter implements ChangeSink {
 	 *            Specifies the compression method to employ.
 	 */
 	public XmlChangeWriter(File file, CompressionMethod compressionMethod) {
-    	super(file, compressionMethod);
-
-        osmChangeWriter = new OsmChangeWriter("osmChange", 0);
+    	this(file, compressionMethod, 1);
     }
 
 
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param file
+	 *            The file to write.
+	 * @param compressionMethod
+	 *            Specifies the compression method to employ.
+	 * @param compressionWorkers
+	 *            The number of threads used to compress the file.
+	 */
+	public XmlChangeWriter(File file, CompressionMethod compressionMethod, int compressionWorkers) {
+		super(file, compressionMethod, compressionWorkers);
+
+		osmChangeWriter = new OsmChangeWriter("osmChange", 0);
+	}
+
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -78,7 +94,7 @@ public class XmlChangeWriter extends BaseXmlWriter implements ChangeSink {
 	 * {@inheritDoc}
 	 */
 	@Override
-	protected void setWriterOnElementWriter(BufferedWriter writer) {
-		osmChangeWriter.setWriter(writer);
+	protected void setOutputOnElementWriter(XmlOutputBuffer output) {
+		osmChangeWriter.setOutput(output);
 	}
 }
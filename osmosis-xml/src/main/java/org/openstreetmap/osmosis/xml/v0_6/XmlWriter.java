@@ -8,6 +8,7 @@ import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
 import org.openstreetmap.osmosis.core.task.v0_6.Sink;
 import org.openstreetmap.osmosis.xml.common.BaseXmlWriter;
 import org.openstreetmap.osmosis.xml.common.CompressionMethod;
+import org.openstreetmap.osmosis.xml.common.XmlOutputBuffer;
 import org.openstreetmap.osmosis.xml.v0_6.impl.OsmWriter;
 
 
@@ -60,7 +61,25 @@ public class XmlWriter extends BaseXmlWriter implements Sink {
 	 *            correct <bounds> one.
 	 */
 	public XmlWriter(File file, CompressionMethod compressionMethod, boolean legacyBound) {
-		super(file, compressionMethod);
+		this(file, compressionMethod, legacyBound, 1);
+	}
+	
+	
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param file
+	 *            The file to write.
+	 * @param compressionMethod
+	 *            Specifies the compression method to employ.
+	 * @param legacyBound
+	 *            If true, write the legacy <bound> element instead of the
+	 *            correct <bounds> one.
+	 * @param compressionWorkers
+	 *            The number of threads used to compress the file.
+	 */
+	public XmlWriter(File file, CompressionMethod compressionMethod, boolean legacyBound, int compressionWorkers) {
+		super(file, compressionMethod, compressionWorkers);
 		
 		osmWriter = new OsmWriter("osm", 0, true, legacyBound);
 	}
@@ -98,7 +117,7 @@ public class XmlWriter extends BaseXmlWriter implements Sink {
 	 * {@inheritDoc}
 	 */
 	@Override
-	protected void setWriterOnElementWriter(BufferedWriter writer) {
-		osmWriter.setWriter(writer);
+	protected void setOutputOnElementWriter(XmlOutputBuffer output) {
+		osmWriter.setOutput(output);
 	}
 }
@@ -31,6 +31,7 @@ public class XmlWriterFactory extends XmlTaskManagerFactory {
 		File file;
 		XmlWriter task;
 		CompressionMethod compressionMethod;
+		int compressionWorkers;
 		
 		// Get the task arguments.
 		fileName = getStringArgument(
@@ -39,6 +40,7 @@ public class XmlWriterFactory extends XmlTaskManagerFactory {
 			getDefaultStringArgument(taskConfig, DEFAULT_FILE_NAME)
 		);
 		compressionMethod = getCompressionMethodArgument(taskConfig, fileName);
+		compressionWorkers = getCompressionWorkersArgument(taskConfig);
 		
 		// Create a file object from the file name provided.
 		file = new File(fileName);
@@ -46,7 +48,7 @@ public class XmlWriterFactory extends XmlTaskManagerFactory {
 		boolean legacyBound = getBooleanArgument(taskConfig, ARG_LEGACY_BOUND, DEFAULT_LEGACY_BOUND);
 		
 		// Build the task object.
-		task = new XmlWriter(file, compressionMethod, legacyBound);
+		task = new XmlWriter(file, compressionMethod, legacyBound, compressionWorkers);
 		
 		return new SinkManager(taskConfig.getId(), task, taskConfig.getPipeArgs());
 	}
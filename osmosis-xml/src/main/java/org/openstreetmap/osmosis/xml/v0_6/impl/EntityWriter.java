@@ -1,6 +1,7 @@
 // This software is released into the Public Domain.  See copying.txt for details.
 package org.openstreetmap.osmosis.xml.v0_6.impl;
 
+import java.util.Map;
 import java.util.Map.Entry;
 
 import org.openstreetmap.osmosis.core.domain.v0_6.Entity;
@@ -15,6 +16,14 @@ import org.openstreetmap.osmosis.xml.common.ElementWriter;
  */
 public class EntityWriter extends ElementWriter {
 	
+	private static final byte[] ATTRIBUTE_ID = encodeAttributeName("id");
+	private static final byte[] ATTRIBUTE_VERSION = encodeAttributeName("version");
+	private static final byte[] ATTRIBUTE_TIMESTAMP = encodeAttributeName("timestamp");
+	private static final byte[] ATTRIBUTE_UID = encodeAttributeName("uid");
+	private static final byte[] ATTRIBUTE_USER = encodeAttributeName("user");
+	private static final byte[] ATTRIBUTE_CHANGESET = encodeAttributeName("changeset");
+	
+	
 	/**
 	 * Creates a new instance.
 	 * 
@@ -35,18 +44,24 @@ public class EntityWriter extends ElementWriter {
 	 *            The entity being written.
 	 */
 	protected void addCommonAttributes(Entity entity) {
-		addAttribute("id", Long.toString(entity.getId()));
-		addAttribute("version", Integer.toString(entity.getVersion()));
-		addAttribute("timestamp", entity.getFormattedTimestamp(getTimestampFormat()));
+		addAttribute(ATTRIBUTE_ID, entity.getId());
+		addAttribute(ATTRIBUTE_VERSION, entity.getVersion());
+		
+		// Timestamps held as strings are written unchanged where possible.
+		if (entity.hasParsedTimestamp()) {
+			addTimestampAttribute(ATTRIBUTE_TIMESTAMP, entity.getTimestampMillis());
+		} else {
+			addAttribute(ATTRIBUTE_TIMESTAMP, entity.getFormattedTimestamp(getTimestampFormat()));
+		}
 
 		OsmUser user = entity.getUser();
 		if (!user.equals(OsmUser.NONE)) {
-			addAttribute("uid", Integer.toString(user.getId()));
-			addAttribute("user", user.getName());
+			addAttribute(ATTRIBUTE_UID, user.getId());
+			addAttribute(ATTRIBUTE_USER, user.getName());
 		}
 
 		if (entity.getChangesetId() != 0) {
-			addAttribute("changeset", Long.toString(entity.getChangesetId()));
+			addAttribute(ATTRIBUTE_CHANGESET, entity.getChangesetId());
 		}
 	}
 
@@ -58,7 +73,13 @@ public class EntityWriter extends ElementWriter {
 	 *            The entity being written.
 	 */
 	protected void addMetatags(Entity entity) {
-		for (Entry<String, Object> metaTag : entity.getMetaTags().entrySet()) {
+		Map<String, Object> metaTags = entity.getMetaTags();
+		
+		if (metaTags.isEmpty()) {
+			return;
+		}
+		
+		for (Entry<String, Object> metaTag : metaTags.entrySet()) {
 			addAttribute(metaTag.getKey(), metaTag.getValue().toString());
 		}
 	}
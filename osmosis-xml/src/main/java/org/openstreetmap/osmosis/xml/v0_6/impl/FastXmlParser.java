@@ -1,7 +1,10 @@
 // This software is released into the Public Domain.  See copying.txt for details.
 package org.openstreetmap.osmosis.xml.v0_6.impl;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.List;
 import java.util.logging.Logger;
 
 import javax.xml.stream.XMLStreamConstants;
@@ -24,10 +27,10 @@ import org.openstreetmap.osmosis.core.domain.v0_6.Node;
 import org.openstreetmap.osmosis.core.domain.v0_6.OsmUser;
 import org.openstreetmap.osmosis.core.domain.v0_6.Relation;
 import org.openstreetmap.osmosis.core.domain.v0_6.RelationMember;
-import org.openstreetmap.osmosis.core.domain.v0_6.Tag;
+import org.openstreetmap.osmosis.core.domain.v0_6.TagCollectionImpl;
 import org.openstreetmap.osmosis.core.domain.v0_6.Way;
-import org.openstreetmap.osmosis.core.domain.v0_6.WayNode;
 import org.openstreetmap.osmosis.core.task.v0_6.Sink;
+import org.openstreetmap.osmosis.core.util.StringPool;
 import org.openstreetmap.osmosis.xml.common.XmlTimestampFormat;
 
 
@@ -96,6 +99,9 @@ public class FastXmlParser {
 		}
 
 		memberTypeParser = new MemberTypeParser();
+		tagBuffer = new TagCollectionImpl();
+		stringPool = StringPool.getShared();
+		wayNodeIdBuffer = new long[16];
 	}
 
 	private final XMLStreamReader reader;
@@ -104,6 +110,9 @@ public class FastXmlParser {
 	private final MemberTypeParser memberTypeParser;
 	private TimestampFormat timestampFormat;
 	private TimestampContainer dummyTimestampContainer;
+	private TagCollectionImpl tagBuffer;
+	private long[] wayNodeIdBuffer;
+	private StringPool stringPool;
 
 
 	private TimestampContainer parseTimestamp(String data) {
@@ -252,12 +261,27 @@ public class FastXmlParser {
 	}
 
 
-	private Tag readTag() throws Exception {
-		Tag tag = new Tag(reader.getAttributeValue(null, ATTRIBUTE_NAME_KEY), reader.getAttributeValue(null,
-				ATTRIBUTE_NAME_VALUE));
+	private void readTag() throws Exception {
+		tagBuffer.add(stringPool.intern(reader.getAttributeValue(null, ATTRIBUTE_NAME_KEY)),
+				stringPool.intern(reader.getAttributeValue(null, ATTRIBUTE_NAME_VALUE)));
 		reader.nextTag();
 		reader.nextTag();
-		return tag;
+	}
+
+
+	/**
+	 * Creates the common entity data using the tags collected in the tag
+	 * buffer. The tags are copied into an exactly sized collection and the
+	 * buffer is cleared for the next entity.
+	 */
+	private CommonEntityData buildEntityData(long id, int version, TimestampContainer timestamp, OsmUser user,
+			long changesetId) {
+		CommonEntityData entityData;
+
+		entityData = new CommonEntityData(id, version, timestamp, user, changesetId, tagBuffer);
+		tagBuffer.clear();
+
+		return entityData;
 	}
 
 
@@ -286,17 +310,12 @@ public class FastXmlParser {
 		latitude = Double.parseDouble(lat);
 		longitude = Double.parseDouble(lon);
 
-		node = new Node(new CommonEntityData(id, version, timestamp, user, changesetId), latitude, longitude);
-
 		String visibleValue = reader.getAttributeValue(null, ATTRIBUTE_NAME_VISIBLE);
-		if (visibleValue != null) {
-			node.setVisible(visibleValue.equals("true"));
-		}
 
 		reader.nextTag();
 		while (reader.getEventType() == XMLStreamConstants.START_ELEMENT) {
 			if (reader.getLocalName().equals(ELEMENT_NAME_TAG)) {
-				node.getTags().add(readTag());
+				readTag();
 			} else {
 				readUnknownElement();
 			}
@@ -304,15 +323,20 @@ public class FastXmlParser {
 
 		reader.nextTag();
 
+		node = new Node(buildEntityData(id, version, timestamp, user, changesetId), latitude, longitude);
+		if (visibleValue != null) {
+			node.setVisible(visibleValue.equals("true"));
+		}
+
 		return node;
 	}
 
 
-	private WayNode readWayNode() throws Exception {
-		WayNode node = new WayNode(Long.parseLong(reader.getAttributeValue(null, ATTRIBUTE_NAME_REF)));
+	private long readWayNodeId() throws Exception {
+		long nodeId = Long.parseLong(reader.getAttributeValue(null, ATTRIBUTE_NAME_REF));
 		reader.nextTag();
 		reader.nextTag();
-		return node;
+		return nodeId;
 	}
 
 
@@ -322,6 +346,7 @@ public class FastXmlParser {
 		TimestampContainer timestamp;
 		OsmUser user;
 		long changesetId;
+		int wayNodeCount;
 		Way way;
 
 		id = Long.parseLong(reader.getAttributeValue(null, ATTRIBUTE_NAME_ID));
@@ -330,25 +355,32 @@ public class FastXmlParser {
 		user = readUser();
 		changesetId = readChangesetId();
 
-		way = new Way(new CommonEntityData(id, version, timestamp, user, changesetId));
-
 		String visibleValue = reader.getAttributeValue(null, ATTRIBUTE_NAME_VISIBLE);
-		if (visibleValue != null) {
-			way.setVisible(visibleValue.equals("true"));
-		}
 
+		// Node ids are collected in a re-usable buffer and copied into an
+		// exactly sized array owned by the way.
+		wayNodeCount = 0;
 		reader.nextTag();
 		while (reader.getEventType() == XMLStreamConstants.START_ELEMENT) {
 			if (reader.getLocalName().equals(ELEMENT_NAME_TAG)) {
-				way.getTags().add(readTag());
+				readTag();
 			} else if (reader.getLocalName().equals(ELEMENT_NAME_NODE_REFERENCE)) {
-				way.getWayNodes().add(readWayNode());
+				if (wayNodeCount == wayNodeIdBuffer.length) {
+					wayNodeIdBuffer = Arrays.copyOf(wayNodeIdBuffer, wayNodeCount * 2);
+				}
+				wayNodeIdBuffer[wayNodeCount++] = readWayNodeId();
 			} else {
 				readUnknownElement();
 			}
 		}
 		reader.nextTag();
 
+		way = new Way(buildEntityData(id, version, timestamp, user, changesetId),
+				Arrays.copyOf(wayNodeIdBuffer, wayNodeCount));
+		if (visibleValue != null) {
+			way.setVisible(visibleValue.equals("true"));
+		}
+
 		return way;
 	}
 
@@ -377,6 +409,7 @@ public class FastXmlParser {
 		TimestampContainer timestamp;
 		OsmUser user;
 		long changesetId;
+		List<RelationMember> members;
 		Relation relation;
 
 		id = Long.parseLong(reader.getAttributeValue(null, ATTRIBUTE_NAME_ID));
@@ -385,25 +418,26 @@ public class FastXmlParser {
 		user = readUser();
 		changesetId = readChangesetId();
 
-		relation = new Relation(new CommonEntityData(id, version, timestamp, user, changesetId));
-
 		String visibleValue = reader.getAttributeValue(null, ATTRIBUTE_NAME_VISIBLE);
-		if (visibleValue != null) {
-			relation.setVisible(visibleValue.equals("true"));
-		}
 
+		members = new ArrayList<RelationMember>();
 		reader.nextTag();
 		while (reader.getEventType() == XMLStreamConstants.START_ELEMENT) {
 			if (reader.getLocalName().equals(ELEMENT_NAME_TAG)) {
-				relation.getTags().add(readTag());
+				readTag();
 			} else if (reader.getLocalName().equals(ELEMENT_NAME_MEMBER)) {
-				relation.getMembers().add(readRelationMember());
+				members.add(readRelationMember());
 			} else {
 				readUnknownElement();
 			}
 		}
 		reader.nextTag();
 
+		relation = new Relation(buildEntityData(id, version, timestamp, user, changesetId), members);
+		if (visibleValue != null) {
+			relation.setVisible(visibleValue.equals("true"));
+		}
+
 		return relation;
 	}
 
@@ -1,15 +1,11 @@
 // This software is released into the Public Domain.  See copying.txt for details.
 package org.openstreetmap.osmosis.xml.v0_6.impl;
 
-import java.io.Writer;
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
-import java.text.NumberFormat;
 import java.util.Collection;
-import java.util.Locale;
 
 import org.openstreetmap.osmosis.core.domain.v0_6.Node;
 import org.openstreetmap.osmosis.core.domain.v0_6.Tag;
+import org.openstreetmap.osmosis.xml.common.XmlOutputBuffer;
 
 
 /**
@@ -18,11 +14,14 @@ import org.openstreetmap.osmosis.core.domain.v0_6.Tag;
  * @author Brett Henderson
  */
 public class NodeWriter extends EntityWriter {
+	
+	private static final byte[] ATTRIBUTE_LATITUDE = encodeAttributeName("lat");
+	private static final byte[] ATTRIBUTE_LONGITUDE = encodeAttributeName("lon");
+	
     /**
      * Write the tags of a node.
      */
    private TagWriter tagWriter;
-   private NumberFormat numberFormat;
 
 	/**
 	 * Creates a new instance.
@@ -36,13 +35,6 @@ public class NodeWriter extends EntityWriter {
 		super(elementName, indentLevel);
 		
 		tagWriter = new TagWriter("tag", indentLevel + 1);
-		
-		// Only write the first 7 decimal places.
-		// Write in US locale so that a '.' is used as the decimal separator.
-		numberFormat = new DecimalFormat(
-			"0.#######;-0.#######",
-			new DecimalFormatSymbols(Locale.US)
-		);
 	}
 	
 	
@@ -58,12 +50,13 @@ public class NodeWriter extends EntityWriter {
 		beginOpenElement();
 		addCommonAttributes(node);
 		
+		// Only the first 7 decimal places are written.
 		if (!Double.isNaN(node.getLatitude())) {
-			addAttribute("lat", numberFormat.format(node.getLatitude()));
+			addCoordinateAttribute(ATTRIBUTE_LATITUDE, node.getLatitude());
 		}
 		
 		if (!Double.isNaN(node.getLongitude())) {
-			addAttribute("lon", numberFormat.format(node.getLongitude()));
+			addCoordinateAttribute(ATTRIBUTE_LONGITUDE, node.getLongitude());
 		}
 
 		addMetatags(node);
@@ -73,9 +66,7 @@ public class NodeWriter extends EntityWriter {
 		if (tags.size() > 0) {
 			endOpenElement(false);
 			
-			for (Tag tag : tags) {
-				tagWriter.process(tag);
-			}
+			tagWriter.processAll(tags);
 			
 			closeElement();
 			
@@ -89,9 +80,9 @@ public class NodeWriter extends EntityWriter {
 	 * {@inheritDoc}
 	 */
 	@Override
-	public void setWriter(final Writer writer) {
-		super.setWriter(writer);
+	public void setOutput(final XmlOutputBuffer output) {
+		super.setOutput(output);
 		
-		tagWriter.setWriter(writer);
+		tagWriter.setOutput(output);
 	}
 }
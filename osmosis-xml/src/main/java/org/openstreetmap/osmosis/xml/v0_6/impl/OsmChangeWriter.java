@@ -1,13 +1,12 @@
 // This software is released into the Public Domain.  See copying.txt for details.
 package org.openstreetmap.osmosis.xml.v0_6.impl;
 
-import java.io.Writer;
-
 import org.openstreetmap.osmosis.core.container.v0_6.ChangeContainer;
 import org.openstreetmap.osmosis.core.OsmosisConstants;
 import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
 import org.openstreetmap.osmosis.core.task.common.ChangeAction;
 import org.openstreetmap.osmosis.xml.common.ElementWriter;
+import org.openstreetmap.osmosis.xml.common.XmlOutputBuffer;
 
 
 /**
@@ -72,12 +71,12 @@ public class OsmChangeWriter extends ElementWriter {
 	 * {@inheritDoc}
 	 */
 	@Override
-	public void setWriter(final Writer aWriter) {
-		super.setWriter(aWriter);
+	public void setOutput(final XmlOutputBuffer anOutput) {
+		super.setOutput(anOutput);
 
-		this.osmCreateWriter.setWriter(aWriter);
-		this.osmModifyWriter.setWriter(aWriter);
-		this.osmDeleteWriter.setWriter(aWriter);
+		this.osmCreateWriter.setOutput(anOutput);
+		this.osmModifyWriter.setOutput(anOutput);
+		this.osmDeleteWriter.setOutput(anOutput);
 	}
 
 	/**
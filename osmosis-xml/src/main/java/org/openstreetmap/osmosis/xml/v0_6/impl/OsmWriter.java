@@ -1,8 +1,6 @@
 // This software is released into the Public Domain.  See copying.txt for details.
 package org.openstreetmap.osmosis.xml.v0_6.impl;
 
-import java.io.Writer;
-
 import org.openstreetmap.osmosis.core.OsmosisConstants;
 import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
 import org.openstreetmap.osmosis.core.container.v0_6.BoundContainer;
@@ -12,6 +10,7 @@ import org.openstreetmap.osmosis.core.container.v0_6.NodeContainer;
 import org.openstreetmap.osmosis.core.container.v0_6.RelationContainer;
 import org.openstreetmap.osmosis.core.container.v0_6.WayContainer;
 import org.openstreetmap.osmosis.xml.common.ElementWriter;
+import org.openstreetmap.osmosis.xml.common.XmlOutputBuffer;
 
 
 /**
@@ -91,12 +90,12 @@ public class OsmWriter extends ElementWriter {
 	 * {@inheritDoc}
 	 */
 	@Override
-	public void setWriter(final Writer writer) {
-		super.setWriter(writer);
+	public void setOutput(final XmlOutputBuffer output) {
+		super.setOutput(output);
 		
-		// Tell the sub element writer that a new writer is available. This will
+		// Tell the sub element writer that a new output is available. This will
 		// cause the underlying entity writing classes to be updated.
-		subElementWriter.updateWriter(writer);
+		subElementWriter.updateOutput(output);
 	}
 	
 	
@@ -132,16 +131,16 @@ public class OsmWriter extends ElementWriter {
 		
 		
 		/**
-		 * Updates the underlying writer.
+		 * Updates the underlying output.
 		 * 
-		 * @param writer
-		 *            The writer to be used for all output xml.
+		 * @param output
+		 *            The buffer to be used for all output xml.
 		 */
-		public void updateWriter(final Writer writer) {
-			nodeWriter.setWriter(writer);
-			wayWriter.setWriter(writer);
-			relationWriter.setWriter(writer);
-			boundWriter.setWriter(writer);
+		public void updateOutput(final XmlOutputBuffer output) {
+			nodeWriter.setOutput(output);
+			wayWriter.setOutput(output);
+			relationWriter.setOutput(output);
+			boundWriter.setOutput(output);
 			// reset the flags indicating which data has been written
 			boundWritten = false;
 			entitiesWritten = false;
@@ -12,6 +12,10 @@ import org.openstreetmap.osmosis.xml.common.ElementWriter;
  */
 public class RelationMemberWriter extends ElementWriter {
 	
+	private static final byte[] ATTRIBUTE_TYPE = encodeAttributeName("type");
+	private static final byte[] ATTRIBUTE_REF = encodeAttributeName("ref");
+	private static final byte[] ATTRIBUTE_ROLE = encodeAttributeName("role");
+	
 	private MemberTypeRenderer memberTypeRenderer;
 	
 	
@@ -38,9 +42,9 @@ public class RelationMemberWriter extends ElementWriter {
 	 */
 	public void processRelationMember(RelationMember relationMember) {
 		beginOpenElement();
-		addAttribute("type", memberTypeRenderer.render(relationMember.getMemberType()));
-		addAttribute("ref", Long.toString(relationMember.getMemberId()));
-		addAttribute("role", relationMember.getMemberRole());
+		addAttribute(ATTRIBUTE_TYPE, memberTypeRenderer.render(relationMember.getMemberType()));
+		addAttribute(ATTRIBUTE_REF, relationMember.getMemberId());
+		addAttribute(ATTRIBUTE_ROLE, relationMember.getMemberRole());
 		endOpenElement(true);
 	}
 }
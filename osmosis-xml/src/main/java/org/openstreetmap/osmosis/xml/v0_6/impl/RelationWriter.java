@@ -1,13 +1,13 @@
 // This software is released into the Public Domain.  See copying.txt for details.
 package org.openstreetmap.osmosis.xml.v0_6.impl;
 
-import java.io.Writer;
 import java.util.Collection;
 import java.util.List;
 
 import org.openstreetmap.osmosis.core.domain.v0_6.Relation;
 import org.openstreetmap.osmosis.core.domain.v0_6.RelationMember;
 import org.openstreetmap.osmosis.core.domain.v0_6.Tag;
+import org.openstreetmap.osmosis.xml.common.XmlOutputBuffer;
 
 
 /**
@@ -62,13 +62,11 @@ public class RelationWriter extends EntityWriter {
 		if (relationMembers.size() > 0 || tags.size() > 0) {
 			endOpenElement(false);
 
-			for (RelationMember relationMember : relationMembers) {
-				relationMemberWriter.processRelationMember(relationMember);
+			for (int i = 0; i < relationMembers.size(); i++) {
+				relationMemberWriter.processRelationMember(relationMembers.get(i));
 			}
 			
-			for (Tag tag : tags) {
-				tagWriter.process(tag);
-			}
+			tagWriter.processAll(tags);
 			
 			closeElement();
 			
@@ -82,10 +80,10 @@ public class RelationWriter extends EntityWriter {
 	 * {@inheritDoc}
 	 */
 	@Override
-	public void setWriter(final Writer writer) {
-		super.setWriter(writer);
+	public void setOutput(final XmlOutputBuffer output) {
+		super.setOutput(output);
 		
-		relationMemberWriter.setWriter(writer);
-		tagWriter.setWriter(writer);
+		relationMemberWriter.setOutput(output);
+		tagWriter.setOutput(output);
 	}
 }
@@ -1,7 +1,10 @@
 // This software is released into the Public Domain.  See copying.txt for details.
 package org.openstreetmap.osmosis.xml.v0_6.impl;
 
+import java.util.Collection;
+
 import org.openstreetmap.osmosis.core.domain.v0_6.Tag;
+import org.openstreetmap.osmosis.core.domain.v0_6.TagCollection;
 import org.openstreetmap.osmosis.xml.common.ElementWriter;
 
 
@@ -12,6 +15,10 @@ import org.openstreetmap.osmosis.xml.common.ElementWriter;
  */
 public class TagWriter extends ElementWriter {
 	
+	private static final byte[] ATTRIBUTE_KEY = encodeAttributeName("k");
+	private static final byte[] ATTRIBUTE_VALUE = encodeAttributeName("v");
+	
+	
 	/**
 	 * Creates a new instance.
 	 * 
@@ -32,9 +39,46 @@ public class TagWriter extends ElementWriter {
 	 *            The tag to be processed.
 	 */
 	public void process(Tag tag) {
+		process(tag.getKey(), tag.getValue());
+	}
+	
+	
+	/**
+	 * Writes a tag.
+	 * 
+	 * @param key
+	 *            The key of the tag.
+	 * @param value
+	 *            The value of the tag.
+	 */
+	public void process(String key, String value) {
 		beginOpenElement();
-		addAttribute("k", tag.getKey());
-		addAttribute("v", tag.getValue());
+		addAttribute(ATTRIBUTE_KEY, key);
+		addAttribute(ATTRIBUTE_VALUE, value);
 		endOpenElement(true);
 	}
+	
+	
+	/**
+	 * Writes all tags of a collection. Tag collections held by entities are
+	 * read by index so that no Tag objects are created.
+	 * 
+	 * @param tags
+	 *            The tags to be processed.
+	 */
+	public void processAll(Collection<Tag> tags) {
+		if (tags instanceof TagCollection) {
+			TagCollection tagCollection = (TagCollection) tags;
+			int size = tagCollection.size();
+			
+			for (int i = 0; i < size; i++) {
+				process(tagCollection.getKey(i), tagCollection.getValue(i));
+			}
+			
+		} else {
+			for (Tag tag : tags) {
+				process(tag);
+			}
+		}
+	}
 }
@@ -12,6 +12,9 @@ import org.openstreetmap.osmosis.xml.common.ElementWriter;
  */
 public class WayNodeWriter extends ElementWriter {
 	
+	private static final byte[] ATTRIBUTE_REF = encodeAttributeName("ref");
+	
+	
 	/**
 	 * Creates a new instance.
 	 * 
@@ -32,8 +35,19 @@ public class WayNodeWriter extends ElementWriter {
 	 *            The wayNode to be processed.
 	 */
 	public void processWayNode(WayNode wayNode) {
+		processWayNode(wayNode.getNodeId());
+	}
+	
+	
+	/**
+	 * Writes a way node.
+	 * 
+	 * @param nodeId
+	 *            The id of the node referenced by the way.
+	 */
+	public void processWayNode(long nodeId) {
 		beginOpenElement();
-		addAttribute("ref", Long.toString(wayNode.getNodeId()));
+		addAttribute(ATTRIBUTE_REF, nodeId);
 		endOpenElement(true);
 	}
 }
@@ -1,13 +1,13 @@
 // This software is released into the Public Domain.  See copying.txt for details.
 package org.openstreetmap.osmosis.xml.v0_6.impl;
 
-import java.io.Writer;
 import java.util.Collection;
 import java.util.List;
 
 import org.openstreetmap.osmosis.core.domain.v0_6.Tag;
 import org.openstreetmap.osmosis.core.domain.v0_6.Way;
 import org.openstreetmap.osmosis.core.domain.v0_6.WayNode;
+import org.openstreetmap.osmosis.xml.common.XmlOutputBuffer;
 
 
 /**
@@ -62,13 +62,12 @@ public class WayWriter extends EntityWriter {
 		if (wayNodes.size() > 0 || tags.size() > 0) {
 			endOpenElement(false);
 
-			for (WayNode wayNode : wayNodes) {
-				wayNodeWriter.processWayNode(wayNode);
+			// Way nodes are read by index to avoid creating WayNode objects.
+			for (int i = 0; i < wayNodes.size(); i++) {
+				wayNodeWriter.processWayNode(way.getWayNodeId(i));
 			}
 			
-			for (Tag tag : tags) {
-				tagWriter.process(tag);
-			}
+			tagWriter.processAll(tags);
 			
 			closeElement();
 			
@@ -82,10 +81,10 @@ public class WayWriter extends EntityWriter {
 	 * {@inheritDoc}
 	 */
 	@Override
-	public void setWriter(final Writer writer) {
-		super.setWriter(writer);
+	public void setOutput(final XmlOutputBuffer output) {
+		super.setOutput(output);
 		
-		wayNodeWriter.setWriter(writer);
-		tagWriter.setWriter(writer);
+		wayNodeWriter.setOutput(output);
+		tagWriter.setOutput(output);
 	}
 }
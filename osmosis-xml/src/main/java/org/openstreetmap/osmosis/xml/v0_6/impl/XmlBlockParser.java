@@ -0,0 +1,1074 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.xml.v0_6.impl;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.container.v0_6.BoundContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.NodeContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.RelationContainer;
+import org.openstreetmap.osmosis.core.container.v0_6.WayContainer;
+import org.openstreetmap.osmosis.core.domain.common.TimestampContainer;
+import org.openstreetmap.osmosis.core.domain.common.TimestampFormat;
+import org.openstreetmap.osmosis.core.domain.common.UnparsedTimestampContainer;
+import org.openstreetmap.osmosis.core.domain.v0_6.Bound;
+import org.openstreetmap.osmosis.core.domain.v0_6.CommonEntityData;
+import org.openstreetmap.osmosis.core.domain.v0_6.EntityType;
+import org.openstreetmap.osmosis.core.domain.v0_6.Node;
+import org.openstreetmap.osmosis.core.domain.v0_6.OsmUser;
+import org.openstreetmap.osmosis.core.domain.v0_6.Relation;
+import org.openstreetmap.osmosis.core.domain.v0_6.RelationMember;
+import org.openstreetmap.osmosis.core.domain.v0_6.TagCollectionImpl;
+import org.openstreetmap.osmosis.core.domain.v0_6.Way;
+import org.openstreetmap.osmosis.core.util.StringPool;
+import org.openstreetmap.osmosis.xml.common.XmlTimestampFormat;
+
+
+/**
+ * Parses blocks of osm xml data produced by {@link XmlBlockSplitter} into
+ * entities. A hand-written tokenizer reads the UTF-8 encoded bytes directly and
+ * supports the subset of xml used by osm files: elements, attributes,
+ * character and entity references, comments, processing instructions, CDATA
+ * sections and document type declarations. Strings are only created for
+ * attribute values that are used and numeric values are parsed without
+ * creating strings at all.
+ * <p>
+ * Entities are built in the same way as {@link FastXmlParser}. An instance may
+ * only be used by a single thread.
+ */
+public class XmlBlockParser {
+
+	private static final Logger LOG = Logger.getLogger(XmlBlockParser.class.getName());
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final byte[] ELEMENT_NAME_OSM = toBytes("osm");
+	private static final byte[] ELEMENT_NAME_BOUND = toBytes("bound");
+	private static final byte[] ELEMENT_NAME_BOUNDS = toBytes("bounds");
+	private static final byte[] ELEMENT_NAME_NODE = toBytes("node");
+	private static final byte[] ELEMENT_NAME_WAY = toBytes("way");
+	private static final byte[] ELEMENT_NAME_RELATION = toBytes("relation");
+	private static final byte[] ELEMENT_NAME_TAG = toBytes("tag");
+	private static final byte[] ELEMENT_NAME_NODE_REFERENCE = toBytes("nd");
+	private static final byte[] ELEMENT_NAME_MEMBER = toBytes("member");
+	private static final byte[] ATTRIBUTE_NAME_ID = toBytes("id");
+	private static final byte[] ATTRIBUTE_NAME_VERSION = toBytes("version");
+	private static final byte[] ATTRIBUTE_NAME_VISIBLE = toBytes("visible");
+	private static final byte[] ATTRIBUTE_NAME_GENERATOR = toBytes("generator");
+	private static final byte[] ATTRIBUTE_NAME_TIMESTAMP = toBytes("timestamp");
+	private static final byte[] ATTRIBUTE_NAME_USER_ID = toBytes("uid");
+	private static final byte[] ATTRIBUTE_NAME_USER = toBytes("user");
+	private static final byte[] ATTRIBUTE_NAME_CHANGESET_ID = toBytes("changeset");
+	private static final byte[] ATTRIBUTE_NAME_LATITUDE = toBytes("lat");
+	private static final byte[] ATTRIBUTE_NAME_LONGITUDE = toBytes("lon");
+	private static final byte[] ATTRIBUTE_NAME_KEY = toBytes("k");
+	private static final byte[] ATTRIBUTE_NAME_VALUE = toBytes("v");
+	private static final byte[] ATTRIBUTE_NAME_REF = toBytes("ref");
+	private static final byte[] ATTRIBUTE_NAME_TYPE = toBytes("type");
+	private static final byte[] ATTRIBUTE_NAME_ROLE = toBytes("role");
+	private static final byte[] ATTRIBUTE_NAME_BOX = toBytes("box");
+	private static final byte[] ATTRIBUTE_NAME_ORIGIN = toBytes("origin");
+	private static final byte[] ATTRIBUTE_NAME_MIN_LATITUDE = toBytes(XmlConstants.ATTRIBUTE_NAME_MINLAT);
+	private static final byte[] ATTRIBUTE_NAME_MIN_LONGITUDE = toBytes(XmlConstants.ATTRIBUTE_NAME_MINLON);
+	private static final byte[] ATTRIBUTE_NAME_MAX_LATITUDE = toBytes(XmlConstants.ATTRIBUTE_NAME_MAXLAT);
+	private static final byte[] ATTRIBUTE_NAME_MAX_LONGITUDE = toBytes(XmlConstants.ATTRIBUTE_NAME_MAXLON);
+	private static final byte[] ATTRIBUTE_NAME_ENCODING = toBytes("encoding");
+	private static final byte[] COMMENT_START = toBytes("<!--");
+	private static final byte[] COMMENT_END = toBytes("-->");
+	private static final byte[] CDATA_START = toBytes("<![CDATA[");
+	private static final byte[] CDATA_END = toBytes("]]>");
+	private static final byte[] PROCESSING_INSTRUCTION_END = toBytes("?>");
+	private static final byte[] XML_DECLARATION_START = toBytes("<?xml");
+
+	private static final int EVENT_END_OF_DATA = 0;
+	private static final int EVENT_START_ELEMENT = 1;
+	private static final int EVENT_END_ELEMENT = 2;
+
+	/**
+	 * Decimal values with up to this many digits can be converted exactly to a
+	 * long and then to a double.
+	 */
+	private static final int MAX_FAST_DOUBLE_DIGITS = 15;
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	/**
+	 * Timestamps are parsed lazily by the threads consuming entities, the
+	 * format is thread safe so a single instance is shared by all parsers.
+	 */
+	private static final TimestampFormat TIMESTAMP_FORMAT = new XmlTimestampFormat();
+
+	private final boolean enableDateParsing;
+	private final TimestampContainer defaultTimestampContainer;
+	private final MemberTypeParser memberTypeParser;
+	private final StringPool stringPool;
+	private TagCollectionImpl tagBuffer;
+	private long[] wayNodeIdBuffer;
+	private char[] charBuffer;
+
+	private byte[] data;
+	private int position;
+	private int end;
+	private long dataOffset;
+	private boolean osmElementFound;
+	private String generator;
+	private List<EntityContainer> entities;
+
+	private long entityId;
+	private int entityVersion;
+	private TimestampContainer entityTimestamp;
+	private OsmUser entityUser;
+	private long entityChangesetId;
+	private String entityVisible;
+
+	private int nameStart;
+	private int nameEnd;
+	private boolean emptyElement;
+	private int attributeCount;
+	private int[] attributeNameStarts;
+	private int[] attributeNameEnds;
+	private int[] attributeValueStarts;
+	private int[] attributeValueEnds;
+
+
+	/**
+	 * Creates a new instance.
+	 * 
+	 * @param enableDateParsing
+	 *            If true, timestamps will be parsed from the xml data,
+	 *            otherwise the default timestamp will be used.
+	 * @param defaultTimestampContainer
+	 *            The timestamp given to all entities if date parsing is
+	 *            disabled.
+	 */
+	public XmlBlockParser(boolean enableDateParsing, TimestampContainer defaultTimestampContainer) {
+		this.enableDateParsing = enableDateParsing;
+		this.defaultTimestampContainer = defaultTimestampContainer;
+
+		memberTypeParser = new MemberTypeParser();
+		stringPool = StringPool.getShared();
+		tagBuffer = new TagCollectionImpl();
+		wayNodeIdBuffer = new long[16];
+		charBuffer = new char[64];
+
+		attributeNameStarts = new int[8];
+		attributeNameEnds = new int[8];
+		attributeValueStarts = new int[8];
+		attributeValueEnds = new int[8];
+	}
+
+
+	private static byte[] toBytes(String value) {
+		byte[] result = new byte[value.length()];
+
+		for (int i = 0; i < result.length; i++) {
+			result[i] = (byte) value.charAt(i);
+		}
+
+		return result;
+	}
+
+
+	private OsmosisRuntimeException createException(String message) {
+		return new OsmosisRuntimeException(message + " At byte " + (dataOffset + position) + ".");
+	}
+
+
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+	}
+
+
+	private static boolean isNameEnd(byte b) {
+		return isWhitespace(b) || b == '=' || b == '>' || b == '/';
+	}
+
+
+	private boolean matches(int offset, byte[] pattern) {
+		if (offset + pattern.length > end) {
+			return false;
+		}
+
+		for (int i = 0; i < pattern.length; i++) {
+			if (data[offset + i] != pattern[i]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+
+	private boolean matchesRange(int start, int finish, byte[] pattern) {
+		return finish - start == pattern.length && matches(start, pattern);
+	}
+
+
+	/**
+	 * Finds the next occurrence of the pattern and moves past it.
+	 */
+	private void skipPast(byte[] pattern, String construct) {
+		int limit = end - pattern.length;
+
+		for (int i = position; i <= limit; i++) {
+			if (data[i] == pattern[0] && matches(i, pattern)) {
+				position = i + pattern.length;
+				return;
+			}
+		}
+
+		throw createException("Unterminated " + construct + ".");
+	}
+
+
+	private void skipWhitespace() {
+		while (position < end && isWhitespace(data[position])) {
+			position++;
+		}
+	}
+
+
+	private void skipName() {
+		while (position < end && !isNameEnd(data[position])) {
+			position++;
+		}
+	}
+
+
+	private void checkAvailable() {
+		if (position >= end) {
+			throw createException("Unexpected end of data.");
+		}
+	}
+
+
+	private void addAttribute(int attributeNameStart, int attributeNameEnd, int valueStart, int valueEnd) {
+		if (attributeCount == attributeNameStarts.length) {
+			int capacity = attributeCount * 2;
+
+			attributeNameStarts = Arrays.copyOf(attributeNameStarts, capacity);
+			attributeNameEnds = Arrays.copyOf(attributeNameEnds, capacity);
+			attributeValueStarts = Arrays.copyOf(attributeValueStarts, capacity);
+			attributeValueEnds = Arrays.copyOf(attributeValueEnds, capacity);
+		}
+
+		attributeNameStarts[attributeCount] = attributeNameStart;
+		attributeNameEnds[attributeCount] = attributeNameEnd;
+		attributeValueStarts[attributeCount] = valueStart;
+		attributeValueEnds[attributeCount] = valueEnd;
+		attributeCount++;
+	}
+
+
+	/**
+	 * Reads attributes until the end of the current start tag or processing
+	 * instruction.
+	 */
+	private void readAttributes(boolean processingInstruction) {
+		attributeCount = 0;
+
+		for (;;) {
+			int attributeNameStart;
+			int attributeNameEnd;
+			int valueStart;
+			byte quote;
+
+			skipWhitespace();
+			checkAvailable();
+
+			if (processingInstruction) {
+				if (matches(position, PROCESSING_INSTRUCTION_END)) {
+					position += PROCESSING_INSTRUCTION_END.length;
+					return;
+				}
+			} else if (data[position] == '>') {
+				position++;
+				emptyElement = false;
+				return;
+			} else if (data[position] == '/') {
+				position++;
+				checkAvailable();
+				if (data[position] != '>') {
+					throw createException("Badly formed empty element tag.");
+				}
+				position++;
+				emptyElement = true;
+				return;
+			}
+
+			attributeNameStart = position;
+			skipName();
+			attributeNameEnd = position;
+			if (attributeNameStart == attributeNameEnd) {
+				throw createException("Badly formed attribute.");
+			}
+
+			skipWhitespace();
+			checkAvailable();
+			if (data[position] != '=') {
+				throw createException("Attribute is missing a value.");
+			}
+			position++;
+			skipWhitespace();
+			checkAvailable();
+
+			quote = data[position];
+			if (quote != '"' && quote != '\'') {
+				throw createException("Attribute value is not quoted.");
+			}
+			position++;
+			valueStart = position;
+			while (position < end && data[position] != quote) {
+				position++;
+			}
+			checkAvailable();
+
+			addAttribute(attributeNameStart, attributeNameEnd, valueStart, position);
+			position++;
+		}
+	}
+
+
+	private void readProcessingInstruction() {
+		// Only the xml declaration is of interest, it must declare an encoding
+		// compatible with the byte based parsing used by this class.
+		if (matches(position, XML_DECLARATION_START) && position + XML_DECLARATION_START.length < end
+				&& isWhitespace(data[position + XML_DECLARATION_START.length])) {
+			String encoding;
+
+			position += XML_DECLARATION_START.length;
+			readAttributes(true);
+
+			encoding = getAttribute(ATTRIBUTE_NAME_ENCODING);
+			if (encoding != null && !"UTF-8".equalsIgnoreCase(encoding) && !"US-ASCII".equalsIgnoreCase(encoding)) {
+				throw createException("Encoding " + encoding + " is not supported, only UTF-8 data can be read.");
+			}
+
+		} else {
+			skipPast(PROCESSING_INSTRUCTION_END, "processing instruction");
+		}
+	}
+
+
+	private void readDeclaration() {
+		if (matches(position, COMMENT_START)) {
+			skipPast(COMMENT_END, "comment");
+
+		} else if (matches(position, CDATA_START)) {
+			skipPast(CDATA_END, "CDATA section");
+
+		} else {
+			int depth = 0;
+
+			// A document type declaration may contain an internal subset
+			// enclosed in square brackets.
+			for (position += 2; position < end; position++) {
+				byte b = data[position];
+
+				if (b == '[') {
+					depth++;
+				} else if (b == ']') {
+					depth--;
+				} else if (b == '>' && depth == 0) {
+					position++;
+					return;
+				}
+			}
+
+			throw createException("Unterminated declaration.");
+		}
+	}
+
+
+	/**
+	 * Moves to the next start or end tag, skipping character data, comments
+	 * and other constructs not used by osm files.
+	 * 
+	 * @return The type of event found.
+	 */
+	private int nextEvent() {
+		for (;;) {
+			while (position < end && data[position] != '<') {
+				position++;
+			}
+			if (position >= end) {
+				return EVENT_END_OF_DATA;
+			}
+			if (position + 1 >= end) {
+				throw createException("Unexpected end of data.");
+			}
+
+			if (data[position + 1] == '/') {
+				position += 2;
+				nameStart = position;
+				skipName();
+				nameEnd = position;
+				skipWhitespace();
+				checkAvailable();
+				if (data[position] != '>') {
+					throw createException("Badly formed end tag.");
+				}
+				position++;
+
+				return EVENT_END_ELEMENT;
+
+			} else if (data[position + 1] == '?') {
+				readProcessingInstruction();
+
+			} else if (data[position + 1] == '!') {
+				readDeclaration();
+
+			} else {
+				position++;
+				nameStart = position;
+				skipName();
+				nameEnd = position;
+				if (nameStart == nameEnd) {
+					throw createException("Badly formed start tag.");
+				}
+				readAttributes(false);
+
+				return EVENT_START_ELEMENT;
+			}
+		}
+	}
+
+
+	private boolean isElement(byte[] name) {
+		return matchesRange(nameStart, nameEnd, name);
+	}
+
+
+	/**
+	 * Skips the remainder of the current element including all nested
+	 * elements.
+	 */
+	private void skipElement() {
+		int depth;
+
+		if (emptyElement) {
+			return;
+		}
+
+		depth = 1;
+		while (depth > 0) {
+			int event = nextEvent();
+
+			if (event == EVENT_START_ELEMENT) {
+				if (!emptyElement) {
+					depth++;
+				}
+			} else if (event == EVENT_END_ELEMENT) {
+				depth--;
+			} else {
+				throw createException("Unexpected end of data within an element.");
+			}
+		}
+	}
+
+
+	private int findAttribute(byte[] name) {
+		for (int i = 0; i < attributeCount; i++) {
+			if (matchesRange(attributeNameStarts[i], attributeNameEnds[i], name)) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+
+	private String getAttribute(byte[] name) {
+		int index = findAttribute(name);
+
+		if (index < 0) {
+			return null;
+		}
+
+		return getString(index);
+	}
+
+
+	private int getRequiredAttribute(byte[] name) {
+		int index = findAttribute(name);
+
+		if (index < 0) {
+			throw createException("Element " + new String(data, nameStart, nameEnd - nameStart, UTF8)
+					+ " does not have the required " + new String(name, UTF8) + " attribute.");
+		}
+
+		return index;
+	}
+
+
+	private String getString(int index) {
+		int start = attributeValueStarts[index];
+		int length = attributeValueEnds[index] - start;
+
+		// Most values are plain ASCII which can be converted directly. Bytes
+		// of multi-byte characters are negative and control characters and
+		// references require normalisation.
+		for (int i = 0; i < length; i++) {
+			byte b = data[start + i];
+
+			if (b < ' ' || b == '&') {
+				return decodeString(new String(data, start, length, UTF8));
+			}
+		}
+
+		if (charBuffer.length < length) {
+			charBuffer = new char[Math.max(length, charBuffer.length * 2)];
+		}
+		for (int i = 0; i < length; i++) {
+			charBuffer[i] = (char) data[start + i];
+		}
+
+		return new String(charBuffer, 0, length);
+	}
+
+
+	/**
+	 * Normalises white space and replaces character and entity references
+	 * within an attribute value as required by the xml specification.
+	 */
+	private String decodeString(String value) {
+		StringBuilder builder = new StringBuilder(value.length());
+
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+
+			if (c == '\r') {
+				if (i + 1 < value.length() && value.charAt(i + 1) == '\n') {
+					i++;
+				}
+				builder.append(' ');
+			} else if (c == '\n' || c == '\t') {
+				builder.append(' ');
+			} else if (c == '&') {
+				int referenceEnd = value.indexOf(';', i);
+				String reference;
+
+				if (referenceEnd < 0) {
+					throw createException("Unterminated reference in attribute value.");
+				}
+				reference = value.substring(i + 1, referenceEnd);
+				i = referenceEnd;
+
+				if ("lt".equals(reference)) {
+					builder.append('<');
+				} else if ("gt".equals(reference)) {
+					builder.append('>');
+				} else if ("amp".equals(reference)) {
+					builder.append('&');
+				} else if ("quot".equals(reference)) {
+					builder.append('"');
+				} else if ("apos".equals(reference)) {
+					builder.append('\'');
+				} else if (reference.startsWith("#x")) {
+					builder.appendCodePoint(parseCharacterReference(reference.substring(2), 16));
+				} else if (reference.startsWith("#")) {
+					builder.appendCodePoint(parseCharacterReference(reference.substring(1), 10));
+				} else {
+					throw createException("Unknown entity reference " + reference + ".");
+				}
+			} else {
+				builder.append(c);
+			}
+		}
+
+		return builder.toString();
+	}
+
+
+	private int parseCharacterReference(String value, int radix) {
+		try {
+			return Integer.parseInt(value, radix);
+		} catch (NumberFormatException e) {
+			throw createException("Badly formed character reference " + value + ".");
+		}
+	}
+
+
+	private long getLong(int index) {
+		int start = attributeValueStarts[index];
+		int finish = attributeValueEnds[index];
+		int i;
+		boolean negative;
+		long value;
+
+		// Parse plain decimal integers directly, anything else is left to the
+		// standard parser.
+		i = start;
+		negative = false;
+		if (i < finish && data[i] == '-') {
+			negative = true;
+			i++;
+		}
+		if (i == finish || finish - i > 18) {
+			return parseLong(index);
+		}
+
+		value = 0;
+		for (; i < finish; i++) {
+			byte b = data[i];
+
+			if (b < '0' || b > '9') {
+				return parseLong(index);
+			}
+			value = value * 10 + (b - '0');
+		}
+
+		if (negative) {
+			return -value;
+		} else {
+			return value;
+		}
+	}
+
+
+	private long parseLong(int index) {
+		String value = getString(index);
+
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			throw createException("Unable to parse " + value + " as an integer.");
+		}
+	}
+
+
+	private int getInteger(int index) {
+		long value = getLong(index);
+
+		if (value != (int) value) {
+			throw createException("Value " + value + " is out of range.");
+		}
+
+		return (int) value;
+	}
+
+
+	private double getDouble(int index) {
+		int start = attributeValueStarts[index];
+		int finish = attributeValueEnds[index];
+		int i;
+		boolean negative;
+		boolean decimalPoint;
+		long mantissa;
+		int digits;
+		int scale;
+		double value;
+
+		// Values with few enough digits are converted exactly. Both the
+		// mantissa and the power of ten are exactly representable so a single
+		// division yields the correctly rounded result, identical to that of
+		// Double.parseDouble. Anything else is left to the standard parser.
+		i = start;
+		negative = false;
+		if (i < finish && data[i] == '-') {
+			negative = true;
+			i++;
+		}
+
+		decimalPoint = false;
+		mantissa = 0;
+		digits = 0;
+		scale = 0;
+		for (; i < finish; i++) {
+			byte b = data[i];
+
+			if (b >= '0' && b <= '9') {
+				mantissa = mantissa * 10 + (b - '0');
+				digits++;
+				if (decimalPoint) {
+					scale++;
+				}
+			} else if (b == '.' && !decimalPoint) {
+				decimalPoint = true;
+			} else {
+				return parseDouble(index);
+			}
+		}
+		if (digits == 0 || digits > MAX_FAST_DOUBLE_DIGITS) {
+			return parseDouble(index);
+		}
+
+		value = mantissa / POWERS_OF_TEN[scale];
+		if (negative) {
+			return -value;
+		} else {
+			return value;
+		}
+	}
+
+
+	private double parseDouble(int index) {
+		String value = getString(index);
+
+		try {
+			return Double.parseDouble(value);
+		} catch (NumberFormatException e) {
+			throw createException("Unable to parse " + value + " as a number.");
+		}
+	}
+
+
+	private TimestampContainer readTimestamp() {
+		if (enableDateParsing) {
+			return new UnparsedTimestampContainer(TIMESTAMP_FORMAT, getAttribute(ATTRIBUTE_NAME_TIMESTAMP));
+		} else {
+			return defaultTimestampContainer;
+		}
+	}
+
+
+	private OsmUser readUser() {
+		int userIdIndex;
+		String userName;
+
+		userIdIndex = findAttribute(ATTRIBUTE_NAME_USER_ID);
+		if (userIdIndex < 0) {
+			return OsmUser.NONE;
+		}
+
+		userName = getAttribute(ATTRIBUTE_NAME_USER);
+		if (userName == null) {
+			userName = "";
+		}
+
+		return new OsmUser(getInteger(userIdIndex), userName);
+	}
+
+
+	private long readChangesetId() {
+		int index = findAttribute(ATTRIBUTE_NAME_CHANGESET_ID);
+
+		if (index < 0) {
+			return 0;
+		}
+
+		return getLong(index);
+	}
+
+
+	private double readCoordinate(byte[] name) {
+		int index = findAttribute(name);
+
+		// Coordinates are omitted for deleted nodes in history files.
+		if (index < 0) {
+			return Double.NaN;
+		}
+
+		return getDouble(index);
+	}
+
+
+	private void readOsm() {
+		String fileVersion;
+
+		osmElementFound = true;
+
+		fileVersion = getAttribute(ATTRIBUTE_NAME_VERSION);
+		if (!XmlConstants.OSM_VERSION.equals(fileVersion)) {
+			LOG.warning("Expected version " + XmlConstants.OSM_VERSION + " but received " + fileVersion + ".");
+		}
+
+		generator = getAttribute(ATTRIBUTE_NAME_GENERATOR);
+	}
+
+
+	private Bound readBound() {
+		String boxString;
+		String origin;
+		String[] boundStrings;
+		double right;
+		double left;
+		double top;
+		double bottom;
+
+		boxString = getAttribute(ATTRIBUTE_NAME_BOX);
+		if (boxString == null) {
+			throw createException("Missing required box attribute of bound element.");
+		}
+		boundStrings = boxString.split(",");
+		if (boundStrings.length != 4) {
+			throw createException("Badly formed box attribute of bound element.");
+		}
+		try {
+			bottom = Double.parseDouble(boundStrings[0]);
+			left = Double.parseDouble(boundStrings[1]);
+			top = Double.parseDouble(boundStrings[2]);
+			right = Double.parseDouble(boundStrings[3]);
+		} catch (NumberFormatException e) {
+			throw createException("Can't parse box attribute of bound element.");
+		}
+		origin = getAttribute(ATTRIBUTE_NAME_ORIGIN);
+		if (origin == null || origin.equals("")) {
+			throw createException("Origin attribute of bound element is empty or missing.");
+		}
+
+		skipElement();
+
+		return new Bound(right, left, top, bottom, origin);
+	}
+
+
+	private Bound readBounds() {
+		double bottom;
+		double left;
+		double top;
+		double right;
+		String origin;
+
+		bottom = getDouble(getRequiredAttribute(ATTRIBUTE_NAME_MIN_LATITUDE));
+		left = getDouble(getRequiredAttribute(ATTRIBUTE_NAME_MIN_LONGITUDE));
+		top = getDouble(getRequiredAttribute(ATTRIBUTE_NAME_MAX_LATITUDE));
+		right = getDouble(getRequiredAttribute(ATTRIBUTE_NAME_MAX_LONGITUDE));
+
+		origin = getAttribute(ATTRIBUTE_NAME_ORIGIN);
+		if (origin == null) {
+			origin = generator;
+		}
+
+		skipElement();
+
+		return new Bound(right, left, top, bottom, origin);
+	}
+
+
+	private void readTag() {
+		tagBuffer.add(
+				stringPool.intern(getAttribute(ATTRIBUTE_NAME_KEY)),
+				stringPool.intern(getAttribute(ATTRIBUTE_NAME_VALUE)));
+		skipElement();
+	}
+
+
+	/**
+	 * Reads the attributes common to all entities from the current element.
+	 */
+	private void readEntityAttributes() {
+		entityId = getLong(getRequiredAttribute(ATTRIBUTE_NAME_ID));
+		entityVersion = getInteger(getRequiredAttribute(ATTRIBUTE_NAME_VERSION));
+		entityTimestamp = readTimestamp();
+		entityUser = readUser();
+		entityChangesetId = readChangesetId();
+		entityVisible = getAttribute(ATTRIBUTE_NAME_VISIBLE);
+	}
+
+
+	/**
+	 * Creates the common entity data using the tags collected in the tag
+	 * buffer. The tags are copied into an exactly sized collection and the
+	 * buffer is cleared for the next entity.
+	 */
+	private CommonEntityData buildEntityData() {
+		CommonEntityData entityData;
+
+		entityData = new CommonEntityData(
+				entityId, entityVersion, entityTimestamp, entityUser, entityChangesetId, tagBuffer);
+		tagBuffer.clear();
+
+		return entityData;
+	}
+
+
+	/**
+	 * Moves to the next child of the current element.
+	 * 
+	 * @return True if a child element was found, false if the end of the
+	 *         current element was reached.
+	 */
+	private boolean nextChild() {
+		int event = nextEvent();
+
+		if (event == EVENT_START_ELEMENT) {
+			return true;
+		} else if (event == EVENT_END_ELEMENT) {
+			return false;
+		} else {
+			throw createException("Unexpected end of data within an element.");
+		}
+	}
+
+
+	private Node readNode() {
+		double latitude;
+		double longitude;
+		Node node;
+
+		readEntityAttributes();
+		latitude = readCoordinate(ATTRIBUTE_NAME_LATITUDE);
+		longitude = readCoordinate(ATTRIBUTE_NAME_LONGITUDE);
+
+		if (!emptyElement) {
+			while (nextChild()) {
+				if (isElement(ELEMENT_NAME_TAG)) {
+					readTag();
+				} else {
+					skipElement();
+				}
+			}
+		}
+
+		node = new Node(buildEntityData(), latitude, longitude);
+		if (entityVisible != null) {
+			node.setVisible(entityVisible.equals("true"));
+		}
+
+		return node;
+	}
+
+
+	private Way readWay() {
+		int wayNodeCount;
+		Way way;
+
+		readEntityAttributes();
+
+		// Node ids are collected in a re-usable buffer and copied into an
+		// exactly sized array owned by the way.
+		wayNodeCount = 0;
+		if (!emptyElement) {
+			while (nextChild()) {
+				if (isElement(ELEMENT_NAME_TAG)) {
+					readTag();
+				} else if (isElement(ELEMENT_NAME_NODE_REFERENCE)) {
+					if (wayNodeCount == wayNodeIdBuffer.length) {
+						wayNodeIdBuffer = Arrays.copyOf(wayNodeIdBuffer, wayNodeCount * 2);
+					}
+					wayNodeIdBuffer[wayNodeCount++] = getLong(getRequiredAttribute(ATTRIBUTE_NAME_REF));
+					skipElement();
+				} else {
+					skipElement();
+				}
+			}
+		}
+
+		way = new Way(buildEntityData(), Arrays.copyOf(wayNodeIdBuffer, wayNodeCount));
+		if (entityVisible != null) {
+			way.setVisible(entityVisible.equals("true"));
+		}
+
+		return way;
+	}
+
+
+	private RelationMember readRelationMember() {
+		long memberId;
+		EntityType memberType;
+		String memberRole;
+
+		memberId = getLong(getRequiredAttribute(ATTRIBUTE_NAME_REF));
+		memberType = memberTypeParser.parse(getAttribute(ATTRIBUTE_NAME_TYPE));
+		memberRole = getAttribute(ATTRIBUTE_NAME_ROLE);
+		skipElement();
+
+		return new RelationMember(memberId, memberType, memberRole);
+	}
+
+
+	private Relation readRelation() {
+		List<RelationMember> members;
+		Relation relation;
+
+		readEntityAttributes();
+
+		members = new ArrayList<RelationMember>();
+		if (!emptyElement) {
+			while (nextChild()) {
+				if (isElement(ELEMENT_NAME_TAG)) {
+					readTag();
+				} else if (isElement(ELEMENT_NAME_MEMBER)) {
+					members.add(readRelationMember());
+				} else {
+					skipElement();
+				}
+			}
+		}
+
+		relation = new Relation(buildEntityData(), members);
+		if (entityVisible != null) {
+			relation.setVisible(entityVisible.equals("true"));
+		}
+
+		return relation;
+	}
+
+
+	/**
+	 * Parses a block of data. The block may contain the start or end of the
+	 * osm element, bound elements, entity elements, and any other elements
+	 * which are ignored.
+	 * 
+	 * @param blockData
+	 *            The block to be parsed.
+	 * @param blockOffset
+	 *            The position of the block within the stream, used for error
+	 *            reporting.
+	 * @return The entities contained within the block.
+	 */
+	public List<EntityContainer> parse(byte[] blockData, long blockOffset) {
+		List<EntityContainer> result;
+
+		data = blockData;
+		end = blockData.length;
+		position = 0;
+		dataOffset = blockOffset;
+		entities = new ArrayList<EntityContainer>();
+
+		for (;;) {
+			int event = nextEvent();
+
+			if (event == EVENT_END_OF_DATA) {
+				break;
+
+			} else if (event == EVENT_END_ELEMENT) {
+				if (!isElement(ELEMENT_NAME_OSM)) {
+					throw createException("Unexpected end tag.");
+				}
+
+			} else if (isElement(ELEMENT_NAME_NODE)) {
+				entities.add(new NodeContainer(readNode()));
+			} else if (isElement(ELEMENT_NAME_WAY)) {
+				entities.add(new WayContainer(readWay()));
+			} else if (isElement(ELEMENT_NAME_RELATION)) {
+				entities.add(new RelationContainer(readRelation()));
+			} else if (isElement(ELEMENT_NAME_OSM)) {
+				// The osm element encloses all others so its children are
+				// read as if they were at the top level.
+				readOsm();
+			} else if (isElement(ELEMENT_NAME_BOUND)) {
+				LOG.fine("Legacy <bound> element encountered.");
+				entities.add(new BoundContainer(readBound()));
+			} else if (isElement(ELEMENT_NAME_BOUNDS)) {
+				entities.add(new BoundContainer(readBounds()));
+			} else {
+				skipElement();
+			}
+		}
+
+		result = entities;
+		data = null;
+		entities = null;
+
+		return result;
+	}
+
+
+	/**
+	 * Indicates if the osm element has been found in any of the parsed data.
+	 * 
+	 * @return True if the osm element has been found.
+	 */
+	public boolean isOsmElementFound() {
+		return osmElementFound;
+	}
+}
@@ -0,0 +1,233 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.xml.v0_6.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+
+
+/**
+ * Splits an osm xml stream into blocks that can be parsed independently. The
+ * header contains everything before the first node, way or relation element.
+ * Each following block begins with a node, way or relation element and is
+ * approximately the requested size, the final block also contains the end of
+ * the document.
+ * <p>
+ * Only the data after the requested block size is searched for the start of
+ * the next element so the cost of splitting is small compared to parsing. The
+ * stream must be UTF-8 encoded (or ASCII) which guarantees that the bytes of
+ * markup characters never occur within multi-byte characters. An element
+ * start within a comment or CDATA section may be mistaken for a split point,
+ * such data does not occur in osm files produced by known tools.
+ */
+public class XmlBlockSplitter implements Iterator<byte[]> {
+
+	private static final int READ_SIZE = 65536;
+	private static final byte[] ELEMENT_NAME_NODE = {'n', 'o', 'd', 'e'};
+	private static final byte[] ELEMENT_NAME_WAY = {'w', 'a', 'y'};
+	private static final byte[] ELEMENT_NAME_RELATION = {'r', 'e', 'l', 'a', 't', 'i', 'o', 'n'};
+
+	/**
+	 * The number of bytes that must be available after a '<' character to
+	 * identify the longest element name and the character that follows it.
+	 */
+	private static final int LOOKAHEAD = ELEMENT_NAME_RELATION.length + 2;
+
+	private InputStream inputStream;
+	private int blockSize;
+	private byte[] buffer;
+	private int count;
+	private boolean endOfStream;
+	private byte[] header;
+	private long blockOffset;
+	private long nextBlockOffset;
+
+
+	/**
+	 * Creates a new instance. The header is read immediately.
+	 * 
+	 * @param inputStream
+	 *            The stream to read xml data from.
+	 * @param blockSize
+	 *            The minimum size in bytes of each block other than the last.
+	 */
+	public XmlBlockSplitter(InputStream inputStream, int blockSize) {
+		int headerLength;
+
+		this.inputStream = inputStream;
+		this.blockSize = blockSize;
+
+		buffer = new byte[blockSize + READ_SIZE];
+
+		headerLength = findSplit(0);
+		header = Arrays.copyOf(buffer, headerLength);
+		removeBytes(headerLength);
+		nextBlockOffset = headerLength;
+	}
+
+
+	private void fill() {
+		int readCount;
+
+		if (count == buffer.length) {
+			buffer = Arrays.copyOf(buffer, buffer.length * 2);
+		}
+
+		try {
+			readCount = inputStream.read(buffer, count, buffer.length - count);
+		} catch (IOException e) {
+			throw new OsmosisRuntimeException("Unable to read xml data.", e);
+		}
+
+		if (readCount < 0) {
+			endOfStream = true;
+		} else {
+			count += readCount;
+		}
+	}
+
+
+	private static boolean isNameEnd(byte b) {
+		return b == ' ' || b == '\t' || b == '\r' || b == '\n' || b == '/' || b == '>';
+	}
+
+
+	private boolean matchesName(int position, byte[] name) {
+		if (position + name.length >= count) {
+			return false;
+		}
+
+		for (int i = 0; i < name.length; i++) {
+			if (buffer[position + i] != name[i]) {
+				return false;
+			}
+		}
+
+		return isNameEnd(buffer[position + name.length]);
+	}
+
+
+	private boolean isEntityStart(int position) {
+		return buffer[position] == '<'
+				&& (matchesName(position + 1, ELEMENT_NAME_NODE)
+						|| matchesName(position + 1, ELEMENT_NAME_WAY)
+						|| matchesName(position + 1, ELEMENT_NAME_RELATION));
+	}
+
+
+	/**
+	 * Finds the start of the first node, way or relation element at or after
+	 * the specified position, reading more data as required.
+	 * 
+	 * @param from
+	 *            The position to begin searching at.
+	 * @return The position of the element, or the number of bytes available
+	 *         if the end of the stream is reached first.
+	 */
+	private int findSplit(int from) {
+		int position;
+
+		position = from;
+		for (;;) {
+			int limit;
+
+			if (endOfStream) {
+				limit = count;
+			} else {
+				limit = count - LOOKAHEAD;
+			}
+
+			for (; position < limit; position++) {
+				if (isEntityStart(position)) {
+					return position;
+				}
+			}
+
+			if (endOfStream) {
+				return count;
+			}
+
+			fill();
+		}
+	}
+
+
+	private void removeBytes(int length) {
+		System.arraycopy(buffer, length, buffer, 0, count - length);
+		count -= length;
+	}
+
+
+	/**
+	 * Gets the data preceding the first node, way or relation element.
+	 * 
+	 * @return The header data.
+	 */
+	public byte[] getHeader() {
+		return header;
+	}
+
+
+	/**
+	 * Gets the offset within the stream of the block most recently returned by
+	 * {@link #next()}.
+	 * 
+	 * @return The offset in bytes.
+	 */
+	public long getBlockOffset() {
+		return blockOffset;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean hasNext() {
+		while (count == 0 && !endOfStream) {
+			fill();
+		}
+
+		return count > 0;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public byte[] next() {
+		int blockLength;
+		byte[] block;
+
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+
+		while (count < blockSize && !endOfStream) {
+			fill();
+		}
+
+		blockLength = findSplit(blockSize);
+		block = Arrays.copyOf(buffer, blockLength);
+		removeBytes(blockLength);
+
+		blockOffset = nextBlockOffset;
+		nextBlockOffset += blockLength;
+
+		return block;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+}
@@ -0,0 +1,157 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.xml.common;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.NumberFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ * Tests the xml output buffer.
+ */
+public class XmlOutputBufferTest {
+	
+	private ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+	private XmlOutputBuffer output = new XmlOutputBuffer(outputStream);
+	
+	
+	private String getResult() throws UnsupportedEncodingException {
+		String result;
+		
+		output.flush();
+		result = outputStream.toString("UTF-8");
+		outputStream.reset();
+		
+		return result;
+	}
+	
+	
+	/**
+	 * Verifies that strings are escaped and encoded.
+	 * 
+	 * @throws UnsupportedEncodingException
+	 *             if UTF-8 isn't supported.
+	 */
+	@Test
+	public void testEscaping() throws UnsupportedEncodingException {
+		output.writeEscaped("a<b>c\"d'e&f\ng\rh\ti" + (char) 0x02 + (char) 0x7F + "j");
+		Assert.assertEquals("Incorrect escaping.", "a&lt;b&gt;c&quot;d&apos;e&amp;f&#xA;g&#xD;h&#x9;ij", getResult());
+		
+		output.writeEscaped("\u00e9\u4e2d\ud83d\ude00");
+		Assert.assertEquals("Incorrect encoding.", "\u00e9\u4e2d\ud83d\ude00", getResult());
+		
+		output.writeEscaped("a\ud83db\ude00");
+		Assert.assertEquals("Unpaired surrogates should be replaced.", "a?b?", getResult());
+		
+		output.writeRaw("<a&b>");
+		Assert.assertEquals("Raw strings should not be escaped.", "<a&b>", getResult());
+	}
+	
+	
+	/**
+	 * Verifies that numbers are written.
+	 * 
+	 * @throws UnsupportedEncodingException
+	 *             if UTF-8 isn't supported.
+	 */
+	@Test
+	public void testLong() throws UnsupportedEncodingException {
+		long[] values = {0, 1, -1, 9, 10, 999999999999L, Long.MAX_VALUE, Long.MIN_VALUE};
+		
+		for (long value : values) {
+			output.writeLong(value);
+			Assert.assertEquals("Incorrect number.", Long.toString(value), getResult());
+		}
+	}
+	
+	
+	/**
+	 * Verifies that coordinates are written identically to the previous
+	 * DecimalFormat based implementation.
+	 * 
+	 * @throws UnsupportedEncodingException
+	 *             if UTF-8 isn't supported.
+	 */
+	@Test
+	public void testCoordinates() throws UnsupportedEncodingException {
+		NumberFormat format = new DecimalFormat("0.#######;-0.#######", new DecimalFormatSymbols(Locale.US));
+		double[] values = {0, -0.0, 1, -1, 0.5, 0.00000005, 0.00000015, -0.00000001, 1.23456785, -179.9999999,
+				90.00000004, 12.1, 12345.678901234, 1e20, Double.MIN_VALUE, Double.POSITIVE_INFINITY};
+		Random random = new Random(42);
+		
+		for (double value : values) {
+			output.writeCoordinate(value);
+			Assert.assertEquals("Incorrect coordinate.", format.format(value), getResult());
+		}
+		
+		for (int i = 0; i < 100000; i++) {
+			double value;
+			
+			if (i % 2 == 0) {
+				value = (random.nextDouble() - 0.5) * 360;
+			} else {
+				value = (random.nextLong() % 1800000001L) / 1e7;
+			}
+			
+			output.writeCoordinate(value);
+			Assert.assertEquals("Incorrect coordinate.", format.format(value), getResult());
+		}
+	}
+	
+	
+	/**
+	 * Verifies that timestamps are written identically to the xml timestamp
+	 * format.
+	 * 
+	 * @throws UnsupportedEncodingException
+	 *             if UTF-8 isn't supported.
+	 */
+	@Test
+	public void testTimestamps() throws UnsupportedEncodingException {
+		XmlTimestampFormat format = new XmlTimestampFormat();
+		long[] values = {0, 999, 1000, 951782400000L, 951868800000L, 4107542399000L, 253402300799999L,
+				253402300800000L, -1, -62135596800000L};
+		Random random = new Random(42);
+		
+		for (long value : values) {
+			output.writeTimestamp(value);
+			Assert.assertEquals("Incorrect timestamp.", format.formatTimestamp(new Date(value)), getResult());
+		}
+		
+		for (int i = 0; i < 100000; i++) {
+			long value = (long) (random.nextDouble() * 4102444800000L);
+			
+			output.writeTimestamp(value);
+			output.writeTimestamp(value + 1);
+			Assert.assertEquals("Incorrect timestamp.",
+					format.formatTimestamp(new Date(value)) + format.formatTimestamp(new Date(value + 1)),
+					getResult());
+		}
+	}
+	
+	
+	/**
+	 * Verifies that data is passed to a writer at the end of each line.
+	 */
+	@Test
+	public void testWriterOutput() {
+		StringWriter writer = new StringWriter();
+		XmlOutputBuffer writerOutput = new XmlOutputBuffer(writer);
+		
+		writerOutput.write(XmlOutputBuffer.encode("<a"));
+		writerOutput.write('>');
+		Assert.assertEquals("Data should be buffered.", "", writer.toString());
+		
+		writerOutput.writeLineSeparator();
+		Assert.assertEquals("Line should be written.", "<a>" + System.getProperty("line.separator"), writer.toString());
+	}
+}
@@ -0,0 +1,85 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.xml.v0_6;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+import org.openstreetmap.osmosis.core.Osmosis;
+import org.openstreetmap.osmosis.testutil.AbstractDataTest;
+
+
+/**
+ * Tests the parallel xml reader task.
+ */
+public class ParallelXmlReaderTest extends AbstractDataTest {
+	
+	/**
+	 * Reads and writes an osm file using the smallest possible block size so
+	 * that every entity is parsed as a separate block.
+	 * 
+	 * @throws IOException
+	 *             if any file operations fail.
+	 */
+	@Test
+	public void testSmallBlocks() throws IOException {
+		File inputFile;
+		File outputFile;
+		
+		// Generate input files.
+		inputFile = dataUtils.createDataFile("v0_6/xml-task-tests-v0_6.osm");
+		outputFile = dataUtils.newFile();
+		
+		// Run the pipeline.
+		Osmosis.run(
+			new String [] {
+				"-q",
+				"--parallel-read-xml-0.6",
+				inputFile.getPath(),
+				"workers=3",
+				"blockSize=1",
+				"--write-xml-0.6",
+				outputFile.getPath()
+			}
+		);
+		
+		// Validate that the output file matches the input file.
+		dataUtils.compareFiles(inputFile, outputFile);
+	}
+	
+	
+	/**
+	 * Reads a compressed osm file using the default block size.
+	 * 
+	 * @throws IOException
+	 *             if any file operations fail.
+	 */
+	@Test
+	public void testCompressed() throws IOException {
+		File uncompressedFile;
+		File workingFolder;
+		File inputFile;
+		File outputFile;
+		
+		// Generate input files.
+		uncompressedFile = dataUtils.createDataFile("v0_6/xml-task-tests-v0_6.osm");
+		workingFolder = dataUtils.newFolder();
+		inputFile = new File(workingFolder, "testin.osm.gz");
+		outputFile = new File(workingFolder, "testout.osm");
+		dataUtils.compressFile(uncompressedFile, inputFile);
+		
+		// Run the pipeline.
+		Osmosis.run(
+			new String [] {
+				"-q",
+				"--parallel-read-xml-0.6",
+				inputFile.getPath(),
+				"--write-xml-0.6",
+				outputFile.getPath()
+			}
+		);
+		
+		// Validate that the output file matches the input file.
+		dataUtils.compareFiles(uncompressedFile, outputFile);
+	}
+}
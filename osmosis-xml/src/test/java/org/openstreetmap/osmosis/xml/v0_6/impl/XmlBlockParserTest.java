@@ -0,0 +1,216 @@
+// This software is released into the Public Domain.  See copying.txt for details.
+package org.openstreetmap.osmosis.xml.v0_6.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import javax.xml.parsers.SAXParserFactory;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openstreetmap.osmosis.core.OsmosisRuntimeException;
+import org.openstreetmap.osmosis.core.container.v0_6.EntityContainer;
+import org.openstreetmap.osmosis.core.domain.common.SimpleTimestampContainer;
+import org.openstreetmap.osmosis.core.domain.v0_6.Bound;
+import org.openstreetmap.osmosis.core.domain.v0_6.Entity;
+import org.openstreetmap.osmosis.core.domain.v0_6.Node;
+import org.openstreetmap.osmosis.core.domain.v0_6.Relation;
+import org.openstreetmap.osmosis.core.domain.v0_6.RelationMember;
+import org.openstreetmap.osmosis.core.domain.v0_6.Tag;
+import org.openstreetmap.osmosis.core.domain.v0_6.Way;
+import org.openstreetmap.osmosis.core.domain.v0_6.WayNode;
+import org.openstreetmap.osmosis.testutil.v0_6.SinkEntityInspector;
+
+
+/**
+ * Tests the xml block splitter and parser by comparing their results with
+ * those of the SAX based parser.
+ */
+public class XmlBlockParserTest {
+
+	private static final String DOCUMENT =
+			"<?xml version='1.0' encoding='UTF-8'?>\r\n"
+			+ "<!DOCTYPE osm [<!ELEMENT osm ANY>]>\n"
+			+ "<!-- A comment before the root element. -->\n"
+			+ "<osm version=\"0.6\" generator=\"test generator\">\n"
+			+ "  <bounds minlat='-1.5' minlon='-2' maxlat='3.25' maxlon='4'/>\n"
+			+ "  <node id=\"1\" version=\"2\" timestamp=\"2011-03-13T07:06:40Z\" uid=\"5\" user=\"Müller東\""
+			+ " changeset=\"9\" lat=\"51.1234567\" lon=\"-0.0000001\" visible=\"true\">\n"
+			+ "    <tag k=\"name\" v=\"A &amp; B &lt;&gt; &quot;&apos; &#65;&#x42;\"/>\n"
+			+ "    <tag k='multi\r\nline' v='tab\there\nnewline\rcr'/>\n"
+			+ "    <unknown a=\"1\"><nested><tag k=\"ignored\" v=\"ignored\"/></nested></unknown>\n"
+			+ "  </node>\n"
+			+ "  <?processing instruction?>\n"
+			+ "  <node id=\"-2\" version=\"1\" timestamp=\"2011-03-13T07:06:40Z\" visible=\"false\""
+			+ " lat=\"0\" lon=\"-0\"/>\n"
+			+ "  <node\n id=\"3\"\n version=\"1\"\n timestamp=\"2011-03-13T07:06:40Z\"\n"
+			+ " lat=\"1e-3\" lon=\"12345678901234567\" >"
+			+ "<![CDATA[ <tag k=\"ignored\"> ]]></node>\n"
+			+ "  <way id=\"10\" version=\"3\" timestamp=\"2011-03-13T07:06:40Z\" uid=\"6\">\n"
+			+ "    <nd ref=\"1\"/><nd ref=\"-2\"/><nd ref=\"3\"/>\n"
+			+ "    <tag k=\"highway\" v=\"residential\"/>\n"
+			+ "  </way>\n"
+			+ "  <way id=\"11\" version=\"1\" timestamp=\"2011-03-13T07:06:40Z\"></way>\n"
+			+ "  <relation id=\"20\" version=\"1\" timestamp=\"2011-03-13T07:06:40Z\" changeset=\"1\">\n"
+			+ "    <member type=\"node\" ref=\"1\" role=\"stop\"/>\n"
+			+ "    <member type=\"way\" ref=\"10\" role=\"\"/>\n"
+			+ "    <member type=\"relation\" ref=\"20\" role=\"self\"/>\n"
+			+ "    <tag k=\"type\" v=\"route\"/>\n"
+			+ "  </relation>\n"
+			+ "</osm>\n";
+
+
+	private List<EntityContainer> parseWithSax(byte[] data) throws Exception {
+		SinkEntityInspector inspector = new SinkEntityInspector();
+		List<EntityContainer> entities = new ArrayList<EntityContainer>();
+
+		SAXParserFactory.newInstance().newSAXParser().parse(
+				new ByteArrayInputStream(data), new OsmHandler(inspector, true));
+		for (EntityContainer entityContainer : inspector.getProcessedEntities()) {
+			entities.add(entityContainer);
+		}
+
+		return entities;
+	}
+
+
+	private List<EntityContainer> parseWithBlocks(byte[] data, int blockSize) {
+		XmlBlockSplitter splitter;
+		XmlBlockParser parser;
+		List<EntityContainer> entities;
+
+		splitter = new XmlBlockSplitter(new ByteArrayInputStream(data), blockSize);
+		parser = new XmlBlockParser(true, new SimpleTimestampContainer(new Date(0)));
+
+		entities = new ArrayList<EntityContainer>();
+		entities.addAll(parser.parse(splitter.getHeader(), 0));
+		Assert.assertTrue("The osm element was not found.", parser.isOsmElementFound());
+		while (splitter.hasNext()) {
+			entities.addAll(parser.parse(splitter.next(), splitter.getBlockOffset()));
+		}
+
+		return entities;
+	}
+
+
+	private String describe(EntityContainer entityContainer) {
+		StringBuilder builder = new StringBuilder();
+		Entity entity = entityContainer.getEntity();
+
+		builder.append(entity.getType()).append(' ').append(entity.getId());
+		if (entity instanceof Bound) {
+			Bound bound = (Bound) entity;
+
+			builder.append(' ').append(bound.getLeft()).append(' ').append(bound.getRight());
+			builder.append(' ').append(bound.getTop()).append(' ').append(bound.getBottom());
+			builder.append(' ').append(bound.getOrigin());
+
+			return builder.toString();
+		}
+
+		builder.append(" v").append(entity.getVersion());
+		builder.append(' ').append(entity.getTimestamp().getTime());
+		builder.append(' ').append(entity.getUser().getId()).append(' ').append(entity.getUser().getName());
+		builder.append(' ').append(entity.getChangesetId());
+		builder.append(' ').append(entity.isVisible());
+		for (Tag tag : entity.getTags()) {
+			builder.append(" [").append(tag.getKey()).append('=').append(tag.getValue()).append(']');
+		}
+		if (entity instanceof Node) {
+			Node node = (Node) entity;
+
+			builder.append(' ').append(node.getLatitude()).append(' ').append(node.getLongitude());
+		} else if (entity instanceof Way) {
+			for (WayNode wayNode : ((Way) entity).getWayNodes()) {
+				builder.append(' ').append(wayNode.getNodeId());
+			}
+		} else if (entity instanceof Relation) {
+			for (RelationMember member : ((Relation) entity).getMembers()) {
+				builder.append(' ').append(member.getMemberType()).append(member.getMemberId());
+				builder.append(':').append(member.getMemberRole());
+			}
+		}
+
+		return builder.toString();
+	}
+
+
+	/**
+	 * Verifies that the block parser produces the same entities as the SAX
+	 * parser for a document using a variety of xml constructs, for every
+	 * block size up to the size of the document.
+	 * 
+	 * @throws Exception
+	 *             if the SAX parser fails.
+	 */
+	@Test
+	public void testMatchesSaxParser() throws Exception {
+		byte[] data = DOCUMENT.getBytes("UTF-8");
+		List<String> expected = new ArrayList<String>();
+
+		for (EntityContainer entityContainer : parseWithSax(data)) {
+			expected.add(describe(entityContainer));
+		}
+		Assert.assertEquals("Incorrect number of entities.", 7, expected.size());
+
+		for (int blockSize = 1; blockSize <= data.length; blockSize += 7) {
+			List<String> actual = new ArrayList<String>();
+
+			for (EntityContainer entityContainer : parseWithBlocks(data, blockSize)) {
+				actual.add(describe(entityContainer));
+			}
+			Assert.assertEquals("Incorrect entities for block size " + blockSize + ".", expected, actual);
+		}
+	}
+
+
+	/**
+	 * Verifies that nodes without coordinates, such as deleted nodes in
+	 * history files, are given undefined coordinates.
+	 * 
+	 * @throws IOException
+	 *             if the data cannot be encoded.
+	 */
+	@Test
+	public void testMissingCoordinates() throws IOException {
+		List<EntityContainer> entities;
+		Node node;
+
+		entities = parseWithBlocks(
+				("<osm version=\"0.6\"><node id=\"1\" version=\"2\" timestamp=\"2011-03-13T07:06:40Z\""
+				+ " visible=\"false\"/></osm>").getBytes("UTF-8"), 100);
+
+		Assert.assertEquals("Incorrect number of entities.", 1, entities.size());
+		node = (Node) entities.get(0).getEntity();
+		Assert.assertFalse("Node should not be visible.", node.isVisible());
+		Assert.assertTrue("Latitude should be undefined.", Double.isNaN(node.getLatitude()));
+		Assert.assertTrue("Longitude should be undefined.", Double.isNaN(node.getLongitude()));
+	}
+
+
+	/**
+	 * Verifies that a truncated document is reported as an error.
+	 * 
+	 * @throws IOException
+	 *             if the data cannot be encoded.
+	 */
+	@Test(expected = OsmosisRuntimeException.class)
+	public void testTruncated() throws IOException {
+		parseWithBlocks(DOCUMENT.substring(0, DOCUMENT.indexOf("<way") + 10).getBytes("UTF-8"), 100);
+	}
+
+
+	/**
+	 * Verifies that data in an unsupported encoding is rejected.
+	 * 
+	 * @throws IOException
+	 *             if the data cannot be encoded.
+	 */
+	@Test(expected = OsmosisRuntimeException.class)
+	public void testUnsupportedEncoding() throws IOException {
+		parseWithBlocks(DOCUMENT.replace("UTF-8", "ISO-8859-1").getBytes("UTF-8"), 100);
+	}
+}